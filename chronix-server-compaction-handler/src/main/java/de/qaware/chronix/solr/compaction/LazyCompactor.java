@@ -17,6 +17,7 @@ package de.qaware.chronix.solr.compaction;
 
 import de.qaware.chronix.converter.common.DoubleList;
 import de.qaware.chronix.converter.common.LongList;
+import de.qaware.chronix.solr.type.metric.ChunkSummary;
 import de.qaware.chronix.timeseries.MetricTimeSeries;
 import org.apache.lucene.document.Document;
 import org.apache.solr.common.SolrInputDocument;
@@ -121,7 +122,7 @@ public class LazyCompactor {
             // write widows when all data points have been read
             if (!hasNext() && timestamps.size() > 0) {
                 MetricTimeSeries slice = copyWithDataRange(currTs, 0, timestamps.size());
-                outputDocs.add(converterService.toInputDocument(slice));
+                outputDocs.add(withSummary(converterService.toInputDocument(slice), slice));
             }
 
             return new CompactionResult(inputDocs, outputDocs);
@@ -136,6 +137,16 @@ public class LazyCompactor {
             @SuppressWarnings("UnusedAssignment")
             SolrInputDocument solrDoc = converterService.toInputDocument(slice);
             solrDoc = converterService.toInputDocument(slice);
+            return withSummary(solrDoc, slice);
+        }
+
+        /**
+         * Sets the summary of the compacted chunk. It replaces the summary of the merged input documents.
+         */
+        private SolrInputDocument withSummary(SolrInputDocument solrDoc, MetricTimeSeries slice) {
+            if (ChunkSummary.isDefinedIn(schema)) {
+                ChunkSummary.of(slice, ChunkSummary.isSketchDefinedIn(schema)).addTo(solrDoc, schema);
+            }
             return solrDoc;
         }
 
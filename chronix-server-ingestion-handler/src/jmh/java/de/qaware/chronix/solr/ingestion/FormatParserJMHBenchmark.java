@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.ingestion;
+
+import de.qaware.chronix.solr.ingestion.format.Clock;
+import de.qaware.chronix.solr.ingestion.format.FormatParser;
+import de.qaware.chronix.solr.ingestion.format.GraphiteByteFormatParser;
+import de.qaware.chronix.solr.ingestion.format.GraphiteFormatParser;
+import de.qaware.chronix.solr.ingestion.format.InfluxDbByteFormatParser;
+import de.qaware.chronix.solr.ingestion.format.InfluxDbFormatParser;
+import de.qaware.chronix.solr.ingestion.format.OpenTsdbTelnetByteFormatParser;
+import de.qaware.chronix.solr.ingestion.format.OpenTsdbTelnetFormatParser;
+import de.qaware.chronix.solr.ingestion.format.PrometheusTextByteFormatParser;
+import de.qaware.chronix.solr.ingestion.format.PrometheusTextFormatParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the string based format parsers (BufferedReader, StringUtils.split, Double.parseDouble)
+ * against the byte based format parsers that scan the bytes of the body.
+ * <p>
+ * The body holds one point per line of the given amount of metrics with three tags each.
+ * Run it with the gc profiler to compare the allocations per point (gc.alloc.rate.norm):
+ * gradlew :chronix-server-ingestion-handler:jmhFormatParserBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@State(Scope.Thread)
+public class FormatParserJMHBenchmark {
+
+    /**
+     * The format of the body
+     */
+    @Param({"influxdb", "graphite", "opentsdb", "prometheus"})
+    public String format;
+
+    /**
+     * The amount of lines (points) of the body
+     */
+    @Param({"100000"})
+    public int lines;
+
+    /**
+     * The amount of metrics (name and tags) of the body
+     */
+    @Param({"100"})
+    public int metrics;
+
+    private byte[] body;
+    private FormatParser stringParser;
+    private FormatParser byteParser;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Clock clock = Instant::now;
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder();
+        long timestamp = 1475754111L;
+
+        if ("prometheus".equals(format)) {
+            builder.append("# TYPE http_requests_total counter\n");
+        }
+        for (int i = 0; i < lines; i++) {
+            int metric = random.nextInt(metrics);
+            String value = Double.toString(Math.round(random.nextDouble() * 100_000) / 100.0);
+            long time = timestamp + i;
+            switch (format) {
+                case "influxdb":
+                    builder.append("cpu_load_").append(metric).append(",host=server").append(metric % 10)
+                            .append(",region=us-west,dc=dc").append(metric % 3)
+                            .append(" value=").append(value).append(' ').append(time * 1_000_000_000L).append('\n');
+                    break;
+                case "graphite":
+                    builder.append("servers.server").append(metric % 10).append(".cpu.load_").append(metric)
+                            .append(' ').append(value).append(' ').append(time).append('\n');
+                    break;
+                case "opentsdb":
+                    builder.append("put sys.cpu.load_").append(metric).append(' ').append(time).append(' ').append(value)
+                            .append(" host=server").append(metric % 10).append(" region=us-west dc=dc").append(metric % 3).append('\n');
+                    break;
+                default:
+                    builder.append("http_requests_total{method=\"post\",code=\"").append(metric)
+                            .append("\",host=\"server").append(metric % 10).append("\"} ").append(value)
+                            .append(' ').append(time * 1000).append('\n');
+            }
+        }
+        body = builder.toString().getBytes(StandardCharsets.UTF_8);
+
+        switch (format) {
+            case "influxdb":
+                stringParser = new InfluxDbFormatParser(clock);
+                byteParser = new InfluxDbByteFormatParser(clock);
+                break;
+            case "graphite":
+                stringParser = new GraphiteFormatParser();
+                byteParser = new GraphiteByteFormatParser();
+                break;
+            case "opentsdb":
+                stringParser = new OpenTsdbTelnetFormatParser();
+                byteParser = new OpenTsdbTelnetByteFormatParser();
+                break;
+            default:
+                stringParser = new PrometheusTextFormatParser(clock);
+                byteParser = new PrometheusTextByteFormatParser(clock);
+        }
+    }
+
+    @Benchmark
+    public void stringParser(Blackhole blackhole) throws Exception {
+        stringParser.parse(new ByteArrayInputStream(body), AbstractIngestionHandler.DEFAULT_BATCH_SIZE, blackhole::consume);
+    }
+
+    @Benchmark
+    public void byteParser(Blackhole blackhole) throws Exception {
+        byteParser.parse(new ByteArrayInputStream(body), AbstractIngestionHandler.DEFAULT_BATCH_SIZE, blackhole::consume);
+    }
+}
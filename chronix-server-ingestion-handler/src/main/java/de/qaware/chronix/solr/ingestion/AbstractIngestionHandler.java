@@ -16,31 +16,80 @@
 package de.qaware.chronix.solr.ingestion;
 
 import de.qaware.chronix.converter.MetricTimeSeriesConverter;
+import de.qaware.chronix.solr.ingestion.format.FormatParseException;
 import de.qaware.chronix.solr.ingestion.format.FormatParser;
+import de.qaware.chronix.solr.type.metric.ChunkSummary;
 import de.qaware.chronix.timeseries.MetricTimeSeries;
 import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.CloseHook;
+import org.apache.solr.core.SolrCore;
 import org.apache.solr.handler.RequestHandlerBase;
+import org.apache.solr.request.LocalSolrQueryRequest;
 import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.request.SolrRequestInfo;
 import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.schema.IndexSchema;
 import org.apache.solr.update.AddUpdateCommand;
 import org.apache.solr.update.CommitUpdateCommand;
+import org.apache.solr.update.DeleteUpdateCommand;
+import org.apache.solr.update.UpdateLog;
 import org.apache.solr.update.processor.UpdateRequestProcessor;
 import org.apache.solr.update.processor.UpdateRequestProcessorChain;
+import org.apache.solr.util.plugin.SolrCoreAware;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PushbackInputStream;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.GZIPInputStream;
 
 /**
  * Abstract class for every ingestion handler.
  * <p>
  * The concrete class only has to provide a suitable {@link FormatParser} instance.
+ * The time series are stored while the body is parsed. The request parameter {@value #BATCH_SIZE} limits the buffered points
+ * (default {@value #DEFAULT_BATCH_SIZE}, can be set in the defaults of the handler).
+ * If the init args of the handler contain a {@link WriteBuffer}, the points of small requests are assembled to chunks in memory.
+ * The points of a request are stored in a small document until their chunk is written and replaces it.
+ * The expired chunks are written periodically and all chunks are written when the core is closed.
+ * Otherwise the chunks are encoded concurrently by the {@link EncodingExecutor} of the handler.
+ * <p>
+ * The request parameter {@value #COMMIT} (default true) commits the documents of every request. Without a commit
+ * the transaction log of the core is synced to the disk before the request is acknowledged, concurrent requests share a
+ * {@link GroupSync}. Hence the documents survive
+ * a crash and are replayed when the core is loaded, the auto commits of the core make them visible.
+ * <p>
+ * A request is not atomic. If the body is invalid, the batches that were handed to the update chain before the error
+ * stay in the index and become visible with the next commit. The error response contains their amount of points
+ * ({@value #STORED_POINTS}), a client that sends the whole body again stores these points twice.
  */
-public abstract class AbstractIngestionHandler extends RequestHandlerBase {
+public abstract class AbstractIngestionHandler extends RequestHandlerBase implements SolrCoreAware {
+
+    /**
+     * The request parameter that commits the documents of a request
+     */
+    public static final String COMMIT = "commit";
+    /**
+     * The request parameter for the maximum amount of buffered points
+     */
+    public static final String BATCH_SIZE = "batchSize";
+    /**
+     * The default maximum amount of buffered points
+     */
+    public static final int DEFAULT_BATCH_SIZE = 100_000;
+    /**
+     * The response field with the amount of points that a failed request stored before its error
+     */
+    public static final String STORED_POINTS = "storedPoints";
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractIngestionHandler.class);
 
@@ -59,6 +108,10 @@ public abstract class AbstractIngestionHandler extends RequestHandlerBase {
     }
 
     private final FormatParser formatParser;
+    private final GroupSync updateLogSync = new GroupSync();
+    private WriteBuffer writeBuffer;
+    private ScheduledExecutorService writeBufferExpiry;
+    private EncodingExecutor encodingExecutor = EncodingExecutor.sequential();
 
     /**
      * Constructor.
@@ -69,6 +122,51 @@ public abstract class AbstractIngestionHandler extends RequestHandlerBase {
         this.formatParser = formatParser;
     }
 
+    @Override
+    public void init(NamedList args) {
+        super.init(args);
+        Object config = args == null ? null : args.get(WriteBuffer.CONFIG);
+        writeBuffer = WriteBuffer.of(config instanceof NamedList ? (NamedList<?>) config : null);
+        Object executorConfig = args == null ? null : args.get(EncodingExecutor.CONFIG);
+        encodingExecutor = EncodingExecutor.of(executorConfig instanceof NamedList ? (NamedList<?>) executorConfig : null);
+    }
+
+    @Override
+    public void inform(SolrCore core) {
+        final WriteBuffer buffer = writeBuffer;
+        final EncodingExecutor executor = encodingExecutor;
+        if (buffer != null) {
+            //the chunks of time series without new points are written, too
+            writeBufferExpiry = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "chronix-write-buffer-" + core.getName());
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = buffer.getExpiryInterval();
+            writeBufferExpiry.scheduleWithFixedDelay(() -> {
+                if (buffer.size() > 0) {
+                    writeBuffered(core, buffer::expire);
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        final ScheduledExecutorService expiry = writeBufferExpiry;
+        core.addCloseHook(new CloseHook() {
+            @Override
+            public void preClose(SolrCore core) {
+                if (buffer != null) {
+                    expiry.shutdown();
+                    //the buffered points are written before the update handler is closed
+                    writeBuffered(core, buffer::close);
+                }
+            }
+
+            @Override
+            public void postClose(SolrCore core) {
+                executor.shutdown();
+            }
+        });
+    }
+
     @Override
     @SuppressWarnings("PMD.SignatureDeclareThrowsException")
     public void handleRequestBody(SolrQueryRequest req, SolrQueryResponse rsp) throws Exception {
@@ -80,20 +178,42 @@ public abstract class AbstractIngestionHandler extends RequestHandlerBase {
             return;
         }
 
-        boolean commit = Boolean.parseBoolean(req.getParams().get("commit", "true"));
+        boolean commit = Boolean.parseBoolean(req.getParams().get(COMMIT, "true"));
+        int batchSize = req.getParams().getInt(BATCH_SIZE, DEFAULT_BATCH_SIZE);
 
         InputStream stream = req.getContentStreams().iterator().next().getStream();
         stream = detectGzip(stream);
 
-        MetricTimeSeriesConverter converter = new MetricTimeSeriesConverter();
-
         UpdateRequestProcessorChain processorChain = req.getCore().getUpdateProcessorChain(req.getParams());
         UpdateRequestProcessor processor = processorChain.createProcessor(req, rsp);
         try {
-            for (MetricTimeSeries series : formatParser.parse(stream)) {
-                SolrInputDocument document = new SolrInputDocument();
-                converter.to(series).getFields().forEach(document::addField);
-                storeDocument(document, processor, req);
+            //the points that are handed to the update chain, a failed request reports them
+            AtomicLong storedPoints = new AtomicLong();
+            EncodingExecutor.Pipeline<EncodedChunk> documents = encodingExecutor.pipeline(chunk -> {
+                storeDocument(chunk.document, processor, req);
+                storedPoints.addAndGet(chunk.points);
+            });
+            WriteBuffer.ChunkWriter writer = chunkWriter(processor, req);
+            try {
+                //the parser hands over the time series whenever its buffer is full
+                formatParser.parse(stream, batchSize, series -> {
+                    if (writeBuffer == null) {
+                        //the chunks are independent, they are encoded concurrently and stored in order
+                        documents.submit(() -> new EncodedChunk(toDocument(series, req), series.size()));
+                    } else {
+                        //the points are stored right away, their chunk replaces them once it is full or expired
+                        writeBuffer.add(series, writer);
+                        storedPoints.addAndGet(series.size());
+                    }
+                });
+                documents.finish();
+            } catch (FormatParseException | IOException | RuntimeException | Error e) {
+                //the request fails, its pending chunks must not occupy the pool
+                documents.cancel();
+                //the stored batches are not rolled back
+                LOGGER.warn("Request failed after storing {} points", storedPoints.get());
+                rsp.add(STORED_POINTS, storedPoints.get());
+                throw e;
             }
 
             if (commit) {
@@ -106,6 +226,125 @@ public abstract class AbstractIngestionHandler extends RequestHandlerBase {
         } finally {
             processor.finish();
         }
+
+        if (!commit) {
+            syncUpdateLog(req);
+        }
+    }
+
+    /**
+     * Writes the buffered chunks outside of an ingestion request with the default update chain of the core.
+     *
+     * @param core   the core of the handler
+     * @param action the action that writes the chunks of the buffer
+     */
+    private static void writeBuffered(SolrCore core, BufferAction action) {
+        try (SolrQueryRequest req = new LocalSolrQueryRequest(core, new ModifiableSolrParams())) {
+            SolrQueryResponse rsp = new SolrQueryResponse();
+            //the update processors can access the request like within a request thread
+            SolrRequestInfo.setRequestInfo(new SolrRequestInfo(req, rsp));
+            try {
+                UpdateRequestProcessor processor = core.getUpdateProcessorChain(req.getParams()).createProcessor(req, rsp);
+                try {
+                    action.apply(chunkWriter(processor, req));
+                } finally {
+                    processor.finish();
+                }
+            } finally {
+                SolrRequestInfo.clearRequestInfo();
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Could not write the buffered chunks", e);
+        }
+    }
+
+    /**
+     * Creates the writer of the write buffer, it stores the points and the chunks with the given processor
+     *
+     * @param processor the update processor
+     * @param req       the request of the processor
+     * @return the chunk writer
+     */
+    private static WriteBuffer.ChunkWriter chunkWriter(UpdateRequestProcessor processor, SolrQueryRequest req) {
+        String uniqueKey = req.getSchema().getUniqueKeyField().getName();
+        return new WriteBuffer.ChunkWriter() {
+            @Override
+            public String writePoints(MetricTimeSeries points) throws IOException {
+                //the id is needed to replace the document with the chunk
+                String id = UUID.randomUUID().toString();
+                SolrInputDocument document = toDocument(points, req);
+                document.setField(uniqueKey, id);
+                storeDocument(document, processor, req);
+                return id;
+            }
+
+            @Override
+            public void writeChunk(MetricTimeSeries chunk, List<String> replaced) throws IOException {
+                storeDocument(toDocument(chunk, req), processor, req);
+                if (!replaced.isEmpty()) {
+                    LOGGER.debug("Deleting {} replaced Solr documents...", replaced.size());
+                    DeleteUpdateCommand cmd = new DeleteUpdateCommand(req);
+                    cmd.setQuery("{!terms f=" + uniqueKey + "}" + String.join(",", replaced));
+                    processor.processDelete(cmd);
+                }
+            }
+        };
+    }
+
+    /**
+     * The document of a chunk and its amount of points
+     */
+    private static final class EncodedChunk {
+        private final SolrInputDocument document;
+        private final int points;
+
+        private EncodedChunk(SolrInputDocument document, int points) {
+            this.document = document;
+            this.points = points;
+        }
+    }
+
+    /**
+     * Writes the chunks of a write buffer
+     */
+    @FunctionalInterface
+    private interface BufferAction {
+        void apply(WriteBuffer.ChunkWriter writer) throws IOException;
+    }
+
+    /**
+     * Encodes the chunk, called concurrently.
+     *
+     * @param chunk the time series of the chunk
+     * @param req   Original Solr request.
+     * @return the document of the chunk
+     */
+    private static SolrInputDocument toDocument(MetricTimeSeries chunk, SolrQueryRequest req) {
+        SolrInputDocument document = new SolrInputDocument();
+        new MetricTimeSeriesConverter().to(chunk).getFields().forEach(document::addField);
+        //add the summary, so aggregations do not have to decompress the chunk
+        IndexSchema schema = req.getSchema();
+        if (ChunkSummary.isDefinedIn(schema)) {
+            ChunkSummary.of(chunk, ChunkSummary.isSketchDefinedIn(schema)).addTo(document, schema);
+        }
+        return document;
+    }
+
+    /**
+     * Forces the transaction log to the disk, the documents of the request are replayed after a crash.
+     * Concurrent requests share a single sync.
+     *
+     * @param req Original Solr request.
+     */
+    private void syncUpdateLog(SolrQueryRequest req) {
+        UpdateLog updateLog = req.getCore().getUpdateHandler().getUpdateLog();
+        if (updateLog == null) {
+            LOGGER.warn("The core has no update log, documents that are not committed are lost on a crash");
+            return;
+        }
+        LOGGER.debug("Syncing update log...");
+        updateLogSync.sync(() -> updateLog.finish(UpdateLog.SyncLevel.FSYNC));
+        LOGGER.debug("Synced update log");
     }
 
     /**
@@ -120,7 +359,7 @@ public abstract class AbstractIngestionHandler extends RequestHandlerBase {
         req.setParams(params);
     }
 
-    private void storeDocument(SolrInputDocument document, UpdateRequestProcessor processor, SolrQueryRequest req) throws IOException {
+    private static void storeDocument(SolrInputDocument document, UpdateRequestProcessor processor, SolrQueryRequest req) throws IOException {
         LOGGER.debug("Adding Solr document...");
         AddUpdateCommand cmd = new AddUpdateCommand(req);
         cmd.solrDoc = document;
@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.ingestion;
+
+import de.qaware.chronix.server.executor.BoundedExecutor;
+import org.apache.solr.common.util.NamedList;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.FutureTask;
+import java.util.function.Supplier;
+
+/**
+ * The bounded thread pool that encodes the chunks of the ingestion handler.
+ * <p>
+ * The chunks of a request are encoded concurrently and handed over in the order of the request.
+ * A single request has at most {@link #PARALLELISM_PER_REQUEST} chunks in progress, hence one large request
+ * cannot occupy the whole pool and the memory of a request stays bounded. Tasks that do not fit into the queue
+ * and tasks that are still queued when the request waits for them are run by the request thread, see {@link BoundedExecutor}.
+ * The pool is configured with the init args of the ingestion handler, e.g.
+ * <pre>
+ * &lt;lst name="encodingExecutor"&gt;
+ *     &lt;int name="threads"&gt;8&lt;/int&gt;
+ *     &lt;int name="queueSize"&gt;1024&lt;/int&gt;
+ *     &lt;int name="parallelismPerRequest"&gt;4&lt;/int&gt;
+ * &lt;/lst&gt;
+ * </pre>
+ */
+public final class EncodingExecutor {
+
+    /**
+     * The name of the init args
+     */
+    public static final String CONFIG = "encodingExecutor";
+    /**
+     * The number of threads of the pool. Default is the number of processors.
+     */
+    public static final String THREADS = BoundedExecutor.THREADS;
+    /**
+     * The maximum number of queued tasks. Default is 1024.
+     */
+    public static final String QUEUE_SIZE = BoundedExecutor.QUEUE_SIZE;
+    /**
+     * The maximum number of chunks of a single request that are encoded at the same time. Default is the number of threads.
+     */
+    public static final String PARALLELISM_PER_REQUEST = BoundedExecutor.PARALLELISM_PER_REQUEST;
+
+    private static final String NAME = "encoding";
+
+    private final BoundedExecutor executor;
+
+    /**
+     * Consumes the results in the order of their tasks
+     *
+     * @param <T> the type of the results
+     */
+    @FunctionalInterface
+    public interface ResultConsumer<T> {
+        /**
+         * @param result the result of a task
+         * @throws IOException if the result can't be consumed
+         */
+        void accept(T result) throws IOException;
+    }
+
+    private EncodingExecutor(BoundedExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Creates a bounded executor
+     *
+     * @param threads               the number of threads of the pool
+     * @param queueSize             the maximum number of queued tasks
+     * @param parallelismPerRequest the maximum number of tasks of a single request in progress
+     * @return the encoding executor
+     */
+    public static EncodingExecutor of(int threads, int queueSize, int parallelismPerRequest) {
+        return new EncodingExecutor(BoundedExecutor.of(NAME, threads, queueSize, parallelismPerRequest));
+    }
+
+    /**
+     * Creates the executor from the init args of the handler.
+     * Missing values are set to their defaults.
+     *
+     * @param args the init args named {@value #CONFIG}, can be null
+     * @return the encoding executor
+     */
+    public static EncodingExecutor of(NamedList<?> args) {
+        return new EncodingExecutor(BoundedExecutor.of(NAME, args, threads -> threads));
+    }
+
+    /**
+     * @return an executor that runs everything in the request thread
+     */
+    public static EncodingExecutor sequential() {
+        return new EncodingExecutor(BoundedExecutor.sequential(NAME));
+    }
+
+    /**
+     * Creates the pipeline of a request
+     *
+     * @param consumer consumes the results in the order of their tasks within the request thread
+     * @param <T>      the type of the results
+     * @return the pipeline
+     */
+    public <T> Pipeline<T> pipeline(ResultConsumer<T> consumer) {
+        return new Pipeline<>(consumer);
+    }
+
+    /**
+     * @return the number of tasks that were run by the request threads
+     */
+    public long getCallerRuns() {
+        return executor.getCallerRuns();
+    }
+
+    /**
+     * Stops the threads of the pool
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * The tasks of a single request. The pipeline is used by the request thread only.
+     *
+     * @param <T> the type of the results
+     */
+    public final class Pipeline<T> {
+
+        private final ResultConsumer<T> consumer;
+        private final Deque<FutureTask<T>> tasks = new ArrayDeque<>();
+
+        private Pipeline(ResultConsumer<T> consumer) {
+            this.consumer = consumer;
+        }
+
+        /**
+         * Submits the task. If the request has too many tasks in progress, the result of its oldest task is consumed.
+         *
+         * @param task the task, it must be thread safe
+         * @throws IOException if a result can't be consumed
+         */
+        public void submit(Supplier<T> task) throws IOException {
+            if (executor.isSequential()) {
+                consumer.accept(task.get());
+                return;
+            }
+            FutureTask<T> future = new FutureTask<>(task::get);
+            tasks.add(future);
+            executor.execute(future);
+            if (tasks.size() > executor.getParallelism()) {
+                consumeOldest();
+            }
+        }
+
+        /**
+         * Consumes the results of all submitted tasks
+         *
+         * @throws IOException if a result can't be consumed
+         */
+        public void finish() throws IOException {
+            while (!tasks.isEmpty()) {
+                consumeOldest();
+            }
+        }
+
+        private void consumeOldest() throws IOException {
+            FutureTask<T> task = tasks.poll();
+            try {
+                //do not wait for a task that is still queued
+                executor.runIfQueued(task);
+                consumer.accept(executor.await(task));
+            } catch (IOException | RuntimeException | Error e) {
+                //the request fails, the other tasks are not needed anymore
+                cancel();
+                throw e;
+            }
+        }
+
+        /**
+         * Cancels the submitted tasks whose results are not consumed yet, e.g. if the request fails.
+         * Running tasks are not interrupted.
+         */
+        public void cancel() {
+            if (!tasks.isEmpty()) {
+                executor.cancel(tasks);
+                tasks.clear();
+            }
+        }
+    }
+}
@@ -15,7 +15,7 @@
  */
 package de.qaware.chronix.solr.ingestion;
 
-import de.qaware.chronix.solr.ingestion.format.GraphiteFormatParser;
+import de.qaware.chronix.solr.ingestion.format.GraphiteByteFormatParser;
 
 /**
  * Handler to ingest the Graphite line format.
@@ -25,7 +25,7 @@ public class GraphiteIngestionHandler extends AbstractIngestionHandler {
      * Constructor.
      */
     public GraphiteIngestionHandler() {
-        super(new GraphiteFormatParser());
+        super(new GraphiteByteFormatParser());
     }
 
     @Override
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.ingestion;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shares the syncs of a log between concurrent requests (group commit).
+ * <p>
+ * A request calls {@link #sync(Runnable)} after it has appended its entries. Only one sync runs at a time.
+ * The requests that arrive while a sync is running wait for it, then a single sync covers all of them.
+ * A request returns without a sync of its own if a sync started after its call, because that sync
+ * already covers its entries. Hence the number of syncs does not grow with the number of concurrent requests.
+ */
+public final class GroupSync {
+
+    private final Object lock = new Object();
+    private final AtomicLong requested = new AtomicLong();
+    private final LongAdder syncs = new LongAdder();
+    private volatile long synced;
+
+    /**
+     * Waits until the entries that are appended before the call are synced
+     *
+     * @param sync syncs all appended entries of the log
+     * @throws RuntimeException the exception of the sync, the next request syncs again
+     */
+    public void sync(Runnable sync) {
+        long ticket = requested.incrementAndGet();
+        if (synced >= ticket) {
+            return;
+        }
+        synchronized (lock) {
+            if (synced >= ticket) {
+                //covered by the sync of another request
+                return;
+            }
+            //the sync covers every request that got its ticket until now
+            long covered = requested.get();
+            sync.run();
+            syncs.increment();
+            synced = covered;
+        }
+    }
+
+    /**
+     * @return the number of syncs that were run
+     */
+    public long getSyncs() {
+        return syncs.sum();
+    }
+}
@@ -15,7 +15,7 @@
  */
 package de.qaware.chronix.solr.ingestion;
 
-import de.qaware.chronix.solr.ingestion.format.InfluxDbFormatParser;
+import de.qaware.chronix.solr.ingestion.format.InfluxDbByteFormatParser;
 import de.qaware.chronix.solr.ingestion.format.RealTimeClock;
 
 /**
@@ -26,7 +26,7 @@ public class InfluxDbIngestionHandler extends AbstractIngestionHandler {
      * Constructor.
      */
     public InfluxDbIngestionHandler() {
-        super(new InfluxDbFormatParser(new RealTimeClock()));
+        super(new InfluxDbByteFormatParser(new RealTimeClock()));
     }
 
     @Override
@@ -15,7 +15,7 @@
  */
 package de.qaware.chronix.solr.ingestion;
 
-import de.qaware.chronix.solr.ingestion.format.OpenTsdbTelnetFormatParser;
+import de.qaware.chronix.solr.ingestion.format.OpenTsdbTelnetByteFormatParser;
 
 /**
  * Handler to ingest the OpenTSDB telnet format.
@@ -25,7 +25,7 @@ public class OpenTsdbTelnetIngestionHandler extends AbstractIngestionHandler {
      * Constructor.
      */
     public OpenTsdbTelnetIngestionHandler() {
-        super(new OpenTsdbTelnetFormatParser());
+        super(new OpenTsdbTelnetByteFormatParser());
     }
 
     @Override
@@ -15,7 +15,7 @@
  */
 package de.qaware.chronix.solr.ingestion;
 
-import de.qaware.chronix.solr.ingestion.format.PrometheusTextFormatParser;
+import de.qaware.chronix.solr.ingestion.format.PrometheusTextByteFormatParser;
 import de.qaware.chronix.solr.ingestion.format.RealTimeClock;
 
 /**
@@ -26,7 +26,7 @@ public class PrometheusTextIngestionHandler extends AbstractIngestionHandler {
      * Constructor.
      */
     public PrometheusTextIngestionHandler() {
-        super(new PrometheusTextFormatParser(new RealTimeClock()));
+        super(new PrometheusTextByteFormatParser(new RealTimeClock()));
     }
 
     @Override
@@ -0,0 +1,377 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.ingestion;
+
+import de.qaware.chronix.converter.common.DoubleList;
+import de.qaware.chronix.converter.common.LongList;
+import de.qaware.chronix.solr.ingestion.format.Clock;
+import de.qaware.chronix.solr.ingestion.format.RealTimeClock;
+import de.qaware.chronix.timeseries.MetricTimeSeries;
+import org.apache.solr.common.util.NamedList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assembles the chunks of time series from the points of many small ingestion requests.
+ * <p>
+ * The buffer collects the points per time series (name, type and attributes) in an open chunk in memory.
+ * The points of every request are stored right away in a small document, hence they are visible to queries and
+ * durable like without the buffer. A chunk is written once, when it holds {@value #MAX_POINTS} points or when it is
+ * older than {@value #MAX_AGE} milliseconds, and replaces the small documents of its points.
+ * Hence a point is encoded at most twice and the index holds one document per chunk once the chunk is written.
+ * If the node crashes, the small documents of the open chunks stay in the index, the compaction merges them.
+ * The age of the chunks is checked with every request and periodically with {@link #expire(ChunkWriter)},
+ * all chunks are written when the buffer is closed.
+ * <p>
+ * The buffer is configured in the init args of an ingestion handler, without them the points are stored as they arrive:
+ * <pre>
+ * &lt;lst name="writeBuffer"&gt;
+ *     &lt;int name="maxPoints"&gt;1000&lt;/int&gt;
+ *     &lt;long name="maxAge"&gt;3600000&lt;/long&gt;
+ * &lt;/lst&gt;
+ * </pre>
+ */
+public final class WriteBuffer {
+
+    /**
+     * The name of the init args
+     */
+    public static final String CONFIG = "writeBuffer";
+    /**
+     * The amount of points that closes a chunk. Default is 1000.
+     */
+    public static final String MAX_POINTS = "maxPoints";
+    /**
+     * The age of a chunk in milliseconds that closes it. Default is one hour.
+     */
+    public static final String MAX_AGE = "maxAge";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteBuffer.class);
+    private static final int DEFAULT_MAX_POINTS = 1000;
+    private static final long DEFAULT_MAX_AGE = 60 * 60 * 1000L;
+    /**
+     * The age of the chunks is checked ten times within the max age
+     */
+    private static final int EXPIRY_CHECKS_PER_MAX_AGE = 10;
+
+    private final int maxPoints;
+    private final long maxAge;
+    private final long expiryInterval;
+    private final Clock clock;
+    private final Map<Key, Chunk> chunks = new ConcurrentHashMap<>();
+
+    private volatile long nextExpiry;
+    private volatile boolean closed;
+
+    /**
+     * Writes the points and the chunks to the index
+     */
+    public interface ChunkWriter {
+        /**
+         * Stores the points of a request until their chunk is written
+         *
+         * @param points the points of a time series
+         * @return the id of the document of the points
+         * @throws IOException if the points can't be written
+         */
+        String writePoints(MetricTimeSeries points) throws IOException;
+
+        /**
+         * Stores the chunk and deletes the documents of its points that were stored before
+         *
+         * @param chunk    the points of the chunk
+         * @param replaced the ids of the documents that are replaced by the chunk, can be empty
+         * @throws IOException if the chunk can't be written
+         */
+        void writeChunk(MetricTimeSeries chunk, List<String> replaced) throws IOException;
+    }
+
+    /**
+     * Creates a write buffer
+     *
+     * @param maxPoints the amount of points that closes a chunk
+     * @param maxAge    the age of a chunk in milliseconds that closes it
+     * @param clock     the clock for the age of the chunks
+     */
+    public WriteBuffer(int maxPoints, long maxAge, Clock clock) {
+        if (maxPoints < 1 || maxAge < 1) {
+            throw new IllegalArgumentException("The max points and the max age must be positive. "
+                    + "Got maxPoints=" + maxPoints + ", maxAge=" + maxAge);
+        }
+        this.maxPoints = maxPoints;
+        this.maxAge = maxAge;
+        this.expiryInterval = Math.max(1, maxAge / EXPIRY_CHECKS_PER_MAX_AGE);
+        this.clock = clock;
+        this.nextExpiry = clock.now().toEpochMilli() + expiryInterval;
+    }
+
+    /**
+     * Creates the buffer from the init args of the handler.
+     * Missing values are set to their defaults.
+     *
+     * @param args the init args named {@value #CONFIG}, can be null
+     * @return the write buffer, null if there are no init args
+     */
+    public static WriteBuffer of(NamedList<?> args) {
+        if (args == null) {
+            return null;
+        }
+        int maxPoints = (int) longValue(args, MAX_POINTS, DEFAULT_MAX_POINTS);
+        long maxAge = longValue(args, MAX_AGE, DEFAULT_MAX_AGE);
+
+        LOGGER.info("Using write buffer with {} points and {} ms per chunk", maxPoints, maxAge);
+        return new WriteBuffer(maxPoints, maxAge, new RealTimeClock());
+    }
+
+    private static long longValue(NamedList<?> args, String name, long defaultValue) {
+        if (args.get(name) == null) {
+            return defaultValue;
+        }
+        return Long.parseLong(String.valueOf(args.get(name)));
+    }
+
+    /**
+     * Adds the points of the time series to its open chunk and stores them until the chunk is written.
+     * The chunk is written, if it is full or too old. Chunks of other time series that are too old are written as well.
+     *
+     * @param series the time series
+     * @param writer writes the points and the chunks
+     * @throws IOException if the points or a chunk can't be written, the points of the time series are not buffered then
+     */
+    public void add(MetricTimeSeries series, ChunkWriter writer) throws IOException {
+        if (closed) {
+            writer.writeChunk(series, Collections.emptyList());
+            return;
+        }
+        long now = clock.now().toEpochMilli();
+        if (now >= nextExpiry) {
+            expire(now, writer);
+        }
+
+        Key key = new Key(series);
+        while (true) {
+            Chunk chunk = chunks.computeIfAbsent(key, k -> new Chunk(series, now));
+            synchronized (chunk) {
+                if (chunk.closed) {
+                    //written by another request in the meantime
+                    continue;
+                }
+                if (closed) {
+                    //closed in the meantime, the close writes every chunk that holds points
+                    if (chunk.size == 0) {
+                        chunk.closed = true;
+                        chunks.remove(key, chunk);
+                    }
+                    writer.writeChunk(series, Collections.emptyList());
+                    return;
+                }
+                if (now - chunk.created >= maxAge) {
+                    write(key, chunk, writer);
+                    continue;
+                }
+                int previousSize = chunk.size;
+                if (previousSize + series.size() < maxPoints) {
+                    chunk.append(series, writer.writePoints(series));
+                    return;
+                }
+                //the points of the request complete the chunk, they are stored with it
+                chunk.append(series, null);
+                try {
+                    write(key, chunk, writer);
+                } catch (IOException | RuntimeException e) {
+                    //the request fails, its points must not be written with the next request
+                    chunk.size = previousSize;
+                    throw e;
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes the chunks that are older than the max age, e.g. of time series without new points
+     *
+     * @param writer writes the chunks
+     * @throws IOException if a chunk can't be written, its points stay in the buffer and in their documents
+     */
+    public void expire(ChunkWriter writer) throws IOException {
+        expire(clock.now().toEpochMilli(), writer);
+    }
+
+    private void expire(long now, ChunkWriter writer) throws IOException {
+        nextExpiry = now + expiryInterval;
+        for (Map.Entry<Key, Chunk> entry : chunks.entrySet()) {
+            Chunk chunk = entry.getValue();
+            synchronized (chunk) {
+                if (!chunk.closed && now - chunk.created >= maxAge) {
+                    write(entry.getKey(), chunk, writer);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the interval in milliseconds, in which the age of the chunks is checked
+     */
+    public long getExpiryInterval() {
+        return expiryInterval;
+    }
+
+    /**
+     * @return the amount of open chunks
+     */
+    public int size() {
+        return chunks.size();
+    }
+
+    /**
+     * Writes all open chunks. Time series that are added afterwards are written without buffering.
+     *
+     * @param writer writes the chunks
+     * @throws IOException if a chunk can't be written, the following chunks are still written.
+     *                     The points of the chunk stay in their documents.
+     */
+    public void close(ChunkWriter writer) throws IOException {
+        closed = true;
+        IOException failure = null;
+        for (Map.Entry<Key, Chunk> entry : chunks.entrySet()) {
+            Chunk chunk = entry.getValue();
+            synchronized (chunk) {
+                try {
+                    if (!chunk.closed) {
+                        write(entry.getKey(), chunk, writer);
+                    }
+                } catch (IOException e) {
+                    LOGGER.error("Could not write the buffered chunk of {}", chunk.name, e);
+                    failure = e;
+                }
+            }
+        }
+        LOGGER.debug("Closed the write buffer");
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Writes the chunk, which replaces the documents of its points, and removes it from the buffer.
+     * The chunk stays open, if it can't be written.
+     */
+    private void write(Key key, Chunk chunk, ChunkWriter writer) throws IOException {
+        if (chunk.size > 0) {
+            writer.writeChunk(chunk.toTimeSeries(), chunk.ids);
+        }
+        chunk.closed = true;
+        chunks.remove(key, chunk);
+    }
+
+    /**
+     * The identity of a time series
+     */
+    private static final class Key {
+        private final String name;
+        private final String type;
+        private final Map<String, Object> attributes;
+        private final int hash;
+
+        private Key(MetricTimeSeries series) {
+            this.name = series.getName();
+            this.type = series.getType();
+            this.attributes = new HashMap<>(series.getAttributesReference());
+            this.hash = Objects.hash(name, type, attributes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash
+                    && Objects.equals(name, other.name)
+                    && Objects.equals(type, other.type)
+                    && Objects.equals(attributes, other.attributes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * The open chunk of a time series
+     */
+    private static final class Chunk {
+        private final String name;
+        private final String type;
+        private final Map<String, Object> attributes;
+        private final long created;
+        /**
+         * The ids of the documents that hold the points of the chunk until it is written
+         */
+        private final List<String> ids = new ArrayList<>();
+        private long[] timestamps = new long[16];
+        private double[] values = new double[16];
+        private int size;
+        private boolean closed;
+
+        private Chunk(MetricTimeSeries series, long created) {
+            this.name = series.getName();
+            this.type = series.getType();
+            this.attributes = new HashMap<>(series.getAttributesReference());
+            this.created = created;
+        }
+
+        private void append(MetricTimeSeries series, String id) {
+            if (id != null) {
+                ids.add(id);
+            }
+            int newSize = size + series.size();
+            if (newSize > timestamps.length) {
+                int capacity = Math.max(newSize, timestamps.length * 2);
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            for (int i = 0; i < series.size(); i++) {
+                timestamps[size] = series.getTime(i);
+                values[size] = series.getValue(i);
+                size++;
+            }
+        }
+
+        private MetricTimeSeries toTimeSeries() {
+            //the chunk is written once, hence the arrays are handed over
+            return new MetricTimeSeries.Builder(name, type)
+                    .attributes(attributes)
+                    .points(new LongList(timestamps, size), new DoubleList(values, size))
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.ingestion.format;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads the lines of an input stream directly from a byte buffer.
+ * <p>
+ * A line is a range of the buffer, it is only valid until the next line is read.
+ * Lines end like with {@link java.io.BufferedReader#readLine()} at '\n', '\r' or "\r\n".
+ * The buffer grows, if a line does not fit into it.
+ */
+final class ByteLineReader {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final InputStream stream;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private boolean endOfStream;
+    private boolean skipLineFeed;
+
+    private int lineStart;
+    private int lineEnd;
+
+    private int[] tokenStarts = new int[16];
+    private int[] tokenEnds = new int[16];
+
+    /**
+     * Constructor.
+     *
+     * @param stream Input stream.
+     */
+    ByteLineReader(InputStream stream) {
+        this.stream = stream;
+    }
+
+    /**
+     * Reads the next line.
+     *
+     * @return false if there is no next line.
+     * @throws IOException If the input stream could not be read.
+     */
+    boolean next() throws IOException {
+        int scan = position;
+        while (true) {
+            if (skipLineFeed && position < limit) {
+                if (buffer[position] == '\n') {
+                    position++;
+                }
+                skipLineFeed = false;
+                scan = Math.max(scan, position);
+            }
+            for (; scan < limit; scan++) {
+                byte current = buffer[scan];
+                if (current == '\n' || current == '\r') {
+                    lineStart = position;
+                    lineEnd = scan;
+                    position = scan + 1;
+                    skipLineFeed = current == '\r';
+                    return true;
+                }
+            }
+            if (endOfStream) {
+                if (position < limit) {
+                    lineStart = position;
+                    lineEnd = limit;
+                    position = limit;
+                    return true;
+                }
+                return false;
+            }
+            scan -= fill();
+        }
+    }
+
+    /**
+     * Splits the line at the separator. Adjacent separators are treated as one separator,
+     * like {@link org.apache.commons.lang3.StringUtils#split(String, char)}.
+     *
+     * @param separator Separator.
+     * @return Amount of tokens.
+     */
+    int split(byte separator) {
+        int tokens = 0;
+        int index = lineStart;
+        while (index < lineEnd) {
+            int start = Bytes.skip(buffer, index, lineEnd, separator);
+            if (start == lineEnd) {
+                break;
+            }
+            int end = Bytes.next(buffer, start, lineEnd, separator);
+            if (tokens == tokenStarts.length) {
+                tokenStarts = Arrays.copyOf(tokenStarts, tokens * 2);
+                tokenEnds = Arrays.copyOf(tokenEnds, tokens * 2);
+            }
+            tokenStarts[tokens] = start;
+            tokenEnds[tokens] = end;
+            tokens++;
+            index = end;
+        }
+        return tokens;
+    }
+
+    /**
+     * @return the buffer that holds the line.
+     */
+    byte[] buffer() {
+        return buffer;
+    }
+
+    /**
+     * @return the index of the first byte of the line.
+     */
+    int lineStart() {
+        return lineStart;
+    }
+
+    /**
+     * @return the index after the last byte of the line.
+     */
+    int lineEnd() {
+        return lineEnd;
+    }
+
+    /**
+     * @param token Index of the token of the last {@link #split(byte)}.
+     * @return the index of the first byte of the token.
+     */
+    int start(int token) {
+        return tokenStarts[token];
+    }
+
+    /**
+     * @param token Index of the token of the last {@link #split(byte)}.
+     * @return the index after the last byte of the token.
+     */
+    int end(int token) {
+        return tokenEnds[token];
+    }
+
+    /**
+     * @return the line as string, e.g. for error messages.
+     */
+    String line() {
+        return new String(buffer, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param token Index of the token of the last {@link #split(byte)}.
+     * @return the token as string, e.g. for error messages.
+     */
+    String token(int token) {
+        return Bytes.toString(buffer, tokenStarts[token], tokenEnds[token]);
+    }
+
+    /**
+     * Moves the unread bytes to the start of the buffer and reads the next bytes.
+     *
+     * @return the amount of bytes the unread bytes are moved.
+     * @throws IOException If the input stream could not be read.
+     */
+    private int fill() throws IOException {
+        int shift = position;
+        if (shift > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= shift;
+            position = 0;
+        }
+        if (limit == buffer.length) {
+            //the line does not fit into the buffer
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        int read = stream.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            endOfStream = true;
+        } else {
+            limit += read;
+        }
+        return shift;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.ingestion.format;
+
+/**
+ * Maps ranges of bytes to values without copying the bytes of a lookup (open addressing with linear probing).
+ * <p>
+ * A key consists of one or two ranges, e.g. the name and the tags of a line.
+ * The cache is cleared once it holds the maximum amount of keys, hence it is bounded for series with a high cardinality.
+ *
+ * @param <V> the type of the values
+ */
+final class ByteRangeCache<V> {
+    /**
+     * The maximum amount of keys of the caches of the format parsers
+     */
+    static final int MAX_SIZE = 1 << 16;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int maxSize;
+    private byte[][] keys;
+    private int[] splits;
+    private int[] hashes;
+    private Object[] values;
+    private int mask;
+    private int size;
+
+    /**
+     * Constructor.
+     *
+     * @param maxSize Maximum amount of keys.
+     */
+    ByteRangeCache(int maxSize) {
+        this.maxSize = maxSize;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * @return the value of the bytes within [from, to) or null.
+     */
+    V get(byte[] bytes, int from, int to) {
+        return get(bytes, from, to, to, to);
+    }
+
+    /**
+     * @return the value of the bytes within [from, to) and [secondFrom, secondTo) or null.
+     */
+    @SuppressWarnings("unchecked")
+    V get(byte[] bytes, int from, int to, int secondFrom, int secondTo) {
+        int hash = hash(bytes, from, to, secondFrom, secondTo);
+        int slot = hash & mask;
+        while (keys[slot] != null) {
+            if (hashes[slot] == hash && matches(slot, bytes, from, to, secondFrom, secondTo)) {
+                return (V) values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Maps the bytes within [from, to) to the value.
+     */
+    void put(byte[] bytes, int from, int to, V value) {
+        put(bytes, from, to, to, to, value);
+    }
+
+    /**
+     * Maps the bytes within [from, to) and [secondFrom, secondTo) to the value.
+     */
+    void put(byte[] bytes, int from, int to, int secondFrom, int secondTo, V value) {
+        if (size >= maxSize) {
+            allocate(INITIAL_CAPACITY);
+        }
+        int first = to - from;
+        byte[] key = new byte[first + secondTo - secondFrom];
+        System.arraycopy(bytes, from, key, 0, first);
+        System.arraycopy(bytes, secondFrom, key, first, secondTo - secondFrom);
+
+        int hash = hash(bytes, from, to, secondFrom, secondTo);
+        insert(key, first, hash, value);
+        size++;
+
+        //keep the load factor below one half
+        if (size * 2 > keys.length) {
+            grow();
+        }
+    }
+
+    private void insert(byte[] key, int split, int hash, Object value) {
+        int slot = hash & mask;
+        while (keys[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        splits[slot] = split;
+        hashes[slot] = hash;
+        values[slot] = value;
+    }
+
+    private boolean matches(int slot, byte[] bytes, int from, int to, int secondFrom, int secondTo) {
+        byte[] key = keys[slot];
+        int first = to - from;
+        return splits[slot] == first
+                && key.length == first + secondTo - secondFrom
+                && equals(key, 0, bytes, from, to)
+                && equals(key, first, bytes, secondFrom, secondTo);
+    }
+
+    private static boolean equals(byte[] key, int offset, byte[] bytes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (key[offset + i - from] != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void grow() {
+        byte[][] oldKeys = keys;
+        int[] oldSplits = splits;
+        int[] oldHashes = hashes;
+        Object[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                insert(oldKeys[i], oldSplits[i], oldHashes[i], oldValues[i]);
+                size++;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new byte[capacity][];
+        splits = new int[capacity];
+        hashes = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    private static int hash(byte[] bytes, int from, int to, int secondFrom, int secondTo) {
+        int hash = to - from;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        for (int i = secondFrom; i < secondTo; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        //spread the upper bits into the slot
+        return hash ^ (hash >>> 16);
+    }
+}
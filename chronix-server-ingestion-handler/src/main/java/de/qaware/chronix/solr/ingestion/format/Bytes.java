@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.ingestion.format;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Scans and parses ranges of bytes without creating strings.
+ * <p>
+ * The numbers are parsed like {@link Long#parseLong(String)} and {@link Double#parseDouble(String)}.
+ * Numbers that can not be parsed exactly on the bytes (more than 18 digits, large exponents, special values)
+ * fall back to the string parsing.
+ */
+final class Bytes {
+    /**
+     * The powers of ten that are exact doubles
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    private static final int MAX_DIGITS = 18;
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private Bytes() {
+        //avoid instances
+    }
+
+    /**
+     * @return the index of the first byte within [from, to) that is not the separator, or to.
+     */
+    static int skip(byte[] bytes, int from, int to, byte separator) {
+        int index = from;
+        while (index < to && bytes[index] == separator) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * @return the index of the first separator within [from, to), or to.
+     */
+    static int next(byte[] bytes, int from, int to, byte separator) {
+        int index = from;
+        while (index < to && bytes[index] != separator) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * @return true if the bytes within [from, to) are the given ascii characters.
+     */
+    static boolean equals(byte[] bytes, int from, int to, String ascii) {
+        return to - from == ascii.length() && startsWith(bytes, from, to, ascii);
+    }
+
+    /**
+     * @return true if the bytes within [from, to) start with the given ascii characters.
+     */
+    static boolean startsWith(byte[] bytes, int from, int to, String ascii) {
+        if (to - from < ascii.length()) {
+            return false;
+        }
+        for (int i = 0; i < ascii.length(); i++) {
+            if (bytes[from + i] != ascii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the UTF-8 decoded bytes within [from, to).
+     */
+    static String toString(byte[] bytes, int from, int to) {
+        return new String(bytes, from, to - from, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the cached string of the bytes within [from, to), so equal names, tag keys and tag values share one string.
+     *
+     * @param strings Cached strings.
+     * @return the UTF-8 decoded bytes.
+     */
+    static String intern(ByteRangeCache<String> strings, byte[] bytes, int from, int to) {
+        String string = strings.get(bytes, from, to);
+        if (string == null) {
+            string = toString(bytes, from, to);
+            strings.put(bytes, from, to, string);
+        }
+        return string;
+    }
+
+    /**
+     * Parses the bytes within [from, to) like {@link Long#parseLong(String)}.
+     *
+     * @return the long value.
+     * @throws NumberFormatException If the bytes are not a long value.
+     */
+    static long parseLong(byte[] bytes, int from, int to) {
+        int index = from;
+        boolean negative = false;
+        if (index < to && (bytes[index] == '-' || bytes[index] == '+')) {
+            negative = bytes[index] == '-';
+            index++;
+        }
+        if (index == to || to - index > MAX_DIGITS) {
+            return Long.parseLong(toString(bytes, from, to));
+        }
+        long value = 0;
+        for (; index < to; index++) {
+            int digit = bytes[index] - '0';
+            if (digit < 0 || digit > 9) {
+                return Long.parseLong(toString(bytes, from, to));
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses the bytes within [from, to) like {@link Double#parseDouble(String)}.
+     * <p>
+     * A mantissa of at most 2^53 and a decimal exponent of at most 22 are exact doubles,
+     * hence one multiplication or division rounds like the string parsing.
+     *
+     * @return the double value.
+     * @throws NumberFormatException If the bytes are not a double value.
+     */
+    static double parseDouble(byte[] bytes, int from, int to) {
+        int index = from;
+        boolean negative = false;
+        if (index < to && (bytes[index] == '-' || bytes[index] == '+')) {
+            negative = bytes[index] == '-';
+            index++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigit = false;
+        for (; index < to && isDigit(bytes[index]); index++) {
+            mantissa = mantissa * 10 + bytes[index] - '0';
+            digits += mantissa == 0 ? 0 : 1;
+            anyDigit = true;
+        }
+        if (index < to && bytes[index] == '.') {
+            for (index++; index < to && isDigit(bytes[index]); index++) {
+                mantissa = mantissa * 10 + bytes[index] - '0';
+                digits += mantissa == 0 ? 0 : 1;
+                exponent--;
+                anyDigit = true;
+            }
+        }
+        if (!anyDigit || digits > MAX_DIGITS) {
+            return Double.parseDouble(toString(bytes, from, to));
+        }
+
+        if (index < to && (bytes[index] == 'e' || bytes[index] == 'E')) {
+            index++;
+            boolean negativeExponent = false;
+            if (index < to && (bytes[index] == '-' || bytes[index] == '+')) {
+                negativeExponent = bytes[index] == '-';
+                index++;
+            }
+            int exponentStart = index;
+            int explicitExponent = 0;
+            for (; index < to && isDigit(bytes[index]) && index - exponentStart < 4; index++) {
+                explicitExponent = explicitExponent * 10 + bytes[index] - '0';
+            }
+            if (index == exponentStart) {
+                return Double.parseDouble(toString(bytes, from, to));
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if (index != to || mantissa > MAX_EXACT_MANTISSA) {
+            return Double.parseDouble(toString(bytes, from, to));
+        }
+
+        double value;
+        if (mantissa == 0) {
+            value = 0;
+        } else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+            value = mantissa * POWERS_OF_TEN[exponent];
+        } else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+            value = mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            return Double.parseDouble(toString(bytes, from, to));
+        }
+        return negative ? -value : value;
+    }
+
+    private static boolean isDigit(byte value) {
+        return value >= '0' && value <= '9';
+    }
+}
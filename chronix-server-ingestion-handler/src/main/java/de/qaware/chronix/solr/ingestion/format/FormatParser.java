@@ -17,7 +17,10 @@ package de.qaware.chronix.solr.ingestion.format;
 
 import de.qaware.chronix.timeseries.MetricTimeSeries;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Parses data from an input stream to metric time series.
@@ -25,10 +28,35 @@ import java.io.InputStream;
 public interface FormatParser {
     /**
      * Parses the given input stream to metric time series.
+     * <p>
+     * Holds all points of the input stream, use {@link #parse(InputStream, int, MetricTimeSeriesConsumer)} for large inputs.
      *
      * @param stream Input stream.
      * @return Metric time series.
      * @throws FormatParseException If something went wrong while parsing the format.
      */
-    Iterable<MetricTimeSeries> parse(InputStream stream) throws FormatParseException;
+    default Iterable<MetricTimeSeries> parse(InputStream stream) throws FormatParseException {
+        List<MetricTimeSeries> series = new ArrayList<>();
+        try {
+            parse(stream, Integer.MAX_VALUE, series::add);
+        } catch (IOException e) {
+            throw new FormatParseException("IO exception while parsing the format", e);
+        }
+        return series;
+    }
+
+    /**
+     * Parses the given input stream to metric time series and hands them over while reading.
+     * <p>
+     * The parser buffers at most the given amount of points. A metric whose points exceed a batch
+     * is handed over as several time series. The time series that are handed over before a parse error
+     * are not taken back.
+     *
+     * @param stream    Input stream.
+     * @param maxPoints Maximum amount of buffered points.
+     * @param consumer  Consumer of the metric time series.
+     * @throws FormatParseException If something went wrong while parsing the format.
+     * @throws IOException          If the input stream could not be read or the consumer failed.
+     */
+    void parse(InputStream stream, int maxPoints, MetricTimeSeriesConsumer consumer) throws FormatParseException, IOException;
 }
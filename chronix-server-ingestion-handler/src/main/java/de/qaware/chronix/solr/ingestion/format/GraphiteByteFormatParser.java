@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.ingestion.format;
+
+import de.qaware.chronix.timeseries.MetricTimeSeries;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A format parser for the graphite line procotol that parses the bytes of the input stream directly.
+ * <p>
+ * Parses like the {@link GraphiteFormatParser}, but the metric names are cached on their bytes and
+ * the numbers are parsed without intermediate strings.
+ * <p>
+ * See http://graphite.readthedocs.io/en/latest/feeding-carbon.html
+ */
+public class GraphiteByteFormatParser implements FormatParser {
+    private static final String METRIC_TYPE = "metric";
+    private static final byte SPACE = ' ';
+
+    @Override
+    public void parse(InputStream stream, int maxPoints, MetricTimeSeriesConsumer consumer) throws FormatParseException, IOException {
+        SeriesBuffer<String> metrics = new SeriesBuffer<>(maxPoints, consumer);
+        ByteRangeCache<String> names = new ByteRangeCache<>(ByteRangeCache.MAX_SIZE);
+
+        ByteLineReader reader = new ByteLineReader(stream);
+        while (reader.next()) {
+            // Format is: <metric path> <metric value> <metric timestamp>
+            int parts = reader.split(SPACE);
+            if (parts != 3) {
+                throw new FormatParseException("Expected 3 parts, found " + parts + " in line '" + reader.line() + "'");
+            }
+
+            String metricName = Bytes.intern(names, reader.buffer(), reader.start(0), reader.end(0));
+            double value = getMetricValue(reader);
+            long timestamp = getMetricTimestamp(reader);
+
+            // If the metric is already known, add a point. Otherwise create the metric and add the point.
+            metrics.point(metricName, name -> new MetricTimeSeries.Builder(name, METRIC_TYPE), timestamp, value);
+        }
+
+        metrics.flush();
+    }
+
+    /**
+     * Extracts the metric timestamp (seconds) from the third part.
+     *
+     * @param reader Reader at the split line.
+     * @return Metric timestamp in milliseconds.
+     * @throws FormatParseException If something went wrong while extracting.
+     */
+    private long getMetricTimestamp(ByteLineReader reader) throws FormatParseException {
+        try {
+            return Math.multiplyExact(Bytes.parseLong(reader.buffer(), reader.start(2), reader.end(2)), 1000);
+        } catch (NumberFormatException e) {
+            throw new FormatParseException("Can't convert '" + reader.token(2) + "' to long", e);
+        }
+    }
+
+    /**
+     * Extracts the metric value from the second part.
+     *
+     * @param reader Reader at the split line.
+     * @return Metric value.
+     * @throws FormatParseException If something went wrong while extracting.
+     */
+    private double getMetricValue(ByteLineReader reader) throws FormatParseException {
+        try {
+            return Bytes.parseDouble(reader.buffer(), reader.start(1), reader.end(1));
+        } catch (NumberFormatException e) {
+            throw new FormatParseException("Can't convert '" + reader.token(1) + "' to double", e);
+        }
+    }
+}
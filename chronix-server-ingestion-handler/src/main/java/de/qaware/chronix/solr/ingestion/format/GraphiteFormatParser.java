@@ -24,9 +24,6 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.time.Instant;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * A format parser for the graphite line procotol.
@@ -41,36 +38,27 @@ public class GraphiteFormatParser implements FormatParser {
     private static final String METRIC_TYPE = "metric";
 
     @Override
-    public Iterable<MetricTimeSeries> parse(InputStream stream) throws FormatParseException {
-        Map<String, MetricTimeSeries.Builder> metrics = new HashMap<>();
+    public void parse(InputStream stream, int maxPoints, MetricTimeSeriesConsumer consumer) throws FormatParseException, IOException {
+        SeriesBuffer<String> metrics = new SeriesBuffer<>(maxPoints, consumer);
 
         BufferedReader reader = new BufferedReader(new InputStreamReader(stream, UTF_8));
         String line;
-        try {
-            while ((line = reader.readLine()) != null) {
-                // Format is: <metric path> <metric value> <metric timestamp>
-                String[] parts = StringUtils.split(line, ' ');
-                if (parts.length != 3) {
-                    throw new FormatParseException("Expected 3 parts, found " + parts.length + " in line '" + line + "'");
-                }
+        while ((line = reader.readLine()) != null) {
+            // Format is: <metric path> <metric value> <metric timestamp>
+            String[] parts = StringUtils.split(line, ' ');
+            if (parts.length != 3) {
+                throw new FormatParseException("Expected 3 parts, found " + parts.length + " in line '" + line + "'");
+            }
 
-                String metricName = getMetricName(parts);
-                double value = getMetricValue(parts);
-                Instant timestamp = getMetricTimestamp(parts);
+            String metricName = getMetricName(parts);
+            double value = getMetricValue(parts);
+            Instant timestamp = getMetricTimestamp(parts);
 
-                // If the metric is already known, add a point. Otherwise create the metric and add the point.
-                MetricTimeSeries.Builder metricBuilder = metrics.get(metricName);
-                if (metricBuilder == null) {
-                    metricBuilder = new MetricTimeSeries.Builder(metricName, METRIC_TYPE);
-                    metrics.put(metricName, metricBuilder);
-                }
-                metricBuilder.point(timestamp.toEpochMilli(), value);
-            }
-        } catch (IOException e) {
-            throw new FormatParseException("IO exception while parsing Graphite format", e);
+            // If the metric is already known, add a point. Otherwise create the metric and add the point.
+            metrics.point(metricName, name -> new MetricTimeSeries.Builder(name, METRIC_TYPE), timestamp.toEpochMilli(), value);
         }
 
-        return metrics.values().stream().map(MetricTimeSeries.Builder::build).collect(Collectors.toList());
+        metrics.flush();
     }
 
     /**
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.ingestion.format;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A format parser for the InfluxDB line protocol that parses the bytes of the input stream directly.
+ * <p>
+ * Parses like the {@link InfluxDbFormatParser}, but the metrics (name and tags) are cached on their bytes and
+ * the numbers are parsed without intermediate strings. A line of a known metric creates no objects.
+ * <p>
+ * See https://docs.influxdata.com/influxdb/v1.0/write_protocols/line_protocol_reference/
+ */
+public class InfluxDbByteFormatParser implements FormatParser {
+    private static final byte SPACE = ' ';
+    private static final byte COMMA = ',';
+    private static final byte EQUALS = '=';
+
+    private final Clock clock;
+
+    /**
+     * Constructor.
+     *
+     * @param clock Clock.
+     */
+    public InfluxDbByteFormatParser(Clock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public void parse(InputStream stream, int maxPoints, MetricTimeSeriesConsumer consumer) throws FormatParseException, IOException {
+        SeriesBuffer<SeriesKey> metrics = new SeriesBuffer<>(maxPoints, consumer);
+        ByteRangeCache<SeriesKey> keys = new ByteRangeCache<>(ByteRangeCache.MAX_SIZE);
+        ByteRangeCache<String> strings = new ByteRangeCache<>(ByteRangeCache.MAX_SIZE);
+
+        ByteLineReader reader = new ByteLineReader(stream);
+        while (reader.next()) {
+            // Format is: {metric},[{tag1}={value1},{tag2}={value2}] value={value} [nanosecond-timestamp]
+            // Example: cpu_load_short,host=server02,region=us-west value=0.55 1422568543702900257
+
+            int parts = reader.split(SPACE);
+            // 2 parts: metric and value. Timestamp and tags are optional.
+            if (parts < 2) {
+                throw new FormatParseException("Expected at least 2 parts, found " + parts + " in line '" + reader.line() + "'");
+            }
+
+            byte[] line = reader.buffer();
+            SeriesKey metric = keys.get(line, reader.start(0), reader.end(0));
+            if (metric == null) {
+                metric = getMetric(line, reader.start(0), reader.end(0), strings);
+                keys.put(line, reader.start(0), reader.end(0), metric);
+            }
+            double value = getMetricValue(reader);
+            long timestamp = getMetricTimestamp(reader, parts);
+
+            // If the metric is already known, add a point. Otherwise create the metric and add the point.
+            metrics.point(metric, SeriesKey::toBuilder, timestamp, value);
+        }
+
+        metrics.flush();
+    }
+
+    /**
+     * Extracts the metric timestamp from the third part.
+     *
+     * @param reader Reader at the split line.
+     * @param parts  Amount of parts.
+     * @return Metric timestamp in milliseconds.
+     * @throws FormatParseException If something went wrong while extracting.
+     */
+    private long getMetricTimestamp(ByteLineReader reader, int parts) throws FormatParseException {
+        // Timestamp is optional. If it's missing, use the local server time
+        if (parts < 3) {
+            return clock.now().toEpochMilli();
+        }
+
+        try {
+            long epochTime = Bytes.parseLong(reader.buffer(), reader.start(2), reader.end(2));
+
+            // epochTime is in nanoseconds, convert to milliseconds
+            return epochTime / 1000;
+        } catch (NumberFormatException e) {
+            throw new FormatParseException("Can't convert '" + reader.token(2) + "' to long", e);
+        }
+    }
+
+    /**
+     * Extracts the metric value (value={value}) from the second part.
+     *
+     * @param reader Reader at the split line.
+     * @return Metric value.
+     * @throws FormatParseException If something went wrong while extracting.
+     */
+    private double getMetricValue(ByteLineReader reader) throws FormatParseException {
+        byte[] line = reader.buffer();
+        int to = reader.end(1);
+
+        int keyStart = Bytes.skip(line, reader.start(1), to, EQUALS);
+        int keyEnd = Bytes.next(line, keyStart, to, EQUALS);
+        int valueStart = Bytes.skip(line, keyEnd, to, EQUALS);
+        if (valueStart == to) {
+            int found = keyStart == to ? 0 : 1;
+            throw new FormatParseException("Expected at least 2 parts, found " + found + " in '" + reader.token(1) + "'");
+        }
+        if (!Bytes.equals(line, keyStart, keyEnd, "value")) {
+            throw new FormatParseException("Expected first part to be 'value', but was '" + Bytes.toString(line, keyStart, keyEnd)
+                    + "' in '" + reader.token(1) + "'");
+        }
+
+        try {
+            return Bytes.parseDouble(line, valueStart, to);
+        } catch (NumberFormatException e) {
+            throw new FormatParseException("Can't convert '" + reader.token(1) + "' to double", e);
+        }
+    }
+
+    /**
+     * Extracts the metric name and tags from the first part.
+     *
+     * @param line    Bytes of the line.
+     * @param from    Start of the first part.
+     * @param to      End of the first part.
+     * @param strings Cached names, tag keys and tag values.
+     * @return Metric.
+     * @throws FormatParseException If something went wrong while extracting.
+     */
+    private SeriesKey getMetric(byte[] line, int from, int to, ByteRangeCache<String> strings) throws FormatParseException {
+        int nameStart = Bytes.skip(line, from, to, COMMA);
+        if (nameStart == to) {
+            throw new FormatParseException("Expected at least 1 part, found 0 in '" + Bytes.toString(line, from, to) + "'");
+        }
+        int nameEnd = Bytes.next(line, nameStart, to, COMMA);
+        String name = Bytes.intern(strings, line, nameStart, nameEnd);
+
+        Map<String, String> tags = new HashMap<>();
+        int tagStart = Bytes.skip(line, nameEnd, to, COMMA);
+        while (tagStart < to) {
+            int tagEnd = Bytes.next(line, tagStart, to, COMMA);
+
+            int keyStart = Bytes.skip(line, tagStart, tagEnd, EQUALS);
+            int keyEnd = Bytes.next(line, keyStart, tagEnd, EQUALS);
+            int valueStart = Bytes.skip(line, keyEnd, tagEnd, EQUALS);
+            if (valueStart == tagEnd) {
+                int found = keyStart == tagEnd ? 0 : 1;
+                throw new FormatParseException("Expected at least 2 parts, found " + found + " in '" + Bytes.toString(line, tagStart, tagEnd) + "'");
+            }
+            tags.put(Bytes.intern(strings, line, keyStart, keyEnd), Bytes.intern(strings, line, valueStart, tagEnd));
+
+            tagStart = Bytes.skip(line, tagEnd, to, COMMA);
+        }
+
+        return new SeriesKey(name, tags);
+    }
+}
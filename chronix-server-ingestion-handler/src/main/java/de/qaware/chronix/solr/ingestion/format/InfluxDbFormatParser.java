@@ -27,7 +27,6 @@ import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
 
 /**
  * A format parser for the InfluxDB line protocol.
@@ -54,45 +53,31 @@ public class InfluxDbFormatParser implements FormatParser {
     }
 
     @Override
-    public Iterable<MetricTimeSeries> parse(InputStream stream) throws FormatParseException {
-        Map<Metric, MetricTimeSeries.Builder> metrics = new HashMap<>();
+    public void parse(InputStream stream, int maxPoints, MetricTimeSeriesConsumer consumer) throws FormatParseException, IOException {
+        SeriesBuffer<Metric> metrics = new SeriesBuffer<>(maxPoints, consumer);
 
         BufferedReader reader = new BufferedReader(new InputStreamReader(stream, UTF_8));
         String line;
-        try {
-            while ((line = reader.readLine()) != null) {
-                // Format is: {metric},[{tag1}={value1},{tag2}={value2}] value={value} [nanosecond-timestamp]
-                // Example: cpu_load_short,host=server02,region=us-west value=0.55 1422568543702900257
-
-                String[] parts = StringUtils.split(line, ' ');
-                // 2 parts: metric and value. Timestamp and tags are optional.
-                if (parts.length < 2) {
-                    throw new FormatParseException("Expected at least 2 parts, found " + parts.length + " in line '" + line + "'");
-                }
-
-                String metricName = getMetricName(parts);
-                Map<String, String> tags = getMetricTags(parts);
-                double value = getMetricValue(parts);
-                Instant timestamp = getMetricTimestamp(parts);
-
-                // If the metric is already known, add a point. Otherwise create the metric and add the point.
-                Metric metric = new Metric(metricName, tags);
-                MetricTimeSeries.Builder metricBuilder = metrics.get(metric);
-                if (metricBuilder == null) {
-                    metricBuilder = new MetricTimeSeries.Builder(metricName, METRIC_TYPE);
-                    for (Map.Entry<String, String> tagEntry : tags.entrySet()) {
-                        metricBuilder.attribute(tagEntry.getKey(), tagEntry.getValue());
-                    }
-                    metrics.put(metric, metricBuilder);
-                }
-
-                metricBuilder.point(timestamp.toEpochMilli(), value);
+        while ((line = reader.readLine()) != null) {
+            // Format is: {metric},[{tag1}={value1},{tag2}={value2}] value={value} [nanosecond-timestamp]
+            // Example: cpu_load_short,host=server02,region=us-west value=0.55 1422568543702900257
+
+            String[] parts = StringUtils.split(line, ' ');
+            // 2 parts: metric and value. Timestamp and tags are optional.
+            if (parts.length < 2) {
+                throw new FormatParseException("Expected at least 2 parts, found " + parts.length + " in line '" + line + "'");
             }
-        } catch (IOException e) {
-            throw new FormatParseException("IO exception while parsing OpenTSDB telnet format", e);
+
+            String metricName = getMetricName(parts);
+            Map<String, String> tags = getMetricTags(parts);
+            double value = getMetricValue(parts);
+            Instant timestamp = getMetricTimestamp(parts);
+
+            // If the metric is already known, add a point. Otherwise create the metric and add the point.
+            metrics.point(new Metric(metricName, tags), Metric::toBuilder, timestamp.toEpochMilli(), value);
         }
 
-        return metrics.values().stream().map(MetricTimeSeries.Builder::build).collect(Collectors.toList());
+        metrics.flush();
     }
 
     /**
@@ -200,6 +185,19 @@ public class InfluxDbFormatParser implements FormatParser {
             this.tags = tags;
         }
 
+        /**
+         * Creates the builder of the time series of the metric.
+         *
+         * @return Builder with the name and the tags as attributes.
+         */
+        private MetricTimeSeries.Builder toBuilder() {
+            MetricTimeSeries.Builder builder = new MetricTimeSeries.Builder(name, METRIC_TYPE);
+            for (Map.Entry<String, String> tagEntry : tags.entrySet()) {
+                builder.attribute(tagEntry.getKey(), tagEntry.getValue());
+            }
+            return builder;
+        }
+
         @Override
         public boolean equals(Object o) {
             if (this == o) {
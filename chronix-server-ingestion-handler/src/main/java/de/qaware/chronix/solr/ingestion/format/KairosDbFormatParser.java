@@ -16,20 +16,19 @@
 package de.qaware.chronix.solr.ingestion.format;
 
 import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
 import de.qaware.chronix.solr.ingestion.format.kairosdb.KairosDbMetric;
 import de.qaware.chronix.timeseries.MetricTimeSeries;
 
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.time.Instant;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
 
 /**
  * A format parser for the KairosDB procotol.
@@ -45,42 +44,28 @@ public class KairosDbFormatParser implements FormatParser {
 
 
     @Override
-    public Iterable<MetricTimeSeries> parse(InputStream stream) throws FormatParseException {
-        Map<Metric, MetricTimeSeries.Builder> metrics = new HashMap<>();
+    public void parse(InputStream stream, int maxPoints, MetricTimeSeriesConsumer consumer) throws FormatParseException, IOException {
+        SeriesBuffer<Metric> metrics = new SeriesBuffer<>(maxPoints, consumer);
 
-        List<KairosDbMetric> kairosMetrics = parseJson(stream);
+        // Reads one metric of the array after the other, the body is never held as a whole
+        Gson gson = new Gson();
+        JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(stream, UTF_8)));
+        try {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                KairosDbMetric kairosMetric = gson.fromJson(reader, KairosDbMetric.class);
 
-        for (KairosDbMetric kairosMetric : kairosMetrics) {
-            // If the metric is already known, add a point. Otherwise create the metric and add the point.
-            Metric metric = new Metric(kairosMetric.getName(), kairosMetric.getTags());
-            MetricTimeSeries.Builder metricBuilder = metrics.get(metric);
-            if (metricBuilder == null) {
-                metricBuilder = new MetricTimeSeries.Builder(kairosMetric.getName(), METRIC_TYPE);
-                for (Map.Entry<String, String> tagEntry : kairosMetric.getTags().entrySet()) {
-                    metricBuilder.attribute(tagEntry.getKey(), tagEntry.getValue());
-                }
-                metrics.put(metric, metricBuilder);
+                // If the metric is already known, add a point. Otherwise create the metric and add the point.
+                Metric metric = new Metric(kairosMetric.getName(), kairosMetric.getTags());
+                Instant timestamp = convertTimestamp(kairosMetric.getTimestamp());
+                metrics.point(metric, Metric::toBuilder, timestamp.toEpochMilli(), kairosMetric.getValue());
             }
-
-            Instant timestamp = convertTimestamp(kairosMetric.getTimestamp());
-            metricBuilder.point(timestamp.toEpochMilli(), kairosMetric.getValue());
+            reader.endArray();
+        } catch (IllegalStateException | JsonParseException e) {
+            throw new FormatParseException("Can't parse the KairosDB metrics", e);
         }
 
-        return metrics.values().stream().map(MetricTimeSeries.Builder::build).collect(Collectors.toList());
-    }
-
-    /**
-     * Parses the given stream into a list of {@link KairosDbMetric}s.
-     * <p>
-     *
-     * @param stream Stream.
-     * @return Parsed metrics.
-     */
-    private List<KairosDbMetric> parseJson(InputStream stream) {
-        Gson gson = new Gson();
-        BufferedReader reader = new BufferedReader(new InputStreamReader(stream, UTF_8));
-        return gson.fromJson(reader, new TypeToken<List<KairosDbMetric>>() {
-        }.getType());
+        metrics.flush();
     }
 
     /**
@@ -107,6 +92,19 @@ public class KairosDbFormatParser implements FormatParser {
             this.tags = tags;
         }
 
+        /**
+         * Creates the builder of the time series of the metric.
+         *
+         * @return Builder with the name and the tags as attributes.
+         */
+        private MetricTimeSeries.Builder toBuilder() {
+            MetricTimeSeries.Builder builder = new MetricTimeSeries.Builder(name, METRIC_TYPE);
+            for (Map.Entry<String, String> tagEntry : tags.entrySet()) {
+                builder.attribute(tagEntry.getKey(), tagEntry.getValue());
+            }
+            return builder;
+        }
+
         @Override
         public boolean equals(Object o) {
             if (this == o) {
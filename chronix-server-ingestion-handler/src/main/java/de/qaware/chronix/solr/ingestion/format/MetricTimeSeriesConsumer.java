@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.ingestion.format;
+
+import de.qaware.chronix.timeseries.MetricTimeSeries;
+
+import java.io.IOException;
+
+/**
+ * Receives the metric time series of a format parser while the parser reads the input stream.
+ */
+@FunctionalInterface
+public interface MetricTimeSeriesConsumer {
+    /**
+     * Accepts a parsed metric time series.
+     *
+     * @param series Metric time series.
+     * @throws IOException If the time series could not be handed over.
+     */
+    void accept(MetricTimeSeries series) throws IOException;
+}
@@ -16,7 +16,9 @@
 package de.qaware.chronix.solr.ingestion.format;
 
 import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import de.qaware.chronix.solr.ingestion.format.opentsdb.TsdbMetric;
 import de.qaware.chronix.timeseries.MetricTimeSeries;
 
@@ -26,8 +28,8 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.time.Instant;
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * A format parser for the OpenTSDB HTTP API procotol.
@@ -43,52 +45,46 @@ public class OpenTsdbHttpFormatParser implements FormatParser {
 
 
     @Override
-    public Iterable<MetricTimeSeries> parse(InputStream stream) throws FormatParseException {
-        Map<Metric, MetricTimeSeries.Builder> metrics = new HashMap<>();
-
-        List<TsdbMetric> tsdbMetrics = parseJson(stream);
-
-        for (TsdbMetric tsdbMetric : tsdbMetrics) {
-            // If the metric is already known, add a point. Otherwise create the metric and add the point.
-            Metric metric = new Metric(tsdbMetric.getMetric(), tsdbMetric.getTags());
-            MetricTimeSeries.Builder metricBuilder = metrics.get(metric);
-            if (metricBuilder == null) {
-                metricBuilder = new MetricTimeSeries.Builder(tsdbMetric.getMetric(), METRIC_TYPE);
-                // Assuming tag entry is always a string, which it should be
-                for (Map.Entry<String, String> tagEntry : tsdbMetric.getTags().entrySet()) {
-                    metricBuilder.attribute(tagEntry.getKey().concat("_s"), tagEntry.getValue());
+    public void parse(InputStream stream, int maxPoints, MetricTimeSeriesConsumer consumer) throws FormatParseException, IOException {
+        SeriesBuffer<Metric> metrics = new SeriesBuffer<>(maxPoints, consumer);
+
+        // Reads one metric after the other, the body is never held as a whole
+        Gson gson = new Gson();
+        JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(stream, UTF_8)));
+        try {
+            // Supports a single metric and an array of metrics
+            JsonToken first = reader.peek();
+            if (first == JsonToken.BEGIN_OBJECT) {
+                addPoint(metrics, gson.fromJson(reader, TsdbMetric.class));
+            } else if (first == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    addPoint(metrics, gson.fromJson(reader, TsdbMetric.class));
                 }
-                metrics.put(metric, metricBuilder);
+                reader.endArray();
+            } else {
+                throw new FormatParseException("Expected a metric or an array of metrics, found " + first);
             }
-
-            Instant timestamp = convertTimestamp(tsdbMetric.getTimestamp());
-            metricBuilder.point(timestamp.toEpochMilli(), tsdbMetric.getValue());
+        } catch (JsonParseException e) {
+            throw new FormatParseException("Can't parse the OpenTSDB metrics", e);
         }
 
-        return metrics.values().stream().map(MetricTimeSeries.Builder::build).collect(Collectors.toList());
+        metrics.flush();
     }
 
     /**
-     * Parses the given stream into a list of {@link TsdbMetric}s.
-     * <p>
-     * Supports parsing a single and multiple metrics. If a single metric is parsed, a list with one element is returned.
+     * Adds the point of the given metric to the metrics buffer.
      *
-     * @param stream Stream.
-     * @return Parsed metrics.
-     * @throws FormatParseException If something went wrong while parsing.
+     * @param metrics    Metric buffer.
+     * @param tsdbMetric Parsed metric.
+     * @throws FormatParseException If the timestamp is invalid.
+     * @throws IOException          If the buffered metrics could not be handed over.
      */
-    private List<TsdbMetric> parseJson(InputStream stream) throws FormatParseException {
-        Gson gson = new Gson();
-        BufferedReader reader = new BufferedReader(new InputStreamReader(stream, UTF_8));
-        List<TsdbMetric> tsdbMetrics;
-        if (containsSingleMetric(reader)) {
-            TsdbMetric metric = gson.fromJson(reader, TsdbMetric.class);
-            tsdbMetrics = Collections.singletonList(metric);
-        } else {
-            tsdbMetrics = gson.fromJson(reader, new TypeToken<List<TsdbMetric>>() {
-            }.getType());
-        }
-        return tsdbMetrics;
+    private void addPoint(SeriesBuffer<Metric> metrics, TsdbMetric tsdbMetric) throws FormatParseException, IOException {
+        // If the metric is already known, add a point. Otherwise create the metric and add the point.
+        Metric metric = new Metric(tsdbMetric.getMetric(), tsdbMetric.getTags());
+        Instant timestamp = convertTimestamp(tsdbMetric.getTimestamp());
+        metrics.point(metric, Metric::toBuilder, timestamp.toEpochMilli(), tsdbMetric.getValue());
     }
 
     /**
@@ -115,27 +111,6 @@ public class OpenTsdbHttpFormatParser implements FormatParser {
         return secondResolution ? Instant.ofEpochSecond(timestamp) : Instant.ofEpochMilli(timestamp);
     }
 
-    /**
-     * Determines if the given reader contains a single or multiple metrics.
-     *
-     * @param reader Reader.
-     * @return True if the reader contains a single metric, false if the reader contains multiple.
-     * @throws FormatParseException If something went wrong.
-     */
-    private boolean containsSingleMetric(BufferedReader reader) throws FormatParseException {
-        try {
-            // Need to reset the reader after reading the first char
-            reader.mark(1);
-            char firstChar = (char) reader.read();
-            reader.reset();
-
-            // If '{', single metric. Multiple metrics start with '['
-            return firstChar == '{';
-        } catch (IOException e) {
-            throw new FormatParseException("IOException while determining if single or multiple metrics ", e);
-        }
-    }
-
     /**
      * DTO for a metric.
      * <p>
@@ -150,6 +125,20 @@ public class OpenTsdbHttpFormatParser implements FormatParser {
             this.tags = tags;
         }
 
+        /**
+         * Creates the builder of the time series of the metric.
+         *
+         * @return Builder with the name and the tags as attributes.
+         */
+        private MetricTimeSeries.Builder toBuilder() {
+            MetricTimeSeries.Builder builder = new MetricTimeSeries.Builder(name, METRIC_TYPE);
+            // Assuming tag entry is always a string, which it should be
+            for (Map.Entry<String, String> tagEntry : tags.entrySet()) {
+                builder.attribute(tagEntry.getKey().concat("_s"), tagEntry.getValue());
+            }
+            return builder;
+        }
+
         @Override
         public boolean equals(Object o) {
             if (this == o) {
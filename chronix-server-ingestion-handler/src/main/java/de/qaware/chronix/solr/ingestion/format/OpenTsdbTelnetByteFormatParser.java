@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.ingestion.format;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parses the OpenTSDB telnet format on the bytes of the input stream directly.
+ * <p>
+ * Parses like the {@link OpenTsdbTelnetFormatParser}, but the metrics (name and tags) are cached on their bytes and
+ * the numbers are parsed without intermediate strings. A line of a known metric creates no objects.
+ * <p>
+ * See http://opentsdb.net/docs/build/html/user_guide/writing.html.
+ */
+public class OpenTsdbTelnetByteFormatParser implements FormatParser {
+    private static final byte SPACE = ' ';
+    private static final byte EQUALS = '=';
+
+    @Override
+    public void parse(InputStream stream, int maxPoints, MetricTimeSeriesConsumer consumer) throws FormatParseException, IOException {
+        SeriesBuffer<SeriesKey> metrics = new SeriesBuffer<>(maxPoints, consumer);
+        ByteRangeCache<SeriesKey> keys = new ByteRangeCache<>(ByteRangeCache.MAX_SIZE);
+        ByteRangeCache<String> strings = new ByteRangeCache<>(ByteRangeCache.MAX_SIZE);
+
+        ByteLineReader reader = new ByteLineReader(stream);
+        while (reader.next()) {
+            // Format is: put <metric> <timestamp> <value> <tagk1=tagv1[ tagk2=tagv2 ...tagkN=tagvN]>
+            // Example: put sys.cpu.user 1356998400 42.5 host=webserver01 cpu=0
+
+            int parts = reader.split(SPACE);
+            // 5 parts, because "Each data point must have at least one tag."
+            if (parts < 5) {
+                throw new FormatParseException("Expected at least 5 parts, found " + parts + " in line '" + reader.line() + "'");
+            }
+
+            byte[] line = reader.buffer();
+            if (!Bytes.equals(line, reader.start(0), reader.end(0), "put")) {
+                throw new FormatParseException("Expected first segment to be 'put', but was '" + reader.token(0) + "'");
+            }
+
+            long timestamp = getMetricTimestamp(reader);
+            double value = getMetricValue(reader);
+
+            // The metric is the name and the tags (the parts behind the value)
+            int tagsStart = reader.start(4);
+            int tagsEnd = reader.end(parts - 1);
+            SeriesKey metric = keys.get(line, reader.start(1), reader.end(1), tagsStart, tagsEnd);
+            if (metric == null) {
+                metric = new SeriesKey(Bytes.intern(strings, line, reader.start(1), reader.end(1)), getMetricTags(reader, parts, strings));
+                keys.put(line, reader.start(1), reader.end(1), tagsStart, tagsEnd, metric);
+            }
+
+            // If the metric is already known, add a point. Otherwise create the metric and add the point.
+            metrics.point(metric, SeriesKey::toBuilder, timestamp, value);
+        }
+
+        metrics.flush();
+    }
+
+    /**
+     * Extract the metric tags from the parts.
+     *
+     * @param reader  Reader at the split line.
+     * @param parts   Amount of parts.
+     * @param strings Cached tag keys and tag values.
+     * @return Metric tags.
+     * @throws FormatParseException If something went wrong while extracting.
+     */
+    private Map<String, String> getMetricTags(ByteLineReader reader, int parts, ByteRangeCache<String> strings) throws FormatParseException {
+        Map<String, String> tags = new HashMap<>();
+
+        byte[] line = reader.buffer();
+        for (int i = 4; i < parts; i++) {
+            int to = reader.end(i);
+            int keyStart = Bytes.skip(line, reader.start(i), to, EQUALS);
+            int keyEnd = Bytes.next(line, keyStart, to, EQUALS);
+            int valueStart = Bytes.skip(line, keyEnd, to, EQUALS);
+            if (valueStart == to) {
+                int found = keyStart == to ? 0 : 1;
+                throw new FormatParseException("Expected 2 tag parts, found " + found + " in tag '" + reader.token(i) + "'");
+            }
+
+            tags.put(Bytes.intern(strings, line, keyStart, keyEnd), Bytes.intern(strings, line, valueStart, to));
+        }
+
+        return tags;
+    }
+
+    /**
+     * Extracts the metric timestamp from the third part.
+     *
+     * @param reader Reader at the split line.
+     * @return Metric timestamp in milliseconds.
+     * @throws FormatParseException If something went wrong while extracting.
+     */
+    private long getMetricTimestamp(ByteLineReader reader) throws FormatParseException {
+        int length = reader.end(2) - reader.start(2);
+        if (length != 10 && length != 13) {
+            throw new FormatParseException("Expected a timestamp length of 10 or 13, found " + length + " ('" + reader.token(2) + "')");
+        }
+
+        try {
+            long epochTime = Bytes.parseLong(reader.buffer(), reader.start(2), reader.end(2));
+
+            // 10 digits means seconds, 13 digits mean milliseconds
+            boolean secondResolution = length == 10;
+            return secondResolution ? Math.multiplyExact(epochTime, 1000) : epochTime;
+        } catch (NumberFormatException e) {
+            throw new FormatParseException("Can't convert '" + reader.token(2) + "' to long", e);
+        }
+    }
+
+    /**
+     * Extracts the metric value from the fourth part.
+     *
+     * @param reader Reader at the split line.
+     * @return Metric value.
+     * @throws FormatParseException If something went wrong while extracting.
+     */
+    private double getMetricValue(ByteLineReader reader) throws FormatParseException {
+        try {
+            return Bytes.parseDouble(reader.buffer(), reader.start(3), reader.end(3));
+        } catch (NumberFormatException e) {
+            throw new FormatParseException("Can't convert '" + reader.token(3) + "' to double", e);
+        }
+    }
+}
@@ -27,7 +27,6 @@ import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
 
 /**
  * Parses the OpenTSDB telnet format.
@@ -42,49 +41,35 @@ public class OpenTsdbTelnetFormatParser implements FormatParser {
     private static final String METRIC_TYPE = "metric";
 
     @Override
-    public Iterable<MetricTimeSeries> parse(InputStream stream) throws FormatParseException {
-        Map<Metric, MetricTimeSeries.Builder> metrics = new HashMap<>();
+    public void parse(InputStream stream, int maxPoints, MetricTimeSeriesConsumer consumer) throws FormatParseException, IOException {
+        SeriesBuffer<Metric> metrics = new SeriesBuffer<>(maxPoints, consumer);
 
         BufferedReader reader = new BufferedReader(new InputStreamReader(stream, UTF_8));
         String line;
-        try {
-            while ((line = reader.readLine()) != null) {
-                // Format is: put <metric> <timestamp> <value> <tagk1=tagv1[ tagk2=tagv2 ...tagkN=tagvN]>
-                // Example: put sys.cpu.user 1356998400 42.5 host=webserver01 cpu=0
-
-                String[] parts = StringUtils.split(line, ' ');
-                // 5 parts, because "Each data point must have at least one tag."
-                if (parts.length < 5) {
-                    throw new FormatParseException("Expected at least 5 parts, found " + parts.length + " in line '" + line + "'");
-                }
-
-                if (!parts[0].equals("put")) {
-                    throw new FormatParseException("Expected first segment to be 'put', but was '" + parts[0] + "'");
-                }
-
-                String metricName = getMetricName(parts);
-                Instant timestamp = getMetricTimestamp(parts);
-                double value = getMetricValue(parts);
-                Map<String, String> tags = getMetricTags(parts);
-
-                // If the metric is already known, add a point. Otherwise create the metric and add the point.
-                Metric metric = new Metric(metricName, tags);
-                MetricTimeSeries.Builder metricBuilder = metrics.get(metric);
-                if (metricBuilder == null) {
-                    metricBuilder = new MetricTimeSeries.Builder(metricName, METRIC_TYPE);
-                    for (Map.Entry<String, String> tagEntry : tags.entrySet()) {
-                        metricBuilder.attribute(tagEntry.getKey(), tagEntry.getValue());
-                    }
-                    metrics.put(metric, metricBuilder);
-                }
-
-                metricBuilder.point(timestamp.toEpochMilli(), value);
+        while ((line = reader.readLine()) != null) {
+            // Format is: put <metric> <timestamp> <value> <tagk1=tagv1[ tagk2=tagv2 ...tagkN=tagvN]>
+            // Example: put sys.cpu.user 1356998400 42.5 host=webserver01 cpu=0
+
+            String[] parts = StringUtils.split(line, ' ');
+            // 5 parts, because "Each data point must have at least one tag."
+            if (parts.length < 5) {
+                throw new FormatParseException("Expected at least 5 parts, found " + parts.length + " in line '" + line + "'");
+            }
+
+            if (!parts[0].equals("put")) {
+                throw new FormatParseException("Expected first segment to be 'put', but was '" + parts[0] + "'");
             }
-        } catch (IOException e) {
-            throw new FormatParseException("IO exception while parsing OpenTSDB telnet format", e);
+
+            String metricName = getMetricName(parts);
+            Instant timestamp = getMetricTimestamp(parts);
+            double value = getMetricValue(parts);
+            Map<String, String> tags = getMetricTags(parts);
+
+            // If the metric is already known, add a point. Otherwise create the metric and add the point.
+            metrics.point(new Metric(metricName, tags), Metric::toBuilder, timestamp.toEpochMilli(), value);
         }
 
-        return metrics.values().stream().map(MetricTimeSeries.Builder::build).collect(Collectors.toList());
+        metrics.flush();
     }
 
     /**
@@ -173,6 +158,19 @@ public class OpenTsdbTelnetFormatParser implements FormatParser {
             this.tags = tags;
         }
 
+        /**
+         * Creates the builder of the time series of the metric.
+         *
+         * @return Builder with the name and the tags as attributes.
+         */
+        private MetricTimeSeries.Builder toBuilder() {
+            MetricTimeSeries.Builder builder = new MetricTimeSeries.Builder(name, METRIC_TYPE);
+            for (Map.Entry<String, String> tagEntry : tags.entrySet()) {
+                builder.attribute(tagEntry.getKey(), tagEntry.getValue());
+            }
+            return builder;
+        }
+
         @Override
         public boolean equals(Object o) {
             if (this == o) {
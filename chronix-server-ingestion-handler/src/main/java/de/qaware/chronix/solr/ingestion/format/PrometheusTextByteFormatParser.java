@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.ingestion.format;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Parses the Prometheus Text format on the bytes of the input stream directly.
+ * <p>
+ * Parses like the {@link PrometheusTextFormatParser}, but the metrics (name and labels) are cached on their bytes and
+ * the numbers are parsed without intermediate strings. A sample of a known metric creates no objects.
+ * <p>
+ * See https://prometheus.io/docs/instrumenting/exposition_formats/#text-format-details
+ */
+public class PrometheusTextByteFormatParser implements FormatParser {
+    private static final byte SPACE = ' ';
+    private static final byte COMMA = ',';
+    private static final byte EQUALS = '=';
+    private static final byte QUOTE = '"';
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(PrometheusTextByteFormatParser.class);
+
+    /**
+     * Clock.
+     */
+    private final Clock clock;
+
+    /**
+     * Constructor.
+     *
+     * @param clock Clock.
+     */
+    public PrometheusTextByteFormatParser(Clock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public void parse(InputStream stream, int maxPoints, MetricTimeSeriesConsumer consumer) throws FormatParseException, IOException {
+        Set<String> validMetricNames = new HashSet<>();
+
+        SeriesBuffer<SeriesKey> metrics = new SeriesBuffer<>(maxPoints, consumer);
+        ByteRangeCache<SeriesKey> keys = new ByteRangeCache<>(ByteRangeCache.MAX_SIZE);
+        ByteRangeCache<String> strings = new ByteRangeCache<>(ByteRangeCache.MAX_SIZE);
+
+        ByteLineReader reader = new ByteLineReader(stream);
+        while (reader.next()) {
+            byte[] line = reader.buffer();
+            int lineStart = reader.lineStart();
+            int lineEnd = reader.lineEnd();
+            if (lineStart == lineEnd) {
+                continue;
+            }
+            if (Bytes.startsWith(line, lineStart, lineEnd, "# HELP")) {
+                continue;
+            }
+            if (Bytes.startsWith(line, lineStart, lineEnd, "# TYPE")) {
+                String typeLine = reader.line();
+                if (isCounter(typeLine)) {
+                    validMetricNames.add(StringUtils.split(typeLine, " ")[2]);
+                }
+                continue;
+            }
+            if (line[lineStart] == '#') {
+                continue;
+            }
+
+            // Example: http_requests_total{method="post",code="200"} 1027 1395066363000
+            int parts = reader.split(SPACE);
+            // At least 2 parts, because timestamp is optional
+            if (parts < 2) {
+                throw new FormatParseException("Expected at least 2 parts, found " + parts + " in line '" + reader.line() + "'");
+            }
+
+            // Only metrics with a valid type are cached, hence a cached metric is valid
+            SeriesKey metric = keys.get(line, reader.start(0), reader.end(0));
+            String metricName = null;
+            if (metric == null) {
+                int nameEnd = Bytes.next(line, reader.start(0), reader.end(0), (byte) '{');
+                metricName = Bytes.intern(strings, line, reader.start(0), nameEnd);
+                if (!validMetricNames.contains(metricName)) {
+                    LOGGER.debug("Ignoring metric {}", metricName);
+                    continue;
+                }
+            }
+
+            long timestamp = getMetricTimestamp(reader, parts);
+            double value = getMetricValue(reader);
+
+            if (metric == null) {
+                metric = new SeriesKey(metricName, getMetricTags(reader, strings));
+                keys.put(line, reader.start(0), reader.end(0), metric);
+            }
+            metrics.point(metric, SeriesKey::toBuilder, timestamp, value);
+        }
+
+        metrics.flush();
+    }
+
+    /**
+     * Extract the metric tags from the first part.
+     *
+     * @param reader  Reader at the split line.
+     * @param strings Cached tag keys and tag values.
+     * @return Metric tags.
+     * @throws FormatParseException If something went wrong while extracting.
+     */
+    private Map<String, String> getMetricTags(ByteLineReader reader, ByteRangeCache<String> strings) throws FormatParseException {
+        byte[] line = reader.buffer();
+        int from = reader.start(0);
+        int to = reader.end(0);
+
+        int tagStartIndex = Bytes.next(line, from, to, (byte) '{');
+        if (tagStartIndex == to) {
+            return Collections.emptyMap();
+        }
+        int tagEndIndex = Bytes.next(line, from, to, (byte) '}');
+        if (tagEndIndex == to || tagEndIndex < tagStartIndex) {
+            throw new FormatParseException("Expected the tags between {}, but they aren't in '" + reader.token(0) + "'");
+        }
+
+        Map<String, String> result = new HashMap<>();
+
+        int tagStart = Bytes.skip(line, tagStartIndex + 1, tagEndIndex, COMMA);
+        while (tagStart < tagEndIndex) {
+            int tagEnd = Bytes.next(line, tagStart, tagEndIndex, COMMA);
+
+            int keyStart = Bytes.skip(line, tagStart, tagEnd, EQUALS);
+            int keyEnd = Bytes.next(line, keyStart, tagEnd, EQUALS);
+            int valueStart = Bytes.skip(line, keyEnd, tagEnd, EQUALS);
+            String tag = Bytes.toString(line, tagStart, tagEnd);
+            if (valueStart == tagEnd) {
+                int found = keyStart == tagEnd ? 0 : 1;
+                throw new FormatParseException("Expected 2 tag parts, found " + found + " in tag '" + tag + "'");
+            }
+            if (line[valueStart] != QUOTE && line[tagEnd - 1] != QUOTE || tagEnd - valueStart < 2) {
+                throw new FormatParseException("Expected the tag value between \"s, but it isn't. Tag: '" + tag + "'");
+            }
+
+            result.put(Bytes.intern(strings, line, keyStart, keyEnd), Bytes.intern(strings, line, valueStart + 1, tagEnd - 1));
+
+            tagStart = Bytes.skip(line, tagEnd, tagEndIndex, COMMA);
+        }
+
+        return result;
+    }
+
+    /**
+     * Extracts the metric timestamp from the third part.
+     *
+     * @param reader Reader at the split line.
+     * @param parts  Amount of parts.
+     * @return Metric timestamp in milliseconds.
+     * @throws FormatParseException If something went wrong while extracting.
+     */
+    private long getMetricTimestamp(ByteLineReader reader, int parts) throws FormatParseException {
+        // If the timestamp is missing, wall clock time is assumed.
+        if (parts < 3) {
+            return clock.now().toEpochMilli();
+        }
+
+        try {
+            return Bytes.parseLong(reader.buffer(), reader.start(2), reader.end(2));
+        } catch (NumberFormatException e) {
+            throw new FormatParseException("Can't convert '" + reader.token(2) + "' to long", e);
+        }
+    }
+
+    /**
+     * Extracts the metric value from the second part.
+     *
+     * @param reader Reader at the split line.
+     * @return Metric value.
+     * @throws FormatParseException If something went wrong while extracting.
+     */
+    private double getMetricValue(ByteLineReader reader) throws FormatParseException {
+        try {
+            return Bytes.parseDouble(reader.buffer(), reader.start(1), reader.end(1));
+        } catch (NumberFormatException e) {
+            throw new FormatParseException("Can't convert '" + reader.token(1) + "' to double", e);
+        }
+    }
+
+    /**
+     * Parses a type line (e.g. # TYPE http_requests_total counter).
+     *
+     * @param line Line to parse.
+     * @return true if the type of the metric is counter.
+     * @throws FormatParseException If the line has not 4 parts.
+     */
+    private boolean isCounter(String line) throws FormatParseException {
+        String[] parts = StringUtils.split(line, " ");
+        if (parts.length != 4) {
+            throw new FormatParseException("Expected 4 parts in TYPE line, found " + parts.length + " in line '" + line + "'");
+        }
+
+        // First two parts are '#' and 'TYPE'
+        return parts[3].equals("counter");
+    }
+}
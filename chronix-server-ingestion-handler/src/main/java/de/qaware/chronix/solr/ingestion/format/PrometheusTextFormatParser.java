@@ -32,7 +32,6 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * Parses the Prometheus Text format.
@@ -66,80 +65,67 @@ public class PrometheusTextFormatParser implements FormatParser {
     }
 
     @Override
-    public Iterable<MetricTimeSeries> parse(InputStream stream) throws FormatParseException {
+    public void parse(InputStream stream, int maxPoints, MetricTimeSeriesConsumer consumer) throws FormatParseException, IOException {
         Set<String> validMetricNames = new HashSet<>();
 
-        Map<Metric, MetricTimeSeries.Builder> metrics = new HashMap<>();
+        SeriesBuffer<Metric> metrics = new SeriesBuffer<>(maxPoints, consumer);
 
         BufferedReader reader = new BufferedReader(new InputStreamReader(stream, UTF_8));
         String line;
-        try {
-            while ((line = reader.readLine()) != null) {
-                if (line.isEmpty()) {
-                    continue;
-                }
-                if (isHelpLine(line)) {
-                    continue;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (isHelpLine(line)) {
+                continue;
+            }
+            if (isTypeLine(line)) {
+                TypeLine typeLine = parseTypeLine(line);
+                if (isTypeValid(typeLine)) {
+                    validMetricNames.add(typeLine.getMetricName());
                 }
-                if (isTypeLine(line)) {
-                    TypeLine typeLine = parseTypeLine(line);
-                    if (isTypeValid(typeLine)) {
-                        validMetricNames.add(typeLine.getMetricName());
-                    }
 
-                    continue;
-                }
-                if (isCommentLine(line)) {
-                    continue;
-                }
+                continue;
+            }
+            if (isCommentLine(line)) {
+                continue;
+            }
 
-                // Example: http_requests_total{method="post",code="200"} 1027 1395066363000
-                String[] parts = StringUtils.split(line, ' ');
-                // At least 2 parts, because timestamp is optional
-                if (parts.length < 2) {
-                    throw new FormatParseException("Expected at least 2 parts, found " + parts.length + " in line '" + line + "'");
-                }
+            // Example: http_requests_total{method="post",code="200"} 1027 1395066363000
+            String[] parts = StringUtils.split(line, ' ');
+            // At least 2 parts, because timestamp is optional
+            if (parts.length < 2) {
+                throw new FormatParseException("Expected at least 2 parts, found " + parts.length + " in line '" + line + "'");
+            }
 
-                String metricName = getMetricName(parts);
-                if (!validMetricNames.contains(metricName)) {
-                    LOGGER.debug("Ignoring metric {}", metricName);
-                    continue;
-                }
+            String metricName = getMetricName(parts);
+            if (!validMetricNames.contains(metricName)) {
+                LOGGER.debug("Ignoring metric {}", metricName);
+                continue;
+            }
 
-                Instant timestamp = getMetricTimestamp(parts);
-                double value = getMetricValue(parts);
-                Map<String, String> tags = getMetricTags(parts);
+            Instant timestamp = getMetricTimestamp(parts);
+            double value = getMetricValue(parts);
+            Map<String, String> tags = getMetricTags(parts);
 
-                addPoint(metrics, metricName, timestamp, value, tags);
-            }
-        } catch (IOException e) {
-            throw new FormatParseException("IO exception while parsing OpenTSDB telnet format", e);
+            addPoint(metrics, metricName, timestamp, value, tags);
         }
 
-        return metrics.values().stream().map(MetricTimeSeries.Builder::build).collect(Collectors.toList());
+        metrics.flush();
     }
 
     /**
-     * Adds a point to the given metrics map. If the metric doesn't exist in the map, it will be created.
+     * Adds a point to the given metrics buffer. If the metric isn't buffered, it will be created.
      *
-     * @param metrics    Metric map.
+     * @param metrics    Metric buffer.
      * @param metricName Name of the metric.
      * @param timestamp  Timestamp of the point.
      * @param value      Value of the point.
-     * @param tags       Tags for the metric. These are only used if the metric doesn't already exist in the metrics map.
+     * @param tags       Tags for the metric. These are only used if the metric isn't already buffered.
+     * @throws IOException If the buffered metrics could not be handed over.
      */
-    private void addPoint(Map<Metric, MetricTimeSeries.Builder> metrics, String metricName, Instant timestamp, double value, Map<String, String> tags) {
-        Metric metric = new Metric(metricName, tags);
-        MetricTimeSeries.Builder metricBuilder = metrics.get(metric);
-        if (metricBuilder == null) {
-            metricBuilder = new MetricTimeSeries.Builder(metricName,METRIC_TYPE);
-            for (Map.Entry<String, String> tagEntry : tags.entrySet()) {
-                metricBuilder.attribute(tagEntry.getKey(), tagEntry.getValue());
-            }
-            metrics.put(metric, metricBuilder);
-        }
-
-        metricBuilder.point(timestamp.toEpochMilli(), value);
+    private void addPoint(SeriesBuffer<Metric> metrics, String metricName, Instant timestamp, double value, Map<String, String> tags) throws IOException {
+        metrics.point(new Metric(metricName, tags), Metric::toBuilder, timestamp.toEpochMilli(), value);
     }
 
     /**
@@ -302,6 +288,19 @@ public class PrometheusTextFormatParser implements FormatParser {
             this.tags = tags;
         }
 
+        /**
+         * Creates the builder of the time series of the metric.
+         *
+         * @return Builder with the name and the tags as attributes.
+         */
+        private MetricTimeSeries.Builder toBuilder() {
+            MetricTimeSeries.Builder builder = new MetricTimeSeries.Builder(name, METRIC_TYPE);
+            for (Map.Entry<String, String> tagEntry : tags.entrySet()) {
+                builder.attribute(tagEntry.getKey(), tagEntry.getValue());
+            }
+            return builder;
+        }
+
         @Override
         public boolean equals(Object o) {
             if (this == o) {
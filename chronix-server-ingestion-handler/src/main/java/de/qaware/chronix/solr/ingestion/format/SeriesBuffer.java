@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.ingestion.format;
+
+import de.qaware.chronix.timeseries.MetricTimeSeries;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Collects the points of the metrics of a format parser and hands them over as metric time series
+ * once the buffered points reach the given maximum.
+ * <p>
+ * The points of a metric that spans several batches are handed over as several time series.
+ * The time series are handed over in the order of the first point of their metric.
+ *
+ * @param <K> the key of a metric, unique on its name and tags
+ */
+final class SeriesBuffer<K> {
+    private final Map<K, MetricTimeSeries.Builder> metrics = new LinkedHashMap<>();
+    private final int maxPoints;
+    private final MetricTimeSeriesConsumer consumer;
+    private int points;
+
+    /**
+     * Constructor.
+     *
+     * @param maxPoints Maximum amount of buffered points.
+     * @param consumer  Consumer of the time series.
+     */
+    SeriesBuffer(int maxPoints, MetricTimeSeriesConsumer consumer) {
+        if (maxPoints < 1) {
+            throw new IllegalArgumentException("The maximum amount of points must be positive, but was " + maxPoints);
+        }
+        this.maxPoints = maxPoints;
+        this.consumer = consumer;
+    }
+
+    /**
+     * Adds a point to the metric. If the metric isn't buffered, the builder of the metric is created.
+     *
+     * @param metric    Metric.
+     * @param builder   Creates the builder (with the attributes) of the metric.
+     * @param timestamp Timestamp of the point in milliseconds.
+     * @param value     Value of the point.
+     * @throws IOException If the consumer could not take the time series.
+     */
+    void point(K metric, Function<K, MetricTimeSeries.Builder> builder, long timestamp, double value) throws IOException {
+        metrics.computeIfAbsent(metric, builder).point(timestamp, value);
+        points++;
+        if (points >= maxPoints) {
+            flush();
+        }
+    }
+
+    /**
+     * Hands over the buffered metrics and clears the buffer.
+     *
+     * @throws IOException If the consumer could not take the time series.
+     */
+    void flush() throws IOException {
+        for (MetricTimeSeries.Builder metric : metrics.values()) {
+            consumer.accept(metric.build());
+        }
+        metrics.clear();
+        points = 0;
+    }
+}
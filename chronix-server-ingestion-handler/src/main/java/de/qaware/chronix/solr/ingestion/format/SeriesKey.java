@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.ingestion.format;
+
+import de.qaware.chronix.timeseries.MetricTimeSeries;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The key of a metric of the byte based format parsers.
+ * <p>
+ * A metric is unique on its name and tags. The key is created once per metric and cached on the bytes of a line,
+ * hence it keeps its hash code.
+ */
+final class SeriesKey {
+    private static final String METRIC_TYPE = "metric";
+
+    private final String name;
+    private final Map<String, String> tags;
+    private final int hash;
+
+    /**
+     * Constructor.
+     *
+     * @param name Name of the metric.
+     * @param tags Tags of the metric.
+     */
+    SeriesKey(String name, Map<String, String> tags) {
+        this.name = name;
+        this.tags = tags;
+        this.hash = Objects.hash(name, tags);
+    }
+
+    /**
+     * @return the name of the metric.
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Creates the builder of the time series of the metric.
+     *
+     * @return Builder with the name and the tags as attributes.
+     */
+    MetricTimeSeries.Builder toBuilder() {
+        MetricTimeSeries.Builder builder = new MetricTimeSeries.Builder(name, METRIC_TYPE);
+        for (Map.Entry<String, String> tagEntry : tags.entrySet()) {
+            builder.attribute(tagEntry.getKey(), tagEntry.getValue());
+        }
+        return builder;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        SeriesKey key = (SeriesKey) o;
+        return hash == key.hash
+                && Objects.equals(name, key.name)
+                && Objects.equals(tags, key.tags);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.ingestion;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class EncodingExecutorTest {
+    private EncodingExecutor sut;
+
+    @After
+    public void tearDown() throws Exception {
+        sut.shutdown();
+    }
+
+    @Test
+    public void testResultsAreConsumedInOrder() throws Exception {
+        sut = EncodingExecutor.of(4, 2, 3);
+        List<Integer> results = new ArrayList<>();
+        AtomicInteger inProgress = new AtomicInteger();
+        AtomicInteger maxInProgress = new AtomicInteger();
+
+        EncodingExecutor.Pipeline<Integer> pipeline = sut.pipeline(results::add);
+        for (int i = 0; i < 100; i++) {
+            int task = i;
+            pipeline.submit(() -> {
+                maxInProgress.accumulateAndGet(inProgress.incrementAndGet(), Math::max);
+                try {
+                    //the later tasks finish first
+                    Thread.sleep(task % 4 == 0 ? 3 : 0);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                inProgress.decrementAndGet();
+                return task;
+            });
+        }
+        pipeline.finish();
+
+        assertThat(results.size(), is(100));
+        for (int i = 0; i < 100; i++) {
+            assertThat(results.get(i), is(i));
+        }
+        //the tasks of the request and the request thread
+        assertThat(maxInProgress.get() <= 4, is(true));
+    }
+
+    @Test
+    public void testSequential() throws Exception {
+        sut = EncodingExecutor.sequential();
+        List<String> results = new ArrayList<>();
+
+        EncodingExecutor.Pipeline<String> pipeline = sut.pipeline(results::add);
+        pipeline.submit(() -> Thread.currentThread().getName());
+        pipeline.finish();
+
+        assertThat(results.get(0), is(Thread.currentThread().getName()));
+    }
+
+    @Test
+    public void testExceptionOfTask() throws Exception {
+        sut = EncodingExecutor.of(2, 2, 2);
+        List<Integer> results = new ArrayList<>();
+
+        EncodingExecutor.Pipeline<Integer> pipeline = sut.pipeline(results::add);
+        pipeline.submit(() -> 1);
+        pipeline.submit(() -> {
+            throw new IllegalArgumentException("invalid chunk");
+        });
+        try {
+            pipeline.finish();
+            fail("The exception of the task is not thrown");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is("invalid chunk"));
+        }
+        assertThat(results.size(), is(1));
+    }
+
+    @Test
+    public void testExceptionOfConsumer() throws Exception {
+        sut = EncodingExecutor.of(2, 2, 1);
+
+        EncodingExecutor.Pipeline<Integer> pipeline = sut.pipeline(result -> {
+            throw new IOException("index is not available");
+        });
+        pipeline.submit(() -> 1);
+        try {
+            pipeline.submit(() -> 2);
+            fail("The exception of the consumer is not thrown");
+        } catch (IOException e) {
+            assertThat(e.getMessage(), is("index is not available"));
+        }
+        //the pending tasks are cancelled
+        pipeline.finish();
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        sut = EncodingExecutor.of(1, 16, 16);
+        CountDownLatch blocker = new CountDownLatch(1);
+        AtomicInteger encoded = new AtomicInteger();
+        List<Integer> results = new ArrayList<>();
+
+        EncodingExecutor.Pipeline<Integer> pipeline = sut.pipeline(results::add);
+        pipeline.submit(() -> {
+            await(blocker);
+            return encoded.incrementAndGet();
+        });
+        for (int i = 0; i < 10; i++) {
+            pipeline.submit(encoded::incrementAndGet);
+        }
+        //e.g. the parser fails
+        pipeline.cancel();
+        blocker.countDown();
+        pipeline.finish();
+
+        //the queued tasks are not run
+        assertThat(encoded.get() <= 1, is(true));
+        assertThat(results.size(), is(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidThreads() throws Exception {
+        sut = EncodingExecutor.sequential();
+        EncodingExecutor.of(0, 1, 1);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.ingestion;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class GroupSyncTest {
+
+    @Test
+    public void testSequentialRequestsSyncThemselves() throws Exception {
+        GroupSync sut = new GroupSync();
+        AtomicInteger syncs = new AtomicInteger();
+
+        sut.sync(syncs::incrementAndGet);
+        sut.sync(syncs::incrementAndGet);
+
+        assertThat(syncs.get(), is(2));
+        assertThat(sut.getSyncs(), is(2L));
+    }
+
+    @Test
+    public void testConcurrentRequestsShareTheSync() throws Exception {
+        GroupSync sut = new GroupSync();
+        CountDownLatch syncing = new CountDownLatch(1);
+        CountDownLatch waiting = new CountDownLatch(1);
+        //the appended entries of the log and the synced ones
+        AtomicInteger appended = new AtomicInteger();
+        AtomicInteger synced = new AtomicInteger();
+        AtomicReference<String> uncovered = new AtomicReference<>();
+
+        Runnable fsync = () -> {
+            syncing.countDown();
+            await(waiting);
+            synced.set(appended.get());
+        };
+        Thread first = new Thread(() -> {
+            appended.incrementAndGet();
+            sut.sync(fsync);
+        });
+        first.start();
+        syncing.await();
+
+        //the requests arrive while the first sync is running
+        List<Thread> requests = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Thread request = new Thread(() -> {
+                int entry = appended.incrementAndGet();
+                sut.sync(fsync);
+                if (synced.get() < entry) {
+                    uncovered.set("entry " + entry);
+                }
+            });
+            requests.add(request);
+            request.start();
+        }
+        Thread.sleep(50);
+        waiting.countDown();
+        first.join();
+        for (Thread request : requests) {
+            request.join();
+        }
+
+        assertThat(uncovered.get() == null, is(true));
+        assertThat(sut.getSyncs() <= 2, is(true));
+    }
+
+    @Test
+    public void testFailedSyncIsRepeated() throws Exception {
+        GroupSync sut = new GroupSync();
+        try {
+            sut.sync(() -> {
+                throw new IllegalStateException("disk is full");
+            });
+            fail("The exception of the sync is not thrown");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("disk is full"));
+        }
+        AtomicInteger syncs = new AtomicInteger();
+        sut.sync(syncs::incrementAndGet);
+
+        assertThat(syncs.get(), is(1));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
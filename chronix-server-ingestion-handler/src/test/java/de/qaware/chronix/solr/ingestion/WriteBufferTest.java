@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.ingestion;
+
+import de.qaware.chronix.timeseries.MetricTimeSeries;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class WriteBufferTest {
+    private static final long MAX_AGE = 1000;
+
+    private Instant now;
+    private WriteBuffer sut;
+    private Index index;
+
+    @Before
+    public void setUp() throws Exception {
+        now = Instant.ofEpochMilli(0);
+        sut = new WriteBuffer(5, MAX_AGE, () -> now);
+        index = new Index();
+    }
+
+    @Test
+    public void testPointsAreStoredUntilTheChunkIsWritten() throws Exception {
+        sut.add(series("cpu", "host1", 1, 2), index);
+        sut.add(series("cpu", "host1", 3), index);
+        sut.add(series("cpu", "host2", 1), index);
+        sut.add(series("cpu", "host1", 4), index);
+
+        assertThat(index.points().size(), is(4));
+        assertThat(index.chunks().size(), is(0));
+        assertThat(sut.size(), is(2));
+    }
+
+    @Test
+    public void testFullChunkReplacesThePoints() throws Exception {
+        sut.add(series("cpu", "host1", 1, 2, 3), index);
+        sut.add(series("cpu", "host1", 4, 5, 6), index);
+        sut.add(series("cpu", "host1", 7), index);
+
+        assertThat(index.chunks().size(), is(1));
+        MetricTimeSeries chunk = index.chunks().get(0);
+        assertThat(chunk.getTimestamps().toArray(), is(new long[]{1, 2, 3, 4, 5, 6}));
+        assertThat(chunk.getValues().toArray(), is(new double[]{1, 2, 3, 4, 5, 6}));
+        assertThat(chunk.attribute("host"), is("host1"));
+        //the points that completed the chunk are not stored twice
+        assertThat(index.points().size(), is(1));
+        assertThat(index.points().get(0).getTimestamps().toArray(), is(new long[]{7}));
+        assertThat(sut.size(), is(1));
+    }
+
+    @Test
+    public void testOldChunkIsWritten() throws Exception {
+        sut.add(series("cpu", "host1", 1), index);
+        sut.add(series("mem", "host1", 1), index);
+        now = Instant.ofEpochMilli(MAX_AGE);
+        sut.add(series("cpu", "host1", 2), index);
+
+        //the chunk of mem is expired, too
+        assertThat(index.chunks().size(), is(2));
+        assertThat(index.points().size(), is(1));
+        assertThat(sut.size(), is(1));
+    }
+
+    @Test
+    public void testExpire() throws Exception {
+        sut.add(series("cpu", "host1", 1), index);
+        now = Instant.ofEpochMilli(MAX_AGE / 2);
+        sut.add(series("mem", "host1", 1), index);
+
+        now = Instant.ofEpochMilli(MAX_AGE);
+        sut.expire(index);
+
+        assertThat(index.chunks().size(), is(1));
+        assertThat(index.chunks().get(0).getName(), is("cpu"));
+        assertThat(index.points().size(), is(1));
+        assertThat(index.points().get(0).getName(), is("mem"));
+        assertThat(sut.size(), is(1));
+        assertThat(sut.getExpiryInterval(), is(MAX_AGE / 10));
+    }
+
+    @Test
+    public void testFailedChunkKeepsTheBufferedPoints() throws Exception {
+        sut.add(series("cpu", "host1", 1, 2, 3), index);
+        index.failing = true;
+        try {
+            sut.add(series("cpu", "host1", 4, 5), index);
+            fail("The exception of the writer is not thrown");
+        } catch (IOException e) {
+            //expected
+        }
+        index.failing = false;
+        sut.add(series("cpu", "host1", 6, 7), index);
+
+        assertThat(index.chunks().size(), is(1));
+        assertThat(index.chunks().get(0).getTimestamps().toArray(), is(new long[]{1, 2, 3, 6, 7}));
+        assertThat(index.points().size(), is(0));
+    }
+
+    @Test
+    public void testFailedPointsAreNotBuffered() throws Exception {
+        index.failing = true;
+        try {
+            sut.add(series("cpu", "host1", 1), index);
+            fail("The exception of the writer is not thrown");
+        } catch (IOException e) {
+            //expected
+        }
+        index.failing = false;
+        sut.add(series("cpu", "host1", 2, 3, 4, 5, 6), index);
+
+        assertThat(index.chunks().size(), is(1));
+        assertThat(index.chunks().get(0).getTimestamps().toArray(), is(new long[]{2, 3, 4, 5, 6}));
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        sut.add(series("cpu", "host1", 1), index);
+        sut.add(series("cpu", "host2", 1), index);
+        sut.close(index);
+        sut.add(series("cpu", "host1", 2), index);
+
+        assertThat(sut.size(), is(0));
+        assertThat(index.points().size(), is(0));
+        assertThat(index.chunks().size(), is(3));
+        assertThat(index.chunks().get(2).getTimestamps().toArray(), is(new long[]{2}));
+    }
+
+    @Test
+    public void testCloseWhileAdding() throws Exception {
+        ExecutorService requests = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < 1000; i++) {
+                int point = i;
+                requests.execute(() -> {
+                    try {
+                        sut.add(series("cpu", "host" + point % 10, point), index);
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+                if (i == 500) {
+                    sut.close(index);
+                }
+            }
+        } finally {
+            requests.shutdown();
+            requests.awaitTermination(10, TimeUnit.SECONDS);
+        }
+
+        //every point is written once, none stays in the buffer
+        assertThat(sut.size(), is(0));
+        assertThat(index.points().size(), is(0));
+        assertThat(index.chunks().stream().mapToInt(MetricTimeSeries::size).sum(), is(1000));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxPoints() throws Exception {
+        new WriteBuffer(0, MAX_AGE, () -> now);
+    }
+
+    @Test
+    public void testNoConfig() throws Exception {
+        assertThat(WriteBuffer.of(null), is(nullValue()));
+    }
+
+    private static MetricTimeSeries series(String name, String host, long... timestamps) {
+        MetricTimeSeries.Builder builder = new MetricTimeSeries.Builder(name, "metric").attribute("host", host);
+        for (long timestamp : timestamps) {
+            builder.point(timestamp, timestamp);
+        }
+        return builder.build();
+    }
+
+    /**
+     * The documents of the points and of the chunks, like the index
+     */
+    private static final class Index implements WriteBuffer.ChunkWriter {
+        private final Map<String, MetricTimeSeries> points = new LinkedHashMap<>();
+        private final List<MetricTimeSeries> chunks = new ArrayList<>();
+        private volatile boolean failing;
+        private int id;
+
+        @Override
+        public synchronized String writePoints(MetricTimeSeries series) throws IOException {
+            check();
+            String key = "points-" + id++;
+            points.put(key, series);
+            return key;
+        }
+
+        @Override
+        public synchronized void writeChunk(MetricTimeSeries chunk, List<String> replaced) throws IOException {
+            check();
+            chunks.add(chunk);
+            replaced.forEach(points::remove);
+        }
+
+        private void check() throws IOException {
+            if (failing) {
+                throw new IOException("index is not available");
+            }
+        }
+
+        private synchronized List<MetricTimeSeries> points() {
+            return new ArrayList<>(points.values());
+        }
+
+        private synchronized List<MetricTimeSeries> chunks() {
+            return new ArrayList<>(chunks);
+        }
+    }
+}
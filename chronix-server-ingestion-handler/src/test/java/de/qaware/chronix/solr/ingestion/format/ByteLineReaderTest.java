@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.ingestion.format;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ByteLineReaderTest {
+
+    @Test
+    public void testLinesLikeBufferedReader() throws Exception {
+        String body = "first\nsecond\r\nthird\rfourth\n\n\r\nlast";
+
+        assertThat(lines(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8))),
+                is(Arrays.asList("first", "second", "third", "fourth", "", "", "last")));
+        assertThat(lines(new ByteArrayInputStream("\n".getBytes(StandardCharsets.UTF_8))), is(Arrays.asList("")));
+        assertThat(lines(new ByteArrayInputStream(new byte[0])).isEmpty(), is(true));
+    }
+
+    @Test
+    public void testLinesOfSingleBytes() throws Exception {
+        // The line breaks (even \r\n) are split across reads
+        String body = "first\r\nsecond\r\n\u00fcml\u00e4ut\n";
+
+        assertThat(lines(new SingleByteInputStream(body.getBytes(StandardCharsets.UTF_8))),
+                is(Arrays.asList("first", "second", "\u00fcml\u00e4ut")));
+    }
+
+    @Test
+    public void testLinesLargerThanTheBuffer() throws Exception {
+        char[] chars = new char[200_000];
+        Arrays.fill(chars, 'x');
+        String line = new String(chars);
+
+        assertThat(lines(new ByteArrayInputStream((line + "\n" + line).getBytes(StandardCharsets.UTF_8))), is(Arrays.asList(line, line)));
+    }
+
+    @Test
+    public void testSplit() throws Exception {
+        ByteLineReader reader = new ByteLineReader(new ByteArrayInputStream("  put a  1 \n\n".getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(reader.next(), is(true));
+        assertThat(reader.split((byte) ' '), is(3));
+        assertThat(reader.token(0), is("put"));
+        assertThat(reader.token(1), is("a"));
+        assertThat(reader.token(2), is("1"));
+
+        assertThat(reader.next(), is(true));
+        assertThat(reader.split((byte) ' '), is(0));
+        assertThat(reader.next(), is(false));
+    }
+
+    @Test
+    public void testSplitManyTokens() throws Exception {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            line.append(i).append(' ');
+        }
+        ByteLineReader reader = new ByteLineReader(new ByteArrayInputStream(line.toString().getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(reader.next(), is(true));
+        assertThat(reader.split((byte) ' '), is(100));
+        assertThat(reader.token(99), is("99"));
+    }
+
+    private static List<String> lines(InputStream stream) throws IOException {
+        List<String> lines = new ArrayList<>();
+        ByteLineReader reader = new ByteLineReader(stream);
+        while (reader.next()) {
+            lines.add(reader.line());
+        }
+        return lines;
+    }
+
+    /**
+     * Returns one byte per read.
+     */
+    private static class SingleByteInputStream extends FilterInputStream {
+        SingleByteInputStream(byte[] bytes) {
+            super(new ByteArrayInputStream(bytes));
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, 1));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.ingestion.format;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class BytesTest {
+
+    @Test
+    public void testParseDoubleLikeStrings() throws Exception {
+        String[] values = {"0", "-0", "+0.0", "1", "-1", "0.55", ".5", "5.", "1e3", "1.5E-7", "-4e+2", "123456789012345678",
+                "1234567890123456789", "9007199254740993", "3.14159265358979323846", "1e22", "1e23", "1e-22", "1e-23",
+                "4.9e-324", "1.7976931348623157E308", "1e400", "NaN", "Infinity", "-Infinity", "0x1p3", "2d", "0.1", "00000.25"};
+        for (String value : values) {
+            assertThat(value, parseDouble(value), is(Double.parseDouble(value)));
+        }
+
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            String value = Double.toString(random.nextDouble() * Math.pow(10, random.nextInt(40) - 20));
+            assertThat(value, parseDouble(value), is(Double.parseDouble(value)));
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseDoubleInvalid() throws Exception {
+        parseDouble("1e");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseDoublePrometheusInfinity() throws Exception {
+        // Not a java double, hence not a double of the string based parsers either
+        parseDouble("+Inf");
+    }
+
+    @Test
+    public void testParseLongLikeStrings() throws Exception {
+        String[] values = {"0", "-0", "+7", "1356998400", "1422568543702900257", "-9223372036854775808", "9223372036854775807"};
+        for (String value : values) {
+            assertThat(value, parseLong(value), is(Long.parseLong(value)));
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseLongOverflow() throws Exception {
+        parseLong("9223372036854775808");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseLongInvalid() throws Exception {
+        parseLong("13569984OO");
+    }
+
+    @Test
+    public void testScan() throws Exception {
+        byte[] bytes = "==key=value".getBytes(StandardCharsets.UTF_8);
+
+        int keyStart = Bytes.skip(bytes, 0, bytes.length, (byte) '=');
+        int keyEnd = Bytes.next(bytes, keyStart, bytes.length, (byte) '=');
+        assertThat(Bytes.toString(bytes, keyStart, keyEnd), is("key"));
+        assertThat(Bytes.equals(bytes, keyStart, keyEnd, "key"), is(true));
+        assertThat(Bytes.equals(bytes, keyStart, keyEnd, "keys"), is(false));
+        assertThat(Bytes.startsWith(bytes, 0, bytes.length, "==k"), is(true));
+        assertThat(Bytes.next(bytes, keyEnd + 1, bytes.length, (byte) '='), is(bytes.length));
+    }
+
+    @Test
+    public void testIntern() throws Exception {
+        ByteRangeCache<String> strings = new ByteRangeCache<>(2);
+        byte[] bytes = "host host web".getBytes(StandardCharsets.UTF_8);
+
+        String first = Bytes.intern(strings, bytes, 0, 4);
+        assertThat(first, is("host"));
+        assertThat(Bytes.intern(strings, bytes, 5, 9) == first, is(true));
+        assertThat(Bytes.intern(strings, bytes, 10, 13), is("web"));
+    }
+
+    private static double parseDouble(String value) {
+        // Within a larger buffer, the range has to be respected
+        byte[] bytes = (" " + value + " ").getBytes(StandardCharsets.UTF_8);
+        return Bytes.parseDouble(bytes, 1, bytes.length - 1);
+    }
+
+    private static long parseLong(String value) {
+        byte[] bytes = (" " + value + " ").getBytes(StandardCharsets.UTF_8);
+        return Bytes.parseLong(bytes, 1, bytes.length - 1);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.ingestion.format;
+
+import de.qaware.chronix.timeseries.MetricTimeSeries;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Compares the time series of the byte based format parsers with the ones of the string based format parsers.
+ */
+final class FormatParserAssertions {
+
+    private FormatParserAssertions() {
+        //avoid instances
+    }
+
+    static List<MetricTimeSeries> parseResource(FormatParser parser, String resource, int maxPoints) throws Exception {
+        try (InputStream stream = FormatParserAssertions.class.getResourceAsStream(resource)) {
+            assertNotNull(stream);
+            return parse(parser, stream, maxPoints);
+        }
+    }
+
+    static List<MetricTimeSeries> parseString(FormatParser parser, String body, int maxPoints) throws Exception {
+        return parse(parser, new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), maxPoints);
+    }
+
+    static void assertSameSeries(List<MetricTimeSeries> expected, List<MetricTimeSeries> actual) {
+        assertThat(actual.size(), is(expected.size()));
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i).getName(), is(expected.get(i).getName()));
+            assertThat(actual.get(i).getAttributesReference(), is(expected.get(i).getAttributesReference()));
+            assertThat(actual.get(i).getTimestamps().toArray(), is(expected.get(i).getTimestamps().toArray()));
+            assertThat(actual.get(i).getValues().toArray(), is(expected.get(i).getValues().toArray()));
+        }
+    }
+
+    private static List<MetricTimeSeries> parse(FormatParser parser, InputStream stream, int maxPoints) throws IOException, FormatParseException {
+        List<MetricTimeSeries> series = new ArrayList<>();
+        parser.parse(stream, maxPoints, series::add);
+        return series;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.ingestion.format;
+
+import de.qaware.chronix.timeseries.MetricTimeSeries;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static de.qaware.chronix.solr.ingestion.format.FormatParserAssertions.assertSameSeries;
+import static de.qaware.chronix.solr.ingestion.format.FormatParserAssertions.parseResource;
+import static de.qaware.chronix.solr.ingestion.format.FormatParserAssertions.parseString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class GraphiteByteFormatParserTest {
+    private GraphiteByteFormatParser sut;
+
+    @Before
+    public void setUp() throws Exception {
+        sut = new GraphiteByteFormatParser();
+    }
+
+    @Test
+    public void testParse() throws Exception {
+        List<MetricTimeSeries> series = parseResource(sut, "/graphite.txt", Integer.MAX_VALUE);
+
+        assertThat(series.size(), is(2));
+        assertThat(series.get(0).getName(), is("test.bash.stats"));
+        assertThat(series.get(0).getTimestamps().toArray(), is(new long[]{1475754111000L, 1475754112000L, 1475754113000L, 1475754114000L, 1475754115000L}));
+        assertThat(series.get(0).getValues().toArray(), is(new double[]{1, 2, 3, 4, 5}));
+        assertThat(series.get(1).getName(), is("test.ps.stats"));
+        assertThat(series.get(1).getValues().toArray(), is(new double[]{6, 7, 8, 9}));
+    }
+
+    @Test
+    public void testSameAsStringParser() throws Exception {
+        GraphiteFormatParser stringParser = new GraphiteFormatParser();
+        for (int maxPoints : new int[]{1, 3, Integer.MAX_VALUE}) {
+            assertSameSeries(parseResource(stringParser, "/graphite.txt", maxPoints), parseResource(sut, "/graphite.txt", maxPoints));
+        }
+
+        String body = "a.b  1.5e3 1475754111\r\n\u00e4.b -0.25  1475754112\r\n a.b 12345678901234567890 1475754113";
+        assertSameSeries(parseString(stringParser, body, 2), parseString(sut, body, 2));
+    }
+
+    @Test(expected = FormatParseException.class)
+    public void testParseMissingPart() throws Exception {
+        parseString(sut, "a.b 1", Integer.MAX_VALUE);
+    }
+
+    @Test(expected = FormatParseException.class)
+    public void testParseInvalidValue() throws Exception {
+        parseString(sut, "a.b one 1475754111", Integer.MAX_VALUE);
+    }
+}
@@ -21,6 +21,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.hamcrest.CoreMatchers.is;
@@ -77,4 +78,25 @@ public class GraphiteFormatParserTest {
             assertThat(psSeries.getValues().get(3), is(9.0));
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testParseInBatches() throws Exception {
+        try (InputStream stream = GraphiteFormatParserTest.class.getResourceAsStream("/graphite.txt")) {
+            assertNotNull(stream);
+            List<MetricTimeSeries> series = new ArrayList<>();
+            sut.parse(stream, 3, series::add);
+
+            // The metrics are handed over after every third point
+            assertThat(series.size(), is(4));
+            assertThat(series.get(0).getName(), is("test.bash.stats"));
+            assertThat(series.get(0).getValues().toArray(), is(new double[]{1, 2, 3}));
+            assertThat(series.get(1).getName(), is("test.bash.stats"));
+            assertThat(series.get(1).getValues().toArray(), is(new double[]{4, 5}));
+            assertThat(series.get(2).getName(), is("test.ps.stats"));
+            assertThat(series.get(2).getValues().toArray(), is(new double[]{6}));
+            assertThat(series.get(3).getName(), is("test.ps.stats"));
+            assertThat(series.get(3).getValues().toArray(), is(new double[]{7, 8, 9}));
+            assertThat(series.get(3).getTimestamps().get(2), is(1475754119000L));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.ingestion.format;
+
+import de.qaware.chronix.timeseries.MetricTimeSeries;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static de.qaware.chronix.solr.ingestion.format.FormatParserAssertions.assertSameSeries;
+import static de.qaware.chronix.solr.ingestion.format.FormatParserAssertions.parseResource;
+import static de.qaware.chronix.solr.ingestion.format.FormatParserAssertions.parseString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class InfluxDbByteFormatParserTest {
+    private static final Instant NOW = Instant.now();
+    private Clock clock;
+    private InfluxDbByteFormatParser sut;
+
+    @Before
+    public void setUp() throws Exception {
+        clock = () -> NOW;
+        sut = new InfluxDbByteFormatParser(clock);
+    }
+
+    @Test
+    public void testParse() throws Exception {
+        List<MetricTimeSeries> series = parseResource(sut, "/influxdb.txt", Integer.MAX_VALUE);
+
+        assertThat(series.size(), is(3));
+        assertThat(series.get(0).getName(), is("cpu_load_short"));
+        assertThat(series.get(0).getAttributesReference().get("host"), is("server01"));
+        assertThat(series.get(0).getTime(0), is(NOW.toEpochMilli()));
+        assertThat(series.get(0).getValue(0), is(0.67));
+
+        assertThat(series.get(2).getName(), is("cpu_load_long"));
+        assertThat(series.get(2).getAttributesReference().get("region"), is("us-west"));
+        assertThat(series.get(2).getTimestamps().toArray(), is(new long[]{1422568543702900L, 1422568544702900L}));
+        assertThat(series.get(2).getValues().toArray(), is(new double[]{2.0, 3.0}));
+    }
+
+    @Test
+    public void testSameAsStringParser() throws Exception {
+        InfluxDbFormatParser stringParser = new InfluxDbFormatParser(clock);
+        for (int maxPoints : new int[]{1, 3, Integer.MAX_VALUE}) {
+            assertSameSeries(parseResource(stringParser, "/influxdb.txt", maxPoints), parseResource(sut, "/influxdb.txt", maxPoints));
+        }
+
+        // The same tags in a different order are the same metric
+        String body = "cpu,host=a,region=b value=1 1000000\ncpu,region=b,,host=a  value==2.5\r\ncpu,host=a=1 value=-4e2 3000000";
+        assertSameSeries(parseString(stringParser, body, 2), parseString(sut, body, 2));
+    }
+
+    @Test
+    public void testTagsAreShared() throws Exception {
+        List<MetricTimeSeries> series = parseString(sut, "cpu,host=a value=1\nmem,host=a value=2", Integer.MAX_VALUE);
+
+        assertThat(series.size(), is(2));
+        assertThat(series.get(0).getAttributesReference().get("host"), sameInstance(series.get(1).getAttributesReference().get("host")));
+    }
+
+    @Test(expected = FormatParseException.class)
+    public void testParseInvalidTag() throws Exception {
+        parseString(sut, "cpu,host value=1", Integer.MAX_VALUE);
+    }
+
+    @Test(expected = FormatParseException.class)
+    public void testParseInvalidValue() throws Exception {
+        parseString(sut, "cpu,host=a val=1", Integer.MAX_VALUE);
+    }
+}
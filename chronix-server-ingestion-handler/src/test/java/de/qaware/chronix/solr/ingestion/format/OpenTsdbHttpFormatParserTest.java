@@ -21,6 +21,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.hamcrest.CoreMatchers.is;
@@ -76,4 +77,23 @@ public class OpenTsdbHttpFormatParserTest {
             assertThat(second.getTimestamps().get(0), is(1346846400000L));
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testMultipleInBatches() throws Exception {
+        try (InputStream stream = GraphiteFormatParserTest.class.getResourceAsStream("/opentsdb-http-api-multiple.json")) {
+            assertNotNull(stream);
+            List<MetricTimeSeries> series = new ArrayList<>();
+            sut.parse(stream, 1, series::add);
+
+            // Every point is handed over on its own
+            assertThat(series.size(), is(3));
+            assertThat(series.get(0).getName(), is("sys.cpu.nice"));
+            assertThat(series.get(0).getTimestamps().get(0), is(1346846400000L));
+            assertThat(series.get(1).getName(), is("sys.cpu.nice"));
+            assertThat(series.get(1).getTimestamps().get(0), is(1346846400100L));
+            assertThat(series.get(1).getAttributesReference().get("host_s"), is("web01"));
+            assertThat(series.get(2).getName(), is("sys.cpu.load"));
+            assertThat(series.get(2).getValues().get(0), is(2.0));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.ingestion.format;
+
+import de.qaware.chronix.timeseries.MetricTimeSeries;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static de.qaware.chronix.solr.ingestion.format.FormatParserAssertions.assertSameSeries;
+import static de.qaware.chronix.solr.ingestion.format.FormatParserAssertions.parseResource;
+import static de.qaware.chronix.solr.ingestion.format.FormatParserAssertions.parseString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class OpenTsdbTelnetByteFormatParserTest {
+    private OpenTsdbTelnetByteFormatParser sut;
+
+    @Before
+    public void setUp() throws Exception {
+        sut = new OpenTsdbTelnetByteFormatParser();
+    }
+
+    @Test
+    public void testParse() throws Exception {
+        List<MetricTimeSeries> series = parseResource(sut, "/openTSDB-telnet.txt", Integer.MAX_VALUE);
+
+        // CPU0, CPU1 and CPU2 in the order of their first point
+        assertThat(series.size(), is(3));
+        assertThat(series.get(0).getName(), is("sys.cpu.user"));
+        assertThat(series.get(0).getAttributesReference().get("cpu"), is("0"));
+        assertThat(series.get(0).getAttributesReference().get("host"), is("webserver01"));
+        assertThat(series.get(0).getTimestamps().toArray(), is(new long[]{1356998400000L, 1356998401000L}));
+        assertThat(series.get(0).getValues().toArray(), is(new double[]{1.0, 1.1}));
+        assertThat(series.get(2).getAttributesReference().get("cpu"), is("2"));
+    }
+
+    @Test
+    public void testSameAsStringParser() throws Exception {
+        OpenTsdbTelnetFormatParser stringParser = new OpenTsdbTelnetFormatParser();
+        for (int maxPoints : new int[]{1, 3, Integer.MAX_VALUE}) {
+            assertSameSeries(parseResource(stringParser, "/openTSDB-telnet.txt", maxPoints), parseResource(sut, "/openTSDB-telnet.txt", maxPoints));
+        }
+
+        // The tags are part of the metric, the name alone is not
+        String body = "put a 1356998400123 1 host=w\r\nput a  1356998401 2  host=w\nput b 1356998402 3 host=w\nput a 1356998403 4 host=w cpu==1";
+        assertSameSeries(parseString(stringParser, body, 2), parseString(sut, body, 2));
+    }
+
+    @Test(expected = FormatParseException.class)
+    public void testParseWithoutPut() throws Exception {
+        parseString(sut, "add a 1356998400 1 host=w", Integer.MAX_VALUE);
+    }
+
+    @Test(expected = FormatParseException.class)
+    public void testParseInvalidTimestamp() throws Exception {
+        parseString(sut, "put a 135699840 1 host=w", Integer.MAX_VALUE);
+    }
+}
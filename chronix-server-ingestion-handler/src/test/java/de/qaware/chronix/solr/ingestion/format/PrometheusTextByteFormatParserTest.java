@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.ingestion.format;
+
+import de.qaware.chronix.timeseries.MetricTimeSeries;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static de.qaware.chronix.solr.ingestion.format.FormatParserAssertions.assertSameSeries;
+import static de.qaware.chronix.solr.ingestion.format.FormatParserAssertions.parseResource;
+import static de.qaware.chronix.solr.ingestion.format.FormatParserAssertions.parseString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class PrometheusTextByteFormatParserTest {
+    private static final Instant NOW = Instant.now();
+    private Clock clock;
+    private PrometheusTextByteFormatParser sut;
+
+    @Before
+    public void setUp() throws Exception {
+        clock = () -> NOW;
+        sut = new PrometheusTextByteFormatParser(clock);
+    }
+
+    @Test
+    public void testParse() throws Exception {
+        List<MetricTimeSeries> series = parseResource(sut, "/prometheus-text.txt", Integer.MAX_VALUE);
+
+        // Only the counters
+        assertThat(series.size(), is(3));
+        assertThat(series.get(0).getName(), is("http_requests_total"));
+        assertThat(series.get(0).getAttributesReference().get("code"), is("200"));
+        assertThat(series.get(0).getTime(0), is(1395066363000L));
+        assertThat(series.get(0).getValue(0), is(1027.0));
+        assertThat(series.get(1).getAttributesReference().get("code"), is("400"));
+        assertThat(series.get(1).getValue(0), is(3.0));
+        assertThat(series.get(2).getName(), is("metric_without_timestamp_and_labels"));
+        assertThat(series.get(2).getTime(0), is(NOW.toEpochMilli()));
+        assertThat(series.get(2).getValue(0), is(12.47));
+    }
+
+    @Test
+    public void testSameAsStringParser() throws Exception {
+        PrometheusTextFormatParser stringParser = new PrometheusTextFormatParser(clock);
+        for (int maxPoints : new int[]{1, 3, Integer.MAX_VALUE}) {
+            assertSameSeries(parseResource(stringParser, "/prometheus-text.txt", maxPoints), parseResource(sut, "/prometheus-text.txt", maxPoints));
+        }
+
+        // The metric b is ignored until its type is known
+        String body = "b{x=\"1\"} 1\n# TYPE a counter\n# TYPE b counter\r\na{x=\"1\",y=\"2\"} 2 1000\n\nb{x=\"1\"}  3\na{y=\"2\",x=\"1\"} 4 2000\n#\na 5";
+        assertSameSeries(parseString(stringParser, body, 2), parseString(sut, body, 2));
+    }
+
+    @Test(expected = FormatParseException.class)
+    public void testParseInvalidTypeLine() throws Exception {
+        parseString(sut, "# TYPE a", Integer.MAX_VALUE);
+    }
+
+    @Test(expected = FormatParseException.class)
+    public void testParseUnquotedTag() throws Exception {
+        parseString(sut, "# TYPE a counter\na{x=1} 1", Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.server.executor;
+
+import org.apache.solr.common.util.NamedList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The bounded thread pool of the Chronix request handlers.
+ * <p>
+ * A single request has at most {@link #PARALLELISM_PER_REQUEST} tasks in progress, hence one heavy request
+ * cannot occupy the whole pool. Tasks that do not fit into the queue are run by the request thread (caller runs)
+ * and so are the tasks that are still queued when the request waits for them, see {@link #runIfQueued(FutureTask)}.
+ * The pool is configured with the init args of a handler, e.g.
+ * <pre>
+ * &lt;lst name="..."&gt;
+ *     &lt;int name="threads"&gt;8&lt;/int&gt;
+ *     &lt;int name="queueSize"&gt;1024&lt;/int&gt;
+ *     &lt;int name="parallelismPerRequest"&gt;4&lt;/int&gt;
+ * &lt;/lst&gt;
+ * </pre>
+ *
+ * @author f.lautenschlager
+ */
+public final class BoundedExecutor {
+
+    /**
+     * The number of threads of the pool. Default is the number of processors.
+     */
+    public static final String THREADS = "threads";
+    /**
+     * The maximum number of queued tasks. Default is 1024.
+     */
+    public static final String QUEUE_SIZE = "queueSize";
+    /**
+     * The maximum number of tasks of a single request in progress. The default depends on the handler.
+     */
+    public static final String PARALLELISM_PER_REQUEST = "parallelismPerRequest";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BoundedExecutor.class);
+    private static final int DEFAULT_QUEUE_SIZE = 1024;
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private final String name;
+    private final ThreadPoolExecutor pool;
+    private final int parallelism;
+    private final LongAdder callerRuns;
+
+    private BoundedExecutor(String name, ThreadPoolExecutor pool, int parallelism, LongAdder callerRuns) {
+        this.name = name;
+        this.pool = pool;
+        this.parallelism = parallelism;
+        this.callerRuns = callerRuns;
+    }
+
+    /**
+     * Creates a bounded executor
+     *
+     * @param name                  the name of the executor, the threads are named chronix-name-n
+     * @param threads               the number of threads of the pool
+     * @param queueSize             the maximum number of queued tasks
+     * @param parallelismPerRequest the maximum number of tasks of a single request in progress
+     * @return the bounded executor
+     */
+    public static BoundedExecutor of(String name, int threads, int queueSize, int parallelismPerRequest) {
+        if (threads < 1 || queueSize < 1 || parallelismPerRequest < 1) {
+            throw new IllegalArgumentException("The threads, the queue size and the parallelism per request must be positive. "
+                    + "Got threads=" + threads + ", queueSize=" + queueSize + ", parallelismPerRequest=" + parallelismPerRequest);
+        }
+        LongAdder callerRuns = new LongAdder();
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "chronix-" + name + "-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (task, rejectedBy) -> {
+                    //the queue is full, the request thread does the work itself
+                    callerRuns.increment();
+                    task.run();
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return new BoundedExecutor(name, pool, parallelismPerRequest, callerRuns);
+    }
+
+    /**
+     * Creates the executor from the init args of a handler.
+     * Missing values are set to their defaults.
+     *
+     * @param name               the name of the executor
+     * @param args               the init args, can be null
+     * @param defaultParallelism the default parallelism per request for the given number of threads
+     * @return the bounded executor
+     */
+    public static BoundedExecutor of(String name, NamedList<?> args, IntUnaryOperator defaultParallelism) {
+        int threads = intValue(args, THREADS, Runtime.getRuntime().availableProcessors());
+        int queueSize = intValue(args, QUEUE_SIZE, DEFAULT_QUEUE_SIZE);
+        int parallelismPerRequest = intValue(args, PARALLELISM_PER_REQUEST, defaultParallelism.applyAsInt(threads));
+
+        LOGGER.info("Using {} executor with {} threads, a queue size of {} and {} tasks per request", name, threads, queueSize, parallelismPerRequest);
+        return of(name, threads, queueSize, parallelismPerRequest);
+    }
+
+    /**
+     * @param name the name of the executor
+     * @return an executor that runs everything in the request thread
+     */
+    public static BoundedExecutor sequential(String name) {
+        return new BoundedExecutor(name, null, 1, new LongAdder());
+    }
+
+    private static int intValue(NamedList<?> args, String name, int defaultValue) {
+        if (args == null || args.get(name) == null) {
+            return defaultValue;
+        }
+        return Integer.parseInt(String.valueOf(args.get(name)));
+    }
+
+    /**
+     * @return true if everything runs in the request thread
+     */
+    public boolean isSequential() {
+        return pool == null;
+    }
+
+    /**
+     * @return the maximum number of tasks of a single request in progress
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Executes the task in the pool or in the calling thread if the queue is full
+     *
+     * @param task the task
+     */
+    public void execute(FutureTask<?> task) {
+        pool.execute(task);
+    }
+
+    /**
+     * Runs the task in the calling thread if it is still queued, so the request does not wait for a queued task
+     *
+     * @param task the task of the request
+     */
+    public void runIfQueued(FutureTask<?> task) {
+        if (pool.remove(task)) {
+            callerRuns.increment();
+            task.run();
+        }
+    }
+
+    /**
+     * Removes the queued tasks and cancels the tasks. Running tasks are not interrupted.
+     *
+     * @param tasks the tasks of a failed request
+     */
+    public void cancel(Collection<? extends FutureTask<?>> tasks) {
+        for (FutureTask<?> task : tasks) {
+            pool.remove(task);
+            task.cancel(false);
+        }
+    }
+
+    /**
+     * Waits for the task and passes its exception to the calling thread
+     *
+     * @param task the task
+     * @param <T>  the type of the result
+     * @return the result of the task
+     * @throws RuntimeException the exception of the task
+     */
+    public <T> T await(Future<T> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the " + name, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("The " + name + " failed", cause);
+        }
+    }
+
+    /**
+     * @return the number of threads that execute tasks
+     */
+    public int getActiveThreads() {
+        return pool == null ? 0 : pool.getActiveCount();
+    }
+
+    /**
+     * @return the number of threads of the pool
+     */
+    public int getPoolSize() {
+        return pool == null ? 0 : pool.getPoolSize();
+    }
+
+    /**
+     * @return the number of queued tasks
+     */
+    public int getQueueSize() {
+        return pool == null ? 0 : pool.getQueue().size();
+    }
+
+    /**
+     * @return the number of tasks that were completed by the pool
+     */
+    public long getCompletedTasks() {
+        return pool == null ? 0 : pool.getCompletedTaskCount();
+    }
+
+    /**
+     * @return the number of tasks that were run by the request threads
+     */
+    public long getCallerRuns() {
+        return callerRuns.sum();
+    }
+
+    /**
+     * Stops the threads of the pool
+     */
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+}
@@ -37,4 +37,14 @@ public interface ChronixAggregation<T> extends ChronixFunction<T> {
     default void setArguments(String[] args) {
         //do nothing
     }
+
+    /**
+     * Decomposable aggregations can be combined from the summaries of the single chunks,
+     * e.g. the minimum of a time series is the minimum of the chunk minima.
+     *
+     * @return true if the aggregation is decomposable, default is false
+     */
+    default boolean isDecomposable() {
+        return false;
+    }
 }
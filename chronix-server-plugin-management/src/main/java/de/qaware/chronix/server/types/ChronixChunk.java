@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.server.types;
+
+/**
+ * A chunk of a time series as it is returned to the client: the start, the end and the encoded data.
+ * The data is decoded with the start and the end of the chunk, like a stored chunk.
+ *
+ * @author f.lautenschlager
+ */
+public final class ChronixChunk {
+
+    private final long start;
+    private final long end;
+    private final byte[] data;
+
+    /**
+     * @param start the start of the chunk
+     * @param end   the end of the chunk
+     * @param data  the encoded (and compressed) data of the chunk
+     */
+    public ChronixChunk(long start, long end, byte[] data) {
+        this.start = start;
+        this.end = end;
+        this.data = data;
+    }
+
+    /**
+     * @return the start of the chunk
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * @return the end of the chunk
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * @return the encoded data of the chunk
+     */
+    public byte[] getData() {
+        return data;
+    }
+}
@@ -15,6 +15,8 @@
  */
 package de.qaware.chronix.server.types;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.Map;
 
 /**
@@ -55,11 +57,30 @@ public interface ChronixTimeSeries<T> {
      */
     void sort();
 
+    /**
+     * Removes the points with the same timestamp and value as an earlier point, e.g. of records that were ingested twice.
+     * The default implementation keeps all points.
+     */
+    default void removeDuplicates() {
+        //types without points to compare keep them
+    }
+
     /**
      * @return the data as json
      */
     String dataAsJson();
 
+    /**
+     * Writes the data as json (the same as {@link #dataAsJson()}) without building the whole string.
+     * Types should override it to write the points one after another.
+     *
+     * @param writer the writer of the response
+     * @throws IOException if the data could not be written
+     */
+    default void writeDataAsJson(Writer writer) throws IOException {
+        writer.write(dataAsJson());
+    }
+
     /**
      * @return as binary large object
      */
@@ -15,10 +15,18 @@
  */
 package de.qaware.chronix.server.types;
 
+import de.qaware.chronix.server.functions.ChronixAggregation;
 import de.qaware.chronix.server.functions.ChronixFunction;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexableField;
 import org.apache.solr.common.SolrDocument;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.search.SolrIndexSearcher;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 /**
  * The interface defines a Chronix type.
@@ -43,9 +51,81 @@ public interface ChronixType<T> {
      */
     ChronixTimeSeries<T> convert(String joinKey, List<SolrDocument> records, long queryStart, long queryEnd, boolean rawDataIsRequested);
 
+    /**
+     * Converts the given list of lucene documents to specific type of time series.
+     * The lucene documents can hold more user defined fields than the returned attributes of the options, e.g. the fields of the join key.
+     * If the options summarize the time series, it is only used by their decomposable aggregations. Types that store
+     * summaries of their chunks can answer these aggregations for chunks that lie fully inside the query range without
+     * decoding them, the records then hold the fields of {@link #getSummaryFields(Set)}.
+     * The default implementation converts the stored fields of all records into solr documents and
+     * delegates to {@link #convert(String, List, long, long, boolean)}.
+     * Types should override it to decode the stored fields directly.
+     *
+     * @param joinKey    the join key that defines the group criteria
+     * @param records    a list of lucene documents that belong to the query
+     * @param queryStart the start of the query, use it to filter the records
+     * @param queryEnd   the end of the query, use it fo filter the records
+     * @param options    the decoded data, the returned attributes and the aggregations of a summarized time series
+     * @param searcher   the searcher of the request, its schema converts the stored fields
+     * @return a time series of type <t>
+     */
+    default ChronixTimeSeries<T> convert(String joinKey, List<Document> records, long queryStart, long queryEnd, ConversionOptions options, SolrIndexSearcher searcher) {
+        IndexSchema schema = searcher.getSchema();
+        List<SolrDocument> solrDocuments = new ArrayList<>(records.size());
+        for (Document record : records) {
+            SolrDocument solrDocument = new SolrDocument();
+            for (IndexableField field : record) {
+                solrDocument.addField(field.name(), schema.getField(field.name()).getType().toObject(field));
+            }
+            solrDocuments.add(solrDocument);
+        }
+        return convert(joinKey, solrDocuments, queryStart, queryEnd, options.isRawDataRequested());
+    }
+
+    /**
+     * Gets the data of the records within the query range as chunks, e.g. for the export of the raw data.
+     * Types should return the stored data of the records that lie fully inside the query range as it is
+     * and only encode the points of the records at the edges of the query range again.
+     * The default implementation converts the records and returns a single chunk of the time series.
+     *
+     * @param joinKey    the join key that defines the group criteria
+     * @param records    a list of lucene documents that belong to the query
+     * @param queryStart the start of the query
+     * @param queryEnd   the end of the query
+     * @param searcher   the searcher of the request, its schema converts the stored fields
+     * @return the chunks ordered by their start
+     */
+    default List<ChronixChunk> chunks(String joinKey, List<Document> records, long queryStart, long queryEnd, SolrIndexSearcher searcher) {
+        ChronixTimeSeries<T> timeSeries = convert(joinKey, records, queryStart, queryEnd, ConversionOptions.of(true, null), searcher);
+        timeSeries.sort();
+        return Collections.singletonList(new ChronixChunk(timeSeries.getStart(), timeSeries.getEnd(), timeSeries.dataAsBlob()));
+    }
+
+    /**
+     * @param aggregations the decomposable aggregations of the request
+     * @return the stored fields that are needed to summarize a time series for the aggregations
+     * (see {@link ConversionOptions#summarize(Set, Set)}). Default is none.
+     */
+    default Set<String> getSummaryFields(Set<ChronixAggregation> aggregations) {
+        return Collections.emptySet();
+    }
+
     /**
      * @param function the query name of the function
      * @return the matching function
      */
     ChronixFunction<T> getFunction(String function);
+
+    /**
+     * Combines the aggregations and analyses of a request that can be computed together,
+     * e.g. several aggregations in a single pass over the values of a time series.
+     * A combined function has to add the result of every single function to the function context.
+     * The default implementation executes every function on its own.
+     *
+     * @param functions the aggregations and analyses of a request
+     * @return the functions to execute
+     */
+    default List<ChronixFunction<T>> fuse(List<ChronixFunction<T>> functions) {
+        return functions;
+    }
 }
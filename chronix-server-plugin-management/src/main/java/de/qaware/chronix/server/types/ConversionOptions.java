@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.server.types;
+
+import de.qaware.chronix.server.functions.ChronixAggregation;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * The options of a conversion of lucene documents into a time series (see {@link ChronixType}).
+ *
+ * @author f.lautenschlager
+ */
+public final class ConversionOptions {
+
+    private final boolean rawDataIsRequested;
+    private final Set<String> attributes;
+    private final boolean summarize;
+    private final Set<ChronixAggregation> aggregations;
+
+    private ConversionOptions(boolean rawDataIsRequested, Set<String> attributes, boolean summarize, Set<ChronixAggregation> aggregations) {
+        this.rawDataIsRequested = rawDataIsRequested;
+        this.attributes = attributes;
+        this.summarize = summarize;
+        this.aggregations = aggregations;
+    }
+
+    /**
+     * @param rawDataIsRequested true if the data of the records should be decoded
+     * @param attributes         the user defined fields that are returned as attributes, null for all
+     * @return the options of a conversion of all records
+     */
+    public static ConversionOptions of(boolean rawDataIsRequested, Set<String> attributes) {
+        return new ConversionOptions(rawDataIsRequested, attributes, false, Collections.emptySet());
+    }
+
+    /**
+     * The time series is only used by the given decomposable aggregations
+     * (see {@link ChronixAggregation#isDecomposable()}), hence the type can use the summaries of its chunks.
+     * Types without summaries decode the data.
+     *
+     * @param attributes   the user defined fields that are returned as attributes, null for all
+     * @param aggregations the decomposable aggregations that are computed on the time series
+     * @return the options of a summarized conversion
+     */
+    public static ConversionOptions summarize(Set<String> attributes, Set<ChronixAggregation> aggregations) {
+        return new ConversionOptions(true, attributes, true, aggregations);
+    }
+
+    /**
+     * @return true if the data of the records should be decoded
+     */
+    public boolean isRawDataRequested() {
+        return rawDataIsRequested;
+    }
+
+    /**
+     * @return the user defined fields that are returned as attributes, null for all
+     */
+    public Set<String> getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * @return true if the type can answer the aggregations from the summaries of its chunks
+     */
+    public boolean isSummarize() {
+        return summarize;
+    }
+
+    /**
+     * @return the decomposable aggregations of a summarized conversion, otherwise empty
+     */
+    public Set<ChronixAggregation> getAggregations() {
+        return aggregations;
+    }
+}
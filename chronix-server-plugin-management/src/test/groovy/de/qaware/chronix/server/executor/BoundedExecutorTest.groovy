@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.server.executor
+
+import org.apache.solr.common.util.NamedList
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.FutureTask
+import java.util.concurrent.TimeUnit
+
+/**
+ * Unit test for the bounded executor
+ * @author f.lautenschlager
+ */
+class BoundedExecutorTest extends Specification {
+
+    def "test the request thread runs the tasks if the queue is full"() {
+        given:
+        def executor = BoundedExecutor.of("test", 1, 1, 4)
+        def blocker = new CountDownLatch(1)
+        def started = new CountDownLatch(1)
+        def tasks = (1..3).collect { i ->
+            new FutureTask<Thread>({
+                if (i == 1) {
+                    started.countDown()
+                    blocker.await(10, TimeUnit.SECONDS)
+                }
+                Thread.currentThread()
+            })
+        }
+
+        when:
+        executor.execute(tasks[0])
+        started.await(10, TimeUnit.SECONDS)
+        executor.execute(tasks[1])
+        executor.execute(tasks[2])
+        executor.runIfQueued(tasks[1])
+        blocker.countDown()
+
+        then:
+        executor.await(tasks[0]).name == "chronix-test-1"
+        executor.await(tasks[1]) == Thread.currentThread()
+        executor.await(tasks[2]) == Thread.currentThread()
+        executor.getCallerRuns() == 2
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "test cancel removes the queued tasks"() {
+        given:
+        def executor = BoundedExecutor.of("test", 1, 16, 4)
+        def blocker = new CountDownLatch(1)
+        def started = new CountDownLatch(1)
+        def running = new FutureTask<Void>({
+            started.countDown()
+            blocker.await(10, TimeUnit.SECONDS)
+        }, null)
+        def queued = new FutureTask<Void>({}, null)
+
+        when:
+        executor.execute(running)
+        executor.execute(queued)
+        started.await(10, TimeUnit.SECONDS)
+        executor.cancel([queued])
+
+        then:
+        queued.isCancelled()
+        executor.getQueueSize() == 0
+
+        cleanup:
+        blocker.countDown()
+        executor.shutdown()
+    }
+
+    def "test await passes the exception of the task"() {
+        given:
+        def executor = BoundedExecutor.of("test", 1, 16, 4)
+        def task = new FutureTask<Void>({ throw new IllegalArgumentException("bad task") })
+
+        when:
+        executor.execute(task)
+        executor.await(task)
+
+        then:
+        def exception = thrown(IllegalArgumentException)
+        exception.message == "bad task"
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "test configuration"() {
+        given:
+        def args = new NamedList<Object>()
+        args.add(BoundedExecutor.THREADS, 4)
+
+        when:
+        def executor = BoundedExecutor.of("test", args, { threads -> threads.intdiv(2) })
+
+        then:
+        !executor.isSequential()
+        executor.getParallelism() == 2
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "test sequential executor"() {
+        when:
+        def executor = BoundedExecutor.sequential("test")
+
+        then:
+        executor.isSequential()
+        executor.getParallelism() == 1
+        executor.getPoolSize() == 0
+    }
+
+    def "test invalid configuration"() {
+        when:
+        BoundedExecutor.of("test", 1, 0, 1)
+
+        then:
+        thrown IllegalArgumentException
+    }
+}
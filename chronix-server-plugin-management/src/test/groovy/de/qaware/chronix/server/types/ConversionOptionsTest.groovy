@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.server.types
+
+import de.qaware.chronix.server.functions.ChronixAggregation
+import spock.lang.Specification
+
+/**
+ * Unit test for the conversion options
+ * @author f.lautenschlager
+ */
+class ConversionOptionsTest extends Specification {
+
+    def "test conversion of all records"() {
+        when:
+        def options = ConversionOptions.of(false, ["host"] as Set)
+
+        then:
+        !options.isRawDataRequested()
+        options.getAttributes() == ["host"] as Set
+        !options.isSummarize()
+        options.getAggregations().isEmpty()
+    }
+
+    def "test summarized conversion"() {
+        given:
+        def aggregations = [Mock(ChronixAggregation)] as Set<ChronixAggregation>
+
+        when:
+        def options = ConversionOptions.summarize(null, aggregations)
+
+        then:
+        options.isRawDataRequested()
+        options.getAttributes() == null
+        options.isSummarize()
+        options.getAggregations() == aggregations
+    }
+}
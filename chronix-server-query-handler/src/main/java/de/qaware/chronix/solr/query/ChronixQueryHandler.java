@@ -21,6 +21,7 @@ import de.qaware.chronix.cql.CQLJoinFunction;
 import de.qaware.chronix.solr.query.analysis.AnalysisHandler;
 import de.qaware.chronix.solr.query.analysis.providers.SolrDocListProvider;
 import de.qaware.chronix.solr.query.date.DateQueryParser;
+import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.common.StringUtils;
 import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.ModifiableSolrParams;
@@ -30,6 +31,7 @@ import org.apache.solr.handler.RequestHandlerBase;
 import org.apache.solr.handler.component.SearchHandler;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.search.SolrCache;
 import org.apache.solr.util.plugin.PluginInfoInitialized;
 import org.apache.solr.util.plugin.SolrCoreAware;
 import org.slf4j.Logger;
@@ -37,6 +39,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -51,6 +54,12 @@ public class ChronixQueryHandler extends RequestHandlerBase implements SolrCoreA
 
     private static final Set<String> REQUIRED_FIELDS = new HashSet<>();
 
+    /**
+     * The init arg with the time to live of cached results in milliseconds
+     */
+    private static final String RESULT_CACHE_TIME_TO_LIVE = "resultCacheTimeToLive";
+    private static final long DEFAULT_RESULT_CACHE_TIME_TO_LIVE = 60_000;
+
     static {
         REQUIRED_FIELDS.add(Schema.DATA);
         REQUIRED_FIELDS.add(Schema.START);
@@ -71,11 +80,19 @@ public class ChronixQueryHandler extends RequestHandlerBase implements SolrCoreA
      * The date range parser
      */
     private final DateQueryParser dateRangeParser = new DateQueryParser(new String[]{ChronixQueryParams.DATE_START_FIELD, ChronixQueryParams.DATE_END_FIELD});
+    /**
+     * The time to live of cached analysis results in milliseconds
+     */
+    private long resultCacheTimeToLive = DEFAULT_RESULT_CACHE_TIME_TO_LIVE;
 
     @Override
     public void init(PluginInfo info) {
         searchHandler.init(info);
         analysisHandler.init(info);
+
+        if (info.initArgs != null && info.initArgs.get(RESULT_CACHE_TIME_TO_LIVE) != null) {
+            resultCacheTimeToLive = Long.parseLong(String.valueOf(info.initArgs.get(RESULT_CACHE_TIME_TO_LIVE)));
+        }
     }
 
     @Override
@@ -106,10 +123,11 @@ public class ChronixQueryHandler extends RequestHandlerBase implements SolrCoreA
         final String chronixJoin = modifiableSolrParams.get(ChronixQueryParams.CHRONIX_JOIN);
 
 
-        //if we have an function query or someone wants the data as json or a join query
-        if (arrayIsNotEmpty(chronixFunctions) || contains(ChronixQueryParams.DATA_AS_JSON, fields) || !StringUtils.isEmpty(chronixJoin)) {
+        //if we have an function query or someone wants the data as json or chunks or a join query
+        if (arrayIsNotEmpty(chronixFunctions) || contains(ChronixQueryParams.DATA_AS_JSON, fields)
+                || contains(ChronixQueryParams.DATA_AS_CHUNKS, fields) || !StringUtils.isEmpty(chronixJoin)) {
             LOGGER.debug("Request is an analysis request.");
-            analysisHandler.handleRequestBody(req, rsp);
+            handleAnalysisRequest(req, rsp);
         } else {
             //let the default search handler do its work
             LOGGER.debug("Request is a default request");
@@ -121,6 +139,40 @@ public class ChronixQueryHandler extends RequestHandlerBase implements SolrCoreA
         rsp.getResponseHeader().add(ChronixQueryParams.QUERY_END_LONG, queryEnd);
     }
 
+    /**
+     * Answers the analysis request from the result cache of the searcher or
+     * delegates to the analysis handler and caches its result.
+     *
+     * @param req the solr query request with the evaluated date range
+     * @param rsp the solr query response
+     * @throws Exception if bad things happen
+     */
+    @SuppressWarnings("PMD.SignatureDeclareThrowsException")
+    private void handleAnalysisRequest(SolrQueryRequest req, SolrQueryResponse rsp) throws Exception {
+        final SolrCache<List<String>, ResultCache.Entry> cache = ResultCache.of(req.getSearcher());
+        if (cache == null) {
+            analysisHandler.handleRequestBody(req, rsp);
+            return;
+        }
+
+        final List<String> key = ResultCache.key(req.getParams());
+        final ResultCache.Entry cached = cache.get(key);
+        if (cached != null && !cached.isExpired(System.currentTimeMillis(), resultCacheTimeToLive)) {
+            LOGGER.debug("Result of request is cached.");
+            rsp.add("response", cached.getResult());
+            return;
+        }
+
+        final long created = System.currentTimeMillis();
+        analysisHandler.handleRequestBody(req, rsp);
+
+        final Object result = rsp.getException() == null && rsp.getValues() != null ? rsp.getValues().get("response") : null;
+        if (result instanceof SolrDocumentList && ResultCache.isCacheable((SolrDocumentList) result)) {
+            //replaces an expired entry of the request
+            cache.put(key, new ResultCache.Entry((SolrDocumentList) result, created));
+        }
+    }
+
     private boolean arrayIsNotEmpty(String[] array) {
 
         if (array == null) {
@@ -177,6 +229,11 @@ public class ChronixQueryHandler extends RequestHandlerBase implements SolrCoreA
                 resultingFields.add(ChronixQueryParams.DATA_AS_JSON);
             }
 
+            //same for the data as chunks (fl=dataAsChunks)
+            if (fl.contains(ChronixQueryParams.DATA_AS_CHUNKS)) {
+                resultingFields.add(ChronixQueryParams.DATA_AS_CHUNKS);
+            }
+
             //remove fields that are marked with minus sign '-'
             for (String field : fields) {
                 //we only remove the fields. We have already added all fields
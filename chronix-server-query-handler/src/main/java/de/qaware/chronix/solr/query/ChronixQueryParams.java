@@ -26,6 +26,19 @@ public final class ChronixQueryParams {
 
     public static final String CHRONIX_JOIN = "cj";
 
+    /**
+     * Enables the streaming execution of analysis requests.
+     * The chunks are read sorted by the join key and the start and every time series
+     * is analyzed before the next one is loaded. Default is false.
+     */
+    public static final String CHRONIX_STREAMING = "cs";
+
+    /**
+     * Removes the points with the same timestamp and value from the joined time series,
+     * e.g. of records that were ingested twice. Default is false.
+     */
+    public static final String REMOVE_DUPLICATES = "removeDuplicates";
+
     /**
      * The function: aggregation or analysis
      */
@@ -70,6 +83,11 @@ public final class ChronixQueryParams {
 
     public static final String DATA_AS_JSON = "dataAsJson";
 
+    /**
+     * Returns the data as a list of chunks (start, end, data) instead of a single blob
+     */
+    public static final String DATA_AS_CHUNKS = "dataAsChunks";
+
     private ChronixQueryParams() {
         //avoid instances
     }
@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.query;
+
+import de.qaware.chronix.Schema;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.search.SolrCache;
+import org.apache.solr.search.SolrIndexSearcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Access to the searcher scoped cache of analysis results.
+ * <p>
+ * The cache is a user defined solr cache named {@value #NAME} in the solrconfig.xml, e.g.
+ * <pre>
+ * &lt;cache name="chronixResultCache" class="solr.LRUCache" size="256" initialSize="64" maxRamMB="64" maxIdleTime="60" autowarmCount="0"/&gt;
+ * </pre>
+ * The cache has no regenerator, hence every new searcher starts with an empty cache
+ * and results of an old index state are never returned.
+ * Results that carry the points (data, dataAsJson or dataAsChunks) are not cached, the other entries know their size.
+ * The size is limited by the cache and the age of the entries by the time to live of the query handler.
+ * Expired entries are replaced by the next result of their request and evicted by the cache after the idle time.
+ *
+ * @author f.lautenschlager
+ */
+public final class ResultCache {
+
+    /**
+     * The name of the cache in the solrconfig.xml
+     */
+    public static final String NAME = "chronixResultCache";
+
+    /**
+     * Params that only affect the response writer and not the result
+     */
+    private static final Set<String> IGNORED_PARAMS = new HashSet<>(Arrays.asList(
+            CommonParams.WT, "indent", CommonParams.HEADER_ECHO_PARAMS, "_"));
+
+    /**
+     * Fields that carry the points of a time series
+     */
+    private static final Set<String> DATA_FIELDS = new HashSet<>(Arrays.asList(
+            Schema.DATA, ChronixQueryParams.DATA_AS_JSON, ChronixQueryParams.DATA_AS_CHUNKS));
+
+    private ResultCache() {
+        //Avoid instances
+    }
+
+    /**
+     * @param searcher the current searcher, can be null
+     * @return the result cache of the searcher or null if it is not configured
+     */
+    @SuppressWarnings("unchecked")
+    public static SolrCache<List<String>, Entry> of(SolrIndexSearcher searcher) {
+        if (searcher == null) {
+            return null;
+        }
+        return (SolrCache<List<String>, Entry>) searcher.getCache(NAME);
+    }
+
+    /**
+     * Builds the key of a request.
+     * The params have to contain the replaced query, the resolved query start and end,
+     * the chronix functions and the join fields.
+     * The params are sorted by name, the values of a param keep their order.
+     *
+     * @param params the params of the request after the date range evaluation
+     * @return the key of the request
+     */
+    public static List<String> key(SolrParams params) {
+        Set<String> names = new TreeSet<>();
+        Iterator<String> parameterNames = params.getParameterNamesIterator();
+        while (parameterNames.hasNext()) {
+            names.add(parameterNames.next());
+        }
+        names.removeAll(IGNORED_PARAMS);
+
+        List<String> key = new ArrayList<>();
+        for (String name : names) {
+            String[] values = params.getParams(name);
+            if (values == null) {
+                continue;
+            }
+            key.add(name);
+            key.add(String.valueOf(values.length));
+            for (String value : values) {
+                key.add(value == null ? null : value.trim());
+            }
+        }
+        return Collections.unmodifiableList(key);
+    }
+
+    /**
+     * @param result the analysis result
+     * @return false if the result carries the points of the time series, its size is not bounded
+     */
+    public static boolean isCacheable(SolrDocumentList result) {
+        for (SolrDocument doc : result) {
+            for (String field : DATA_FIELDS) {
+                if (doc.containsKey(field)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A cached result with its creation time
+     */
+    public static final class Entry implements Accountable {
+
+        private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(Entry.class);
+        private static final long BOXED_RAM_BYTES_USED = RamUsageEstimator.alignObjectSize(RamUsageEstimator.NUM_BYTES_OBJECT_HEADER + Long.BYTES);
+
+        private final SolrDocumentList result;
+        private final long created;
+        private final long ramBytesUsed;
+
+        /**
+         * @param result  the analysis result, the entry keeps a copy
+         * @param created the creation time in milliseconds
+         */
+        public Entry(SolrDocumentList result, long created) {
+            this.result = copy(result);
+            this.created = created;
+            this.ramBytesUsed = BASE_RAM_BYTES_USED + ramBytesUsed(this.result);
+        }
+
+        /**
+         * @return a copy of the analysis result, concurrent responses do not share it
+         */
+        public SolrDocumentList getResult() {
+            return copy(result);
+        }
+
+        @Override
+        public long ramBytesUsed() {
+            return ramBytesUsed;
+        }
+
+        /**
+         * @param now        the current time in milliseconds
+         * @param timeToLive the time to live in milliseconds
+         * @return true if the entry is older than the time to live
+         */
+        public boolean isExpired(long now, long timeToLive) {
+            return now - created > timeToLive;
+        }
+
+        private static SolrDocumentList copy(SolrDocumentList result) {
+            SolrDocumentList copy = new SolrDocumentList();
+            copy.setNumFound(result.getNumFound());
+            copy.setStart(result.getStart());
+            copy.setMaxScore(result.getMaxScore());
+            for (SolrDocument doc : result) {
+                SolrDocument docCopy = new SolrDocument();
+                docCopy.putAll(doc);
+                copy.add(docCopy);
+            }
+            return copy;
+        }
+
+        private static long ramBytesUsed(SolrDocumentList result) {
+            long size = RamUsageEstimator.shallowSizeOfInstance(SolrDocumentList.class);
+            for (SolrDocument doc : result) {
+                size += RamUsageEstimator.shallowSizeOfInstance(SolrDocument.class);
+                for (Map.Entry<String, Object> field : doc.entrySet()) {
+                    //the entry of the field map
+                    size += 4L * RamUsageEstimator.NUM_BYTES_OBJECT_REF + RamUsageEstimator.NUM_BYTES_OBJECT_HEADER;
+                    size += ramBytesUsed(field.getKey()) + ramBytesUsed(field.getValue());
+                }
+            }
+            return size;
+        }
+
+        /**
+         * Estimates the size of a value of a result: strings, numbers, dates, arrays and collections of them
+         */
+        private static long ramBytesUsed(Object value) {
+            if (value == null) {
+                return 0;
+            }
+            if (value instanceof CharSequence) {
+                return RamUsageEstimator.shallowSizeOfInstance(String.class)
+                        + RamUsageEstimator.alignObjectSize(RamUsageEstimator.NUM_BYTES_ARRAY_HEADER + 2L * ((CharSequence) value).length());
+            }
+            if (value instanceof Number || value instanceof Boolean || value instanceof Date) {
+                return BOXED_RAM_BYTES_USED;
+            }
+            if (value instanceof double[]) {
+                return RamUsageEstimator.sizeOf((double[]) value);
+            }
+            if (value instanceof long[]) {
+                return RamUsageEstimator.sizeOf((long[]) value);
+            }
+            if (value instanceof Object[]) {
+                Object[] array = (Object[]) value;
+                long size = RamUsageEstimator.alignObjectSize(RamUsageEstimator.NUM_BYTES_ARRAY_HEADER + (long) RamUsageEstimator.NUM_BYTES_OBJECT_REF * array.length);
+                for (Object element : array) {
+                    size += ramBytesUsed(element);
+                }
+                return size;
+            }
+            if (value instanceof Collection) {
+                long size = RamUsageEstimator.NUM_BYTES_OBJECT_HEADER + 2L * RamUsageEstimator.NUM_BYTES_OBJECT_REF;
+                for (Object element : (Collection<?>) value) {
+                    size += RamUsageEstimator.NUM_BYTES_OBJECT_REF + ramBytesUsed(element);
+                }
+                return size;
+            }
+            if (value instanceof Map) {
+                long size = RamUsageEstimator.NUM_BYTES_OBJECT_HEADER + 2L * RamUsageEstimator.NUM_BYTES_OBJECT_REF;
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                    size += 4L * RamUsageEstimator.NUM_BYTES_OBJECT_REF + ramBytesUsed(entry.getKey()) + ramBytesUsed(entry.getValue());
+                }
+                return size;
+            }
+            //an unknown object of a function result
+            return RamUsageEstimator.shallowSizeOf(value);
+        }
+    }
+}
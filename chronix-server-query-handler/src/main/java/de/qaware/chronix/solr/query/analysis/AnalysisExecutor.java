@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.query.analysis;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import de.qaware.chronix.server.executor.BoundedExecutor;
+import org.apache.solr.common.util.NamedList;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * The bounded thread pool of the analysis handler.
+ * <p>
+ * A single request uses at most {@link #PARALLELISM_PER_REQUEST} threads including the request thread.
+ * Hence one heavy request cannot occupy the whole pool. Tasks that do not fit into the queue
+ * and tasks that are still queued when the request thread is done with its own work are run by the request thread,
+ * see {@link BoundedExecutor}.
+ * The pool is configured with the init args of the query handler, e.g.
+ * <pre>
+ * &lt;lst name="analysisExecutor"&gt;
+ *     &lt;int name="threads"&gt;8&lt;/int&gt;
+ *     &lt;int name="queueSize"&gt;1024&lt;/int&gt;
+ *     &lt;int name="parallelismPerRequest"&gt;4&lt;/int&gt;
+ * &lt;/lst&gt;
+ * </pre>
+ *
+ * @author f.lautenschlager
+ */
+public final class AnalysisExecutor {
+
+    /**
+     * The name of the init args
+     */
+    public static final String CONFIG = "analysisExecutor";
+    /**
+     * The number of threads of the pool. Default is the number of processors.
+     */
+    public static final String THREADS = BoundedExecutor.THREADS;
+    /**
+     * The maximum number of queued tasks. Default is 1024.
+     */
+    public static final String QUEUE_SIZE = BoundedExecutor.QUEUE_SIZE;
+    /**
+     * The maximum number of threads that are used by a single request. Default is half of the threads.
+     */
+    public static final String PARALLELISM_PER_REQUEST = BoundedExecutor.PARALLELISM_PER_REQUEST;
+
+    private static final String NAME = "analysis";
+
+    private final BoundedExecutor executor;
+
+    private AnalysisExecutor(BoundedExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Creates a bounded executor
+     *
+     * @param threads               the number of threads of the pool
+     * @param queueSize             the maximum number of queued tasks
+     * @param parallelismPerRequest the maximum number of threads of a single request
+     * @return the analysis executor
+     */
+    public static AnalysisExecutor of(int threads, int queueSize, int parallelismPerRequest) {
+        return new AnalysisExecutor(BoundedExecutor.of(NAME, threads, queueSize, parallelismPerRequest));
+    }
+
+    /**
+     * Creates the executor from the init args of the handler.
+     * Missing values are set to their defaults.
+     *
+     * @param args the init args named {@value #CONFIG}, can be null
+     * @return the analysis executor
+     */
+    public static AnalysisExecutor of(NamedList<?> args) {
+        return new AnalysisExecutor(BoundedExecutor.of(NAME, args, threads -> Math.max(1, threads / 2)));
+    }
+
+    /**
+     * @return an executor that runs everything in the request thread
+     */
+    public static AnalysisExecutor sequential() {
+        return new AnalysisExecutor(BoundedExecutor.sequential(NAME));
+    }
+
+    /**
+     * Applies the action to all items.
+     * The items are split into at most parallelism per request parts. The request thread processes the first part
+     * and the pool the others. The method returns when all items are processed.
+     *
+     * @param items  the items
+     * @param action the action that is applied on every item, it must be thread safe
+     * @param <T>    the type of the items
+     * @throws RuntimeException the first exception of the action
+     */
+    public <T> void forEach(Collection<T> items, Consumer<T> action) {
+        int parts = Math.min(executor.getParallelism(), items.size());
+        if (executor.isSequential() || parts <= 1) {
+            items.forEach(action);
+            return;
+        }
+
+        List<T> list = new ArrayList<>(items);
+        List<FutureTask<Void>> tasks = new ArrayList<>(parts - 1);
+        AtomicBoolean failed = new AtomicBoolean();
+        try {
+            for (int part = 1; part < parts; part++) {
+                FutureTask<Void> task = new FutureTask<>(part(list, part, parts, action, failed), null);
+                tasks.add(task);
+                executor.execute(task);
+            }
+
+            //the request thread does the first part
+            part(list, 0, parts, action, failed).run();
+
+            for (FutureTask<Void> task : tasks) {
+                //do not wait for tasks that are still queued
+                executor.runIfQueued(task);
+                executor.await(task);
+            }
+        } catch (RuntimeException | Error e) {
+            //the request failed, its other tasks must not occupy the pool
+            failed.set(true);
+            executor.cancel(tasks);
+            throw e;
+        }
+    }
+
+    /**
+     * @return a part of the items, it stops at the next item if another part failed
+     */
+    private static <T> Runnable part(List<T> list, int part, int parts, Consumer<T> action, AtomicBoolean failed) {
+        return () -> {
+            for (int i = part; i < list.size() && !failed.get(); i += parts) {
+                action.accept(list.get(i));
+            }
+        };
+    }
+
+    /**
+     * Registers the gauges of the pool
+     *
+     * @param registry the metric registry
+     * @param prefix   the prefix of the metric names
+     */
+    public void registerMetrics(MetricRegistry registry, String prefix) {
+        if (executor.isSequential()) {
+            return;
+        }
+        register(registry, MetricRegistry.name(prefix, "activeThreads"), executor::getActiveThreads);
+        register(registry, MetricRegistry.name(prefix, "poolSize"), executor::getPoolSize);
+        register(registry, MetricRegistry.name(prefix, "queueSize"), executor::getQueueSize);
+        register(registry, MetricRegistry.name(prefix, "completedTasks"), executor::getCompletedTasks);
+        register(registry, MetricRegistry.name(prefix, "callerRuns"), executor::getCallerRuns);
+    }
+
+    private static void register(MetricRegistry registry, String name, Gauge<?> gauge) {
+        //a reloaded core registers its gauges again
+        registry.remove(name);
+        registry.register(name, gauge);
+    }
+
+    /**
+     * @return the number of tasks that were run by the request threads
+     */
+    public long getCallerRuns() {
+        return executor.getCallerRuns();
+    }
+
+    /**
+     * Stops the threads of the pool
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
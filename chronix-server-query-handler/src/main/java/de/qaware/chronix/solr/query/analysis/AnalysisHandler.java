@@ -31,20 +31,29 @@ import de.qaware.chronix.server.functions.ChronixTransformation;
 import de.qaware.chronix.server.functions.FunctionCtx;
 import de.qaware.chronix.server.functions.FunctionCtxEntry;
 import de.qaware.chronix.server.functions.plugin.ChronixFunctionPlugin;
+import de.qaware.chronix.server.types.ChronixChunk;
 import de.qaware.chronix.server.types.ChronixTimeSeries;
 import de.qaware.chronix.server.types.ChronixType;
 import de.qaware.chronix.server.types.ChronixTypePlugin;
 import de.qaware.chronix.server.types.ChronixTypes;
+import de.qaware.chronix.server.types.ConversionOptions;
 import de.qaware.chronix.solr.query.ChronixQueryParams;
+import org.apache.lucene.document.Document;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.CloseHook;
+import org.apache.solr.core.PluginInfo;
+import org.apache.solr.core.SolrCore;
 import org.apache.solr.handler.component.SearchHandler;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.response.SolrQueryResponse;
 import org.apache.solr.schema.SchemaField;
+import org.apache.solr.search.DocIterator;
 import org.apache.solr.search.DocList;
+import org.apache.solr.search.SolrIndexSearcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,10 +63,13 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.function.Function;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Analysis search handler
@@ -68,7 +80,13 @@ public class AnalysisHandler extends SearchHandler {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AnalysisHandler.class);
     private static final String DATA_WITH_LEADING_AND_TRAILING_COMMA = "," + Schema.DATA + ",";
+    private static final String VERSION = "_version_";
     private final DocListProvider docListProvider;
+    /**
+     * Converts, analyzes and serializes the time series. Runs everything in the request thread until it is configured.
+     */
+    private volatile AnalysisExecutor executor = AnalysisExecutor.sequential();
+    private String name = "analysis";
 
     private static final Injector INJECTOR = Guice.createInjector(Stage.PRODUCTION,
             ChronixPluginLoader.of(ChronixTypePlugin.class),
@@ -86,6 +104,34 @@ public class AnalysisHandler extends SearchHandler {
         this.docListProvider = docListProvider;
     }
 
+    @Override
+    public void init(PluginInfo info) {
+        super.init(info);
+        if (info.name != null) {
+            name = info.name;
+        }
+        Object config = info.initArgs == null ? null : info.initArgs.get(AnalysisExecutor.CONFIG);
+        executor = AnalysisExecutor.of(config instanceof NamedList ? (NamedList<?>) config : null);
+    }
+
+    @Override
+    public void inform(SolrCore core) {
+        super.inform(core);
+        final AnalysisExecutor analysisExecutor = executor;
+        analysisExecutor.registerMetrics(core.getMetricRegistry(), "QUERY." + name + "." + AnalysisExecutor.CONFIG);
+        core.addCloseHook(new CloseHook() {
+            @Override
+            public void preClose(SolrCore core) {
+                //nothing to do
+            }
+
+            @Override
+            public void postClose(SolrCore core) {
+                analysisExecutor.shutdown();
+            }
+        });
+    }
+
     private static boolean hasMatchingAnalyses(FunctionCtxEntry functionCtx) {
         return functionCtx != null && functionCtx.sizeOfAnalyses() > 0;
     }
@@ -149,46 +195,8 @@ public class AnalysisHandler extends SearchHandler {
         }
     }
 
-    /**
-     * Collects the given document and groups them using the join function result
-     *
-     * @param docs         the found documents that should be grouped by the join function
-     * @param joinFunction the join function
-     * @return the grouped documents
-     */
-    private static Map<ChronixType, Map<String, List<SolrDocument>>> collect(SolrDocumentList docs, Function<SolrDocument, String> joinFunction) {
-        HashMap<ChronixType, Map<String, List<SolrDocument>>> collectedDocs = new HashMap<>();
-
-        for (SolrDocument doc : docs) {
-            ChronixType type = type(doc);
-
-            if (type == null) {
-                LOGGER.warn("Type is null.");
-                continue;
-            }
-
-            //Initialize the map
-            if (!collectedDocs.containsKey(type)) {
-                collectedDocs.put(type, new HashMap<>());
-            }
-
-            //Calculate the join key.
-            String key = joinFunction.apply(doc);
-
-            //Create groups of records.
-            if (!collectedDocs.get(type).containsKey(key)) {
-                collectedDocs.get(type).put(key, new ArrayList<>());
-            }
-
-            collectedDocs.get(type).get(key).add(doc);
-        }
-
-
-        return collectedDocs;
-    }
-
-    private static ChronixType type(SolrDocument doc) {
-        return TYPES.getTypeForName((String) doc.get("type"));
+    private static ChronixType type(Document doc) {
+        return TYPES.getTypeForName(doc.get(Schema.TYPE));
     }
 
     /**
@@ -217,19 +225,30 @@ public class AnalysisHandler extends SearchHandler {
         final String chronixJoin = req.getParams().get(ChronixQueryParams.CHRONIX_JOIN);
         final CQLJoinFunction key = cql.parseCJ(chronixJoin);
 
+        //Read the time series one after another, if the streaming execution is requested
+        if (req.getParams().getBool(ChronixQueryParams.CHRONIX_STREAMING, false)) {
+            LOGGER.debug("Using the streaming execution");
+            rsp.add("response", analyzeStreaming(req, cql, key, rows == 0));
+            return;
+        }
+
+        final String chronixFunctions = req.getParams().get(ChronixQueryParams.CHRONIX_FUNCTION);
+        final CQLCFResult result = cql.parseCF(chronixFunctions);
+
         //Do a query and collect them on the join function
-        final Map<ChronixType, Map<String, List<SolrDocument>>> collectedDocs = collectDocuments(req, key);
+        final Map<ChronixType, Map<String, List<Document>>> collectedDocs = collectDocuments(req, key, result);
 
         //If no rows should returned, we only return the num found
         if (rows == 0) {
             results.setNumFound(collectedDocs.keySet().size());
         } else {
             //Otherwise return the analyzed time series
-
-            final String chronixFunctions = req.getParams().get(ChronixQueryParams.CHRONIX_FUNCTION);
-            final CQLCFResult result = cql.parseCF(chronixFunctions);
-
-            final List<SolrDocument> resultDocuments = analyze(req, result, collectedDocs);
+            final SolrIndexSearcher searcher = req.getSearcher();
+            final Set<String> attributes = getReturnedAttributes(req.getParams().get(CommonParams.FL), key, result);
+            final List<SolrDocument> resultDocuments = analyze(req, result, collectedDocs,
+                    (type, joinKey, records, queryStart, queryEnd, decompress, summarize) ->
+                            toTimeSeries(type, joinKey, records, queryStart, queryEnd, decompress, summarize, result.getChronixFunctionsForType(type), attributes, searcher),
+                    (type, joinKey, records, queryStart, queryEnd) -> type.chunks(joinKey, records, queryStart, queryEnd, searcher));
             results.addAll(resultDocuments);
             //As we have to analyze all docs in the query at once,
             // the number of documents is also the number of documents found
@@ -251,6 +270,24 @@ public class AnalysisHandler extends SearchHandler {
      * @throws ParseException           when the start / end within the sub query could not be parsed
      */
     public List<SolrDocument> analyze(SolrQueryRequest req, CQLCFResult functions, Map<ChronixType, Map<String, List<SolrDocument>>> collectedDocs) throws IOException, IllegalStateException, ParseException {
+        return analyze(req, functions, collectedDocs,
+                (type, joinKey, records, queryStart, queryEnd, decompress, summarize) -> type.convert(joinKey, records, queryStart, queryEnd, decompress),
+                null);
+    }
+
+    /**
+     * Analyzes the given request using the chronix functions.
+     *
+     * @param req           the solr request with all information
+     * @param functions     the chronix analysis that is applied
+     * @param collectedDocs the prior collected documents of the query
+     * @param converter     the converter of the documents into a time series
+     * @param chunker       the converter of the documents into the returned chunks, null if the chunks are not supported
+     * @param <D>           the type of the documents
+     * @return a list containing the analyzed time series as solr documents
+     */
+    private <D> List<SolrDocument> analyze(SolrQueryRequest req, CQLCFResult functions, Map<ChronixType, Map<String, List<D>>> collectedDocs,
+                                           RecordConverter<D> converter, ChunkConverter<D> chunker) {
 
         final SolrParams params = req.getParams();
         final long queryStart = Long.parseLong(params.get(ChronixQueryParams.QUERY_START_LONG));
@@ -260,9 +297,11 @@ public class AnalysisHandler extends SearchHandler {
         final String fields = params.get(CommonParams.FL, Schema.DATA);
         final boolean dataShouldReturned = fields.contains(DATA_WITH_LEADING_AND_TRAILING_COMMA);
         final boolean dataAsJson = fields.contains(ChronixQueryParams.DATA_AS_JSON);
+        final boolean dataAsChunks = !dataAsJson && fields.contains(ChronixQueryParams.DATA_AS_CHUNKS);
 
         //the data is needed if there are functions, or the data should be returned or the data is requested as json
         boolean decompressDataAsItIsRequested = (!functions.isEmpty() || dataAsJson || dataShouldReturned);
+        final boolean removeDuplicates = params.getBool(ChronixQueryParams.REMOVE_DUPLICATES, false);
 
         final List<SolrDocument> resultDocuments = Collections.synchronizedList(new ArrayList<>(collectedDocs.size()));
 
@@ -271,78 +310,320 @@ public class AnalysisHandler extends SearchHandler {
         for (ChronixType type : collectedDocs.keySet()) {
 
             List<ChronixTimeSeries> timeSeriesList = Collections.synchronizedList(new ArrayList<>(collectedDocs.get(type).size()));
+            final ChronixFunctions typeFunctions = functions.getChronixFunctionsForType(type);
+            //the stored chunks and the chunk summaries hold the duplicates
+            final boolean passThrough = chunker != null && !removeDuplicates && returnsStoredChunks(typeFunctions, dataShouldReturned, dataAsChunks);
+            final boolean summarize = !removeDuplicates && canBeSummarized(typeFunctions, dataShouldReturned && !passThrough, dataAsJson);
+            //the stored chunks are returned as they are, the points are only needed for the functions
+            final boolean decompress = passThrough ? typeFunctions != null : decompressDataAsItIsRequested;
+            final Map<String, List<ChronixChunk>> chunks = new ConcurrentHashMap<>();
 
             //do this in parallel as it contains deserialization
-            collectedDocs.get(type).entrySet().parallelStream().forEach(docs -> {
+            executor.forEach(collectedDocs.get(type).entrySet(), docs -> {
+                if (passThrough) {
+                    chunks.put(docs.getKey(), chunker.chunks(type, docs.getKey(), docs.getValue(), queryStart, queryEnd));
+                }
                 //convert the documents into a time series
-                timeSeriesList.add(type.convert(
+                ChronixTimeSeries timeSeries = converter.convert(
+                        type,
                         docs.getKey(),
                         docs.getValue(),
                         queryStart, queryEnd,
-                        decompressDataAsItIsRequested));
+                        decompress,
+                        summarize);
+                if (removeDuplicates) {
+                    timeSeries.removeDuplicates();
+                }
+                timeSeriesList.add(timeSeries);
             });
 
             //clear the records the free them.
             collectedDocs.get(type).clear();
 
-            //validate the functions
-            ChronixFunctions typeFunctions = functions.getChronixFunctionsForType(type);
-            final FunctionCtx functionCtx = typeFunctions == null ? null : new FunctionCtx(
-                    typeFunctions.sizeOfAggregations(),
-                    typeFunctions.sizeOfAnalyses(),
-                    typeFunctions.sizeOfTransformations());
-
-            if (functionCtx != null) {
-                //do them sequentially
-                if (typeFunctions.containsTransformations()) {
-                    for (ChronixTransformation transformation : typeFunctions.getTransformations()) {
-                        transformation.execute(timeSeriesList, functionCtx);
-                    }
-                }
+            //validate and execute the functions
+            final FunctionCtx functionCtx = execute(type, functions.getChronixFunctionsForType(type), timeSeriesList);
 
-                //add all aggregations
-                List<ChronixFunction> aggregationsAndAnalyses = new ArrayList<>(typeFunctions.sizeOfAggregations() + typeFunctions.sizeOfAnalyses());
-                if (typeFunctions.containsAggregations()) {
-                    aggregationsAndAnalyses.addAll(typeFunctions.getAggregations());
-                }
+            //build the result (serialization) in parallel again.
+            executor.forEach(timeSeriesList, timeSeries ->
+                    resultDocuments.add(buildResult(timeSeries, functionCtx, dataShouldReturned, dataAsJson, dataAsChunks, chunks.get(timeSeries.getJoinKey())))
+            );
 
-                //add all analyses
-                if (typeFunctions.containsAnalyses()) {
-                    aggregationsAndAnalyses.addAll(typeFunctions.getAnalyses());
-                }
+        }
+        return resultDocuments;
+    }
+
+    /**
+     * Analyzes the request time series by time series.
+     * The chunks are read sorted by the join key and the start. Every time series is converted, transformed,
+     * aggregated and serialized before the chunks of the next time series are loaded. Hence the memory is bounded
+     * by the largest single time series instead of the whole result.
+     * <p>
+     * Note: The join fields must be sortable (single valued and indexed or with doc values).
+     *
+     * @param req       the solr query request
+     * @param cql       the chronix query language parser
+     * @param joinKey   the join function to group the chunks
+     * @param countOnly true if only the number of time series should be returned
+     * @return the analyzed time series as solr documents
+     * @throws IOException if bad things happen in querying the documents
+     */
+    private SolrDocumentList analyzeStreaming(SolrQueryRequest req, CQL cql, CQLJoinFunction joinKey, boolean countOnly) throws IOException {
+        final SolrParams params = req.getParams();
+        final long queryStart = Long.parseLong(params.get(ChronixQueryParams.QUERY_START_LONG));
+        final long queryEnd = Long.parseLong(params.get(ChronixQueryParams.QUERY_END_LONG));
+
+        final CQLCFResult functions = cql.parseCF(params.get(ChronixQueryParams.CHRONIX_FUNCTION));
+
+        //Check if the data field should be returned - default is true
+        final String fl = params.get(CommonParams.FL, Schema.DATA);
+        final boolean dataShouldReturned = fl.contains(DATA_WITH_LEADING_AND_TRAILING_COMMA);
+        final boolean dataAsJson = fl.contains(ChronixQueryParams.DATA_AS_JSON);
+        final boolean dataAsChunks = !dataAsJson && fl.contains(ChronixQueryParams.DATA_AS_CHUNKS);
+
+        //the data is needed if there are functions, or the data should be returned or the data is requested as json
+        final boolean decompressDataAsItIsRequested = !countOnly && (!functions.isEmpty() || dataAsJson || dataShouldReturned);
+        final boolean removeDuplicates = params.getBool(ChronixQueryParams.REMOVE_DUPLICATES, false);
+
+        //query the document ids sorted by the join key and the start
+        final String query = params.get(CommonParams.Q) + ";" + sortByJoinKeyAndStart(joinKey);
+        //counting the time series only needs the fields that separate them
+        final Set<String> fields = countOnly ? getKeyFields(joinKey) : getRequiredFields(req, joinKey, functions);
+        final Set<String> attributes = getReturnedAttributes(params.get(CommonParams.FL), joinKey, functions);
+        //all matching chunks are read, the ids of the doc list are bounded by the documents of the searcher
+        final DocList docList = docListProvider.doSimpleQuery(query, req, 0, Math.max(1, req.getSearcher().maxDoc()));
+
+        final SolrIndexSearcher searcher = req.getSearcher();
+        final SolrDocumentList results = new SolrDocumentList();
+        List<Document> records = new ArrayList<>();
+        String currentKey = null;
+        ChronixType currentType = null;
+        int amountOfTimeSeries = 0;
+
+        DocIterator docIterator = docList.iterator();
+        while (docIterator.hasNext()) {
+            Document doc = docListProvider.doc(docIterator.nextDoc(), req.getSearcher(), fields);
+            ChronixType type = type(doc);
+
+            if (type == null) {
+                LOGGER.warn("Type is null.");
+                continue;
+            }
+
+            String key = joinKey.apply(doc, req.getSchema());
 
-                //now, run them all parallel
-                if (!aggregationsAndAnalyses.isEmpty()) {
-                    aggregationsAndAnalyses.parallelStream().forEach(function -> function.execute(timeSeriesList, functionCtx));
+            //the chunks of the current time series are complete
+            if (!records.isEmpty() && !(type.equals(currentType) && key.equals(currentKey))) {
+                if (!countOnly) {
+                    results.add(analyze(currentType, currentKey, records, searcher, functions, attributes, queryStart, queryEnd, decompressDataAsItIsRequested, removeDuplicates, dataShouldReturned, dataAsJson, dataAsChunks));
                 }
+                amountOfTimeSeries++;
+                records = new ArrayList<>();
             }
 
-            //build the result (serialization) in parallel again.
-            timeSeriesList.parallelStream().forEach(timeSeries -> {
-                        //We return the time series if
-                        // 1) the data is explicit requested as json
-                        // 2) there are aggregations / transformations
-                        // 3) there are matching analyses
-                        //Here we have to build the document with the results of the analyses
-                        SolrDocument doc = solrDocumentWithOutTimeSeriesFunctionResults(dataShouldReturned, dataAsJson, timeSeries);
-
-                        if (functionCtx != null) {
-                            FunctionCtxEntry timeSeriesFunctionCtx = functionCtx.getContextFor(timeSeries.getJoinKey());
-                            if (hasTransformationsOrAggregations(timeSeriesFunctionCtx) || hasMatchingAnalyses(timeSeriesFunctionCtx)) {
-                                //Add the function results
-                                addAnalysesAndResults(timeSeriesFunctionCtx, doc);
-                            }
-                        }
-                        resultDocuments.add(doc);
-                    }
+            currentType = type;
+            currentKey = key;
+            records.add(doc);
+        }
 
-            );
+        //the last time series
+        if (!records.isEmpty()) {
+            if (!countOnly) {
+                results.add(analyze(currentType, currentKey, records, searcher, functions, attributes, queryStart, queryEnd, decompressDataAsItIsRequested, removeDuplicates, dataShouldReturned, dataAsJson, dataAsChunks));
+            }
+            amountOfTimeSeries++;
+        }
+
+        results.setNumFound(amountOfTimeSeries);
+        return results;
+    }
 
+    /**
+     * Converts the chunks of a single time series and applies the functions on it.
+     *
+     * @param type               the type of the time series
+     * @param joinKey            the join key of the time series
+     * @param records            the chunks of the time series
+     * @param searcher           the searcher of the request
+     * @param functions          the chronix functions of the query
+     * @param attributes         the returned attributes, null for all
+     * @param queryStart         the start of the query
+     * @param queryEnd           the end of the query
+     * @param decompress         true if the data should be decompressed
+     * @param removeDuplicates   true if the duplicated points are removed
+     * @param dataShouldReturned true if the data is returned
+     * @param dataAsJson         true if the data is returned as json
+     * @param dataAsChunks       true if the data is returned as chunks
+     * @return the analyzed time series as solr document
+     */
+    private SolrDocument analyze(ChronixType type, String joinKey, List<Document> records, SolrIndexSearcher searcher, CQLCFResult functions, Set<String> attributes,
+                                 long queryStart, long queryEnd, boolean decompress, boolean removeDuplicates, boolean dataShouldReturned, boolean dataAsJson, boolean dataAsChunks) {
+
+        ChronixFunctions typeFunctions = functions.getChronixFunctionsForType(type);
+        //the stored chunks and the chunk summaries hold the duplicates
+        boolean passThrough = !removeDuplicates && returnsStoredChunks(typeFunctions, dataShouldReturned, dataAsChunks);
+        boolean summarize = !removeDuplicates && canBeSummarized(typeFunctions, dataShouldReturned && !passThrough, dataAsJson);
+
+        List<ChronixChunk> chunks = passThrough ? type.chunks(joinKey, records, queryStart, queryEnd, searcher) : null;
+        ChronixTimeSeries timeSeries = toTimeSeries(type, joinKey, records, queryStart, queryEnd,
+                passThrough ? typeFunctions != null : decompress, summarize, typeFunctions, attributes, searcher);
+        if (removeDuplicates) {
+            timeSeries.removeDuplicates();
         }
-        return resultDocuments;
+        //free the records as early as possible
+        records.clear();
+
+        FunctionCtx functionCtx = execute(type, typeFunctions, Collections.singletonList(timeSeries));
+        return buildResult(timeSeries, functionCtx, dataShouldReturned, dataAsJson, dataAsChunks, chunks);
+    }
+
+    /**
+     * Converts the lucene documents of a time series.
+     *
+     * @param type          the type of the time series
+     * @param joinKey       the join key of the time series
+     * @param records       the chunks of the time series
+     * @param queryStart    the start of the query
+     * @param queryEnd      the end of the query
+     * @param decompress    true if the data should be decompressed
+     * @param summarize     true if the type should use the chunk summaries
+     * @param typeFunctions the functions of the type, can be null if the time series is not summarized
+     * @param attributes    the returned attributes, null for all
+     * @param searcher      the searcher of the request
+     * @return the time series
+     */
+    private static ChronixTimeSeries toTimeSeries(ChronixType type, String joinKey, List<Document> records, long queryStart, long queryEnd,
+                                                  boolean decompress, boolean summarize, ChronixFunctions typeFunctions, Set<String> attributes, SolrIndexSearcher searcher) {
+        ConversionOptions options = summarize
+                ? ConversionOptions.summarize(attributes, typeFunctions.getAggregations())
+                : ConversionOptions.of(decompress, attributes);
+        return type.convert(joinKey, records, queryStart, queryEnd, options, searcher);
+    }
+
+    /**
+     * Decomposable aggregations can be answered from the chunk summaries,
+     * if there are no other functions and the data is not returned.
+     *
+     * @param typeFunctions      the functions of the type, can be null
+     * @param dataShouldReturned true if the data is returned
+     * @param dataAsJson         true if the data is returned as json
+     * @return true if the time series can be summarized
+     */
+    private static boolean canBeSummarized(ChronixFunctions typeFunctions, boolean dataShouldReturned, boolean dataAsJson) {
+        return !dataShouldReturned && !dataAsJson && typeFunctions != null && typeFunctions.containsOnlyDecomposableAggregations();
+    }
+
+    /**
+     * The stored chunks are returned as they are, if they are requested and no transformation changes the points.
+     *
+     * @param typeFunctions      the functions of the type, can be null
+     * @param dataShouldReturned true if the data is returned
+     * @param dataAsChunks       true if the data is returned as chunks
+     * @return true if the stored chunks are returned
+     */
+    private static boolean returnsStoredChunks(ChronixFunctions typeFunctions, boolean dataShouldReturned, boolean dataAsChunks) {
+        return dataShouldReturned && dataAsChunks && (typeFunctions == null || !typeFunctions.containsTransformations());
     }
 
-    private SolrDocument solrDocumentWithOutTimeSeriesFunctionResults(boolean dataShouldReturned, boolean dataAsJson, ChronixTimeSeries timeSeries) {
+    /**
+     * Executes the given functions on the time series.
+     * The transformations are executed sequentially, afterwards the aggregations and analyses in parallel.
+     *
+     * @param type           the type of the time series, it can combine the aggregations and analyses
+     * @param typeFunctions  the functions of the type, can be null
+     * @param timeSeriesList the time series of the type
+     * @return the function context with the results or null if there are no functions
+     */
+    @SuppressWarnings("unchecked")
+    private FunctionCtx execute(ChronixType type, ChronixFunctions typeFunctions, List<ChronixTimeSeries> timeSeriesList) {
+        if (typeFunctions == null) {
+            return null;
+        }
+
+        final FunctionCtx functionCtx = new FunctionCtx(
+                typeFunctions.sizeOfAggregations(),
+                typeFunctions.sizeOfAnalyses(),
+                typeFunctions.sizeOfTransformations());
+
+        //do them sequentially
+        if (typeFunctions.containsTransformations()) {
+            for (ChronixTransformation transformation : typeFunctions.getTransformations()) {
+                transformation.execute(timeSeriesList, functionCtx);
+            }
+        }
+
+        //add all aggregations
+        List<ChronixFunction> aggregationsAndAnalyses = new ArrayList<>(typeFunctions.sizeOfAggregations() + typeFunctions.sizeOfAnalyses());
+        if (typeFunctions.containsAggregations()) {
+            aggregationsAndAnalyses.addAll(typeFunctions.getAggregations());
+        }
+
+        //add all analyses
+        if (typeFunctions.containsAnalyses()) {
+            aggregationsAndAnalyses.addAll(typeFunctions.getAnalyses());
+        }
+
+        //now, let the type combine them and run them all parallel
+        if (!aggregationsAndAnalyses.isEmpty()) {
+            List<ChronixFunction> fused = type.fuse(aggregationsAndAnalyses);
+            executor.forEach(fused, function -> function.execute(timeSeriesList, functionCtx));
+        }
+        return functionCtx;
+    }
+
+    /**
+     * Builds the result document of a time series.
+     * We return the time series if
+     * 1) the data is explicit requested as json
+     * 2) there are aggregations / transformations
+     * 3) there are matching analyses
+     *
+     * @param timeSeries         the time series
+     * @param functionCtx        the function context with the results, can be null
+     * @param dataShouldReturned true if the data is returned
+     * @param dataAsJson         true if the data is returned as json
+     * @param dataAsChunks       true if the data is returned as chunks
+     * @param chunks             the stored chunks of the time series, null if the points are returned
+     * @return the solr document with the function results
+     */
+    private SolrDocument buildResult(ChronixTimeSeries timeSeries, FunctionCtx functionCtx, boolean dataShouldReturned, boolean dataAsJson,
+                                     boolean dataAsChunks, List<ChronixChunk> chunks) {
+        //Here we have to build the document with the results of the analyses
+        SolrDocument doc = solrDocumentWithOutTimeSeriesFunctionResults(dataShouldReturned, dataAsJson, dataAsChunks, chunks, timeSeries);
+
+        if (functionCtx != null) {
+            FunctionCtxEntry timeSeriesFunctionCtx = functionCtx.getContextFor(timeSeries.getJoinKey());
+            if (hasTransformationsOrAggregations(timeSeriesFunctionCtx) || hasMatchingAnalyses(timeSeriesFunctionCtx)) {
+                //Add the function results
+                addAnalysesAndResults(timeSeriesFunctionCtx, doc);
+            }
+        }
+        return doc;
+    }
+
+    /**
+     * Builds the sort clause for the streaming execution.
+     * The chunks are sorted by the join fields, the type and the start.
+     *
+     * @param joinKey the join function
+     * @return the sort clause, e.g. name asc,type asc,start asc
+     */
+    private static String sortByJoinKeyAndStart(CQLJoinFunction joinKey) {
+        Set<String> sortFields = new LinkedHashSet<>();
+        for (String field : joinKey.involvedFields()) {
+            sortFields.add(field.trim());
+        }
+        sortFields.add(Schema.TYPE);
+        sortFields.add(Schema.START);
+
+        StringJoiner sort = new StringJoiner(",");
+        for (String field : sortFields) {
+            sort.add(field + " asc");
+        }
+        return sort.toString();
+    }
+
+    private SolrDocument solrDocumentWithOutTimeSeriesFunctionResults(boolean dataShouldReturned, boolean dataAsJson, boolean dataAsChunks,
+                                                                      List<ChronixChunk> chunks, ChronixTimeSeries timeSeries) {
         SolrDocument doc = new SolrDocument();
 
         //add the join key
@@ -356,17 +637,32 @@ public class AnalysisHandler extends SearchHandler {
         doc.addField(Schema.NAME, timeSeries.getName());
         doc.addField(Schema.TYPE, timeSeries.getType());
 
-        if (dataShouldReturned) {
+        if (dataShouldReturned && chunks != null) {
+            //the stored chunks are returned without decoding them
+            doc.setField(ChronixQueryParams.DATA_AS_CHUNKS, chunksAsFields(chunks));
+        } else if (dataShouldReturned) {
             //ensure that the returned data is sorted
             timeSeries.sort();
             //data should returned serialized as json
             if (dataAsJson) {
-                doc.setField(ChronixQueryParams.DATA_AS_JSON, timeSeries.dataAsJson());
+                //the json is written when the response is written
+                doc.setField(ChronixQueryParams.DATA_AS_JSON, new JsonDataValue(timeSeries));
+            } else if (dataAsChunks) {
+                //the transformed points are returned as a single chunk
+                ChronixChunk chunk = new ChronixChunk(timeSeries.getStart(), timeSeries.getEnd(), timeSeries.dataAsBlob());
+                doc.setField(ChronixQueryParams.DATA_AS_CHUNKS, chunksAsFields(Collections.singletonList(chunk)));
             } else {
                 doc.addField(Schema.DATA, timeSeries.dataAsBlob());
             }
         }
 
+        //the chunks know their range, hence the time series is not needed for it
+        if (dataShouldReturned && chunks != null && !chunks.isEmpty()) {
+            doc.addField(Schema.START, chunks.get(0).getStart());
+            doc.addField(Schema.END, chunks.stream().mapToLong(ChronixChunk::getEnd).max().getAsLong());
+            return doc;
+        }
+
         //TODO: Fix this. It is expensive to calculate this based on the points.
         // How can we avoid this?
         // Optimization: Transformations should return the first an the last point
@@ -377,6 +673,25 @@ public class AnalysisHandler extends SearchHandler {
         return doc;
     }
 
+    /**
+     * Converts the chunks into fields of the response.
+     * Every chunk is returned with its start, end and the compressed data.
+     *
+     * @param chunks the chunks ordered by their start
+     * @return the chunks as list of maps
+     */
+    private static List<Map<String, Object>> chunksAsFields(List<ChronixChunk> chunks) {
+        List<Map<String, Object>> fields = new ArrayList<>(chunks.size());
+        for (ChronixChunk chunk : chunks) {
+            Map<String, Object> field = new LinkedHashMap<>();
+            field.put(Schema.START, chunk.getStart());
+            field.put(Schema.END, chunk.getEnd());
+            field.put(Schema.DATA, chunk.getData());
+            fields.add(field);
+        }
+        return fields;
+    }
+
     /**
      * Collects the document matching the given solr query request by using the given collection key function.
      *
@@ -385,10 +700,10 @@ public class AnalysisHandler extends SearchHandler {
      * @return the collected and grouped documents
      * @throws IOException if bad things happen
      */
-    private Map<ChronixType, Map<String, List<SolrDocument>>> collectDocuments(SolrQueryRequest req, CQLJoinFunction collectionKey) throws IOException {
+    private Map<ChronixType, Map<String, List<Document>>> collectDocuments(SolrQueryRequest req, CQLJoinFunction collectionKey, CQLCFResult functions) throws IOException {
         String query = req.getParams().get(CommonParams.Q);
         //query and collect all documents
-        return collectDocuments(query, req, collectionKey);
+        return collectDocuments(query, req, collectionKey, functions);
     }
 
     /**
@@ -397,27 +712,140 @@ public class AnalysisHandler extends SearchHandler {
      * @param query         the plain solr query
      * @param req           the request object
      * @param collectionKey the key to collected documents
+     * @param functions     the chronix functions of the query
      * @return the collected and grouped documents
      * @throws IOException if bad things happen
      */
-    private Map<ChronixType, Map<String, List<SolrDocument>>> collectDocuments(String query, SolrQueryRequest req, CQLJoinFunction collectionKey) throws IOException {
+    private Map<ChronixType, Map<String, List<Document>>> collectDocuments(String query, SolrQueryRequest req, CQLJoinFunction collectionKey, CQLCFResult functions) throws IOException {
         //query and collect all documents
+        Set<String> fields = getRequiredFields(req, collectionKey, functions);
+
+        DocList result = docListProvider.doSimpleQuery(query, req, 0, Integer.MAX_VALUE);
+        Map<ChronixType, Map<String, List<Document>>> collectedDocs = new HashMap<>();
+
+        //the lucene documents are grouped as they are, the conversion is done by the type
+        DocIterator docIterator = result.iterator();
+        while (docIterator.hasNext()) {
+            Document doc = docListProvider.doc(docIterator.nextDoc(), req.getSearcher(), fields);
+            ChronixType type = type(doc);
+
+            if (type == null) {
+                LOGGER.warn("Type is null.");
+                continue;
+            }
+
+            //Create groups of records using the join key.
+            collectedDocs.computeIfAbsent(type, t -> new HashMap<>())
+                    .computeIfAbsent(collectionKey.apply(doc, req.getSchema()), k -> new ArrayList<>())
+                    .add(doc);
+        }
+        return collectedDocs;
+    }
+
+    /**
+     * Gets the fields that identify the time series of a chunk
+     *
+     * @param joinKey the join function
+     * @return the fields of the join key, the type and the start
+     */
+    private static Set<String> getKeyFields(CQLJoinFunction joinKey) {
+        Set<String> fields = new HashSet<>();
+        for (String field : joinKey.involvedFields()) {
+            fields.add(field.trim());
+        }
+        fields.add(Schema.TYPE);
+        fields.add(Schema.START);
+        return fields;
+    }
+
+    /**
+     * Gets the fields that are loaded for the request.
+     *
+     * @param req           the request object
+     * @param collectionKey the key to collected documents
+     * @param functions     the chronix functions of the query
+     * @return the requested fields, the data field, the fields of the join key and the summary fields
+     */
+    private Set<String> getRequiredFields(SolrQueryRequest req, CQLJoinFunction collectionKey, CQLCFResult functions) {
         Set<String> fields = getFields(req.getParams().get(CommonParams.FL), req.getSchema().getFields());
 
         //we always need the data field
         fields.add(Schema.DATA);
+        //and the version, it identifies the decoded chunks in the cache
+        fields.add(VERSION);
 
         //add the involved fields from in the join key
         if (!isEmptyArray(collectionKey.involvedFields())) {
             Collections.addAll(fields, collectionKey.involvedFields());
         }
 
-        DocList result = docListProvider.doSimpleQuery(query, req, 0, Integer.MAX_VALUE);
-        SolrDocumentList docs = docListProvider.docListToSolrDocumentList(result, req.getSearcher(), fields, null);
-        return collect(docs, collectionKey);
+        //add the summary fields of the types that can use them
+        for (ChronixType type : functions.getTypes()) {
+            ChronixFunctions typeFunctions = functions.getChronixFunctionsForType(type);
+            if (typeFunctions.containsOnlyDecomposableAggregations()) {
+                fields.addAll(type.getSummaryFields(typeFunctions.getAggregations()));
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Gets the user defined fields that are returned as attributes of the time series.
+     * Only these attributes are converted and merged from the chunks.
+     *
+     * @param fl            the fields parameter, null for all fields
+     * @param collectionKey the key to collected documents, its fields are returned
+     * @param functions     the chronix functions of the query
+     * @return null for all attributes, no attributes for aggregation only queries that do not request attributes,
+     * otherwise the requested fields and the fields of the join key
+     */
+    static Set<String> getReturnedAttributes(String fl, CQLJoinFunction collectionKey, CQLCFResult functions) {
+        if (fl == null) {
+            return null;
+        }
+
+        Set<String> attributes = new HashSet<>();
+        for (String field : fl.split(",")) {
+            String name = field.trim();
+            if ("*".equals(name)) {
+                return null;
+            }
+            if (Schema.isUserDefined(name) && !name.equals(ChronixQueryParams.DATA_AS_JSON) && !name.equals(VERSION)) {
+                attributes.add(name);
+            }
+        }
+
+        //the attributes are not returned
+        if (attributes.isEmpty() && containsOnlyAggregations(functions)) {
+            return Collections.emptySet();
+        }
+
+        if (!isEmptyArray(collectionKey.involvedFields())) {
+            for (String field : collectionKey.involvedFields()) {
+                attributes.add(field.trim());
+            }
+        }
+        return attributes;
+    }
+
+    /**
+     * @param functions the chronix functions of the query
+     * @return true if the query has only aggregations
+     */
+    private static boolean containsOnlyAggregations(CQLCFResult functions) {
+        if (functions.isEmpty()) {
+            return false;
+        }
+        for (ChronixType type : functions.getTypes()) {
+            ChronixFunctions typeFunctions = functions.getChronixFunctionsForType(type);
+            if (!typeFunctions.containsAggregations() || typeFunctions.containsTransformations() || typeFunctions.containsAnalyses()) {
+                return false;
+            }
+        }
+        return true;
     }
 
-    private boolean isEmptyArray(String[] array) {
+    private static boolean isEmptyArray(String[] array) {
         return array == null || array.length == 0;
     }
 
@@ -439,6 +867,26 @@ public class AnalysisHandler extends SearchHandler {
         return returnFields;
     }
 
+    /**
+     * Converts the documents of a time series into a chronix time series.
+     *
+     * @param <D> the type of the documents
+     */
+    @FunctionalInterface
+    private interface RecordConverter<D> {
+        ChronixTimeSeries convert(ChronixType type, String joinKey, List<D> records, long queryStart, long queryEnd, boolean decompress, boolean summarize);
+    }
+
+    /**
+     * Gets the stored chunks of a time series within the query range.
+     *
+     * @param <D> the type of the documents
+     */
+    @FunctionalInterface
+    private interface ChunkConverter<D> {
+        List<ChronixChunk> chunks(ChronixType type, String joinKey, List<D> records, long queryStart, long queryEnd);
+    }
+
     /**
      * @return the description shown in apache solr
      */
@@ -15,6 +15,7 @@
  */
 package de.qaware.chronix.solr.query.analysis;
 
+import org.apache.lucene.document.Document;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.request.SolrQueryRequest;
@@ -59,4 +60,16 @@ public interface DocListProvider {
      */
     SolrDocumentList docListToSolrDocumentList(DocList docs, SolrIndexSearcher searcher, Set<String> fields, Map<SolrDocument, Integer> ids) throws IOException;
 
+    /**
+     * Loads a single lucene document from the index.
+     * The stored fields are not converted into solr objects.
+     *
+     * @param docId    the lucene document id
+     * @param searcher The {@link org.apache.solr.search.SolrIndexSearcher} to use to load the doc from the Lucene index
+     * @param fields   The names of the Fields to load
+     * @return the loaded lucene document
+     * @throws java.io.IOException if there was a problem loading the doc
+     */
+    Document doc(int docId, SolrIndexSearcher searcher, Set<String> fields) throws IOException;
+
 }
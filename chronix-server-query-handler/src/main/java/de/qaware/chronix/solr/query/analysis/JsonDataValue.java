@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.query.analysis;
+
+import de.qaware.chronix.server.types.ChronixTimeSeries;
+import org.apache.solr.common.util.JavaBinCodec;
+import org.apache.solr.response.JSONWriter;
+import org.apache.solr.response.TextResponseWriter;
+import org.apache.solr.response.WriteableValue;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * The dataAsJson field of a result document.
+ * The json response writer gets the points written straight into the response stream,
+ * the json string of the time series is never built.
+ * All other response writers (e.g. javabin) get the json string like before.
+ *
+ * @author f.lautenschlager
+ */
+public final class JsonDataValue extends WriteableValue {
+
+    private final ChronixTimeSeries timeSeries;
+
+    /**
+     * @param timeSeries the sorted time series whose data is written
+     */
+    public JsonDataValue(ChronixTimeSeries timeSeries) {
+        this.timeSeries = timeSeries;
+    }
+
+    @Override
+    public void write(String name, TextResponseWriter writer) throws IOException {
+        if (writer instanceof JSONWriter) {
+            //the json contains only numbers and brackets, hence it is a string without escaping
+            Writer out = writer.getWriter();
+            out.write('"');
+            timeSeries.writeDataAsJson(out);
+            out.write('"');
+        } else {
+            writer.writeStr(name, timeSeries.dataAsJson(), false);
+        }
+    }
+
+    @Override
+    public Object resolve(Object o, JavaBinCodec codec) throws IOException {
+        return timeSeries.dataAsJson();
+    }
+
+    @Override
+    public String toString() {
+        return timeSeries.dataAsJson();
+    }
+}
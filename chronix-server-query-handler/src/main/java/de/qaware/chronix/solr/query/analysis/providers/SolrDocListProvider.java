@@ -65,13 +65,6 @@ public class SolrDocListProvider implements DocListProvider {
      */
     @Override
     public SolrDocumentList docListToSolrDocumentList(DocList docs, SolrIndexSearcher searcher, Set<String> fields, Map<SolrDocument, Integer> ids) throws IOException {
-
-        //TODO: We can optimize here.
-        //Also do the collection / grouping
-        //Remove unused code
-        //We can convert lucene docs directly into time series
-        IndexSchema schema = searcher.getSchema();
-
         SolrDocumentList list = new SolrDocumentList();
         list.setNumFound(docs.matches());
         list.setMaxScore(docs.maxScore());
@@ -81,19 +74,8 @@ public class SolrDocListProvider implements DocListProvider {
 
         while (dit.hasNext()) {
             int docid = dit.nextDoc();
+            SolrDocument doc = docToSolrDocument(docid, searcher, fields);
 
-            Document luceneDoc = searcher.doc(docid, fields);
-
-            //Instead of creating a SolrDocument, we should create a ChronixTimeSeries
-            
-            SolrDocument doc = new SolrDocument();
-
-            for (IndexableField field : luceneDoc) {
-                if (null == fields || fields.contains(field.name())) {
-                    SchemaField sf = schema.getField(field.name());
-                    doc.addField(field.name(), sf.getType().toObject(field));
-                }
-            }
             if (docs.hasScores() && (null == fields || fields.contains("score"))) {
                 doc.addField("score", dit.score());
             }
@@ -107,4 +89,33 @@ public class SolrDocListProvider implements DocListProvider {
         return list;
     }
 
+    /**
+     * Loads the lucene document with the given id.
+     *
+     * @param docId    the lucene document id
+     * @param searcher The {@link org.apache.solr.search.SolrIndexSearcher} to use to load the doc from the Lucene index
+     * @param fields   The names of the Fields to load
+     * @return the lucene document
+     * @throws IOException if bad things happen.
+     */
+    @Override
+    public Document doc(int docId, SolrIndexSearcher searcher, Set<String> fields) throws IOException {
+        return searcher.doc(docId, fields);
+    }
+
+    private SolrDocument docToSolrDocument(int docId, SolrIndexSearcher searcher, Set<String> fields) throws IOException {
+        IndexSchema schema = searcher.getSchema();
+        Document luceneDoc = doc(docId, searcher, fields);
+
+        SolrDocument doc = new SolrDocument();
+
+        for (IndexableField field : luceneDoc) {
+            if (null == fields || fields.contains(field.name())) {
+                SchemaField sf = schema.getField(field.name());
+                doc.addField(field.name(), sf.getType().toObject(field));
+            }
+        }
+        return doc;
+    }
+
 }
@@ -17,8 +17,10 @@ package de.qaware.chronix.solr.query
 
 import de.qaware.chronix.solr.query.analysis.AnalysisHandler
 import de.qaware.chronix.solr.test.extensions.ReflectionHelper
+import org.apache.solr.common.SolrDocumentList
 import org.apache.solr.common.params.ModifiableSolrParams
 import org.apache.solr.common.util.NamedList
+import org.apache.solr.common.util.SimpleOrderedMap
 import org.apache.solr.core.PluginInfo
 import org.apache.solr.handler.component.SearchHandler
 import org.apache.solr.request.SolrQueryRequest
@@ -26,6 +28,8 @@ import org.apache.solr.response.SolrQueryResponse
 import org.apache.solr.schema.IndexSchema
 import org.apache.solr.schema.SchemaField
 import org.apache.solr.schema.TextField
+import org.apache.solr.search.SolrCache
+import org.apache.solr.search.SolrIndexSearcher
 import spock.lang.Specification
 import spock.lang.Unroll
 
@@ -164,6 +168,52 @@ class ChronixQueryHandlerTest extends Specification {
 
     }
 
+    def "test handle analysis request with the result cache"() {
+        given:
+        def aggregationHandler = Mock(AnalysisHandler.class)
+        def chronixQueryHandler = new ChronixQueryHandler()
+        ReflectionHelper.setValueToFieldOfObject(aggregationHandler, "analysisHandler", chronixQueryHandler)
+        ReflectionHelper.setValueToFieldOfObject(timeToLive, "resultCacheTimeToLive", chronixQueryHandler)
+
+        def entries = [:]
+        def cache = Stub(SolrCache)
+        cache.get(_) >> { args -> entries.get(args[0]) }
+        cache.put(_, _) >> { args -> entries.put(args[0], args[1]) }
+        def searcher = Stub(SolrIndexSearcher)
+        searcher.getCache(ResultCache.NAME) >> cache
+
+        def results = new SolrDocumentList()
+        def indexSchema = Stub(IndexSchema)
+        indexSchema.getFields() >> ["data": new SchemaField("data", new TextField())]
+
+        def request = Stub(SolrQueryRequest)
+        def params = null
+        request.getSchema() >> indexSchema
+        request.getSearcher() >> searcher
+        request.getParams() >> { params }
+        request.setParams(_) >> { args -> params = args[0] }
+
+        when:
+        def responses = (1..3).collect {
+            params = new ModifiableSolrParams().add("q", "host:laptop").add("cf", "metric{max}")
+            def response = new SolrQueryResponse()
+            response.addResponseHeader(new SimpleOrderedMap<Object>())
+            chronixQueryHandler.handleRequestBody(request, response)
+            response
+        }
+
+        then:
+        executions * aggregationHandler.handleRequestBody(_, _) >> { req, rsp -> rsp.add("response", results) }
+        responses.every { it.getValues().get("response") == results }
+        //the cached results are copies
+        responses.count { it.getValues().get("response").is(results) } == executions
+        entries.size() == 1
+
+        where:
+        timeToLive << [60_000l, -1l]
+        executions << [1, 3]
+    }
+
     def "test exception cases"() {
         given:
         def defaultHandler = Mock(SearchHandler)
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.query
+
+import org.apache.solr.common.SolrDocument
+import org.apache.solr.common.SolrDocumentList
+import org.apache.solr.common.params.ModifiableSolrParams
+import org.apache.solr.search.SolrCache
+import org.apache.solr.search.SolrIndexSearcher
+import spock.lang.Specification
+
+/**
+ * Unit test for the cache of analysis results
+ * @author f.lautenschlager
+ */
+class ResultCacheTest extends Specification {
+
+    def "test key is independent of the param order and the response writer"() {
+        given:
+        def first = new ModifiableSolrParams()
+                .add("q", "metric:load ")
+                .add("cf", "metric{max}", "metric{min}")
+                .add("cj", "host")
+                .add("query_start_long", "0")
+                .add("query_end_long", "100")
+                .add("wt", "json")
+        def second = new ModifiableSolrParams()
+                .add("query_end_long", "100")
+                .add("query_start_long", "0")
+                .add("cj", "host")
+                .add("cf", "metric{max}", "metric{min}")
+                .add("q", "metric:load")
+                .add("indent", "true")
+
+        expect:
+        ResultCache.key(first) == ResultCache.key(second)
+        ResultCache.key(first).hashCode() == ResultCache.key(second).hashCode()
+    }
+
+    def "test key differs for different functions, joins and ranges"() {
+        given:
+        def params = new ModifiableSolrParams()
+                .add("q", "metric:load")
+                .add("cf", "metric{max}")
+                .add("query_start_long", "0")
+                .add("query_end_long", "100")
+
+        expect:
+        ResultCache.key(params) != ResultCache.key(new ModifiableSolrParams(params).set("cf", "metric{min}"))
+        ResultCache.key(params) != ResultCache.key(new ModifiableSolrParams(params).set("cj", "host"))
+        ResultCache.key(params) != ResultCache.key(new ModifiableSolrParams(params).set("query_end_long", "101"))
+    }
+
+    def "test expired entries"() {
+        given:
+        def entry = new ResultCache.Entry(new SolrDocumentList(), 1000)
+
+        expect:
+        !entry.isExpired(1500, 1000)
+        entry.isExpired(2001, 1000)
+    }
+
+    def "test results with points are not cached"() {
+        given:
+        def aggregation = new SolrDocument()
+        aggregation.addField("0_function_max", 4713d)
+        def withData = new SolrDocument()
+        withData.addField(field, "points")
+
+        expect:
+        ResultCache.isCacheable(list(aggregation))
+        !ResultCache.isCacheable(list(aggregation, withData))
+
+        where:
+        field << ["data", "dataAsJson", "dataAsChunks"]
+    }
+
+    def "test entries are copies and know their size"() {
+        given:
+        def doc = new SolrDocument()
+        doc.addField("name", "load")
+        doc.addField("0_function_max", 4713d)
+        def result = list(doc)
+        result.setNumFound(1)
+        def entry = new ResultCache.Entry(result, 1000)
+
+        when:
+        def first = entry.getResult()
+        first.get(0).setField("name", "changed")
+        def second = entry.getResult()
+
+        then:
+        !first.is(second)
+        second.getNumFound() == 1
+        second.get(0).get("name") == "load"
+        second.get(0).get("0_function_max") == 4713d
+        entry.ramBytesUsed() > 0
+        entry.ramBytesUsed() < new ResultCache.Entry(list(doc, doc, doc), 1000).ramBytesUsed()
+    }
+
+    static SolrDocumentList list(SolrDocument... docs) {
+        def result = new SolrDocumentList()
+        result.addAll(docs)
+        result
+    }
+
+    def "test get cache of searcher"() {
+        given:
+        def searcher = Stub(SolrIndexSearcher)
+        def cache = Stub(SolrCache)
+        searcher.getCache(ResultCache.NAME) >> cache
+
+        expect:
+        ResultCache.of(null) == null
+        ResultCache.of(searcher).is(cache)
+    }
+}
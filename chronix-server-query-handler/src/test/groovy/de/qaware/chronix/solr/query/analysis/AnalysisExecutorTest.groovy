@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.query.analysis
+
+import com.codahale.metrics.MetricRegistry
+import org.apache.solr.common.util.NamedList
+import spock.lang.Specification
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+/**
+ * Unit test for the analysis executor
+ * @author f.lautenschlager
+ */
+class AnalysisExecutorTest extends Specification {
+
+    def "test all items are processed"() {
+        given:
+        def executor = AnalysisExecutor.of(4, 16, 3)
+        def processed = ConcurrentHashMap.newKeySet()
+
+        when:
+        executor.forEach((1..1000).toList()) { processed.add(it) }
+
+        then:
+        processed.size() == 1000
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "test a request uses at most the parallelism per request"() {
+        given:
+        def executor = AnalysisExecutor.of(8, 16, 2)
+        def threads = ConcurrentHashMap.newKeySet()
+
+        when:
+        executor.forEach((1..100).toList()) {
+            threads.add(Thread.currentThread())
+            Thread.sleep(1)
+        }
+
+        then:
+        threads.size() <= 2
+        threads.contains(Thread.currentThread())
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "test request thread runs the tasks if the pool is busy"() {
+        given:
+        def executor = AnalysisExecutor.of(1, 1, 2)
+        def blocker = new CountDownLatch(1)
+        def started = new CountDownLatch(1)
+        def other = Thread.start {
+            executor.forEach([1, 2]) {
+                if (it == 2) {
+                    started.countDown()
+                    blocker.await(10, TimeUnit.SECONDS)
+                }
+            }
+        }
+        started.await(10, TimeUnit.SECONDS)
+        def processed = ConcurrentHashMap.newKeySet()
+
+        when:
+        executor.forEach([1, 2, 3, 4]) { processed.add(it) }
+
+        then:
+        processed.size() == 4
+        executor.getCallerRuns() > 0
+
+        cleanup:
+        blocker.countDown()
+        other.join()
+        executor.shutdown()
+    }
+
+    def "test exceptions are passed to the request thread"() {
+        given:
+        def executor = AnalysisExecutor.of(2, 16, 2)
+
+        when:
+        executor.forEach([1, 2, 3, 4]) {
+            if (it == 2) {
+                throw new IllegalArgumentException("bad item")
+            }
+        }
+
+        then:
+        def exception = thrown(IllegalArgumentException)
+        exception.message == "bad item"
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "test remaining items are skipped when the request part fails"() {
+        given:
+        def executor = AnalysisExecutor.of(1, 16, 2)
+        def processed = ConcurrentHashMap.newKeySet()
+
+        when:
+        executor.forEach((1..1000).toList()) {
+            if (it == 1) {
+                throw new IllegalArgumentException("bad item")
+            }
+            Thread.sleep(1)
+            processed.add(it)
+        }
+
+        then:
+        thrown IllegalArgumentException
+        processed.size() < 500
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "test sequential executor"() {
+        given:
+        def threads = ConcurrentHashMap.newKeySet()
+
+        when:
+        AnalysisExecutor.sequential().forEach((1..10).toList()) { threads.add(Thread.currentThread()) }
+
+        then:
+        threads == [Thread.currentThread()] as Set
+    }
+
+    def "test configuration and metrics"() {
+        given:
+        def args = new NamedList<Object>()
+        args.add(AnalysisExecutor.THREADS, 2)
+        args.add(AnalysisExecutor.QUEUE_SIZE, 8)
+        def registry = new MetricRegistry()
+
+        when:
+        def executor = AnalysisExecutor.of(args)
+        executor.registerMetrics(registry, "QUERY./select.analysisExecutor")
+        executor.registerMetrics(registry, "QUERY./select.analysisExecutor")
+
+        then:
+        registry.getGauges().keySet() == ["activeThreads", "poolSize", "queueSize", "completedTasks", "callerRuns"]
+                .collect { "QUERY./select.analysisExecutor." + it } as Set
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "test invalid configuration"() {
+        when:
+        AnalysisExecutor.of(0, 1, 1)
+
+        then:
+        thrown IllegalArgumentException
+    }
+}
@@ -18,6 +18,7 @@ package de.qaware.chronix.solr.query.analysis
 import de.qaware.chronix.converter.common.Compression
 import de.qaware.chronix.converter.serializer.protobuf.ProtoBufMetricTimeSeriesSerializer
 import de.qaware.chronix.cql.CQLCFResult
+import de.qaware.chronix.cql.CQLJoinFunction
 import de.qaware.chronix.cql.ChronixFunctions
 import de.qaware.chronix.server.functions.ChronixTransformation
 import de.qaware.chronix.server.types.ChronixType
@@ -29,7 +30,12 @@ import de.qaware.chronix.solr.type.metric.functions.aggregations.Min
 import de.qaware.chronix.solr.type.metric.functions.analyses.Trend
 import de.qaware.chronix.solr.type.metric.functions.transformation.Add
 import de.qaware.chronix.timeseries.MetricTimeSeries
+import org.apache.lucene.document.Document
+import org.apache.lucene.document.Field
+import org.apache.lucene.document.StoredField
+import org.apache.lucene.document.StringField
 import org.apache.solr.common.SolrDocument
+import org.apache.solr.common.params.CommonParams
 import org.apache.solr.common.params.ModifiableSolrParams
 import org.apache.solr.core.PluginInfo
 import org.apache.solr.request.SolrQueryRequest
@@ -37,6 +43,7 @@ import org.apache.solr.response.SolrQueryResponse
 import org.apache.solr.schema.IndexSchema
 import org.apache.solr.schema.SchemaField
 import org.apache.solr.search.DocSlice
+import org.apache.solr.search.SolrIndexSearcher
 import spock.lang.Shared
 import spock.lang.Specification
 import spock.lang.Unroll
@@ -89,6 +96,76 @@ class AnalysisHandlerTest extends Specification {
 
     }
 
+    def "test streaming execution"() {
+        given:
+        def request = Mock(SolrQueryRequest)
+        def indexSchema = Mock(IndexSchema)
+
+        def searcher = Stub(SolrIndexSearcher)
+
+        indexSchema.getFields() >> new HashMap<String, SchemaField>()
+        searcher.getSchema() >> indexSchema
+        searcher.getCache(_) >> null
+        request.getSchema() >> indexSchema
+        request.getSearcher() >> searcher
+        request.getParams() >> new ModifiableSolrParams().add("q", "host:laptop")
+                .add(ChronixQueryParams.CHRONIX_STREAMING, "true")
+                .add(ChronixQueryParams.CHRONIX_FUNCTION, "metric{max}")
+                .add(ChronixQueryParams.QUERY_START_LONG, "0")
+                .add(ChronixQueryParams.QUERY_END_LONG, String.valueOf(Long.MAX_VALUE))
+
+        def start = Instant.now()
+        def docs = [luceneDocument(start), luceneDocument(start.plusSeconds(20))]
+
+        def docListMock = Stub(DocListProvider)
+        docListMock.doSimpleQuery(_, _, _, _) >> { new DocSlice(0i, 2, [0, 1] as int[], [1, 1] as float[], 2, 1) }
+        docListMock.doc(_, _, _) >> { args -> docs.get(args[0] as int) }
+
+        def response = Mock(SolrQueryResponse)
+        def analysisHandler = new AnalysisHandler(docListMock)
+
+        when:
+        analysisHandler.handleRequestBody(request, response)
+
+        then:
+        1 * response.add("response", { it.size() == 1 && it.getNumFound() == 1 && it.get(0).get("0_function_max") == 4713 })
+    }
+
+    def "test streaming execution only counts the time series with rows=0"() {
+        given:
+        def request = Mock(SolrQueryRequest)
+        def indexSchema = Mock(IndexSchema)
+        def searcher = Stub(SolrIndexSearcher)
+
+        indexSchema.getFields() >> new HashMap<String, SchemaField>()
+        searcher.getSchema() >> indexSchema
+        request.getSchema() >> indexSchema
+        request.getSearcher() >> searcher
+        request.getParams() >> new ModifiableSolrParams().add("q", "host:laptop")
+                .add(ChronixQueryParams.CHRONIX_STREAMING, "true")
+                .add(CommonParams.ROWS, "0")
+                .add(ChronixQueryParams.QUERY_START_LONG, "0")
+                .add(ChronixQueryParams.QUERY_END_LONG, String.valueOf(Long.MAX_VALUE))
+
+        def start = Instant.now()
+        def docs = [luceneDocument(start), luceneDocument(start.plusSeconds(20))]
+        def loadedFields = []
+
+        def docListMock = Stub(DocListProvider)
+        docListMock.doSimpleQuery(_, _, _, _) >> { new DocSlice(0i, 2, [0, 1] as int[], [1, 1] as float[], 2, 1) }
+        docListMock.doc(_, _, _) >> { args -> loadedFields << args[2]; docs.get(args[0] as int) }
+
+        def response = Mock(SolrQueryResponse)
+        def analysisHandler = new AnalysisHandler(docListMock)
+
+        when:
+        analysisHandler.handleRequestBody(request, response)
+
+        then:
+        1 * response.add("response", { it.size() == 0 && it.getNumFound() == 1 })
+        loadedFields.every { it == ["name", "type", "start"] as Set<String> }
+    }
+
     def "test get fields"() {
         given:
         def docListMock = Stub(DocListProvider)
@@ -105,6 +182,33 @@ class AnalysisHandlerTest extends Specification {
         result << [new HashSet<>(), ["myField", "start", "end", "data", "metric"] as Set<String>]
     }
 
+    @Unroll
+    def "test returned attributes for fl=#fl"() {
+        given:
+        def aggregations = new ChronixFunctions()
+        aggregations.addAggregation(new Max())
+        def aggregationsOnly = new CQLCFResult()
+        aggregationsOnly.addChronixFunctionsForType(new MetricType(), aggregations)
+
+        def transformations = new ChronixFunctions()
+        def add = new Add()
+        add.setArguments(["5"] as String[])
+        transformations.addTransformation(add)
+        def withTransformations = new CQLCFResult()
+        withTransformations.addChronixFunctionsForType(new MetricType(), transformations)
+
+        def joinKey = new CQLJoinFunction("host,name")
+
+        expect:
+        AnalysisHandler.getReturnedAttributes(fl, joinKey, aggregationsOnly) == aggregationResult
+        AnalysisHandler.getReturnedAttributes(fl, joinKey, withTransformations) == transformationResult
+
+        where:
+        fl << [null, "*", "data", "dataAsJson,_version_", "os,data"]
+        aggregationResult << [null, null, [] as Set, [] as Set, ["os", "host", "name"] as Set]
+        transformationResult << [null, null, ["host", "name"] as Set, ["host", "name"] as Set, ["os", "host", "name"] as Set]
+    }
+
     @Shared
     def functions = new ChronixFunctions()
 
@@ -186,6 +290,18 @@ class AnalysisHandlerTest extends Specification {
         thrown NullPointerException
     }
 
+    Document luceneDocument(Instant start) {
+        def solrDoc = solrDocument(start).get(0)
+
+        def doc = new Document()
+        doc.add(new StoredField("start", solrDoc.get("start") as long))
+        doc.add(new StoredField("end", solrDoc.get("end") as long))
+        doc.add(new StringField("name", solrDoc.get("name") as String, Field.Store.YES))
+        doc.add(new StringField("type", solrDoc.get("type") as String, Field.Store.YES))
+        doc.add(new StoredField("data", (solrDoc.get("data") as ByteBuffer).array()))
+        doc
+    }
+
     List<SolrDocument> solrDocument(Instant start) {
         def result = new ArrayList<SolrDocument>()
         def ts = new MetricTimeSeries.Builder("test", "metric")
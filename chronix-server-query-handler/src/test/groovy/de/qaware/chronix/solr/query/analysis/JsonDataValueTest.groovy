@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.query.analysis
+
+import de.qaware.chronix.solr.type.metric.ChronixMetricTimeSeries
+import de.qaware.chronix.timeseries.MetricTimeSeries
+import org.apache.solr.common.params.ModifiableSolrParams
+import org.apache.solr.request.SolrQueryRequest
+import org.apache.solr.response.JSONWriter
+import org.apache.solr.response.SolrQueryResponse
+import spock.lang.Specification
+import spock.lang.Unroll
+
+/**
+ * Unit test for the streamed json data.
+ * @author f.lautenschlager
+ */
+class JsonDataValueTest extends Specification {
+
+    @Unroll
+    def "test streamed json of #size points equals the json string"() {
+        given:
+        def builder = new MetricTimeSeries.Builder("test", "metric")
+        size.times { builder.point(it * 1000l, it * 0.5d) }
+        def timeSeries = new ChronixMetricTimeSeries("test", builder.build())
+
+        def request = Stub(SolrQueryRequest)
+        request.getParams() >> new ModifiableSolrParams()
+        def out = new StringWriter()
+        def writer = new JSONWriter(out, request, Stub(SolrQueryResponse))
+
+        when:
+        new JsonDataValue(timeSeries).write("dataAsJson", writer)
+        writer.close()
+
+        then:
+        out.toString() == '"' + timeSeries.dataAsJson() + '"'
+
+        where:
+        size << [0, 1, 10, 10000]
+    }
+
+    def "test resolve returns the json string"() {
+        given:
+        def timeSeries = new ChronixMetricTimeSeries("test", new MetricTimeSeries.Builder("test", "metric").point(1, 2).build())
+
+        when:
+        def value = new JsonDataValue(timeSeries).resolve(null, null)
+
+        then:
+        value == timeSeries.dataAsJson()
+    }
+}
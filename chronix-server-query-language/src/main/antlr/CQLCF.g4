@@ -12,7 +12,7 @@ chronixfunction
         | name ':' parameter (',' parameter)*
         ;
 name: LOWERCASE_STRING;
-parameter: STRING_AND_NUMBERS_UPPERCASE;
+parameter: STRING_AND_NUMBERS_UPPERCASE | LOWERCASE_STRING;
 
 
 LOWERCASE_STRING  : [a-z]+ ;
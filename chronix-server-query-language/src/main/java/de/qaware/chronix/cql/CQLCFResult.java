@@ -19,6 +19,7 @@ import de.qaware.chronix.server.types.ChronixType;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * The CQLCFResult holds the chronix functions per type.
@@ -51,6 +52,13 @@ public class CQLCFResult {
         return typeFunctions.get(type);
     }
 
+    /**
+     * @return the types that have Chronix functions
+     */
+    public Set<ChronixType> getTypes() {
+        return typeFunctions.keySet();
+    }
+
     /**
      * @return true if empty, otherwise false
      */
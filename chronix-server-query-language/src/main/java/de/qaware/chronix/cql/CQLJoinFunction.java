@@ -16,9 +16,15 @@
 package de.qaware.chronix.cql;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexableField;
 import org.apache.solr.common.SolrDocument;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.schema.SchemaField;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.function.Function;
 
 /**
@@ -78,6 +84,46 @@ public final class CQLJoinFunction implements Function<SolrDocument, String> {
         return sb.toString();
     }
 
+    /**
+     * Builds the join key directly on the stored fields of a lucene document.
+     * The stored values are converted by the types of the schema (e.g. into a boolean or a date),
+     * hence the key is equal to the key of the belonging solr document.
+     *
+     * @param doc    the lucene document
+     * @param schema the schema of the document, without it the stored values are used as they are
+     * @return the join key field1-field2-field3
+     */
+    public String apply(Document doc, IndexSchema schema) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < involvedFields.length; i++) {
+            String field = involvedFields[i].trim();
+            IndexableField[] values = doc.getFields(field);
+            SchemaField schemaField = schema == null ? null : schema.getFieldOrNull(field);
+            if (values.length == 0) {
+                sb.append((Object) null);
+            } else if (values.length == 1) {
+                sb.append(toObject(values[0], schemaField));
+            } else {
+                List<Object> objects = new ArrayList<>(values.length);
+                for (IndexableField value : values) {
+                    objects.add(toObject(value, schemaField));
+                }
+                sb.append(objects);
+            }
+            if (i < involvedFields.length - 1) {
+                sb.append('-');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static Object toObject(IndexableField value, SchemaField schemaField) {
+        if (schemaField != null) {
+            return schemaField.getType().toObject(value);
+        }
+        return value.numericValue() != null ? value.numericValue() : value.stringValue();
+    }
+
     /**
      * Returns the involved fields of the join function
      *
@@ -120,6 +120,21 @@ public class ChronixFunctions {
         return !analyses.isEmpty();
     }
 
+    /**
+     * @return true if the functions are only decomposable aggregations, that can be answered from chunk summaries
+     */
+    public boolean containsOnlyDecomposableAggregations() {
+        if (aggregations.isEmpty() || containsTransformations() || containsAnalyses()) {
+            return false;
+        }
+        for (ChronixAggregation aggregation : aggregations) {
+            if (!aggregation.isDecomposable()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * @return the size of all (aggregations, analyses, transformations)
      */
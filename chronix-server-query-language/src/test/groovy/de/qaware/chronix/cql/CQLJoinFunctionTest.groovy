@@ -15,7 +15,15 @@
  */
 package de.qaware.chronix.cql
 
+import org.apache.lucene.document.Document
+import org.apache.lucene.document.Field
+import org.apache.lucene.document.StoredField
+import org.apache.lucene.document.StringField
 import org.apache.solr.common.SolrDocument
+import org.apache.solr.schema.BoolField
+import org.apache.solr.schema.DatePointField
+import org.apache.solr.schema.IndexSchema
+import org.apache.solr.schema.SchemaField
 import spock.lang.Specification
 
 /**
@@ -45,6 +53,44 @@ class CQLJoinFunctionTest extends Specification {
         isDefault << [false, true, true]
     }
 
+    def "test cql join function on lucene documents"() {
+        given:
+        def doc = new Document()
+        doc.add(new StringField("host", "laptop", Field.Store.YES))
+        doc.add(new StringField("name", "unitTest", Field.Store.YES))
+        doc.add(new StringField("type", "metric", Field.Store.YES))
+        doc.add(new StoredField("someLong", 4711l))
+        doc.add(new StringField("tags", "a", Field.Store.YES))
+        doc.add(new StringField("tags", "b", Field.Store.YES))
+
+        when:
+        def joinKey = new CQLJoinFunction(joinOn).apply(doc, null)
+        then:
+        joinKey == result
+
+        where:
+        joinOn << ["host, name", "", "someLong,missing", "tags"]
+        result << ["laptop-unitTest", "unitTest-metric", "4711-null", "[a, b]"]
+    }
+
+    def "test cql join function on lucene documents converts the values like the solr documents"() {
+        given:
+        def doc = new Document()
+        doc.add(new StringField("active", "T", Field.Store.YES))
+        doc.add(new StoredField("day", 0l))
+        doc.add(new StringField("name", "unitTest", Field.Store.YES))
+
+        def schema = Mock(IndexSchema)
+        schema.getFieldOrNull("active") >> new SchemaField("active", new BoolField())
+        schema.getFieldOrNull("day") >> new SchemaField("day", new DatePointField())
+
+        when:
+        def joinKey = new CQLJoinFunction("active,day,name").apply(doc, schema)
+
+        then:
+        joinKey == "true-" + new Date(0) + "-unitTest"
+    }
+
     def "test private constructor"() {
         when:
         CQLJoinFunction.newInstance()
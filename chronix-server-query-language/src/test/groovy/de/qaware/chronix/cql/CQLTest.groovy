@@ -153,15 +153,23 @@ class CQLTest extends Specification {
                "metric{add:10}",
                "metric{sub:10}",
                "metric{timeshift:10,SECONDS}",
-               "metric{smovavg:10}"
+               "metric{smovavg:10}",
+               "metric{top:10,all}",
+               "metric{bottom:10,all}",
+               "metric{distinct:runs}",
+               "metric{bucket:5,MINUTES,avg}",
+               "metric{bucket:5,MINUTES,p,0.99}"
         ]
 
         expectedQueryName << ["vector", "scale", "divide", "top",
                               "bottom", "movavg", "add", "sub",
-                              "timeshift", "smovavg"]
+                              "timeshift", "smovavg", "top", "bottom", "distinct",
+                              "bucket", "bucket"]
         expectedArgs << [["tolerance=0.01"], ["value=4.0"], ["value=4.0"], ["value=10"],
                          ["value=10"], ["timeSpan=10", "unit=MINUTES"], ["value=10.0"], ["value=10.0"],
-                         ["amount=10", "unit=SECONDS"], ["samples=10"]]
+                         ["amount=10", "unit=SECONDS"], ["samples=10"], ["value=10", "all=true"], ["value=10", "all=true"],
+                         ["runs=true"], ["timeSpan=5", "unit=MINUTES", "aggregation=avg"],
+                         ["timeSpan=5", "unit=MINUTES", "aggregation=p", "percentile=0.99"]]
     }
 
     @Unroll
@@ -189,14 +197,16 @@ class CQLTest extends Specification {
                "metric{diff}",
                "metric{sdiff}",
                "metric{p:0.4}",
+               "metric{p:0.99,approx}",
                "metric{integral}"
         ]
 
         expectedQueryName << ["min", "max", "avg", "dev", "sum",
                               "count", "first", "last", "range",
-                              "diff", "sdiff", "p", "integral"]
+                              "diff", "sdiff", "p", "p", "integral"]
         expectedArguments << [new String[0], new String[0], new String[0], new String[0], new String[0], new String[0], new String[0],
-                              new String[0], new String[0], new String[0], new String[0], ["percentile=0.4"] as String[], new String[0]]
+                              new String[0], new String[0], new String[0], new String[0], ["percentile=0.4"] as String[],
+                              ["percentile=0.99", "approx=true"] as String[], new String[0]]
     }
 
     //Fix this: Implement fastdtw
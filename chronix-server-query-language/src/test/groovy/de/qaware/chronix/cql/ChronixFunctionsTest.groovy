@@ -16,6 +16,8 @@
 package de.qaware.chronix.cql
 
 import de.qaware.chronix.solr.type.metric.functions.aggregations.Max
+import de.qaware.chronix.solr.type.metric.functions.aggregations.Min
+import de.qaware.chronix.solr.type.metric.functions.aggregations.Percentile
 import de.qaware.chronix.solr.type.metric.functions.analyses.Trend
 import de.qaware.chronix.solr.type.metric.functions.transformation.Vectorization
 import spock.lang.Specification
@@ -53,6 +55,27 @@ class ChronixFunctionsTest extends Specification {
         chronixFunctions.containsTransformations()
     }
 
+    def "test only decomposable aggregations"() {
+        given:
+        def chronixFunctions = new ChronixFunctions()
+
+        when:
+        functions.each { chronixFunctions.addAggregation(it) }
+        if (withAnalysis) {
+            chronixFunctions.addAnalysis(new Trend())
+        }
+
+        then:
+        chronixFunctions.containsOnlyDecomposableAggregations() == expected
+
+        where:
+        functions                        | withAnalysis || expected
+        [new Max(), new Min()]           | false        || true
+        [new Max(), new Percentile()]    | false        || false
+        [new Max()]                      | true         || false
+        []                               | false        || false
+    }
+
     def "test empty query functions"() {
         when:
         def chronixFunctions = new ChronixFunctions<>()
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.type.metric;
+
+import de.qaware.chronix.converter.common.DoubleList;
+import de.qaware.chronix.converter.common.LongList;
+import de.qaware.chronix.server.functions.ChronixFunction;
+import de.qaware.chronix.server.functions.FunctionCtx;
+import de.qaware.chronix.server.types.ChronixTimeSeries;
+import de.qaware.chronix.timeseries.MetricTimeSeries;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks every function of the {@link MetricType} on generated time series.
+ * <p>
+ * The functions are executed on a batch of time series with the given amount of points in total.
+ * Every invocation works on fresh time series, because transformations change them.
+ * The {@link #createSeries(SeriesState, Blackhole)} benchmark measures the creation of the time series alone.
+ * <p>
+ * Run it with: gradlew :chronix-server-type-metric:jmhMetricFunctionsBenchmark
+ * (the gc profiler reports the allocation rate, jmh arguments are passed with -Pjmh="...").
+ *
+ * @author f.lautenschlager
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class MetricFunctionsJMHBenchmark {
+
+    /**
+     * The points of the benchmarked time series
+     */
+    @State(Scope.Thread)
+    public static class SeriesState {
+
+        /**
+         * The amount of points of all time series of a batch
+         */
+        @Param({"1000", "100000", "1000000", "10000000"})
+        public int points;
+
+        /**
+         * The amount of time series the points are split into
+         */
+        @Param({"1", "16"})
+        public int batchSize;
+
+        /**
+         * True if the points are ordered by their timestamp, otherwise they are shuffled
+         */
+        @Param({"true", "false"})
+        public boolean sorted;
+
+        private long[][] timestamps;
+        private double[][] values;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Random random = new Random(42);
+            timestamps = new long[batchSize][];
+            values = new double[batchSize][];
+
+            for (int series = 0; series < batchSize; series++) {
+                int size = points / batchSize;
+                timestamps[series] = new long[size];
+                values[series] = new double[size];
+
+                double value = 100;
+                for (int i = 0; i < size; i++) {
+                    //one point per second with a random walk that repeats some values
+                    value += random.nextInt(11) - 5;
+                    timestamps[series][i] = i * 1000L;
+                    values[series][i] = value;
+                }
+                if (!sorted) {
+                    shuffle(timestamps[series], values[series], random);
+                }
+            }
+        }
+
+        private static void shuffle(long[] timestamps, double[] values, Random random) {
+            for (int i = timestamps.length - 1; i > 0; i--) {
+                int other = random.nextInt(i + 1);
+
+                long timestamp = timestamps[i];
+                timestamps[i] = timestamps[other];
+                timestamps[other] = timestamp;
+
+                double value = values[i];
+                values[i] = values[other];
+                values[other] = value;
+            }
+        }
+
+        /**
+         * @return fresh time series with the generated points
+         */
+        List<ChronixTimeSeries<MetricTimeSeries>> batch() {
+            List<ChronixTimeSeries<MetricTimeSeries>> batch = new ArrayList<>(batchSize);
+            for (int series = 0; series < batchSize; series++) {
+                int size = timestamps[series].length;
+                MetricTimeSeries timeSeries = new MetricTimeSeries.Builder("benchmark-" + series, "metric")
+                        .points(new LongList(Arrays.copyOf(timestamps[series], size), size),
+                                new DoubleList(Arrays.copyOf(values[series], size), size))
+                        .build();
+                batch.add(new ChronixMetricTimeSeries("benchmark-" + series, timeSeries));
+            }
+            return batch;
+        }
+    }
+
+    /**
+     * The benchmarked function
+     */
+    @State(Scope.Thread)
+    public static class FunctionState {
+
+        /**
+         * Every function of the metric type with its arguments (name:arg1,arg2)
+         */
+        @Param({
+                //Aggregations
+                "avg", "min", "max", "sum", "count", "dev", "last", "first", "range", "diff", "sdiff", "p:0.5", "integral",
+                //Analyses
+                "trend", "outlier", "frequency:10,6",
+                //Transformations
+                "add:4", "sub:4", "vector:0.01", "bottom:10", "top:10", "top:10,all", "movavg:10,SECONDS", "smovavg:10", "scale:2",
+                "divide:2", "derivative", "nnderivative", "timeshift:10,SECONDS", "distinct", "distinct:runs",
+                "bucket:1,MINUTES,avg"})
+        public String function;
+
+        private ChronixFunction<MetricTimeSeries> chronixFunction;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            String[] nameAndArguments = function.split(":");
+            chronixFunction = new MetricType().getFunction(nameAndArguments[0]);
+            if (nameAndArguments.length > 1) {
+                chronixFunction.setArguments(nameAndArguments[1].split(","));
+            }
+        }
+    }
+
+    @Benchmark
+    public void execute(SeriesState series, FunctionState function, Blackhole blackhole) {
+        List<ChronixTimeSeries<MetricTimeSeries>> batch = series.batch();
+        FunctionCtx functionCtx = new FunctionCtx(1, 1, 1);
+
+        function.chronixFunction.execute(batch, functionCtx);
+
+        blackhole.consume(functionCtx);
+        //transformations only change the time series
+        for (ChronixTimeSeries<MetricTimeSeries> timeSeries : batch) {
+            blackhole.consume(timeSeries.getRawTimeSeries().size());
+        }
+    }
+
+    @Benchmark
+    public void createSeries(SeriesState series, Blackhole blackhole) {
+        List<ChronixTimeSeries<MetricTimeSeries>> batch = series.batch();
+        for (ChronixTimeSeries<MetricTimeSeries> timeSeries : batch) {
+            blackhole.consume(timeSeries.getRawTimeSeries().size());
+        }
+    }
+}
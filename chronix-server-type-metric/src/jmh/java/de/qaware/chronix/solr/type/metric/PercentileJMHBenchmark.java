@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.type.metric;
+
+import de.qaware.chronix.converter.common.DoubleList;
+import de.qaware.chronix.solr.type.metric.functions.math.OrderStatistics;
+import de.qaware.chronix.solr.type.metric.functions.math.Percentile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the exact percentiles with a sort of the values against the selection of {@link OrderStatistics}.
+ * <p>
+ * The sort benchmarks are the former implementation: copy the values, sort them and evaluate the percentiles.
+ * The outlier benchmarks need the quartiles and the maximum.
+ * <p>
+ * Run it with: gradlew :chronix-server-type-metric:jmhPercentileBenchmark
+ *
+ * @author f.lautenschlager
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@State(Scope.Thread)
+public class PercentileJMHBenchmark {
+
+    /**
+     * The amount of values
+     */
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int points;
+
+    /**
+     * The distribution of the values: a random walk with repeated values, uniform random values or sorted values
+     */
+    @Param({"walk", "uniform", "sorted"})
+    public String distribution;
+
+    private DoubleList values;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        double[] generated = new double[points];
+        double value = 100;
+        for (int i = 0; i < points; i++) {
+            switch (distribution) {
+                case "walk":
+                    value += random.nextInt(11) - 5;
+                    generated[i] = value;
+                    break;
+                case "uniform":
+                    generated[i] = random.nextDouble();
+                    break;
+                default:
+                    generated[i] = i;
+            }
+        }
+        values = new DoubleList(generated, points);
+    }
+
+    @Benchmark
+    public double sortPercentile() {
+        double[] sorted = values.toArray();
+        Arrays.sort(sorted);
+        return Percentile.evaluateSorted(sorted, 0.99);
+    }
+
+    @Benchmark
+    public double selectPercentile() {
+        return Percentile.evaluate(values, 0.99);
+    }
+
+    @Benchmark
+    public void sortOutlier(Blackhole blackhole) {
+        double[] sorted = values.toArray();
+        Arrays.sort(sorted);
+        blackhole.consume(Percentile.evaluateSorted(sorted, .25));
+        blackhole.consume(Percentile.evaluateSorted(sorted, .75));
+        blackhole.consume(sorted[sorted.length - 1]);
+    }
+
+    @Benchmark
+    public void selectOutlier(Blackhole blackhole) {
+        blackhole.consume(OrderStatistics.percentiles(values, .25, .75, 1));
+    }
+}
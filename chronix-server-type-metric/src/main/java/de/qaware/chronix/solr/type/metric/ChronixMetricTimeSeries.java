@@ -21,6 +21,8 @@ import de.qaware.chronix.converter.serializer.protobuf.ProtoBufMetricTimeSeriesS
 import de.qaware.chronix.server.types.ChronixTimeSeries;
 import de.qaware.chronix.timeseries.MetricTimeSeries;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.nio.charset.Charset;
 import java.util.Map;
 
@@ -31,8 +33,20 @@ import java.util.Map;
  */
 public class ChronixMetricTimeSeries implements ChronixTimeSeries<MetricTimeSeries> {
 
+    private static final int JSON_BUFFER_SIZE = 8192;
+
     private MetricTimeSeries timeSeries;
     private String joinKey;
+    private ChunkSummary summary;
+    private boolean pointsAreSummarized;
+    /**
+     * The columns that are edited by transformations. If set, they hold the points instead of the time series.
+     */
+    private MetricColumns columns;
+    /**
+     * True if the points are known to be sorted. Cleared if the raw time series is handed out, as it could be changed.
+     */
+    private boolean sorted;
 
     /**
      * @param metricTimeSeries the wrapped time series
@@ -42,6 +56,32 @@ public class ChronixMetricTimeSeries implements ChronixTimeSeries<MetricTimeSeri
         this.joinKey = joinKey;
     }
 
+    /**
+     * Creates a summarized time series.
+     * The wrapped time series only holds the points of the chunks that are not covered by the summary.
+     *
+     * @param joinKey          the join key
+     * @param metricTimeSeries the wrapped time series with the decoded points
+     * @param summary          the summary of the chunks that are not decoded
+     */
+    public ChronixMetricTimeSeries(String joinKey, MetricTimeSeries metricTimeSeries, ChunkSummary summary) {
+        this(joinKey, metricTimeSeries);
+        this.summary = summary;
+    }
+
+    /**
+     * Creates a time series with points that are already sorted, e.g. merged from the chunks.
+     *
+     * @param joinKey          the join key
+     * @param metricTimeSeries the wrapped time series with sorted points
+     * @param summary          the summary of the chunks that are not decoded, can be null
+     * @param sorted           true if the points are sorted
+     */
+    ChronixMetricTimeSeries(String joinKey, MetricTimeSeries metricTimeSeries, ChunkSummary summary, boolean sorted) {
+        this(joinKey, metricTimeSeries, summary);
+        this.sorted = sorted;
+    }
+
     @Override
     public String getType() {
         return timeSeries.getType();
@@ -54,12 +94,12 @@ public class ChronixMetricTimeSeries implements ChronixTimeSeries<MetricTimeSeri
 
     @Override
     public long getStart() {
-        return timeSeries.getStart();
+        return points().getStart();
     }
 
     @Override
     public long getEnd() {
-        return timeSeries.getEnd();
+        return points().getEnd();
     }
 
     @Override
@@ -68,19 +108,85 @@ public class ChronixMetricTimeSeries implements ChronixTimeSeries<MetricTimeSeri
     }
 
     @Override
-    public void sort() {
-        timeSeries.sort();
+    public synchronized void sort() {
+        if (columns != null) {
+            columns.sort();
+            return;
+        }
+        //checking the order is cheaper than sorting the time series
+        if (!sorted && !isSorted(timeSeries)) {
+            timeSeries.sort();
+        }
+        sorted = true;
+    }
+
+    @Override
+    public synchronized void removeDuplicates() {
+        columns().removeDuplicates();
+    }
+
+    private static boolean isSorted(MetricTimeSeries timeSeries) {
+        for (int i = 1; i < timeSeries.size(); i++) {
+            if (timeSeries.getTime(i) < timeSeries.getTime(i - 1)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
     public String dataAsJson() {
-        byte[] data = new JsonMetricTimeSeriesSerializer().toJson(timeSeries);
+        byte[] data = new JsonMetricTimeSeriesSerializer().toJson(points());
         return new String(data, Charset.forName("UTF-8"));
     }
 
+    /**
+     * Writes the points as [[timestamps],[values]] like the json serializer.
+     * The numbers are collected in a small buffer that is flushed to the writer, hence the memory
+     * does not grow with the size of the time series.
+     */
+    @Override
+    public synchronized void writeDataAsJson(Writer writer) throws IOException {
+        MetricTimeSeries points = points();
+        StringBuilder numbers = new StringBuilder(JSON_BUFFER_SIZE + 64);
+        char[] buffer = new char[JSON_BUFFER_SIZE + 64];
+
+        numbers.append("[[");
+        for (int i = 0; i < points.size(); i++) {
+            if (i > 0) {
+                numbers.append(',');
+            }
+            numbers.append(points.getTime(i));
+            flushIfFull(numbers, buffer, writer);
+        }
+        numbers.append("],[");
+        for (int i = 0; i < points.size(); i++) {
+            if (i > 0) {
+                numbers.append(',');
+            }
+            numbers.append(points.getValue(i));
+            flushIfFull(numbers, buffer, writer);
+        }
+        numbers.append("]]");
+        flush(numbers, buffer, writer);
+    }
+
+    private static void flushIfFull(StringBuilder numbers, char[] buffer, Writer writer) throws IOException {
+        if (numbers.length() >= JSON_BUFFER_SIZE) {
+            flush(numbers, buffer, writer);
+        }
+    }
+
+    private static void flush(StringBuilder numbers, char[] buffer, Writer writer) throws IOException {
+        int length = numbers.length();
+        numbers.getChars(0, length, buffer, 0);
+        writer.write(buffer, 0, length);
+        numbers.setLength(0);
+    }
+
     @Override
     public byte[] dataAsBlob() {
-        byte[] data = ProtoBufMetricTimeSeriesSerializer.to(timeSeries.points().iterator());
+        byte[] data = ProtoBufMetricTimeSeriesSerializer.to(points().points().iterator());
         //compress data
         return Compression.compress(data);
     }
@@ -91,7 +197,55 @@ public class ChronixMetricTimeSeries implements ChronixTimeSeries<MetricTimeSeri
     }
 
     @Override
-    public MetricTimeSeries getRawTimeSeries() {
+    public synchronized MetricTimeSeries getRawTimeSeries() {
+        MetricTimeSeries points = points();
+        sorted = false;
+        return points;
+    }
+
+    /**
+     * Hands the points to the columns for an in place edit.
+     * The time series is cleared, the columns hold the points until they are requested again.
+     *
+     * @return the columns of this time series
+     */
+    synchronized MetricColumns columns() {
+        if (columns == null) {
+            columns = MetricColumns.copyOf(timeSeries);
+            timeSeries.clear();
+        }
+        return columns;
+    }
+
+    /**
+     * @param other the columns
+     * @return true if the given columns currently hold the points of this time series
+     */
+    synchronized boolean owns(MetricColumns other) {
+        return columns != null && columns == other;
+    }
+
+    /**
+     * @return the time series with the edited points of the columns
+     */
+    private synchronized MetricTimeSeries points() {
+        if (columns != null) {
+            columns.writeTo(timeSeries);
+            sorted = columns.isSorted();
+            columns = null;
+        }
         return timeSeries;
     }
+
+    /**
+     * @return the summary of all points (summarized chunks and decoded points) or null if the time series is not summarized
+     */
+    public synchronized ChunkSummary getSummary() {
+        //add the decoded points only once
+        if (summary != null && !pointsAreSummarized) {
+            summary.merge(ChunkSummary.of(points(), summary.hasSketch()));
+            pointsAreSummarized = true;
+        }
+        return summary;
+    }
 }
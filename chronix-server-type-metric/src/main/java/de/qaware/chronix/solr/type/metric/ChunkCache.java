@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.type.metric;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexableField;
+import org.apache.solr.search.SolrCache;
+import org.apache.solr.search.SolrIndexSearcher;
+
+/**
+ * Access to the searcher scoped cache of decoded chunks.
+ * <p>
+ * The cache is a user defined solr cache named {@value #NAME} in the solrconfig.xml, e.g.
+ * <pre>
+ * &lt;cache name="chronixChunkCache" class="solr.LRUCache" size="100000" maxRamMB="256"
+ *        autowarmCount="1024" regenerator="de.qaware.chronix.solr.type.metric.ChunkCacheRegenerator"/&gt;
+ * </pre>
+ * The byte budget (maxRamMB), the eviction and the hit / miss metrics are provided by solr.
+ * The chunks are keyed by their _version_, as it changes with every update of the document
+ * and is stable across searchers, in contrast to the lucene document ids.
+ *
+ * @author f.lautenschlager
+ */
+public final class ChunkCache {
+
+    /**
+     * The name of the cache in the solrconfig.xml
+     */
+    public static final String NAME = "chronixChunkCache";
+
+    /**
+     * The version field of a chunk
+     */
+    public static final String VERSION = "_version_";
+
+    private ChunkCache() {
+        //Avoid instances
+    }
+
+    /**
+     * @param searcher the current searcher, can be null
+     * @return the chunk cache of the searcher or null if it is not configured
+     */
+    @SuppressWarnings("unchecked")
+    public static SolrCache<Long, DecodedChunk> of(SolrIndexSearcher searcher) {
+        if (searcher == null) {
+            return null;
+        }
+        return (SolrCache<Long, DecodedChunk>) searcher.getCache(NAME);
+    }
+
+    /**
+     * Gets the decoded chunk from the cache or decodes and caches it.
+     * If there is no cache or the chunk has no version, the chunk is only decoded.
+     *
+     * @param cache   the chunk cache, can be null
+     * @param doc     the lucene document of the chunk
+     * @param data    the compressed data of the chunk
+     * @param tsStart the start of the chunk
+     * @param tsEnd   the end of the chunk
+     * @return the decoded chunk
+     */
+    public static DecodedChunk get(SolrCache<Long, DecodedChunk> cache, Document doc, byte[] data, long tsStart, long tsEnd) {
+        IndexableField version = doc.getField(VERSION);
+        if (cache == null || version == null || version.numericValue() == null) {
+            return DecodedChunk.decode(data, tsStart, tsEnd);
+        }
+
+        Long key = version.numericValue().longValue();
+        DecodedChunk chunk = cache.get(key);
+        if (chunk == null) {
+            chunk = DecodedChunk.decode(data, tsStart, tsEnd);
+            cache.put(key, chunk);
+        }
+        return chunk;
+    }
+}
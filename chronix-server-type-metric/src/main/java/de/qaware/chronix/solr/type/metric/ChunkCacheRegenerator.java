@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.type.metric;
+
+import org.apache.solr.search.CacheRegenerator;
+import org.apache.solr.search.SolrCache;
+import org.apache.solr.search.SolrIndexSearcher;
+
+/**
+ * Autowarms the {@link ChunkCache} of a new searcher.
+ * <p>
+ * A chunk never changes without getting a new _version_. Hence the decoded chunks of the old searcher
+ * are still valid and the hot series survive a commit. Entries of deleted chunks are not looked up anymore
+ * and get evicted.
+ *
+ * @author f.lautenschlager
+ */
+public class ChunkCacheRegenerator implements CacheRegenerator {
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean regenerateItem(SolrIndexSearcher newSearcher, SolrCache newCache, SolrCache oldCache, Object oldKey, Object oldVal) {
+        newCache.put(oldKey, oldVal);
+        return true;
+    }
+}
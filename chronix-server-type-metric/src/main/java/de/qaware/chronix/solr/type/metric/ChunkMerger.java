@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.type.metric;
+
+import de.qaware.chronix.converter.common.DoubleList;
+import de.qaware.chronix.converter.common.LongList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Merges the points of the chunks of a time series into a single sorted sequence.
+ * <p>
+ * Chunks that do not overlap are concatenated in the order of their first timestamp.
+ * Overlapping chunks (late data, re-ingested chunks) are merged with a k-way merge over a heap of the chunks.
+ * The merge is stable: points with the same timestamp keep the order of the chunks they are added in.
+ * All points are kept, duplicates are removed on request by {@link MetricColumns#removeDuplicates()}.
+ *
+ * @author f.lautenschlager
+ */
+final class ChunkMerger {
+
+    private final List<long[]> timestamps = new ArrayList<>();
+    private final List<double[]> values = new ArrayList<>();
+    private int points;
+
+    /**
+     * Adds the points of a chunk. The arrays are owned by the merger afterwards
+     * and are sorted in place, if they are not sorted.
+     *
+     * @param chunkTimestamps the timestamps of the chunk
+     * @param chunkValues     the values of the chunk
+     */
+    void add(long[] chunkTimestamps, double[] chunkValues) {
+        if (chunkTimestamps.length == 0) {
+            return;
+        }
+        if (!MetricColumns.isSorted(chunkTimestamps, chunkTimestamps.length)) {
+            MetricColumns.sort(chunkTimestamps, chunkValues, chunkTimestamps.length);
+        }
+        timestamps.add(chunkTimestamps);
+        values.add(chunkValues);
+        points += chunkTimestamps.length;
+    }
+
+    /**
+     * @return the amount of added points
+     */
+    int size() {
+        return points;
+    }
+
+    /**
+     * @return true if no points are added
+     */
+    boolean isEmpty() {
+        return points == 0;
+    }
+
+    /**
+     * Merges the points of all chunks into the given lists
+     *
+     * @param mergedTimestamps the list for the sorted timestamps
+     * @param mergedValues     the list for the values
+     */
+    void mergeInto(LongList mergedTimestamps, DoubleList mergedValues) {
+        int chunks = timestamps.size();
+
+        //the chunks ordered by their first timestamp, stable for equal timestamps
+        int[] order = new int[chunks];
+        for (int i = 0; i < chunks; i++) {
+            order[i] = i;
+        }
+        insertionSort(order);
+
+        if (!overlap(order)) {
+            for (int chunk : order) {
+                mergedTimestamps.addAll(timestamps.get(chunk));
+                mergedValues.addAll(values.get(chunk));
+            }
+            return;
+        }
+        kWayMerge(mergedTimestamps, mergedValues);
+    }
+
+    private void insertionSort(int[] order) {
+        //the amount of chunks of a time series is small
+        for (int i = 1; i < order.length; i++) {
+            int chunk = order[i];
+            long first = timestamps.get(chunk)[0];
+            int j = i - 1;
+            while (j >= 0 && timestamps.get(order[j])[0] > first) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = chunk;
+        }
+    }
+
+    private boolean overlap(int[] order) {
+        for (int i = 1; i < order.length; i++) {
+            long[] previous = timestamps.get(order[i - 1]);
+            //equal timestamps at the borders are merged to keep the order of the chunks
+            if (previous[previous.length - 1] >= timestamps.get(order[i])[0]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void kWayMerge(LongList mergedTimestamps, DoubleList mergedValues) {
+        int chunks = timestamps.size();
+        int[] positions = new int[chunks];
+
+        //binary min heap of the chunk indices ordered by the current timestamp of the chunk
+        int[] heap = new int[chunks];
+        int heapSize = 0;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            heap[heapSize++] = chunk;
+        }
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            siftDown(heap, heapSize, i, positions);
+        }
+
+        while (heapSize > 0) {
+            int chunk = heap[0];
+            int position = positions[chunk];
+            mergedTimestamps.add(timestamps.get(chunk)[position]);
+            mergedValues.add(values.get(chunk)[position]);
+
+            positions[chunk]++;
+            if (positions[chunk] == timestamps.get(chunk).length) {
+                //the chunk is exhausted
+                heap[0] = heap[--heapSize];
+            }
+            siftDown(heap, heapSize, 0, positions);
+        }
+    }
+
+    private void siftDown(int[] heap, int heapSize, int index, int[] positions) {
+        int current = index;
+        while (true) {
+            int left = 2 * current + 1;
+            if (left >= heapSize) {
+                return;
+            }
+            int smallest = left;
+            int right = left + 1;
+            if (right < heapSize && before(heap[right], heap[left], positions)) {
+                smallest = right;
+            }
+            if (!before(heap[smallest], heap[current], positions)) {
+                return;
+            }
+            int swap = heap[current];
+            heap[current] = heap[smallest];
+            heap[smallest] = swap;
+            current = smallest;
+        }
+    }
+
+    /**
+     * @return true if the current point of the chunk comes before the current point of the other chunk
+     */
+    private boolean before(int chunk, int other, int[] positions) {
+        long timestamp = timestamps.get(chunk)[positions[chunk]];
+        long otherTimestamp = timestamps.get(other)[positions[other]];
+        //chunks that are added earlier come first for equal timestamps
+        return timestamp < otherTimestamp || timestamp == otherTimestamp && chunk < other;
+    }
+}
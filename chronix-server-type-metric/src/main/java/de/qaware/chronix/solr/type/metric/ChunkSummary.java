@@ -0,0 +1,444 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.type.metric;
+
+import de.qaware.chronix.Schema;
+import de.qaware.chronix.server.types.ChronixTimeSeries;
+import de.qaware.chronix.solr.type.metric.functions.math.QuantileSketch;
+import de.qaware.chronix.timeseries.MetricTimeSeries;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.schema.IndexSchema;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Summary statistics of the points of a chunk (min, max, sum, count, first, last and the sum of squares).
+ * <p>
+ * The summary is stored with every chunk at ingestion time. Hence decomposable aggregations
+ * can be answered for chunks that lie fully inside the query range without decompressing them.
+ * Summaries of several chunks are combined with {@link #merge(ChunkSummary)}.
+ * <p>
+ * If the schema defines the field {@link #SKETCH}, the summary also stores a {@link QuantileSketch} of the values
+ * for approximate percentiles.
+ *
+ * @author f.lautenschlager
+ */
+public final class ChunkSummary {
+
+    /**
+     * The minimum value of the chunk
+     */
+    public static final String MIN = "chunk_min";
+    /**
+     * The maximum value of the chunk
+     */
+    public static final String MAX = "chunk_max";
+    /**
+     * The sum of the values of the chunk
+     */
+    public static final String SUM = "chunk_sum";
+    /**
+     * The amount of points of the chunk
+     */
+    public static final String COUNT = "chunk_count";
+    /**
+     * The value of the first point of the chunk
+     */
+    public static final String FIRST = "chunk_first";
+    /**
+     * The value of the last point of the chunk
+     */
+    public static final String LAST = "chunk_last";
+    /**
+     * The sum of the squared values of the chunk
+     */
+    public static final String SUM_OF_SQUARES = "chunk_sumsq";
+
+    /**
+     * All fields of the summary
+     */
+    public static final Set<String> FIELDS = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(MIN, MAX, SUM, COUNT, FIRST, LAST, SUM_OF_SQUARES)));
+
+    /**
+     * The serialized quantile sketch of the values of the chunk (optional)
+     */
+    public static final String SKETCH = "chunk_sketch";
+
+    /**
+     * All fields of the summary including the optional sketch
+     */
+    public static final Set<String> FIELDS_WITH_SKETCH = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(MIN, MAX, SUM, COUNT, FIRST, LAST, SUM_OF_SQUARES, SKETCH)));
+
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    private double sum;
+    private long count;
+    private double first = Double.NaN;
+    private double last = Double.NaN;
+    private double sumOfSquares;
+
+    private long firstTimestamp = Long.MAX_VALUE;
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    /**
+     * The sketch of the added values and the stored sketches of the chunks, which are only read if a percentile is requested.
+     * The sketch is not known, if it is not tracked or if a chunk is stored without a sketch.
+     */
+    private QuantileSketch sketch;
+    private List<BytesRef> storedSketches;
+    private boolean sketchKnown;
+
+    /**
+     * Creates an empty summary that tracks the sketch of the values
+     */
+    public ChunkSummary() {
+        this(true);
+    }
+
+    /**
+     * Creates an empty summary
+     *
+     * @param sketch true if the sketch of the values is tracked, e.g. if the schema stores it
+     */
+    public ChunkSummary(boolean sketch) {
+        this.sketchKnown = sketch;
+    }
+
+    /**
+     * Summarizes the points of the given time series including the sketch of the values.
+     *
+     * @param timeSeries the time series
+     * @return the summary of the points
+     */
+    public static ChunkSummary of(MetricTimeSeries timeSeries) {
+        return of(timeSeries, true);
+    }
+
+    /**
+     * Summarizes the points of the given time series.
+     *
+     * @param timeSeries the time series
+     * @param sketch     true if the sketch of the values is needed, e.g. {@link #isSketchDefinedIn(IndexSchema)}
+     * @return the summary of the points
+     */
+    public static ChunkSummary of(MetricTimeSeries timeSeries, boolean sketch) {
+        ChunkSummary summary = new ChunkSummary(sketch);
+        for (int i = 0; i < timeSeries.size(); i++) {
+            summary.add(timeSeries.getTime(i), timeSeries.getValue(i));
+        }
+        return summary;
+    }
+
+    /**
+     * Reads the stored summary of a chunk.
+     * The timestamps of the first and last value are the start and the end of the chunk.
+     *
+     * @param doc the lucene document of the chunk
+     * @return the summary or null if the chunk has no (complete) summary
+     */
+    public static ChunkSummary of(Document doc) {
+        for (String field : FIELDS) {
+            if (doc.getField(field) == null) {
+                return null;
+            }
+        }
+
+        ChunkSummary summary = new ChunkSummary();
+        summary.min = doubleValue(doc, MIN);
+        summary.max = doubleValue(doc, MAX);
+        summary.sum = doubleValue(doc, SUM);
+        summary.count = doc.getField(COUNT).numericValue().longValue();
+        summary.first = doubleValue(doc, FIRST);
+        summary.last = doubleValue(doc, LAST);
+        summary.sumOfSquares = doubleValue(doc, SUM_OF_SQUARES);
+        summary.firstTimestamp = doc.getField(Schema.START).numericValue().longValue();
+        summary.lastTimestamp = doc.getField(Schema.END).numericValue().longValue();
+
+        BytesRef sketch = doc.getBinaryValue(SKETCH);
+        if (sketch != null) {
+            summary.storedSketches = new ArrayList<>();
+            summary.storedSketches.add(sketch);
+        } else {
+            summary.sketchKnown = summary.count == 0;
+        }
+        return summary;
+    }
+
+    /**
+     * Gets the summary of a time series that was converted by
+     * {@link MetricType#convert(String, java.util.List, long, long, de.qaware.chronix.server.types.ConversionOptions, org.apache.solr.search.SolrIndexSearcher)}
+     * with {@link de.qaware.chronix.server.types.ConversionOptions#summarize(java.util.Set, java.util.Set)}
+     *
+     * @param timeSeries the time series
+     * @return the summary of all points or null if the time series is not summarized
+     */
+    public static ChunkSummary of(ChronixTimeSeries<MetricTimeSeries> timeSeries) {
+        if (timeSeries instanceof ChronixMetricTimeSeries) {
+            return ((ChronixMetricTimeSeries) timeSeries).getSummary();
+        }
+        return null;
+    }
+
+    private static double doubleValue(Document doc, String field) {
+        IndexableField indexableField = doc.getField(field);
+        return indexableField.numericValue().doubleValue();
+    }
+
+    /**
+     * @param schema the index schema
+     * @return true if all summary fields are defined in the schema
+     */
+    public static boolean isDefinedIn(IndexSchema schema) {
+        for (String field : FIELDS) {
+            if (schema.getFieldOrNull(field) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param schema the index schema
+     * @return true if the summary fields and the sketch field are defined in the schema
+     */
+    public static boolean isSketchDefinedIn(IndexSchema schema) {
+        return isDefinedIn(schema) && schema.getFieldOrNull(SKETCH) != null;
+    }
+
+    /**
+     * Adds a point to the summary. The value is only added to the sketch, if the summary tracks it.
+     *
+     * @param timestamp the timestamp of the point
+     * @param value     the value of the point
+     */
+    public void add(long timestamp, double value) {
+        if (count == 0 || value < min) {
+            min = value;
+        }
+        if (count == 0 || value > max) {
+            max = value;
+        }
+        if (timestamp < firstTimestamp) {
+            firstTimestamp = timestamp;
+            first = value;
+        }
+        if (timestamp >= lastTimestamp) {
+            lastTimestamp = timestamp;
+            last = value;
+        }
+        sum += value;
+        sumOfSquares += value * value;
+        count++;
+        if (sketchKnown) {
+            if (sketch == null) {
+                sketch = new QuantileSketch();
+            }
+            sketch.add(value);
+        }
+    }
+
+    /**
+     * Merges the other summary into this summary
+     *
+     * @param other the summary of other points
+     * @return this summary
+     */
+    public ChunkSummary merge(ChunkSummary other) {
+        if (other == null || other.count == 0) {
+            return this;
+        }
+        if (count == 0 || other.min < min) {
+            min = other.min;
+        }
+        if (count == 0 || other.max > max) {
+            max = other.max;
+        }
+        if (other.firstTimestamp < firstTimestamp) {
+            firstTimestamp = other.firstTimestamp;
+            first = other.first;
+        }
+        if (other.lastTimestamp >= lastTimestamp) {
+            lastTimestamp = other.lastTimestamp;
+            last = other.last;
+        }
+        sum += other.sum;
+        sumOfSquares += other.sumOfSquares;
+        count += other.count;
+        //the sketch is only known, if it is known for both summaries
+        if (sketchKnown && other.sketchKnown) {
+            if (other.sketch != null) {
+                if (sketch == null) {
+                    sketch = new QuantileSketch();
+                }
+                sketch.merge(other.sketch);
+            }
+            if (other.storedSketches != null) {
+                if (storedSketches == null) {
+                    storedSketches = new ArrayList<>();
+                }
+                storedSketches.addAll(other.storedSketches);
+            }
+        } else {
+            sketchKnown = false;
+            sketch = null;
+            storedSketches = null;
+        }
+        return this;
+    }
+
+    /**
+     * Sets the summary fields of the given chunk document.
+     * Nothing is set, if the schema does not define the summary fields.
+     *
+     * @param doc    the solr input document of the chunk
+     * @param schema the index schema
+     */
+    public void addTo(SolrInputDocument doc, IndexSchema schema) {
+        if (!isDefinedIn(schema)) {
+            return;
+        }
+        doc.setField(MIN, min);
+        doc.setField(MAX, max);
+        doc.setField(SUM, sum);
+        doc.setField(COUNT, count);
+        doc.setField(FIRST, first);
+        doc.setField(LAST, last);
+        doc.setField(SUM_OF_SQUARES, sumOfSquares);
+        if (sketchKnown && schema.getFieldOrNull(SKETCH) != null) {
+            doc.setField(SKETCH, sketch().toBytes());
+        }
+    }
+
+    /**
+     * @return the minimum or NaN if the summary is empty
+     */
+    public double min() {
+        return min;
+    }
+
+    /**
+     * @return the maximum or NaN if the summary is empty
+     */
+    public double max() {
+        return max;
+    }
+
+    /**
+     * @return the sum or NaN if the summary is empty
+     */
+    public double sum() {
+        return count == 0 ? Double.NaN : sum;
+    }
+
+    /**
+     * @return the amount of points
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @return the average or NaN if the summary is empty
+     */
+    public double avg() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    /**
+     * @return the value of the first point or NaN if the summary is empty
+     */
+    public double first() {
+        return first;
+    }
+
+    /**
+     * @return the value of the last point or NaN if the summary is empty
+     */
+    public double last() {
+        return last;
+    }
+
+    /**
+     * @return the sample standard deviation or NaN if the summary is empty
+     */
+    public double dev() {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        double variance = (sumOfSquares - sum * sum / count) / (count - 1);
+        //rounding errors could result in a small negative variance
+        return Math.sqrt(Math.max(variance, 0));
+    }
+
+    /**
+     * @return true if the sketch of all values is known, i.e. it is tracked and all merged chunks have a sketch
+     */
+    public boolean hasSketch() {
+        return sketchKnown;
+    }
+
+    /**
+     * @param percentile the percentile (0 - 1), e.g. 0.25
+     * @return the approximated percentile or NaN if the summary is empty
+     * @throws IllegalStateException if the sketch is not known for all values, i.e. the summary was not created for a percentile
+     */
+    public double quantile(double percentile) {
+        if (!sketchKnown) {
+            throw new IllegalStateException("The summary has no quantile sketch of all values. Summarize the time series with the sketches of the chunks.");
+        }
+        return sketch().quantile(percentile);
+    }
+
+    /**
+     * Merges the stored sketches into the sketch of the added values
+     *
+     * @return the sketch of all values
+     */
+    private QuantileSketch sketch() {
+        if (sketch == null) {
+            sketch = new QuantileSketch();
+        }
+        if (storedSketches != null) {
+            for (BytesRef stored : storedSketches) {
+                sketch.merge(QuantileSketch.fromBytes(stored.bytes, stored.offset, stored.length));
+            }
+            storedSketches = null;
+        }
+        return sketch;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("min", min)
+                .append("max", max)
+                .append("sum", sum)
+                .append("count", count)
+                .append("first", first)
+                .append("last", last)
+                .append("sumOfSquares", sumOfSquares)
+                .toString();
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.type.metric;
+
+import de.qaware.chronix.Schema;
+import de.qaware.chronix.converter.common.Compression;
+import de.qaware.chronix.converter.serializer.protobuf.ProtoBufMetricTimeSeriesSerializer;
+import de.qaware.chronix.timeseries.MetricTimeSeries;
+import org.apache.commons.io.IOUtils;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.update.AddUpdateCommand;
+import org.apache.solr.update.processor.UpdateRequestProcessor;
+import org.apache.solr.update.processor.UpdateRequestProcessorFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Adds the {@link ChunkSummary} to metric chunks that are added without a summary,
+ * e.g. by clients that use the plain update handler.
+ * <p>
+ * Chunks that already contain a summary (ingestion handlers, compaction) are passed as they are.
+ * Nothing is added if the schema does not define the summary fields.
+ *
+ * @author f.lautenschlager
+ */
+public class ChunkSummaryUpdateProcessorFactory extends UpdateRequestProcessorFactory {
+
+    @Override
+    public UpdateRequestProcessor getInstance(SolrQueryRequest req, SolrQueryResponse rsp, UpdateRequestProcessor next) {
+        return new ChunkSummaryUpdateProcessor(req.getSchema(), next);
+    }
+
+    /**
+     * Decodes the chunk and adds the summary fields
+     */
+    static final class ChunkSummaryUpdateProcessor extends UpdateRequestProcessor {
+
+        private final IndexSchema schema;
+
+        ChunkSummaryUpdateProcessor(IndexSchema schema, UpdateRequestProcessor next) {
+            super(next);
+            this.schema = schema;
+        }
+
+        @Override
+        public void processAdd(AddUpdateCommand cmd) throws IOException {
+            SolrInputDocument doc = cmd.getSolrInputDocument();
+
+            if (needsSummary(doc)) {
+                summarize(doc).addTo(doc, schema);
+            }
+            super.processAdd(cmd);
+        }
+
+        private boolean needsSummary(SolrInputDocument doc) {
+            return "metric".equals(String.valueOf(doc.getFieldValue(Schema.TYPE)))
+                    && !doc.containsKey(ChunkSummary.COUNT)
+                    && doc.getFieldValue(Schema.DATA) != null
+                    && ChunkSummary.isDefinedIn(schema);
+        }
+
+        private ChunkSummary summarize(SolrInputDocument doc) {
+            long start = longValue(doc.getFieldValue(Schema.START));
+            long end = longValue(doc.getFieldValue(Schema.END));
+
+            MetricTimeSeries.Builder ts = new MetricTimeSeries.Builder("", "metric");
+            InputStream decompressed = Compression.decompressToStream(bytes(doc.getFieldValue(Schema.DATA)));
+            ProtoBufMetricTimeSeriesSerializer.from(decompressed, start, end, start, end, ts);
+            IOUtils.closeQuietly(decompressed);
+
+            return ChunkSummary.of(ts.build(), ChunkSummary.isSketchDefinedIn(schema));
+        }
+
+        private static long longValue(Object value) {
+            if (value instanceof Number) {
+                return ((Number) value).longValue();
+            }
+            return Long.parseLong(String.valueOf(value));
+        }
+
+        private static byte[] bytes(Object data) {
+            if (data instanceof byte[]) {
+                return (byte[]) data;
+            }
+            if (data instanceof ByteBuffer) {
+                ByteBuffer buffer = ((ByteBuffer) data).duplicate();
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                return bytes;
+            }
+            //xml and json updates send the binary field base64 encoded
+            return Base64.getMimeDecoder().decode(String.valueOf(data));
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.type.metric;
+
+import de.qaware.chronix.converter.common.Compression;
+import de.qaware.chronix.converter.serializer.protobuf.ProtoBufMetricTimeSeriesSerializer;
+import de.qaware.chronix.timeseries.MetricTimeSeries;
+import org.apache.commons.io.IOUtils;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.RamUsageEstimator;
+
+import java.io.InputStream;
+
+/**
+ * The decoded points of a chunk as primitive arrays.
+ * Instances are immutable and shared between requests through the {@link ChunkCache}.
+ *
+ * @author f.lautenschlager
+ */
+public final class DecodedChunk implements Accountable {
+
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(DecodedChunk.class);
+
+    private final long[] timestamps;
+    private final double[] values;
+
+    private DecodedChunk(long[] timestamps, double[] values) {
+        this.timestamps = timestamps;
+        this.values = values;
+    }
+
+    /**
+     * Decompresses and decodes all points of the chunk.
+     *
+     * @param data    the compressed data of the chunk
+     * @param tsStart the start of the chunk
+     * @param tsEnd   the end of the chunk
+     * @return the decoded chunk
+     */
+    public static DecodedChunk decode(byte[] data, long tsStart, long tsEnd) {
+        MetricTimeSeries.Builder ts = new MetricTimeSeries.Builder("", "");
+        InputStream decompressed = Compression.decompressToStream(data);
+        ProtoBufMetricTimeSeriesSerializer.from(decompressed, tsStart, tsEnd, tsStart, tsEnd, ts);
+        IOUtils.closeQuietly(decompressed);
+
+        MetricTimeSeries points = ts.build();
+        return new DecodedChunk(points.getTimestampsAsArray(), points.getValuesAsArray());
+    }
+
+    /**
+     * Adds the points within the query range to the time series.
+     * The points are copied, hence the cached arrays are never modified.
+     *
+     * @param ts         the time series builder
+     * @param queryStart the start of the query
+     * @param queryEnd   the end of the query
+     */
+    public void addTo(MetricTimeSeries.Builder ts, long queryStart, long queryEnd) {
+        for (int i = 0; i < timestamps.length; i++) {
+            long timestamp = timestamps[i];
+            if (timestamp >= queryStart && timestamp <= queryEnd) {
+                ts.point(timestamp, values[i]);
+            }
+        }
+    }
+
+    /**
+     * @return the amount of points
+     */
+    public int size() {
+        return timestamps.length;
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        return BASE_RAM_BYTES_USED + RamUsageEstimator.sizeOf(timestamps) + RamUsageEstimator.sizeOf(values);
+    }
+}
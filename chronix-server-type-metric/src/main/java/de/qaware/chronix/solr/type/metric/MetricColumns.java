@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.type.metric;
+
+import de.qaware.chronix.server.types.ChronixTimeSeries;
+import de.qaware.chronix.timeseries.MetricTimeSeries;
+
+import java.util.Arrays;
+
+/**
+ * Mutable columns (timestamps and values) of a metric time series.
+ * <p>
+ * Transformations edit the columns in place instead of copying the points out of the time series,
+ * clearing it and adding them again. A {@link ChronixMetricTimeSeries} owns its columns until the points
+ * are requested again, e.g. by {@link ChronixMetricTimeSeries#getRawTimeSeries()}. Hence a pipeline of
+ * transformations copies the points once in and once out instead of once per transformation.
+ * <p>
+ * The arrays can be larger than the time series, only the first {@link #size()} entries are points.
+ *
+ * @author f.lautenschlager
+ */
+public final class MetricColumns {
+
+    private long[] timestamps;
+    private double[] values;
+    private int size;
+    private boolean sorted;
+
+    private MetricColumns(long[] timestamps, double[] values) {
+        this.timestamps = timestamps;
+        this.values = values;
+        this.size = timestamps.length;
+        this.sorted = isSorted(timestamps, size);
+    }
+
+    /**
+     * Gets the columns of the time series for an in place edit.
+     * Call {@link #update(ChronixTimeSeries)} afterwards.
+     *
+     * @param timeSeries the time series
+     * @return the columns owned by the time series or a copy for other implementations of a chronix time series
+     */
+    public static MetricColumns of(ChronixTimeSeries<MetricTimeSeries> timeSeries) {
+        if (timeSeries instanceof ChronixMetricTimeSeries) {
+            return ((ChronixMetricTimeSeries) timeSeries).columns();
+        }
+        return copyOf(timeSeries.getRawTimeSeries());
+    }
+
+    /**
+     * @param timeSeries the time series
+     * @return a copy of the points of the time series
+     */
+    static MetricColumns copyOf(MetricTimeSeries timeSeries) {
+        return new MetricColumns(timeSeries.getTimestampsAsArray(), timeSeries.getValuesAsArray());
+    }
+
+    /**
+     * @param timestamps the timestamps
+     * @param size       the amount of points
+     * @return true if the first timestamps are sorted
+     */
+    static boolean isSorted(long[] timestamps, int size) {
+        for (int i = 1; i < size; i++) {
+            if (timestamps[i] < timestamps[i - 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hands the edited columns back to the time series.
+     * Nothing is copied, if the time series owns the columns.
+     *
+     * @param timeSeries the time series the columns are taken from
+     */
+    public void update(ChronixTimeSeries<MetricTimeSeries> timeSeries) {
+        if (timeSeries instanceof ChronixMetricTimeSeries && ((ChronixMetricTimeSeries) timeSeries).owns(this)) {
+            return;
+        }
+        writeTo(timeSeries.getRawTimeSeries());
+    }
+
+    /**
+     * Replaces the points of the time series with the points of the columns
+     *
+     * @param timeSeries the metric time series
+     */
+    void writeTo(MetricTimeSeries timeSeries) {
+        timeSeries.clear();
+        if (size == timestamps.length) {
+            timeSeries.addAll(timestamps, values);
+        } else {
+            timeSeries.addAll(Arrays.copyOf(timestamps, size), Arrays.copyOf(values, size));
+        }
+    }
+
+    /**
+     * @return the timestamps, the array can be larger than the time series
+     */
+    public long[] timestamps() {
+        return timestamps;
+    }
+
+    /**
+     * @return the values, the array can be larger than the time series
+     */
+    public double[] values() {
+        return values;
+    }
+
+    /**
+     * @return the amount of points
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if the time series has no points
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Shrinks the time series to the first points, e.g. after removing points in place
+     *
+     * @param size the new amount of points
+     */
+    public void setSize(int size) {
+        if (size < 0 || size > timestamps.length) {
+            throw new IllegalArgumentException("Size " + size + " is out of range [0, " + timestamps.length + "]");
+        }
+        this.size = size;
+        //removing points keeps the order, but the points could have been edited before
+        this.sorted = isSorted(timestamps, size);
+    }
+
+    /**
+     * Has to be called after the timestamps are edited in a way that could break the order.
+     * Shifting all timestamps by the same amount keeps the order.
+     */
+    public void timestampsChanged() {
+        this.sorted = isSorted(timestamps, size);
+    }
+
+    /**
+     * @return true if the points are sorted by their timestamps
+     */
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    /**
+     * Sorts the points by their timestamps, if they are not sorted.
+     * The sort is stable.
+     */
+    public void sort() {
+        if (sorted) {
+            return;
+        }
+        sort(timestamps, values, size);
+        sorted = true;
+    }
+
+    /**
+     * Sorts the points and removes every point with the same timestamp and value as an earlier point.
+     * The values are compared by {@link Double#compare(double, double)}, i.e. NaN is equal to NaN.
+     * A point is compared with all kept points of its timestamp, which are few in a time series.
+     */
+    public void removeDuplicates() {
+        sort();
+        int kept = 0;
+        //the first kept point with the timestamp of the current point
+        int first = 0;
+        for (int i = 0; i < size; i++) {
+            if (kept == 0 || timestamps[kept - 1] != timestamps[i]) {
+                first = kept;
+            } else if (containsValue(first, kept, values[i])) {
+                continue;
+            }
+            //the kept points are written in place, they are never behind the read point
+            timestamps[kept] = timestamps[i];
+            values[kept] = values[i];
+            kept++;
+        }
+        size = kept;
+    }
+
+    private boolean containsValue(int from, int to, double value) {
+        for (int i = from; i < to; i++) {
+            if (Double.compare(values[i], value) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sorts the first points of the arrays by their timestamps.
+     * The sort is stable.
+     *
+     * @param timestamps the timestamps
+     * @param values     the values
+     * @param size       the amount of points
+     */
+    static void sort(long[] timestamps, double[] values, int size) {
+        long[] bufferTimes = Arrays.copyOf(timestamps, size);
+        double[] bufferValues = Arrays.copyOf(values, size);
+        mergeSort(bufferTimes, bufferValues, timestamps, values, 0, size);
+    }
+
+    /**
+     * Sorts the range [from, to) of the destination arrays.
+     * The source arrays must hold the same points within the range and are used as buffer.
+     */
+    private static void mergeSort(long[] srcTimes, double[] srcValues, long[] dstTimes, double[] dstValues, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        //sort both halves of the source, the destination is the buffer
+        mergeSort(dstTimes, dstValues, srcTimes, srcValues, from, middle);
+        mergeSort(dstTimes, dstValues, srcTimes, srcValues, middle, to);
+        merge(srcTimes, srcValues, dstTimes, dstValues, from, middle, to);
+    }
+
+    private static void merge(long[] srcTimes, double[] srcValues, long[] dstTimes, double[] dstValues, int from, int middle, int to) {
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || left < middle && srcTimes[left] <= srcTimes[right]) {
+                dstTimes[i] = srcTimes[left];
+                dstValues[i] = srcValues[left++];
+            } else {
+                dstTimes[i] = srcTimes[right];
+                dstValues[i] = srcValues[right++];
+            }
+        }
+    }
+}
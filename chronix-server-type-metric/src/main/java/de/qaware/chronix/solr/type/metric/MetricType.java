@@ -15,13 +15,17 @@
  */
 package de.qaware.chronix.solr.type.metric;
 
+import de.qaware.chronix.server.functions.ChronixAggregation;
 import de.qaware.chronix.server.functions.ChronixFunction;
+import de.qaware.chronix.server.types.ChronixChunk;
 import de.qaware.chronix.server.types.ChronixTimeSeries;
 import de.qaware.chronix.server.types.ChronixType;
+import de.qaware.chronix.server.types.ConversionOptions;
 import de.qaware.chronix.solr.type.metric.functions.aggregations.Avg;
 import de.qaware.chronix.solr.type.metric.functions.aggregations.Count;
 import de.qaware.chronix.solr.type.metric.functions.aggregations.Difference;
 import de.qaware.chronix.solr.type.metric.functions.aggregations.First;
+import de.qaware.chronix.solr.type.metric.functions.aggregations.FusedAggregation;
 import de.qaware.chronix.solr.type.metric.functions.aggregations.Integral;
 import de.qaware.chronix.solr.type.metric.functions.aggregations.Last;
 import de.qaware.chronix.solr.type.metric.functions.aggregations.Max;
@@ -36,6 +40,7 @@ import de.qaware.chronix.solr.type.metric.functions.analyses.Outlier;
 import de.qaware.chronix.solr.type.metric.functions.analyses.Trend;
 import de.qaware.chronix.solr.type.metric.functions.transformation.Add;
 import de.qaware.chronix.solr.type.metric.functions.transformation.Bottom;
+import de.qaware.chronix.solr.type.metric.functions.transformation.Bucket;
 import de.qaware.chronix.solr.type.metric.functions.transformation.Derivative;
 import de.qaware.chronix.solr.type.metric.functions.transformation.Distinct;
 import de.qaware.chronix.solr.type.metric.functions.transformation.Divide;
@@ -50,11 +55,14 @@ import de.qaware.chronix.solr.type.metric.functions.transformation.Vectorization
 import de.qaware.chronix.timeseries.MetricTimeSeries;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.lucene.document.Document;
 import org.apache.solr.common.SolrDocument;
+import org.apache.solr.search.SolrIndexSearcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
+import java.util.Set;
 
 /**
  * Implementation of the metric type
@@ -73,7 +81,51 @@ public class MetricType implements ChronixType<MetricTimeSeries> {
     @Override
     public ChronixTimeSeries<MetricTimeSeries> convert(String joinKey, List<SolrDocument> records, long queryStart, long queryEnd, boolean rawDataIsRequested) {
         MetricTimeSeries metricTimeSeries = SolrDocumentBuilder.reduceDocumentToTimeSeries(queryStart, queryEnd, records, rawDataIsRequested);
-        return new ChronixMetricTimeSeries(joinKey, metricTimeSeries);
+        //the points of the chunks are merged in order
+        return new ChronixMetricTimeSeries(joinKey, metricTimeSeries, null, true);
+    }
+
+    @Override
+    public ChronixTimeSeries<MetricTimeSeries> convert(String joinKey, List<Document> records, long queryStart, long queryEnd, ConversionOptions options, SolrIndexSearcher searcher) {
+        if (options.isSummarize()) {
+            return SolrDocumentBuilder.summarize(joinKey, queryStart, queryEnd, records, searcher.getSchema(), ChunkCache.of(searcher),
+                    options.getAttributes(), needsSketch(options.getAggregations()));
+        }
+        MetricTimeSeries metricTimeSeries = SolrDocumentBuilder.reduceDocumentToTimeSeries(queryStart, queryEnd, records, searcher.getSchema(),
+                ChunkCache.of(searcher), options.getAttributes(), options.isRawDataRequested());
+        //the points of the chunks are merged in order
+        return new ChronixMetricTimeSeries(joinKey, metricTimeSeries, null, true);
+    }
+
+    @Override
+    public List<ChronixChunk> chunks(String joinKey, List<Document> records, long queryStart, long queryEnd, SolrIndexSearcher searcher) {
+        return SolrDocumentBuilder.chunks(queryStart, queryEnd, records, ChunkCache.of(searcher));
+    }
+
+    /**
+     * The sketches of the chunks are only loaded for approximated percentiles
+     */
+    @Override
+    public Set<String> getSummaryFields(Set<ChronixAggregation> aggregations) {
+        return needsSketch(aggregations) ? ChunkSummary.FIELDS_WITH_SKETCH : ChunkSummary.FIELDS;
+    }
+
+    /**
+     * @param aggregations the aggregations of the request
+     * @return true if an aggregation is an approximated percentile, that is merged from the sketches of the chunks
+     */
+    private static boolean needsSketch(Set<ChronixAggregation> aggregations) {
+        for (ChronixAggregation aggregation : aggregations) {
+            if (aggregation instanceof Percentile && ((Percentile) aggregation).isApprox()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public List<ChronixFunction<MetricTimeSeries>> fuse(List<ChronixFunction<MetricTimeSeries>> functions) {
+        return FusedAggregation.fuse(functions);
     }
 
     @Override
@@ -136,6 +188,8 @@ public class MetricType implements ChronixType<MetricTimeSeries> {
                 return new Timeshift();
             case "distinct":
                 return new Distinct();
+            case "bucket":
+                return new Bucket();
             //Analyses
             case "outlier":
                 return new Outlier();
@@ -20,14 +20,20 @@ import de.qaware.chronix.converter.common.Compression;
 import de.qaware.chronix.converter.common.DoubleList;
 import de.qaware.chronix.converter.common.LongList;
 import de.qaware.chronix.converter.serializer.protobuf.ProtoBufMetricTimeSeriesSerializer;
+import de.qaware.chronix.server.types.ChronixChunk;
 import de.qaware.chronix.timeseries.MetricTimeSeries;
 import org.apache.commons.io.IOUtils;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.util.BytesRef;
 import org.apache.solr.common.SolrDocument;
-import org.apache.solr.common.util.Pair;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.search.SolrCache;
 
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.function.Function;
 
 /**
  * Class to build documents using the given analysis or aggregation
@@ -36,6 +42,7 @@ import java.util.*;
  */
 public final class SolrDocumentBuilder {
 
+    private static final String VERSION = "_version_";
 
     private SolrDocumentBuilder() {
         //avoid instances
@@ -54,38 +61,168 @@ public final class SolrDocumentBuilder {
      * @return a metric time series that holds all the points
      */
     public static MetricTimeSeries reduceDocumentToTimeSeries(long queryStart, long queryEnd, List<SolrDocument> documents, boolean decompress) {
+        return reduce(documents, doc -> convert(doc, queryStart, queryEnd, decompress), new HashMap<>(), decompress);
+    }
+
+    /**
+     * Collects the lucene documents into a single time series.
+     * The data, start, end, name and type fields are decoded directly from the stored fields,
+     * without the detour over a {@link SolrDocument}.
+     *
+     * @param queryStart the user query start
+     * @param queryEnd   the user query end
+     * @param documents  the lucene documents
+     * @param schema     the index schema used to convert the user defined fields
+     * @param cache      the cache of decoded chunks, can be null
+     * @param decompress marks if the data is requested and should be decompressed
+     * @return a metric time series that holds all the points
+     */
+    public static MetricTimeSeries reduceDocumentToTimeSeries(long queryStart, long queryEnd, List<Document> documents, IndexSchema schema, SolrCache<Long, DecodedChunk> cache, boolean decompress) {
+        return reduceDocumentToTimeSeries(queryStart, queryEnd, documents, schema, cache, null, decompress);
+    }
+
+    /**
+     * Collects the lucene documents into a single time series with the given attributes.
+     *
+     * @param queryStart the user query start
+     * @param queryEnd   the user query end
+     * @param documents  the lucene documents
+     * @param schema     the index schema used to convert the user defined fields
+     * @param cache      the cache of decoded chunks, can be null
+     * @param attributes the user defined fields that are merged into the attributes, null for all
+     * @param decompress marks if the data is requested and should be decompressed
+     * @return a metric time series that holds all the points
+     */
+    public static MetricTimeSeries reduceDocumentToTimeSeries(long queryStart, long queryEnd, List<Document> documents, IndexSchema schema, SolrCache<Long, DecodedChunk> cache, Set<String> attributes, boolean decompress) {
+        return reduce(documents, doc -> convert(doc, cache, queryStart, queryEnd, decompress), mergeAttributes(documents, schema, attributes), decompress);
+    }
+
+    /**
+     * Collects the lucene documents into a summarized time series.
+     * Chunks that lie fully inside the query range and have a stored {@link ChunkSummary}
+     * are not decompressed. Only the partially overlapping chunks (and chunks without summary) are decoded.
+     *
+     * @param joinKey    the join key of the time series
+     * @param queryStart the user query start
+     * @param queryEnd   the user query end
+     * @param documents  the lucene documents
+     * @param schema     the index schema used to convert the user defined fields
+     * @param cache      the cache of decoded chunks, can be null
+     * @return a summarized time series that holds the points of the decoded chunks
+     */
+    public static ChronixMetricTimeSeries summarize(String joinKey, long queryStart, long queryEnd, List<Document> documents, IndexSchema schema, SolrCache<Long, DecodedChunk> cache) {
+        return summarize(joinKey, queryStart, queryEnd, documents, schema, cache, null, false);
+    }
+
+    /**
+     * Collects the lucene documents into a summarized time series with the given attributes.
+     * If the sketches are needed, the chunks without a stored sketch are decoded as well, e.g. chunks that were
+     * stored before the sketch field was added to the schema. Hence the summary always knows the sketch of all points.
+     *
+     * @param joinKey    the join key of the time series
+     * @param queryStart the user query start
+     * @param queryEnd   the user query end
+     * @param documents  the lucene documents
+     * @param schema     the index schema used to convert the user defined fields
+     * @param cache      the cache of decoded chunks, can be null
+     * @param attributes the user defined fields that are merged into the attributes, null for all
+     * @param sketches   true if the quantile sketches are needed, i.e. the documents hold the stored sketches
+     * @return a summarized time series that holds the points of the decoded chunks
+     */
+    public static ChronixMetricTimeSeries summarize(String joinKey, long queryStart, long queryEnd, List<Document> documents, IndexSchema schema,
+                                                    SolrCache<Long, DecodedChunk> cache, Set<String> attributes, boolean sketches) {
+        ChunkSummary summary = new ChunkSummary(sketches);
+        Set<Document> summarized = new HashSet<>();
+
+        for (Document doc : documents) {
+            ChunkSummary chunkSummary = ChunkSummary.of(doc);
+            if (chunkSummary != null
+                    && (!sketches || chunkSummary.hasSketch())
+                    && doc.getField(Schema.START).numericValue().longValue() >= queryStart
+                    && doc.getField(Schema.END).numericValue().longValue() <= queryEnd) {
+                summary.merge(chunkSummary);
+                summarized.add(doc);
+            }
+        }
+
+        MetricTimeSeries timeSeries = reduce(documents, doc -> convert(doc, cache, queryStart, queryEnd, !summarized.contains(doc)), mergeAttributes(documents, schema, attributes), true);
+        return new ChronixMetricTimeSeries(joinKey, timeSeries, summary, true);
+    }
+
+    /**
+     * Gets the data of the lucene documents within the query range as chunks.
+     * The stored data of chunks that lie fully inside the query range is returned as it is.
+     * Only the points of the chunks at the edges of the query range are encoded and compressed again.
+     *
+     * @param queryStart the user query start
+     * @param queryEnd   the user query end
+     * @param documents  the lucene documents
+     * @param cache      the cache of decoded chunks, can be null
+     * @return the chunks with points within the query range ordered by their start
+     */
+    public static List<ChronixChunk> chunks(long queryStart, long queryEnd, List<Document> documents, SolrCache<Long, DecodedChunk> cache) {
+        List<ChronixChunk> chunks = new ArrayList<>(documents.size());
+
+        for (Document doc : documents) {
+            long tsStart = doc.getField(Schema.START).numericValue().longValue();
+            long tsEnd = doc.getField(Schema.END).numericValue().longValue();
+
+            if (!overlaps(tsStart, tsEnd, queryStart, queryEnd)) {
+                continue;
+            }
+
+            byte[] data = bytes(doc.getBinaryValue(Schema.DATA));
+
+            //the stored chunk is returned without decoding it
+            if (tsStart >= queryStart && tsEnd <= queryEnd) {
+                chunks.add(new ChronixChunk(tsStart, tsEnd, data));
+                continue;
+            }
+
+            //an edge chunk, only the points within the query range are returned
+            MetricTimeSeries.Builder builder = new MetricTimeSeries.Builder("", "");
+            ChunkCache.get(cache, doc, data, tsStart, tsEnd).addTo(builder, queryStart, queryEnd);
+            MetricTimeSeries points = builder.build();
+            if (points.isEmpty()) {
+                continue;
+            }
+            points.sort();
+            byte[] encoded = Compression.compress(ProtoBufMetricTimeSeriesSerializer.to(points.points().iterator()));
+            chunks.add(new ChronixChunk(points.getStart(), points.getEnd(), encoded));
+        }
+
+        chunks.sort(Comparator.comparingLong(ChronixChunk::getStart));
+        return chunks;
+    }
+
+    /**
+     * Converts the records into chunks and reduces them to a single time series.
+     * The points of the chunks are merged into a sorted time series with the {@link ChunkMerger}.
+     * All points are kept, hence the decoded points match the chunk summaries.
+     *
+     * @param documents  the records of the time series
+     * @param converter  the function to convert a record into a chunk
+     * @param attributes the merged attributes, the attributes of the chunks are merged into them
+     * @param decompress marks if the data is requested and should be decompressed
+     * @param <R>        the type of the records
+     * @return a metric time series that holds all the points
+     */
+    private static <R> MetricTimeSeries reduce(List<R> documents, Function<R, MetricTimeSeries> converter, Map<String, Object> attributes, boolean decompress) {
         //Collect all document of a time series
 
         LongList timestamps = null;
         DoubleList values = null;
-        Map<String, Object> attributes = new HashMap<>();
         String name = null;
         String type = null;
 
-        long[] keys = new long[documents.size()];
-        Map<Long, Pair<long[], double[]>> firstTimeStampToRecord = new HashMap<>();
+        ChunkMerger chunks = new ChunkMerger();
 
         for (int i = 0; i < documents.size(); i++) {
-            SolrDocument doc = documents.get(i);
-            MetricTimeSeries ts = convert(doc, queryStart, queryEnd, decompress);
-
-            //only if we decompress the data.
-            if (decompress) {
-                //Performance optimization. Avoiding fine grained growing.
-                if (timestamps == null) {
-                    int size = ts.size();
-                    if (size < 1000) {
-                        //well we have a small time series
-                        size = 1000;
-                    }
-                    int calcAmountOfPoints = documents.size() * size;
-                    timestamps = new LongList(calcAmountOfPoints);
-                    values = new DoubleList(calcAmountOfPoints);
-                }
+            MetricTimeSeries ts = converter.apply(documents.get(i));
 
-                //Note: chunks are sorted, every ts represents a chunk at this point
-                firstTimeStampToRecord.put(ts.getTime(0), new Pair<>(ts.getTimestampsAsArray(), ts.getValuesAsArray()));
-                keys[i] = ts.getTime(0);
+            //only if we decompress the data and the chunk has points within the query range
+            if (decompress && !ts.isEmpty()) {
+                chunks.add(ts.getTimestampsAsArray(), ts.getValuesAsArray());
             }
 
 
@@ -98,18 +235,15 @@ public final class SolrDocumentBuilder {
             if (type == null) {
                 type = ts.getType();
             }
-            //Todo: Fix field selection (attributes) Avoid this if necessary
             merge(attributes, ts.getAttributesReference());
         }
 
-        //Add everything to the timestamps
-        if (decompress) {
-            Arrays.sort(keys);
-            for (long key : keys) {
-                Pair<long[], double[]> record = firstTimeStampToRecord.get(key);
-                timestamps.addAll(record.first());
-                values.addAll(record.second());
-            }
+        //Merge the sorted chunks into the timestamps
+        if (decompress && !chunks.isEmpty()) {
+            //Performance optimization. Avoiding fine grained growing.
+            timestamps = new LongList(chunks.size());
+            values = new DoubleList(chunks.size());
+            chunks.mergeInto(timestamps, values);
         }
 
         return new MetricTimeSeries.Builder(name, type)
@@ -134,27 +268,86 @@ public final class SolrDocumentBuilder {
             String key = newEntry.getKey();
 
             //we ignore the version in the result
-            if (key.equals("_version_")) {
+            if (key.equals(VERSION)) {
                 continue;
             }
 
-            if (!merged.containsKey(key)) {
-                merged.put(key, new LinkedHashSet());
-            }
+            mergeValue(merged, key, newEntry.getValue());
+        }
+    }
+
+    /**
+     * Adds the value to the set of values of the key
+     *
+     * @param merged the merged getAttributes
+     * @param key    the attribute
+     * @param value  the value of the attribute
+     */
+    private static void mergeValue(Map<String, Object> merged, String key, Object value) {
+        if (!merged.containsKey(key)) {
+            merged.put(key, new LinkedHashSet());
+        }
+
+        LinkedHashSet values = (LinkedHashSet) merged.get(key);
 
-            LinkedHashSet values = (LinkedHashSet) merged.get(key);
-            Object value = newEntry.getValue();
+        //Check if the value is a collection.
+        //If it is a collection we add all values instead of adding a collection object
+        if (value instanceof Collection && !values.contains(value)) {
+            values.addAll((Collection) value);
+        } else if (!values.contains(value)) {
+            //Otherwise we have a single value or an array.
+            values.add(value);
+        }
+        //otherwise we ignore the value
+    }
+
+    /**
+     * Merges the user defined fields of the lucene documents into attributes, like {@link #merge(Map, Map)} does.
+     * The chunks of a time series mostly share their attribute values. Hence a stored value is only
+     * converted once per field, the same value of other chunks is skipped before its conversion.
+     *
+     * @param documents  the lucene documents
+     * @param schema     the index schema used to convert the user defined fields
+     * @param attributes the user defined fields that are merged, null for all
+     * @return the merged attributes
+     */
+    private static Map<String, Object> mergeAttributes(List<Document> documents, IndexSchema schema, Set<String> attributes) {
+        Map<String, Object> merged = new HashMap<>();
+        if (attributes != null && attributes.isEmpty()) {
+            return merged;
+        }
 
-            //Check if the value is a collection.
-            //If it is a collection we add all values instead of adding a collection object
-            if (value instanceof Collection && !values.contains(value)) {
-                values.addAll((Collection) value);
-            } else if (!values.contains(value)) {
-                //Otherwise we have a single value or an array.
-                values.add(value);
+        Map<String, Set<Object>> storedValues = new HashMap<>();
+        for (Document doc : documents) {
+            for (IndexableField field : doc) {
+                String name = field.name();
+                if (!isAttribute(name) || name.equals(VERSION) || attributes != null && !attributes.contains(name)) {
+                    continue;
+                }
+
+                //binary values are compared by identity in the attributes, hence they are always added
+                Object stored = field.binaryValue() == null ? storedValue(field) : null;
+                if (stored != null && !storedValues.computeIfAbsent(name, key -> new HashSet<>()).add(stored)) {
+                    continue;
+                }
+
+                Object value = schema.getField(name).getType().toObject(field);
+                if (value instanceof ByteBuffer) {
+                    value = ((ByteBuffer) value).array();
+                }
+                mergeValue(merged, name, value);
             }
-            //otherwise we ignore the value
         }
+        return merged;
+    }
+
+    /**
+     * @param field the stored field
+     * @return the stored value of a string or numeric field
+     */
+    private static Object storedValue(IndexableField field) {
+        Number number = field.numericValue();
+        return number != null ? number : field.stringValue();
     }
 
     /**
@@ -179,7 +372,7 @@ public final class SolrDocumentBuilder {
         MetricTimeSeries.Builder ts = new MetricTimeSeries.Builder(name, type);
 
         for (Map.Entry<String, Object> field : doc) {
-            if (Schema.isUserDefined(field.getKey())) {
+            if (isAttribute(field.getKey())) {
                 if (field.getValue() instanceof ByteBuffer) {
                     ts.attribute(field.getKey(), ((ByteBuffer) field.getValue()).array());
                 } else {
@@ -197,5 +390,60 @@ public final class SolrDocumentBuilder {
         return ts.build();
     }
 
+    /**
+     * Converts the given lucene document in a metric time series without attributes.
+     * The attributes of the lucene documents are merged by {@link #mergeAttributes(List, IndexSchema, Set)}.
+     *
+     * @param doc        the lucene document
+     * @param cache      the cache of decoded chunks, can be null
+     * @param queryStart the query start
+     * @param queryEnd   the query end
+     * @param decompress marks if the data is requested and hence we have to decompress it or not
+     * @return a metric time series
+     */
+    private static MetricTimeSeries convert(Document doc, SolrCache<Long, DecodedChunk> cache, long queryStart, long queryEnd, boolean decompress) {
+
+        long tsStart = doc.getField(Schema.START).numericValue().longValue();
+        long tsEnd = doc.getField(Schema.END).numericValue().longValue();
+
+        MetricTimeSeries.Builder ts = new MetricTimeSeries.Builder(doc.get(Schema.NAME), doc.get(Schema.TYPE));
+
+        //No data is requested, hence we do not decompress it
+        if (decompress) {
+            ChunkCache.get(cache, doc, bytes(doc.getBinaryValue(Schema.DATA)), tsStart, tsEnd).addTo(ts, queryStart, queryEnd);
+        }
+        return ts.build();
+    }
+
+    /**
+     * @param tsStart    the start of the chunk
+     * @param tsEnd      the end of the chunk
+     * @param queryStart the start of the query
+     * @param queryEnd   the end of the query
+     * @return true if the chunk has points within the query range
+     */
+    private static boolean overlaps(long tsStart, long tsEnd, long queryStart, long queryEnd) {
+        return tsStart <= queryEnd && tsEnd >= queryStart;
+    }
+
+    /**
+     * @param field the field name
+     * @return true if the field is a user defined attribute and not a part of the chunk summary
+     */
+    private static boolean isAttribute(String field) {
+        return Schema.isUserDefined(field) && !ChunkSummary.FIELDS_WITH_SKETCH.contains(field);
+    }
+
+    /**
+     * @param bytesRef the binary value of a stored field
+     * @return the referenced bytes, only copied if the reference does not span the whole array
+     */
+    private static byte[] bytes(BytesRef bytesRef) {
+        if (bytesRef.offset == 0 && bytesRef.length == bytesRef.bytes.length) {
+            return bytesRef.bytes;
+        }
+        return Arrays.copyOfRange(bytesRef.bytes, bytesRef.offset, bytesRef.offset + bytesRef.length);
+    }
+
 
 }
@@ -18,6 +18,7 @@ package de.qaware.chronix.solr.type.metric.functions.aggregations;
 import de.qaware.chronix.server.functions.ChronixAggregation;
 import de.qaware.chronix.server.functions.FunctionCtx;
 import de.qaware.chronix.server.types.ChronixTimeSeries;
+import de.qaware.chronix.solr.type.metric.ChunkSummary;
 import de.qaware.chronix.timeseries.MetricTimeSeries;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
@@ -33,6 +34,13 @@ public final class Avg implements ChronixAggregation<MetricTimeSeries> {
     public void execute(List<ChronixTimeSeries<MetricTimeSeries>> timeSeriesList, FunctionCtx functionCtx) {
         for (ChronixTimeSeries<MetricTimeSeries> chronixTimeSeries : timeSeriesList) {
 
+            //answer it from the chunk summaries, if the time series is summarized
+            ChunkSummary summary = ChunkSummary.of(chronixTimeSeries);
+            if (summary != null) {
+                functionCtx.add(this, summary.avg(), chronixTimeSeries.getJoinKey());
+                continue;
+            }
+
             MetricTimeSeries timeSeries = chronixTimeSeries.getRawTimeSeries();
 
             if (timeSeries.isEmpty()) {
@@ -60,6 +68,11 @@ public final class Avg implements ChronixAggregation<MetricTimeSeries> {
         //ignore
     }
 
+    @Override
+    public boolean isDecomposable() {
+        return true;
+    }
+
     @Override
     public String getQueryName() {
         return "avg";
@@ -51,7 +51,7 @@ public final class Difference implements ChronixAggregation<MetricTimeSeries> {
             }
 
             //we need to sort the time series
-            timeSeries.sort();
+            chronixTimeSeries.sort();
             //get the first and the last value
             double firstValue = timeSeries.getValue(0);
             double lastValue = timeSeries.getValue(timeSeries.size() - 1);
@@ -18,6 +18,7 @@ package de.qaware.chronix.solr.type.metric.functions.aggregations;
 import de.qaware.chronix.server.functions.ChronixAggregation;
 import de.qaware.chronix.server.functions.FunctionCtx;
 import de.qaware.chronix.server.types.ChronixTimeSeries;
+import de.qaware.chronix.solr.type.metric.ChunkSummary;
 import de.qaware.chronix.timeseries.MetricTimeSeries;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
@@ -41,6 +42,13 @@ public final class First implements ChronixAggregation<MetricTimeSeries> {
 
         for (ChronixTimeSeries<MetricTimeSeries> chronixTimeSeries : timeSeriesList) {
 
+            //answer it from the chunk summaries, if the time series is summarized
+            ChunkSummary summary = ChunkSummary.of(chronixTimeSeries);
+            if (summary != null) {
+                functionCtx.add(this, summary.first(), chronixTimeSeries.getJoinKey());
+                continue;
+            }
+
             MetricTimeSeries timeSeries = chronixTimeSeries.getRawTimeSeries();
 
             //If it is empty, we return NaN
@@ -50,12 +58,17 @@ public final class First implements ChronixAggregation<MetricTimeSeries> {
             }
 
             //we need to sort the time series
-            timeSeries.sort();
+            chronixTimeSeries.sort();
             functionCtx.add(this, timeSeries.getValue(0), chronixTimeSeries.getJoinKey());
         }
 
     }
 
+    @Override
+    public boolean isDecomposable() {
+        return true;
+    }
+
     @Override
     public String getQueryName() {
         return "first";
@@ -0,0 +1,352 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.type.metric.functions.aggregations;
+
+import de.qaware.chronix.server.functions.ChronixAggregation;
+import de.qaware.chronix.server.functions.ChronixAnalysis;
+import de.qaware.chronix.server.functions.ChronixFunction;
+import de.qaware.chronix.server.functions.FunctionCtx;
+import de.qaware.chronix.server.types.ChronixTimeSeries;
+import de.qaware.chronix.solr.type.metric.ChunkSummary;
+import de.qaware.chronix.solr.type.metric.functions.analyses.Outlier;
+import de.qaware.chronix.solr.type.metric.functions.math.OrderStatistics;
+import de.qaware.chronix.solr.type.metric.functions.math.QuantileSketch;
+import de.qaware.chronix.timeseries.MetricTimeSeries;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Executes several aggregations (and the outlier analysis) of a time series together.
+ * The statistics are computed in a single pass over the values, the percentiles and the quartiles
+ * of the outlier analysis are selected together in one pass of {@link OrderStatistics}.
+ * The results are added to the function context for every single function, hence the result is the same
+ * as executing the functions one after another.
+ *
+ * @author f.lautenschlager
+ */
+public final class FusedAggregation implements ChronixAggregation<MetricTimeSeries> {
+
+    private final List<ChronixFunction<MetricTimeSeries>> functions;
+
+    private final boolean decomposable;
+    private final boolean needsOrder;
+    private final boolean needsDev;
+    private final double[] exactPercentiles;
+    private final boolean needsSketch;
+
+    private FusedAggregation(List<ChronixFunction<MetricTimeSeries>> functions) {
+        this.functions = functions;
+
+        boolean allDecomposable = true;
+        boolean order = false;
+        boolean dev = false;
+        List<Double> exact = new ArrayList<>();
+        boolean sketch = false;
+        for (ChronixFunction<MetricTimeSeries> function : functions) {
+            allDecomposable &= function instanceof ChronixAggregation && ((ChronixAggregation) function).isDecomposable();
+            order |= function instanceof First || function instanceof Last || function instanceof Difference || function instanceof SignedDifference;
+            dev |= function instanceof StdDev;
+            if (function instanceof Percentile && !((Percentile) function).isApprox()) {
+                exact.add(((Percentile) function).getPercentile());
+            }
+            if (function instanceof Outlier) {
+                exact.add(.25);
+                exact.add(.75);
+            }
+            sketch |= function instanceof Percentile && ((Percentile) function).isApprox();
+        }
+        this.decomposable = allDecomposable;
+        this.needsOrder = order;
+        this.needsDev = dev;
+        this.exactPercentiles = exact.stream().mapToDouble(Double::doubleValue).toArray();
+        this.needsSketch = sketch;
+    }
+
+    /**
+     * Combines the functions that can be computed together.
+     * Nothing is combined if there are less than two of them.
+     *
+     * @param functions the aggregations and analyses of a request
+     * @return the combined and the remaining functions
+     */
+    public static List<ChronixFunction<MetricTimeSeries>> fuse(List<ChronixFunction<MetricTimeSeries>> functions) {
+        List<ChronixFunction<MetricTimeSeries>> fusible = new ArrayList<>();
+        List<ChronixFunction<MetricTimeSeries>> others = new ArrayList<>();
+        for (ChronixFunction<MetricTimeSeries> function : functions) {
+            if (isFusible(function)) {
+                fusible.add(function);
+            } else {
+                others.add(function);
+            }
+        }
+
+        if (fusible.size() < 2) {
+            return functions;
+        }
+        others.add(new FusedAggregation(fusible));
+        return others;
+    }
+
+    private static boolean isFusible(ChronixFunction<MetricTimeSeries> function) {
+        return function instanceof Min
+                || function instanceof Max
+                || function instanceof Sum
+                || function instanceof Count
+                || function instanceof Avg
+                || function instanceof StdDev
+                || function instanceof First
+                || function instanceof Last
+                || function instanceof Range
+                || function instanceof Difference
+                || function instanceof SignedDifference
+                || function instanceof Percentile
+                || function instanceof Outlier;
+    }
+
+    @Override
+    public void execute(List<ChronixTimeSeries<MetricTimeSeries>> timeSeriesList, FunctionCtx functionCtx) {
+        for (ChronixTimeSeries<MetricTimeSeries> chronixTimeSeries : timeSeriesList) {
+
+            //answer it from the chunk summaries, if the time series is summarized
+            ChunkSummary summary = decomposable ? ChunkSummary.of(chronixTimeSeries) : null;
+            Statistics statistics = summary != null ? Statistics.of(summary) : statistics(chronixTimeSeries);
+
+            for (ChronixFunction<MetricTimeSeries> function : functions) {
+                if (function instanceof Outlier) {
+                    functionCtx.add((ChronixAnalysis) function, statistics.hasOutlier(), chronixTimeSeries.getJoinKey());
+                } else {
+                    functionCtx.add((ChronixAggregation) function, statistics.valueOf(function), chronixTimeSeries.getJoinKey());
+                }
+            }
+        }
+    }
+
+    private Statistics statistics(ChronixTimeSeries<MetricTimeSeries> chronixTimeSeries) {
+        MetricTimeSeries timeSeries = chronixTimeSeries.getRawTimeSeries();
+        Statistics statistics = new Statistics();
+        int size = timeSeries.size();
+        statistics.count = size;
+
+        //If it is empty, the values are NaN
+        if (size <= 0) {
+            return statistics;
+        }
+
+        //first, last and the differences need the sorted time series
+        if (needsOrder) {
+            chronixTimeSeries.sort();
+            statistics.first = timeSeries.getValue(0);
+            statistics.last = timeSeries.getValue(size - 1);
+        }
+
+        //the single pass for min, max and sum
+        double min = timeSeries.getValue(0);
+        double max = min;
+        //the outlier analysis skips NaN values, a comparison with NaN is false
+        double maxOfValues = Double.NEGATIVE_INFINITY;
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            double value = timeSeries.getValue(i);
+            if (value < min) {
+                min = value;
+            }
+            if (value > max) {
+                max = value;
+            }
+            if (value > maxOfValues) {
+                maxOfValues = value;
+            }
+            sum += value;
+        }
+        statistics.min = min;
+        statistics.max = max;
+        statistics.maxOfValues = maxOfValues;
+        statistics.sum = sum;
+
+        //the deviation needs the mean, the second pass is done like the standard deviation aggregation
+        if (needsDev) {
+            double mean = sum / size;
+            double squares = 0;
+            for (int i = 0; i < size; i++) {
+                double value = timeSeries.getValue(i);
+                squares += (value - mean) * (value - mean);
+            }
+            statistics.dev = Math.sqrt(squares / (size - 1));
+        }
+
+        //one selection for all percentiles
+        if (exactPercentiles.length > 0) {
+            statistics.percentiles = exactPercentiles;
+            statistics.quantiles = OrderStatistics.percentiles(timeSeries.getValues(), exactPercentiles);
+        }
+
+        //one sketch for all approximated percentiles
+        if (needsSketch) {
+            statistics.sketch = Percentile.sketch(timeSeries);
+        }
+        return statistics;
+    }
+
+    @Override
+    public boolean isDecomposable() {
+        return decomposable;
+    }
+
+    @Override
+    public String getQueryName() {
+        return "fused";
+    }
+
+    @Override
+    public String getType() {
+        return "metric";
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (obj == this) {
+            return true;
+        }
+        if (obj.getClass() != getClass()) {
+            return false;
+        }
+        FusedAggregation rhs = (FusedAggregation) obj;
+        return new EqualsBuilder()
+                .append(this.functions, rhs.functions)
+                .isEquals();
+    }
+
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder()
+                .append(functions)
+                .toHashCode();
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("functions", functions)
+                .toString();
+    }
+
+    /**
+     * The statistics of a single time series
+     */
+    private static final class Statistics {
+        private long count;
+        private double min = Double.NaN;
+        private double max = Double.NaN;
+        private double maxOfValues = Double.NaN;
+        private double sum = Double.NaN;
+        private double first = Double.NaN;
+        private double last = Double.NaN;
+        private double dev = Double.NaN;
+        private double[] percentiles;
+        private double[] quantiles;
+        private ChunkSummary summary;
+        private QuantileSketch sketch;
+
+        private static Statistics of(ChunkSummary summary) {
+            Statistics statistics = new Statistics();
+            statistics.summary = summary;
+            statistics.count = summary.count();
+            statistics.min = summary.min();
+            statistics.max = summary.max();
+            statistics.maxOfValues = summary.max();
+            statistics.sum = summary.sum();
+            statistics.first = summary.first();
+            statistics.last = summary.last();
+            statistics.dev = summary.dev();
+            return statistics;
+        }
+
+        private double valueOf(ChronixFunction<MetricTimeSeries> function) {
+            if (function instanceof Count) {
+                return count;
+            }
+            //all other aggregations are NaN for an empty time series
+            if (count == 0) {
+                return Double.NaN;
+            }
+            if (function instanceof Min) {
+                return min;
+            }
+            if (function instanceof Max) {
+                return max;
+            }
+            if (function instanceof Sum) {
+                return sum;
+            }
+            if (function instanceof Avg) {
+                return sum / count;
+            }
+            if (function instanceof StdDev) {
+                return dev;
+            }
+            if (function instanceof First) {
+                return first;
+            }
+            if (function instanceof Last) {
+                return last;
+            }
+            if (function instanceof Range) {
+                return Math.abs(max - min);
+            }
+            if (function instanceof Difference) {
+                return Math.abs(first - last);
+            }
+            if (function instanceof SignedDifference) {
+                return last - first;
+            }
+            if (function instanceof Percentile) {
+                Percentile percentile = (Percentile) function;
+                if (!percentile.isApprox()) {
+                    return exact(percentile.getPercentile());
+                }
+                return summary != null ? summary.quantile(percentile.getPercentile()) : sketch.quantile(percentile.getPercentile());
+            }
+            throw new IllegalArgumentException("Function " + function + " is not part of a fused aggregation");
+        }
+
+        private boolean hasOutlier() {
+            if (count == 0) {
+                return false;
+            }
+            //an outlier is a value above the threshold, i.e. the maximum of the values that are not NaN is above it
+            double q1 = exact(.25);
+            double q3 = exact(.75);
+            double threshold = (q3 - q1) * 1.5 + q3;
+            return maxOfValues > threshold;
+        }
+
+        private double exact(double percentile) {
+            for (int i = 0; i < percentiles.length; i++) {
+                if (percentiles[i] == percentile) {
+                    return quantiles[i];
+                }
+            }
+            throw new IllegalArgumentException("Percentile " + percentile + " is not selected");
+        }
+    }
+}
@@ -18,6 +18,7 @@ package de.qaware.chronix.solr.type.metric.functions.aggregations;
 import de.qaware.chronix.server.functions.ChronixAggregation;
 import de.qaware.chronix.server.functions.FunctionCtx;
 import de.qaware.chronix.server.types.ChronixTimeSeries;
+import de.qaware.chronix.solr.type.metric.ChunkSummary;
 import de.qaware.chronix.timeseries.MetricTimeSeries;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
@@ -41,6 +42,13 @@ public final class Last implements ChronixAggregation<MetricTimeSeries> {
 
         for (ChronixTimeSeries<MetricTimeSeries> chronixTimeSeries : timeSeriesList) {
 
+            //answer it from the chunk summaries, if the time series is summarized
+            ChunkSummary summary = ChunkSummary.of(chronixTimeSeries);
+            if (summary != null) {
+                functionCtx.add(this, summary.last(), chronixTimeSeries.getJoinKey());
+                continue;
+            }
+
             MetricTimeSeries timeSeries = chronixTimeSeries.getRawTimeSeries();
 
             //If it is empty, we return NaN
@@ -50,11 +58,16 @@ public final class Last implements ChronixAggregation<MetricTimeSeries> {
             }
 
             //We need to sort the time series
-            timeSeries.sort();
+            chronixTimeSeries.sort();
             functionCtx.add(this, timeSeries.getValue(timeSeries.size() - 1), chronixTimeSeries.getJoinKey());
         }
     }
 
+    @Override
+    public boolean isDecomposable() {
+        return true;
+    }
+
     @Override
     public String getQueryName() {
         return "last";
@@ -18,6 +18,7 @@ package de.qaware.chronix.solr.type.metric.functions.aggregations;
 import de.qaware.chronix.server.functions.ChronixAggregation;
 import de.qaware.chronix.server.functions.FunctionCtx;
 import de.qaware.chronix.server.types.ChronixTimeSeries;
+import de.qaware.chronix.solr.type.metric.ChunkSummary;
 import de.qaware.chronix.timeseries.MetricTimeSeries;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
@@ -42,6 +43,13 @@ public final class Max implements ChronixAggregation<MetricTimeSeries> {
 
         for (ChronixTimeSeries<MetricTimeSeries> chronixTimeSeries : timeSeriesList) {
 
+            //answer it from the chunk summaries, if the time series is summarized
+            ChunkSummary summary = ChunkSummary.of(chronixTimeSeries);
+            if (summary != null) {
+                functionCtx.add(this, summary.max(), chronixTimeSeries.getJoinKey());
+                continue;
+            }
+
             MetricTimeSeries timeSeries = chronixTimeSeries.getRawTimeSeries();
 
             //If it is empty, we return NaN
@@ -63,6 +71,11 @@ public final class Max implements ChronixAggregation<MetricTimeSeries> {
         }
     }
 
+    @Override
+    public boolean isDecomposable() {
+        return true;
+    }
+
     @Override
     public String getQueryName() {
         return "max";
@@ -18,6 +18,8 @@ package de.qaware.chronix.solr.type.metric.functions.aggregations;
 import de.qaware.chronix.server.functions.ChronixAggregation;
 import de.qaware.chronix.server.functions.FunctionCtx;
 import de.qaware.chronix.server.types.ChronixTimeSeries;
+import de.qaware.chronix.solr.type.metric.ChunkSummary;
+import de.qaware.chronix.solr.type.metric.functions.math.QuantileSketch;
 import de.qaware.chronix.timeseries.MetricTimeSeries;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
@@ -33,9 +35,12 @@ import java.util.List;
 public final class Percentile implements ChronixAggregation<MetricTimeSeries> {
 
     private double percentile;
+    private boolean approx;
 
     /**
      * Calculates the percentile of the first time series.
+     * The approximated percentile is estimated with a quantile sketch, that is merged from the sketches of the chunks
+     * if the time series is summarized.
      *
      * @param timeSeriesList list with time series
      * @return the percentile or 0 if the list is empty
@@ -44,6 +49,13 @@ public final class Percentile implements ChronixAggregation<MetricTimeSeries> {
     public void execute(List<ChronixTimeSeries<MetricTimeSeries>> timeSeriesList, FunctionCtx functionCtx) {
         for (ChronixTimeSeries<MetricTimeSeries> chronixTimeSeries : timeSeriesList) {
 
+            //answer it from the chunk sketches, if the time series is summarized
+            ChunkSummary summary = approx ? ChunkSummary.of(chronixTimeSeries) : null;
+            if (summary != null) {
+                functionCtx.add(this, summary.quantile(percentile), chronixTimeSeries.getJoinKey());
+                continue;
+            }
+
             MetricTimeSeries timeSeries = chronixTimeSeries.getRawTimeSeries();
 
             //If it is empty, we return NaN
@@ -52,21 +64,67 @@ public final class Percentile implements ChronixAggregation<MetricTimeSeries> {
                 continue;
             }
 
+            if (approx) {
+                functionCtx.add(this, sketch(timeSeries).quantile(percentile), chronixTimeSeries.getJoinKey());
+                continue;
+            }
+
             //Else calculate the analysis value
             functionCtx.add(this, de.qaware.chronix.solr.type.metric.functions.math.Percentile.evaluate(timeSeries.getValues(), percentile), chronixTimeSeries.getJoinKey());
         }
     }
 
     /**
-     * @param args * @param args the function arguments, e.g. the percentile [0.0 ... 1.0]
+     * @param timeSeries the time series
+     * @return the sketch of the values
+     */
+    static QuantileSketch sketch(MetricTimeSeries timeSeries) {
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < timeSeries.size(); i++) {
+            sketch.add(timeSeries.getValue(i));
+        }
+        return sketch;
+    }
+
+    /**
+     * @param args the function arguments, e.g. the percentile [0.0 ... 1.0] and optional 'approx' to estimate
+     *             the percentile with a quantile sketch instead of sorting the values
      */
     @Override
     public void setArguments(String[] args) {
         this.percentile = Double.parseDouble(args[0]);
+        this.approx = args.length > 1 && "approx".equalsIgnoreCase(args[1].trim());
+    }
+
+    /**
+     * @return true if the percentile is estimated with a quantile sketch
+     */
+    public boolean isApprox() {
+        return approx;
+    }
+
+    /**
+     * The approximated percentile can be merged from the sketches of the chunks
+     *
+     * @return true if the percentile is approximated
+     */
+    @Override
+    public boolean isDecomposable() {
+        return approx;
+    }
+
+    /**
+     * @return the percentile [0.0 ... 1.0]
+     */
+    double getPercentile() {
+        return percentile;
     }
 
     @Override
     public String[] getArguments() {
+        if (approx) {
+            return new String[]{"percentile=" + percentile, "approx=true"};
+        }
         return new String[]{"percentile=" + percentile};
     }
 
@@ -94,6 +152,7 @@ public final class Percentile implements ChronixAggregation<MetricTimeSeries> {
         Percentile rhs = (Percentile) obj;
         return new EqualsBuilder()
                 .append(this.percentile, rhs.percentile)
+                .append(this.approx, rhs.approx)
                 .isEquals();
     }
 
@@ -101,6 +160,7 @@ public final class Percentile implements ChronixAggregation<MetricTimeSeries> {
     public int hashCode() {
         return new HashCodeBuilder()
                 .append(percentile)
+                .append(approx)
                 .toHashCode();
     }
 
@@ -109,6 +169,7 @@ public final class Percentile implements ChronixAggregation<MetricTimeSeries> {
     public String toString() {
         return new ToStringBuilder(this)
                 .append("percentile", percentile)
+                .append("approx", approx)
                 .toString();
     }
 }
@@ -51,7 +51,7 @@ public final class SignedDifference implements ChronixAggregation<MetricTimeSeri
             }
 
             //we need to sort the time series
-            timeSeries.sort();
+            chronixTimeSeries.sort();
             //get the first and the last value
             double first = timeSeries.getValue(0);
             double last = timeSeries.getValue(timeSeries.size() - 1);
@@ -131,7 +131,7 @@ public final class FastDtw implements ChronixAnalysis<MetricTimeSeries> {
 
         if (timeSeries.size() > 0) {
             //First sort the values
-            timeSeries.sort();
+            chronixTimeSeries.sort();
 
             long formerTimestamp = timeSeries.getTime(0);
             double formerValue = timeSeries.getValue(0);
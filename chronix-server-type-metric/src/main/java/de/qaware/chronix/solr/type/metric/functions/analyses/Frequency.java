@@ -15,18 +15,16 @@
  */
 package de.qaware.chronix.solr.type.metric.functions.analyses;
 
-import de.qaware.chronix.converter.common.LongList;
 import de.qaware.chronix.server.functions.ChronixAnalysis;
 import de.qaware.chronix.server.functions.FunctionCtx;
 import de.qaware.chronix.server.types.ChronixTimeSeries;
+import de.qaware.chronix.solr.type.metric.functions.math.SlidingWindow;
 import de.qaware.chronix.timeseries.MetricTimeSeries;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 
-import java.time.Instant;
 import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -46,53 +44,31 @@ public final class Frequency implements ChronixAnalysis<MetricTimeSeries> {
      * between two windows is above a predefined threshold.
      * <p>
      * The frequency detector splits a time series using the constructor argument.
+     * The windows are tumbling windows ({@link SlidingWindow#tumble(long)}), only the counts of two
+     * consecutive windows are kept.
      */
     @Override
     public void execute(List<ChronixTimeSeries<MetricTimeSeries>> timeSeriesList, FunctionCtx functionCtx) {
+        long windowTime = windowSize * ChronoUnit.MINUTES.getDuration().toMillis();
+
         for (ChronixTimeSeries<MetricTimeSeries> chronixTimeSeries : timeSeriesList) {
 
             MetricTimeSeries timeSeries = chronixTimeSeries.getRawTimeSeries();
 
-            LongList timestamps = timeSeries.getTimestamps();
-
-            final List<Long> currentWindow = new ArrayList<>();
-            final List<Integer> windowCount = new ArrayList<>();
-
-            //start and end of the window
-            long windowStart = timestamps.get(0);
-            //calculate the end
-            long windowEnd = Instant.ofEpochMilli(windowStart).plus(windowSize, ChronoUnit.MINUTES).toEpochMilli();
-
-            for (int i = 1; i < timeSeries.size(); i++) {
-                long current = timestamps.get(i);
-                //Add the occurrence of the current window.
-                if (current > windowStart - 1 && current < (windowEnd)) {
-                    currentWindow.add(current);
-                } else {
-                    //We reached the end. Lets add it to the window count
-                    windowCount.add(currentWindow.size());
-                    windowStart = current;
-                    windowEnd = Instant.ofEpochMilli(windowStart).plus(windowSize, ChronoUnit.MINUTES).toEpochMilli();
-                    currentWindow.clear();
-                }
-            }
-            //we are done, add the last window
-            windowCount.add(currentWindow.size());
+            SlidingWindow window = new SlidingWindow(timeSeries.getTimestampsAsArray(), null, timeSeries.size());
 
             boolean analysisResult = false;
-            //check deltas
-            for (int i = 1; i < windowCount.size(); i++) {
-
-                int former = windowCount.get(i - 1);
-                int current = windowCount.get(i);
+            int former = -1;
+            while (window.tumble(windowTime)) {
+                int current = window.count();
 
                 //The threshold
-                int result = current - former;
-                if (result >= windowThreshold) {
+                if (former >= 0 && current - former >= windowThreshold) {
                     //add the time series as there are more points per window than the threshold
                     analysisResult = true;
                     break;
                 }
+                former = current;
             }
             functionCtx.add(this, analysisResult, chronixTimeSeries.getJoinKey());
         }
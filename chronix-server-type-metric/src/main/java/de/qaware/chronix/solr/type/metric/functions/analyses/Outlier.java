@@ -15,11 +15,10 @@
  */
 package de.qaware.chronix.solr.type.metric.functions.analyses;
 
-import de.qaware.chronix.converter.common.DoubleList;
 import de.qaware.chronix.server.functions.ChronixAnalysis;
 import de.qaware.chronix.server.functions.FunctionCtx;
 import de.qaware.chronix.server.types.ChronixTimeSeries;
-import de.qaware.chronix.solr.type.metric.functions.math.Percentile;
+import de.qaware.chronix.solr.type.metric.functions.math.OrderStatistics;
 import de.qaware.chronix.timeseries.MetricTimeSeries;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
@@ -49,28 +48,38 @@ public class Outlier implements ChronixAnalysis<MetricTimeSeries> {
 
             if (timeSeries.isEmpty()) {
                 functionCtx.add(this, false, chronixTimeSeries.getJoinKey());
-                return;
+                continue;
             }
 
-            DoubleList points = timeSeries.getValues();
-            //Calculate the percentiles
-            double q1 = Percentile.evaluate(points, .25);
-            double q3 = Percentile.evaluate(points, .75);
+            //Calculate the quartiles in one selection
+            double[] quartiles = OrderStatistics.percentiles(timeSeries.getValues(), .25, .75);
+            double q1 = quartiles[0];
+            double q3 = quartiles[1];
             //Calculate the threshold
             double threshold = (q3 - q1) * 1.5 + q3;
-            //filter the values, if one outlier is found, we can return
-            for (int i = 0; i < points.size(); i++) {
-                double point = points.get(i);
-                if (point > threshold) {
-                    functionCtx.add(this, true, chronixTimeSeries.getJoinKey());
-                    return;
-                }
-            }
-            functionCtx.add(this, false, chronixTimeSeries.getJoinKey());
+            //an outlier is a value above the threshold, i.e. the maximum is above it
+            boolean hasOutlier = maxOfValues(timeSeries) > threshold;
+            functionCtx.add(this, hasOutlier, chronixTimeSeries.getJoinKey());
         }
     }
 
 
+    /**
+     * @param timeSeries the time series
+     * @return the maximum of the values that are not NaN
+     */
+    private static double maxOfValues(MetricTimeSeries timeSeries) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < timeSeries.size(); i++) {
+            //a comparison with NaN is false, hence NaN values are skipped
+            double value = timeSeries.getValue(i);
+            if (value > max) {
+                max = value;
+            }
+        }
+        return max;
+    }
+
     @Override
     public String getQueryName() {
         return "outlier";
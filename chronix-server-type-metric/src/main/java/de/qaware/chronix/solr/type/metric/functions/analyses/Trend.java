@@ -46,7 +46,7 @@ public final class Trend implements ChronixAnalysis<MetricTimeSeries> {
             MetricTimeSeries timeSeries = chronixTimeSeries.getRawTimeSeries();
 
             //We need to sort the time series for this analysis
-            timeSeries.sort();
+            chronixTimeSeries.sort();
             //Calculate the linear regression
             LinearRegression linearRegression = new LinearRegression(timeSeries.getTimestamps(), timeSeries.getValues());
             double slope = linearRegression.slope();
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.type.metric.functions.math;
+
+/**
+ * A set of primitive double values (open addressing with linear probing).
+ * <p>
+ * The values are compared by their bits like {@link Double#equals(Object)}: NaN is equal to NaN
+ * and -0.0 is not equal to 0.0.
+ *
+ * @author f.lautenschlager
+ */
+public final class DoubleHashSet {
+
+    private static final int INITIAL_CAPACITY = 16;
+    /**
+     * The bits of 0.0 mark an empty slot, hence 0.0 is tracked separately
+     */
+    private static final long EMPTY = 0L;
+
+    private long[] slots;
+    private int mask;
+    private int size;
+    private boolean containsEmpty;
+
+    /**
+     * Creates an empty set
+     */
+    public DoubleHashSet() {
+        this.slots = new long[INITIAL_CAPACITY];
+        this.mask = INITIAL_CAPACITY - 1;
+    }
+
+    /**
+     * Adds the value to the set
+     *
+     * @param value the value
+     * @return true if the value was not in the set
+     */
+    public boolean add(double value) {
+        long bits = Double.doubleToLongBits(value);
+        if (bits == EMPTY) {
+            if (containsEmpty) {
+                return false;
+            }
+            containsEmpty = true;
+            size++;
+            return true;
+        }
+
+        int slot = slot(bits, mask);
+        while (slots[slot] != EMPTY) {
+            if (slots[slot] == bits) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = bits;
+        size++;
+
+        //keep the load factor below one half
+        if (size * 2 > slots.length) {
+            grow();
+        }
+        return true;
+    }
+
+    /**
+     * @param value the value
+     * @return true if the value is in the set
+     */
+    public boolean contains(double value) {
+        long bits = Double.doubleToLongBits(value);
+        if (bits == EMPTY) {
+            return containsEmpty;
+        }
+        int slot = slot(bits, mask);
+        while (slots[slot] != EMPTY) {
+            if (slots[slot] == bits) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * @return the amount of values in the set
+     */
+    public int size() {
+        return size;
+    }
+
+    private void grow() {
+        long[] old = slots;
+        slots = new long[old.length * 2];
+        mask = slots.length - 1;
+        for (long bits : old) {
+            if (bits != EMPTY) {
+                int slot = slot(bits, mask);
+                while (slots[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = bits;
+            }
+        }
+    }
+
+    /**
+     * Spreads the bits (the finalizer of murmur hash 3), doubles often differ only in their upper bits
+     */
+    private static int slot(long bits, int mask) {
+        long hash = bits;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return (int) hash & mask;
+    }
+}
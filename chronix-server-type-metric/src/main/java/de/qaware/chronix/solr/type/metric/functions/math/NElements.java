@@ -15,13 +15,11 @@
  */
 package de.qaware.chronix.solr.type.metric.functions.math;
 
-import org.apache.commons.lang3.builder.EqualsBuilder;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
-
-import java.util.Arrays;
-
 /**
  * Class to calculate the top or bottom n values.
+ * <p>
+ * The values are selected with a bounded heap of primitives: O(values * log n) without boxing the values.
+ * The result keeps the timestamps of the selected values.
  *
  * @author f.lautenschlager
  */
@@ -39,46 +37,30 @@ public final class NElements {
      * @return a result containing the top / bottom measurements (timestamp + value) of the time series
      */
     public static NElementsResult calc(NElementsCalculation type, int n, long[] timesStamps, double[] values) {
-        //we have to convert them to a pair array, to not loose the reference to the time stamps
-        Pair[] pairs = create(values);
-        Arrays.sort(pairs);
-
-        double[] nValues = new double[n];
-        long[] nTimes = new long[n];
-
-
-        switch (type) {
-            case TOP:
-                int j = 0;
-                for (int i = timesStamps.length - 1; timesStamps.length - n <= i; i--) {
-                    nValues[j] = pairs[i].value;
-                    nTimes[j] = timesStamps[pairs[i].index];
-                    j++;
-                }
-                break;
-            case BOTTOM:
-                for (int i = 0; i < n; i++) {
-                    nValues[i] = pairs[i].value;
-                    nTimes[i] = timesStamps[pairs[i].index];
-                }
-                break;
-            default:
-                throw new EnumConstantNotPresentException(NElementsCalculation.class, "Type: " + type + " not available");
-        }
-
-        return new NElementsResult(nTimes, nValues);
+        return calc(type, n, timesStamps, values, timesStamps.length);
     }
 
     /**
-     * @param values the values of the time series
-     * @return a pair array of value and index
+     * @param type        the calculation type: BOTTOM or TOP
+     * @param n           the number of values n bottom or top values
+     * @param timesStamps the time stamps of the time series
+     * @param values      the belonging values of the time series
+     * @param size        the amount of points, the arrays can be larger
+     * @return a result containing the top / bottom measurements (timestamp + value) of the time series,
+     * the largest (top) or smallest (bottom) value first
      */
-    private static Pair[] create(double[] values) {
-        Pair[] pairs = new Pair[values.length];
-        for (int i = 0; i < values.length; i++) {
-            pairs[i] = new Pair(i, values[i]);
+    public static NElementsResult calc(NElementsCalculation type, int n, long[] timesStamps, double[] values, int size) {
+        Heap heap = new Heap(type, Math.min(n, size));
+        heap.offer(0, values, size);
+        heap.sort();
+
+        double[] nValues = new double[heap.size()];
+        long[] nTimes = new long[heap.size()];
+        for (int i = 0; i < heap.size(); i++) {
+            nValues[i] = heap.value(i);
+            nTimes[i] = timesStamps[heap.index(i)];
         }
-        return pairs;
+        return new NElementsResult(nTimes, nValues);
     }
 
     /**
@@ -90,58 +72,158 @@ public final class NElements {
     }
 
     /**
-     * Helper class to represent values with belonging index
+     * A bounded heap that keeps the n top or bottom values of one or several time series.
+     * The root is the worst kept value, hence a value that is not better than the root is dropped right away.
+     * The values are referenced by the number of the time series and their index.
+     * Equal values are ordered by their reference: the later value first for top, the earlier value first for bottom.
+     * NaN is larger than every other value (like {@link Double#compare(double, double)}).
      */
-    public static final class Pair implements Comparable<Pair> {
-        private int index;
-        private double value;
+    public static final class Heap {
+        private final NElementsCalculation type;
+        private final double[] values;
+        private final long[] references;
+        private int size;
+
+        /**
+         * @param type the calculation type: BOTTOM or TOP
+         * @param n    the amount of kept values
+         */
+        public Heap(NElementsCalculation type, int n) {
+            if (n < 0) {
+                throw new IllegalArgumentException("The amount of values " + n + " is negative");
+            }
+            this.type = type;
+            this.values = new double[n];
+            this.references = new long[n];
+        }
 
         /**
-         * Constructs a pair
+         * Offers the values of a time series
          *
-         * @param index the index
-         * @param value the value
+         * @param series the number of the time series
+         * @param values the values
+         * @param size   the amount of values, the array can be larger
          */
-        Pair(int index, double value) {
-            this.index = index;
-            this.value = value;
+        public void offer(int series, double[] values, int size) {
+            for (int i = 0; i < size; i++) {
+                offer(values[i], ((long) series << 32) | i);
+            }
+        }
+
+        private void offer(double value, long reference) {
+            if (size < values.length) {
+                values[size] = value;
+                references[size] = reference;
+                siftUp(size++);
+            } else if (size > 0 && isWorse(values[0], references[0], value, reference)) {
+                values[0] = value;
+                references[0] = reference;
+                siftDown(0, size);
+            }
         }
 
-        @Override
-        public int compareTo(Pair o) {
-            if (value < o.value) {
-                return -1;
+        /**
+         * @return true if the first value is worse than the second one, i.e. it is dropped first
+         */
+        private boolean isWorse(double value, long reference, double otherValue, long otherReference) {
+            int compare = Double.compare(value, otherValue);
+            if (compare == 0) {
+                compare = Long.compare(reference, otherReference);
             }
-            if (value > o.value) {
-                return 1;
+            switch (type) {
+                case TOP:
+                    return compare < 0;
+                case BOTTOM:
+                    return compare > 0;
+                default:
+                    throw new EnumConstantNotPresentException(NElementsCalculation.class, "Type: " + type + " not available");
             }
-            return 0;
         }
 
-        @Override
-        public boolean equals(Object o) {
-            if (this == o){
-                return true;
+        private boolean isWorse(int i, int j) {
+            return isWorse(values[i], references[i], values[j], references[j]);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!isWorse(i, parent)) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
             }
+        }
 
-            if (o == null || getClass() != o.getClass()){
-                return false;
+        private void siftDown(int i, int end) {
+            while (true) {
+                int worst = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < end && isWorse(left, worst)) {
+                    worst = left;
+                }
+                if (right < end && isWorse(right, worst)) {
+                    worst = right;
+                }
+                if (worst == i) {
+                    return;
+                }
+                swap(i, worst);
+                i = worst;
+            }
+        }
+
+        private void swap(int i, int j) {
+            double value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+            long reference = references[i];
+            references[i] = references[j];
+            references[j] = reference;
+        }
+
+        /**
+         * Sorts the kept values in place, the best value first.
+         * No values can be offered afterwards.
+         */
+        public void sort() {
+            //the worst value is moved behind the heap until the heap is empty
+            for (int end = size - 1; end > 0; end--) {
+                swap(0, end);
+                siftDown(0, end);
             }
+        }
 
-            Pair pair = (Pair) o;
+        /**
+         * @return the amount of kept values
+         */
+        public int size() {
+            return size;
+        }
 
-            return new EqualsBuilder()
-                    .append(index, pair.index)
-                    .append(value, pair.value)
-                    .isEquals();
+        /**
+         * @param i the position within the kept values
+         * @return the value
+         */
+        public double value(int i) {
+            return values[i];
         }
 
-        @Override
-        public int hashCode() {
-            return new HashCodeBuilder(17, 37)
-                    .append(index)
-                    .append(value)
-                    .toHashCode();
+        /**
+         * @param i the position within the kept values
+         * @return the number of the time series of the value
+         */
+        public int series(int i) {
+            return (int) (references[i] >>> 32);
+        }
+
+        /**
+         * @param i the position within the kept values
+         * @return the index of the value within its time series
+         */
+        public int index(int i) {
+            return (int) references[i];
         }
     }
 
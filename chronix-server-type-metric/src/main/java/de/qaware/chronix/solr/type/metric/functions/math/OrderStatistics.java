@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.type.metric.functions.math;
+
+import de.qaware.chronix.converter.common.DoubleList;
+
+import java.util.Arrays;
+
+/**
+ * Exact percentiles without sorting the values (introselect).
+ * <p>
+ * The values are copied into a scratch buffer of the current thread and partitioned around a pivot
+ * (three way, hence repeated values are cheap). Only the parts that contain a requested order statistic
+ * are partitioned again, so several percentiles are found in one pass that takes O(n) on average.
+ * If the partitioning degenerates, the remaining part is sorted, hence the worst case is O(n log n).
+ * <p>
+ * The results are the same as sorting the values and evaluating {@link Percentile#evaluateSorted(double[], double)}.
+ * NaN values are ordered behind all other values like {@link Arrays#sort(double[])} does.
+ *
+ * @author f.lautenschlager
+ */
+public final class OrderStatistics {
+
+    /**
+     * Larger scratch buffers are not kept by the thread
+     */
+    private static final int MAX_CACHED_SCRATCH = 1 << 20;
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+    private static final ThreadLocal<double[]> SCRATCH = ThreadLocal.withInitial(() -> new double[0]);
+
+    /**
+     * Avoid instances
+     */
+    private OrderStatistics() {
+    }
+
+    /**
+     * @param values      the values, they are not changed
+     * @param percentiles the percentiles (0 - 1), e.g. 0.25
+     * @return the value of every percentile, NaN if there are no values
+     */
+    public static double[] percentiles(DoubleList values, double... percentiles) {
+        int size = values.size();
+        double[] scratch = scratch(size);
+        for (int i = 0; i < size; i++) {
+            scratch[i] = values.get(i);
+        }
+        return select(scratch, size, percentiles);
+    }
+
+    /**
+     * @param values      the values, they are not changed
+     * @param from        the first index of the values
+     * @param to          the index after the last value
+     * @param percentiles the percentiles (0 - 1), e.g. 0.25
+     * @return the value of every percentile, NaN if there are no values
+     */
+    public static double[] percentiles(double[] values, int from, int to, double... percentiles) {
+        int size = to - from;
+        double[] scratch = scratch(size);
+        System.arraycopy(values, from, scratch, 0, size);
+        return select(scratch, size, percentiles);
+    }
+
+    /**
+     * @param size the needed size
+     * @return the scratch buffer of the thread or a new one for very large inputs
+     */
+    private static double[] scratch(int size) {
+        double[] scratch = SCRATCH.get();
+        if (scratch.length >= size) {
+            return scratch;
+        }
+        scratch = new double[size];
+        if (size <= MAX_CACHED_SCRATCH) {
+            SCRATCH.set(scratch);
+        }
+        return scratch;
+    }
+
+    private static double[] select(double[] values, int size, double[] percentiles) {
+        double[] results = new double[percentiles.length];
+        if (size == 0) {
+            Arrays.fill(results, Double.NaN);
+            return results;
+        }
+
+        //move the NaN values behind the other values, they are never partitioned
+        int numbers = size;
+        for (int i = size - 1; i >= 0; i--) {
+            if (Double.isNaN(values[i])) {
+                values[i] = values[--numbers];
+                values[numbers] = Double.NaN;
+            }
+        }
+
+        //the order statistics of the percentiles (quantile type 7, see Percentile)
+        int[] ranks = new int[percentiles.length * 2];
+        int amount = 0;
+        for (double percentile : percentiles) {
+            int rank = rank(size, percentile);
+            ranks[amount++] = rank;
+            if (weight(size, percentile) > 0) {
+                ranks[amount++] = rank + 1;
+            }
+        }
+        Arrays.sort(ranks, 0, amount);
+        int distinct = 0;
+        for (int i = 0; i < amount; i++) {
+            //ranks of NaN values are already in place
+            if (ranks[i] < numbers && (distinct == 0 || ranks[distinct - 1] != ranks[i])) {
+                ranks[distinct++] = ranks[i];
+            }
+        }
+
+        if (distinct > 0) {
+            select(values, 0, numbers - 1, ranks, 0, distinct, depthLimit(numbers));
+        }
+
+        for (int i = 0; i < percentiles.length; i++) {
+            int rank = rank(size, percentiles[i]);
+            double weight = weight(size, percentiles[i]);
+            if (weight > 0) {
+                results[i] = values[rank] + weight * (values[rank + 1] - values[rank]);
+            } else {
+                results[i] = values[rank];
+            }
+        }
+        return results;
+    }
+
+    /**
+     * The same index computation as {@link Percentile}
+     */
+    private static int rank(int size, double percentile) {
+        double percentileIndex = ((size - 1) * percentile) + 1;
+        return (int) Math.floor(percentileIndex - 1);
+    }
+
+    private static double weight(int size, double percentile) {
+        double percentileIndex = ((size - 1) * percentile) + 1;
+        return percentileIndex - Math.floor(percentileIndex);
+    }
+
+    private static int depthLimit(int size) {
+        return 2 * (32 - Integer.numberOfLeadingZeros(size));
+    }
+
+    /**
+     * Places the values of the ranks at their sorted position
+     *
+     * @param values the values without NaN
+     * @param from   the first index of the part (inclusive)
+     * @param to     the last index of the part (inclusive)
+     * @param ranks  the sorted ranks
+     * @param first  the first rank within the part
+     * @param last   the index after the last rank within the part
+     * @param depth  the remaining partitions before the part is sorted
+     */
+    private static void select(double[] values, int from, int to, int[] ranks, int first, int last, int depth) {
+        while (first < last) {
+            if (to - from < INSERTION_SORT_THRESHOLD) {
+                insertionSort(values, from, to);
+                return;
+            }
+            if (depth-- == 0) {
+                Arrays.sort(values, from, to + 1);
+                return;
+            }
+
+            //three way partition: [from, lower) < pivot, [lower, upper] == pivot, (upper, to] > pivot
+            double pivot = medianOfThree(values[from], values[(from + to) >>> 1], values[to]);
+            int lower = from;
+            int upper = to;
+            int i = from;
+            while (i <= upper) {
+                double value = values[i];
+                if (value < pivot) {
+                    swap(values, lower++, i++);
+                } else if (value > pivot) {
+                    swap(values, i, upper--);
+                } else {
+                    i++;
+                }
+            }
+
+            int left = first;
+            while (left < last && ranks[left] < lower) {
+                left++;
+            }
+            int right = left;
+            while (right < last && ranks[right] <= upper) {
+                right++;
+            }
+
+            //the ranks within the pivot part are in place
+            select(values, from, lower - 1, ranks, first, left, depth);
+            from = upper + 1;
+            first = right;
+        }
+    }
+
+    private static double medianOfThree(double a, double b, double c) {
+        if (a < b) {
+            return b < c ? b : Math.max(a, c);
+        }
+        return a < c ? a : Math.max(b, c);
+    }
+
+    private static void insertionSort(double[] values, int from, int to) {
+        for (int i = from + 1; i <= to; i++) {
+            double value = values[i];
+            int j = i - 1;
+            while (j >= from && values[j] > value) {
+                values[j + 1] = values[j];
+                j--;
+            }
+            values[j + 1] = value;
+        }
+    }
+
+    private static void swap(double[] values, int i, int j) {
+        double value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+}
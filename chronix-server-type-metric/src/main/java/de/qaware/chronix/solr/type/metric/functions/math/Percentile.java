@@ -17,9 +17,6 @@ package de.qaware.chronix.solr.type.metric.functions.math;
 
 
 import de.qaware.chronix.converter.common.DoubleList;
-
-import java.util.Arrays;
-
 /**
  * Class to calculate a percentile
  *
@@ -48,15 +45,26 @@ public final class Percentile {
      * }
      * </code>
      *
+     * The values are not sorted, the order statistics are selected by {@link OrderStatistics}.
+     *
      * @param values     - the values to aggregate the percentile
      * @param percentile - the percentile (0 - 1), e.g. 0.25
      * @return the value of the n-th percentile
      */
     public static double evaluate(DoubleList values, double percentile) {
-        double[] doubles = values.toArray();
-        Arrays.sort(doubles);
+        return OrderStatistics.percentiles(values, percentile)[0];
+    }
 
-        return evaluateForDoubles(doubles, percentile);
+    /**
+     * Same as {@link #evaluate(DoubleList, double)} for values that are already sorted.
+     * Several percentiles of the same values can share one sort.
+     *
+     * @param sorted     - the sorted values, must not be empty
+     * @param percentile - the percentile (0 - 1), e.g. 0.25
+     * @return the value of the n-th percentile
+     */
+    public static double evaluateSorted(double[] sorted, double percentile) {
+        return evaluateForDoubles(sorted, percentile);
     }
 
     private static double evaluateForDoubles(double[] points, double percentile) {
@@ -0,0 +1,350 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.type.metric.functions.math;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A mergeable sketch of the distribution of values to estimate percentiles (a merging t-digest).
+ * <p>
+ * The values are grouped into centroids (mean and weight). Centroids near the tails hold fewer values than
+ * centroids near the median (arcsine scale), hence the percentiles at the tails are more accurate.
+ * The size of the sketch is bounded by the compression (about compression centroids), not by the amount of values.
+ * Sketches of several chunks are combined with {@link #merge(QuantileSketch)}.
+ * As long as every centroid holds a single value, the percentiles are the same as {@link Percentile}.
+ *
+ * @author f.lautenschlager
+ */
+public final class QuantileSketch {
+
+    /**
+     * The default compression, about 100 centroids are kept
+     */
+    public static final int DEFAULT_COMPRESSION = 100;
+
+    private static final int VERSION = 1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int compression;
+
+    private double[] means;
+    private double[] weights;
+    private int centroids;
+
+    private double[] bufferMeans;
+    private double[] bufferWeights;
+    private int buffered;
+
+    private double count;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+    /**
+     * Creates an empty sketch with the default compression
+     */
+    public QuantileSketch() {
+        this(DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Creates an empty sketch
+     *
+     * @param compression the compression, larger values are more accurate and need more space
+     */
+    public QuantileSketch(int compression) {
+        if (compression < 10) {
+            throw new IllegalArgumentException("Compression " + compression + " is less than 10");
+        }
+        this.compression = compression;
+        //the arrays grow on demand, sketches of small chunks stay small
+        this.means = new double[0];
+        this.weights = new double[0];
+        this.bufferMeans = new double[0];
+        this.bufferWeights = new double[0];
+    }
+
+    /**
+     * Adds a value to the sketch
+     *
+     * @param value the value, NaN is ignored
+     */
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    private void add(double mean, double weight) {
+        if (Double.isNaN(mean)) {
+            return;
+        }
+        if (buffered == bufferMeans.length) {
+            growOrCompressBuffer();
+        }
+        bufferMeans[buffered] = mean;
+        bufferWeights[buffered] = weight;
+        buffered++;
+
+        if (count == 0 || mean < min) {
+            min = mean;
+        }
+        if (count == 0 || mean > max) {
+            max = mean;
+        }
+        count += weight;
+    }
+
+    private void growOrCompressBuffer() {
+        int maxBuffer = 5 * compression;
+        if (bufferMeans.length < maxBuffer) {
+            int capacity = Math.min(Math.max(INITIAL_CAPACITY, bufferMeans.length * 2), maxBuffer);
+            bufferMeans = Arrays.copyOf(bufferMeans, capacity);
+            bufferWeights = Arrays.copyOf(bufferWeights, capacity);
+        } else {
+            compress();
+        }
+    }
+
+    /**
+     * Merges the other sketch into this sketch
+     *
+     * @param other the sketch of other values
+     * @return this sketch
+     */
+    public QuantileSketch merge(QuantileSketch other) {
+        if (other == null || other.count == 0) {
+            return this;
+        }
+        other.compress();
+        double otherMin = other.min;
+        double otherMax = other.max;
+        for (int i = 0; i < other.centroids; i++) {
+            add(other.means[i], other.weights[i]);
+        }
+        //the extremes of the other sketch are exact, even if they are part of a centroid
+        min = Math.min(min, otherMin);
+        max = Math.max(max, otherMax);
+        return this;
+    }
+
+    /**
+     * Merges the buffered values into the centroids.
+     * The centroids are merged from left to right as long as a centroid spans at most one unit
+     * of the scale k(q) = compression / (2 * PI) * asin(2q - 1).
+     */
+    private void compress() {
+        if (buffered == 0) {
+            return;
+        }
+        int size = centroids + buffered;
+        double[] allMeans = Arrays.copyOf(means, size);
+        double[] allWeights = Arrays.copyOf(weights, size);
+        System.arraycopy(bufferMeans, 0, allMeans, centroids, buffered);
+        System.arraycopy(bufferWeights, 0, allWeights, centroids, buffered);
+        buffered = 0;
+        sortByMean(allMeans, allWeights, size);
+
+        int merged = 0;
+        double weightSoFar = 0;
+        double kLeft = scale(0);
+        double currentMean = allMeans[0];
+        double currentWeight = allWeights[0];
+        for (int i = 1; i < size; i++) {
+            double proposed = currentWeight + allWeights[i];
+
+            if (scale((weightSoFar + proposed) / count) - kLeft <= 1) {
+                //the weighted mean of both centroids
+                currentMean += (allMeans[i] - currentMean) * allWeights[i] / proposed;
+                currentWeight = proposed;
+            } else {
+                merged = append(merged, currentMean, currentWeight);
+                weightSoFar += currentWeight;
+                kLeft = scale(weightSoFar / count);
+                currentMean = allMeans[i];
+                currentWeight = allWeights[i];
+            }
+        }
+        centroids = append(merged, currentMean, currentWeight);
+    }
+
+    private double scale(double q) {
+        return compression / (2 * Math.PI) * Math.asin(2 * Math.min(q, 1) - 1);
+    }
+
+    private int append(int index, double mean, double weight) {
+        if (index == means.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, index * 2);
+            means = Arrays.copyOf(means, capacity);
+            weights = Arrays.copyOf(weights, capacity);
+        }
+        means[index] = mean;
+        weights[index] = weight;
+        return index + 1;
+    }
+
+    /**
+     * Sorts the centroids by their means, the weights follow the means (quick sort on both arrays).
+     */
+    private static void sortByMean(double[] means, double[] weights, int size) {
+        sortByMean(means, weights, 0, size - 1);
+    }
+
+    private static void sortByMean(double[] means, double[] weights, int from, int to) {
+        while (from < to) {
+            double pivot = means[(from + to) >>> 1];
+            int left = from;
+            int right = to;
+            while (left <= right) {
+                while (means[left] < pivot) {
+                    left++;
+                }
+                while (means[right] > pivot) {
+                    right--;
+                }
+                if (left <= right) {
+                    swap(means, weights, left++, right--);
+                }
+            }
+            //recurse into the smaller part, loop over the larger one
+            if (right - from < to - left) {
+                sortByMean(means, weights, from, right);
+                from = left;
+            } else {
+                sortByMean(means, weights, left, to);
+                to = right;
+            }
+        }
+    }
+
+    private static void swap(double[] means, double[] weights, int i, int j) {
+        double mean = means[i];
+        means[i] = means[j];
+        means[j] = mean;
+        double weight = weights[i];
+        weights[i] = weights[j];
+        weights[j] = weight;
+    }
+
+    /**
+     * Estimates the percentile.
+     * Every centroid is placed at the center of its values, the percentile is interpolated between the centroids
+     * (quantile type 7 like {@link Percentile}). The minimum and the maximum are exact.
+     *
+     * @param percentile the percentile (0 - 1), e.g. 0.25
+     * @return the estimated value of the percentile or NaN if the sketch is empty
+     */
+    public double quantile(double percentile) {
+        if (percentile < 0 || percentile > 1) {
+            throw new IllegalArgumentException("Percentile " + percentile + " is not within [0, 1]");
+        }
+        compress();
+        if (count == 0) {
+            return Double.NaN;
+        }
+
+        //the index of the percentile within the sorted values
+        double index = (count - 1) * percentile;
+
+        //the first and the last value are the exact minimum and maximum
+        double previousIndex = 0;
+        double previousValue = min;
+        double weightSoFar = 0;
+        for (int i = 0; i < centroids; i++) {
+            double center = weightSoFar + (weights[i] - 1) / 2;
+            if (index <= center) {
+                return interpolate(index, previousIndex, previousValue, center, means[i]);
+            }
+            previousIndex = center;
+            previousValue = means[i];
+            weightSoFar += weights[i];
+        }
+        return interpolate(index, previousIndex, previousValue, count - 1, max);
+    }
+
+    private static double interpolate(double index, double leftIndex, double leftValue, double rightIndex, double rightValue) {
+        if (rightIndex <= leftIndex) {
+            return rightValue;
+        }
+        double weight = (index - leftIndex) / (rightIndex - leftIndex);
+        return leftValue + weight * (rightValue - leftValue);
+    }
+
+    /**
+     * @return the amount of values in the sketch
+     */
+    public long count() {
+        return (long) count;
+    }
+
+    /**
+     * @return the amount of centroids after merging the buffered values
+     */
+    public int size() {
+        compress();
+        return centroids;
+    }
+
+    /**
+     * Serializes the sketch: version, compression, min, max and the centroids (mean and weight)
+     *
+     * @return the sketch as bytes
+     */
+    public byte[] toBytes() {
+        compress();
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 4 + 8 + 8 + 4 + centroids * 16);
+        buffer.putInt(VERSION);
+        buffer.putInt(compression);
+        buffer.putDouble(min);
+        buffer.putDouble(max);
+        buffer.putInt(centroids);
+        for (int i = 0; i < centroids; i++) {
+            buffer.putDouble(means[i]);
+            buffer.putDouble(weights[i]);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Reads a serialized sketch
+     *
+     * @param bytes  the bytes written by {@link #toBytes()}
+     * @param offset the offset of the sketch
+     * @param length the length of the sketch
+     * @return the sketch
+     */
+    public static QuantileSketch fromBytes(byte[] bytes, int offset, int length) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Version " + version + " of the sketch is not supported");
+        }
+        QuantileSketch sketch = new QuantileSketch(buffer.getInt());
+        double min = buffer.getDouble();
+        double max = buffer.getDouble();
+        int centroids = buffer.getInt();
+        sketch.means = new double[centroids];
+        sketch.weights = new double[centroids];
+        for (int i = 0; i < centroids; i++) {
+            double mean = buffer.getDouble();
+            double weight = buffer.getDouble();
+            sketch.append(i, mean, weight);
+            sketch.count += weight;
+        }
+        sketch.centroids = centroids;
+        sketch.min = min;
+        sketch.max = max;
+        return sketch;
+    }
+}
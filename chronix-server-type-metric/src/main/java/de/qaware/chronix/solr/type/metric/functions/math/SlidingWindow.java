@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.type.metric.functions.math;
+
+/**
+ * A window over the points of a time series [start, end) with running aggregates.
+ * <p>
+ * Points enter the window at the end and leave it at the start, hence sliding a window over a time series
+ * touches every point twice, independent of the size of the window. The window keeps the count and the sums
+ * of the timestamps and the values. If requested, monotonic deques keep the minimum and the maximum.
+ * Tumbling windows start at the end of the previous window, see {@link #tumble(long)}.
+ *
+ * @author f.lautenschlager
+ */
+public final class SlidingWindow {
+
+    private final long[] times;
+    private final double[] values;
+    private final int size;
+
+    private int start;
+    private int end;
+    private long timeSum;
+    private double valueSum;
+
+    private final int[] minimums;
+    private final int[] maximums;
+    private int minHead;
+    private int minTail;
+    private int maxHead;
+    private int maxTail;
+
+    /**
+     * Creates an empty window at the first point
+     *
+     * @param times  the timestamps
+     * @param values the values, can be null if only the timestamps are windowed
+     * @param size   the amount of points, the arrays can be larger
+     */
+    public SlidingWindow(long[] times, double[] values, int size) {
+        this(times, values, size, false);
+    }
+
+    /**
+     * Creates an empty window at the first point
+     *
+     * @param times     the timestamps
+     * @param values    the values, can be null if only the timestamps are windowed
+     * @param size      the amount of points, the arrays can be larger
+     * @param extremes  true if the minimum and the maximum of the window are tracked
+     */
+    public SlidingWindow(long[] times, double[] values, int size, boolean extremes) {
+        if (extremes && values == null) {
+            throw new IllegalArgumentException("The extremes need the values");
+        }
+        this.times = times;
+        this.values = values;
+        this.size = size;
+        //every point enters a deque at most once, hence the deques never wrap
+        this.minimums = extremes ? new int[size] : null;
+        this.maximums = extremes ? new int[size] : null;
+    }
+
+    /**
+     * Adds the next point to the window
+     *
+     * @return false if there is no next point
+     */
+    public boolean add() {
+        if (end >= size) {
+            return false;
+        }
+        int index = end++;
+        timeSum += times[index];
+        if (values != null) {
+            double value = values[index];
+            valueSum += value;
+            if (minimums != null) {
+                while (minTail > minHead && values[minimums[minTail - 1]] >= value) {
+                    minTail--;
+                }
+                minimums[minTail++] = index;
+                while (maxTail > maxHead && values[maximums[maxTail - 1]] <= value) {
+                    maxTail--;
+                }
+                maximums[maxTail++] = index;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the next points as long as their timestamps are not after the given time
+     *
+     * @param time  the time of the last point that is added (inclusive)
+     * @param limit the index the window does not grow beyond
+     */
+    public void addUntil(long time, int limit) {
+        int last = Math.min(limit, size);
+        while (end < last && times[end] <= time) {
+            add();
+        }
+    }
+
+    /**
+     * Adds the next points until the window ends at the given index
+     *
+     * @param index the end of the window (exclusive)
+     */
+    public void addTo(int index) {
+        int last = Math.min(index, size);
+        while (end < last) {
+            add();
+        }
+    }
+
+    /**
+     * Removes the first point of the window
+     *
+     * @return false if the window is empty
+     */
+    public boolean remove() {
+        if (start >= end) {
+            return false;
+        }
+        int index = start++;
+        timeSum -= times[index];
+        if (values != null) {
+            valueSum -= values[index];
+            if (minimums != null) {
+                if (minimums[minHead] == index) {
+                    minHead++;
+                }
+                if (maximums[maxHead] == index) {
+                    maxHead++;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Starts a tumbling window at the end of the current window.
+     * The new window holds the next point and the following points with a timestamp within
+     * [timestamp of the next point, timestamp of the next point + windowTime).
+     * The window ends at the first point that is not within, even if later points are.
+     *
+     * @param windowTime the time span of the window
+     * @return false if there is no next point
+     */
+    public boolean tumble(long windowTime) {
+        if (end >= size) {
+            return false;
+        }
+        start = end;
+        timeSum = 0;
+        valueSum = 0;
+        minHead = minTail;
+        maxHead = maxTail;
+
+        long windowStart = times[end];
+        long windowEnd = windowStart + windowTime;
+        add();
+        while (end < size && times[end] >= windowStart && times[end] < windowEnd) {
+            add();
+        }
+        return true;
+    }
+
+    /**
+     * @return the index of the first point of the window
+     */
+    public int start() {
+        return start;
+    }
+
+    /**
+     * @return the index after the last point of the window
+     */
+    public int end() {
+        return end;
+    }
+
+    /**
+     * @return the amount of points within the window
+     */
+    public int count() {
+        return end - start;
+    }
+
+    /**
+     * @return true if there are no points within the window
+     */
+    public boolean isEmpty() {
+        return start == end;
+    }
+
+    /**
+     * @return the sum of the timestamps
+     */
+    public long timeSum() {
+        return timeSum;
+    }
+
+    /**
+     * @return the sum of the values
+     */
+    public double valueSum() {
+        return valueSum;
+    }
+
+    /**
+     * @return the average timestamp (rounded towards zero)
+     */
+    public long averageTime() {
+        return timeSum / count();
+    }
+
+    /**
+     * @return the average value
+     */
+    public double averageValue() {
+        return valueSum / count();
+    }
+
+    /**
+     * @return the minimum value of the window
+     */
+    public double min() {
+        checkExtremes();
+        return values[minimums[minHead]];
+    }
+
+    /**
+     * @return the maximum value of the window
+     */
+    public double max() {
+        checkExtremes();
+        return values[maximums[maxHead]];
+    }
+
+    private void checkExtremes() {
+        if (minimums == null) {
+            throw new IllegalStateException("The extremes of the window are not tracked");
+        }
+        if (isEmpty()) {
+            throw new IllegalStateException("The window is empty");
+        }
+    }
+}
@@ -18,6 +18,7 @@ package de.qaware.chronix.solr.type.metric.functions.transformation;
 import de.qaware.chronix.server.functions.ChronixTransformation;
 import de.qaware.chronix.server.functions.FunctionCtx;
 import de.qaware.chronix.server.types.ChronixTimeSeries;
+import de.qaware.chronix.solr.type.metric.MetricColumns;
 import de.qaware.chronix.timeseries.MetricTimeSeries;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
@@ -50,22 +51,18 @@ public final class Add implements ChronixTransformation<MetricTimeSeries> {
 
         for (ChronixTimeSeries<MetricTimeSeries> chronixTimeSeries : timeSeriesList) {
 
-            MetricTimeSeries timeSeries = chronixTimeSeries.getRawTimeSeries();
+            //edit the values in place
+            MetricColumns columns = MetricColumns.of(chronixTimeSeries);
 
-            if (timeSeries.isEmpty()) {
+            if (columns.isEmpty()) {
                 continue;
             }
 
-            long[] timestamps = timeSeries.getTimestampsAsArray();
-            double[] values = timeSeries.getValuesAsArray();
-
-            timeSeries.clear();
-
-            for (int i = 0; i < values.length; i++) {
+            double[] values = columns.values();
+            for (int i = 0; i < columns.size(); i++) {
                 values[i] += value;
             }
-
-            timeSeries.addAll(timestamps, values);
+            columns.update(chronixTimeSeries);
 
             functionCtx.add(this, chronixTimeSeries.getJoinKey());
         }
@@ -28,29 +28,30 @@ import java.util.List;
 
 /**
  * Bottom transformation get the value bottom values
+ * <p>
+ * The values are selected per time series or with the argument 'all' across all time series of the query.
  *
  * @author f.lautenschlager
  */
 public final class Bottom implements ChronixTransformation<MetricTimeSeries> {
 
     private int value;
+    private boolean all;
 
     @Override
     public void execute(List<ChronixTimeSeries<MetricTimeSeries>> timeSeriesList, FunctionCtx functionCtx) {
 
-        for (ChronixTimeSeries<MetricTimeSeries> chronixTimeSeries : timeSeriesList) {
-            MetricTimeSeries timeSeries = chronixTimeSeries.getRawTimeSeries();
-
-            NElements.NElementsResult result = NElements.calc(NElements.NElementsCalculation.BOTTOM, value, timeSeries.getTimestampsAsArray(), timeSeries.getValuesAsArray());
+        if (all) {
+            NElementsTransformation.acrossSeries(NElements.NElementsCalculation.BOTTOM, value, timeSeriesList);
+        } else {
+            NElementsTransformation.perSeries(NElements.NElementsCalculation.BOTTOM, value, timeSeriesList);
+        }
 
-            //remove old time series
-            timeSeries.clear();
-            timeSeries.addAll(result.getNTimes(), result.getNValues());
+        for (ChronixTimeSeries<MetricTimeSeries> chronixTimeSeries : timeSeriesList) {
             functionCtx.add(this, chronixTimeSeries.getJoinKey());
         }
     }
 
-
     @Override
     public String getQueryName() {
         return "bottom";
@@ -62,15 +63,19 @@ public final class Bottom implements ChronixTransformation<MetricTimeSeries> {
     }
 
     /**
-     * @param args the first parameter is the threshold for the lowest values
+     * @param args the first parameter is the threshold for the lowest values and optional 'all' to select them across all time series
      */
     @Override
     public void setArguments(String[] args) {
         this.value = Integer.parseInt(args[0]);
+        this.all = args.length > 1 && "all".equalsIgnoreCase(args[1].trim());
     }
 
     @Override
     public String[] getArguments() {
+        if (all) {
+            return new String[]{"value=" + value, "all=true"};
+        }
         return new String[]{"value=" + value};
     }
 
@@ -89,6 +94,7 @@ public final class Bottom implements ChronixTransformation<MetricTimeSeries> {
         Bottom rhs = (Bottom) obj;
         return new EqualsBuilder()
                 .append(this.value, rhs.value)
+                .append(this.all, rhs.all)
                 .isEquals();
     }
 
@@ -96,6 +102,7 @@ public final class Bottom implements ChronixTransformation<MetricTimeSeries> {
     public int hashCode() {
         return new HashCodeBuilder()
                 .append(value)
+                .append(all)
                 .toHashCode();
     }
 
@@ -104,6 +111,7 @@ public final class Bottom implements ChronixTransformation<MetricTimeSeries> {
     public String toString() {
         return new ToStringBuilder(this)
                 .append("value", value)
+                .append("all", all)
                 .toString();
     }
 }
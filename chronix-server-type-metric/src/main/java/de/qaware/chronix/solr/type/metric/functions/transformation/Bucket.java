@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.type.metric.functions.transformation;
+
+import de.qaware.chronix.server.functions.ChronixTransformation;
+import de.qaware.chronix.server.functions.FunctionCtx;
+import de.qaware.chronix.server.types.ChronixTimeSeries;
+import de.qaware.chronix.solr.type.metric.MetricColumns;
+import de.qaware.chronix.solr.type.metric.functions.math.OrderStatistics;
+import de.qaware.chronix.timeseries.MetricTimeSeries;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * The bucket transformation downsamples a time series into fixed time buckets, e.g. bucket:5,MINUTES,avg.
+ * The buckets are aligned to the epoch. Every bucket with points is replaced by a single point at the start
+ * of the bucket with the aggregated value (min, max, avg, sum, count, first, last or a percentile, e.g. p,0.99).
+ *
+ * @author f.lautenschlager
+ */
+public final class Bucket implements ChronixTransformation<MetricTimeSeries> {
+
+    private long timeSpan;
+    private ChronoUnit unit;
+    private long bucketTime;
+    private Aggregation aggregation;
+    private double percentile;
+
+    /**
+     * Groups the points into the buckets in a single pass over the sorted points.
+     * The buckets are written in place, as a bucket never has more points than the points it replaces.
+     *
+     * @param timeSeriesList the list with time series that are transformed
+     * @param functionCtx    the function context
+     */
+    @Override
+    public void execute(List<ChronixTimeSeries<MetricTimeSeries>> timeSeriesList, FunctionCtx functionCtx) {
+
+        for (ChronixTimeSeries<MetricTimeSeries> chronixTimeSeries : timeSeriesList) {
+            MetricColumns columns = MetricColumns.of(chronixTimeSeries);
+
+            //we need a sorted time series
+            columns.sort();
+
+            long[] times = columns.timestamps();
+            double[] values = columns.values();
+            int size = columns.size();
+
+            int buckets = 0;
+            int from = 0;
+            while (from < size) {
+                long bucketStart = Math.floorDiv(times[from], bucketTime) * bucketTime;
+                long bucketEnd = bucketStart + bucketTime;
+
+                int to = from + 1;
+                while (to < size && times[to] < bucketEnd) {
+                    to++;
+                }
+
+                //the bucket is read before its point is written, the point is never behind the bucket
+                double value = aggregate(values, from, to);
+                times[buckets] = bucketStart;
+                values[buckets] = value;
+                buckets++;
+                from = to;
+            }
+            columns.setSize(buckets);
+            columns.update(chronixTimeSeries);
+
+            functionCtx.add(this, chronixTimeSeries.getJoinKey());
+        }
+    }
+
+    /**
+     * @param values the values
+     * @param from   the first index of the bucket
+     * @param to     the index after the bucket
+     * @return the aggregated value of the bucket
+     */
+    private double aggregate(double[] values, int from, int to) {
+        switch (aggregation) {
+            case MIN:
+                double min = values[from];
+                for (int i = from + 1; i < to; i++) {
+                    min = Math.min(min, values[i]);
+                }
+                return min;
+            case MAX:
+                double max = values[from];
+                for (int i = from + 1; i < to; i++) {
+                    max = Math.max(max, values[i]);
+                }
+                return max;
+            case AVG:
+                return sum(values, from, to) / (to - from);
+            case SUM:
+                return sum(values, from, to);
+            case COUNT:
+                return to - from;
+            case FIRST:
+                return values[from];
+            case LAST:
+                return values[to - 1];
+            case P:
+                return OrderStatistics.percentiles(values, from, to, percentile)[0];
+            default:
+                throw new IllegalStateException("Aggregation " + aggregation + " is not supported");
+        }
+    }
+
+    private static double sum(double[] values, int from, int to) {
+        double sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public String getQueryName() {
+        return "bucket";
+    }
+
+    @Override
+    public String getType() {
+        return "metric";
+    }
+
+    /**
+     * @param args the time span e.g. 5, the unit of the time span, the aggregation of the buckets and
+     *             for the percentile aggregation (p) the percentile [0.0 ... 1.0]
+     */
+    @Override
+    public void setArguments(String[] args) {
+        this.timeSpan = Long.parseLong(args[0]);
+        this.unit = ChronoUnit.valueOf(args[1].toUpperCase());
+        this.bucketTime = unit.getDuration().toMillis() * timeSpan;
+        if (bucketTime <= 0) {
+            throw new IllegalArgumentException("The bucket must span at least one millisecond, got " + timeSpan + " " + unit);
+        }
+        this.aggregation = Aggregation.valueOf(args[2].trim().toUpperCase());
+        if (aggregation == Aggregation.P) {
+            this.percentile = Double.parseDouble(args[3]);
+        }
+    }
+
+    @Override
+    public String[] getArguments() {
+        if (aggregation == Aggregation.P) {
+            return new String[]{"timeSpan=" + timeSpan, "unit=" + unit.name(), "aggregation=" + aggregation.name().toLowerCase(), "percentile=" + percentile};
+        }
+        return new String[]{"timeSpan=" + timeSpan, "unit=" + unit.name(), "aggregation=" + aggregation.name().toLowerCase()};
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("timeSpan", timeSpan)
+                .append("unit", unit)
+                .append("aggregation", aggregation)
+                .append("percentile", percentile)
+                .toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (obj == this) {
+            return true;
+        }
+        if (obj.getClass() != getClass()) {
+            return false;
+        }
+        Bucket rhs = (Bucket) obj;
+        return new EqualsBuilder()
+                .append(this.timeSpan, rhs.timeSpan)
+                .append(this.unit, rhs.unit)
+                .append(this.aggregation, rhs.aggregation)
+                .append(this.percentile, rhs.percentile)
+                .isEquals();
+    }
+
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder()
+                .append(timeSpan)
+                .append(unit)
+                .append(aggregation)
+                .append(percentile)
+                .toHashCode();
+    }
+
+    /**
+     * The aggregations of the points within a bucket
+     */
+    private enum Aggregation {
+        MIN, MAX, AVG, SUM, COUNT, FIRST, LAST, P
+    }
+}
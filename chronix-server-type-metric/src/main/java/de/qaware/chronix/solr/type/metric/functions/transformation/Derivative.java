@@ -18,6 +18,7 @@ package de.qaware.chronix.solr.type.metric.functions.transformation;
 import de.qaware.chronix.server.functions.ChronixTransformation;
 import de.qaware.chronix.server.functions.FunctionCtx;
 import de.qaware.chronix.server.types.ChronixTimeSeries;
+import de.qaware.chronix.solr.type.metric.MetricColumns;
 import de.qaware.chronix.solr.type.metric.functions.math.DerivativeUtil;
 import de.qaware.chronix.timeseries.MetricTimeSeries;
 import org.apache.commons.lang3.builder.EqualsBuilder;
@@ -42,18 +43,17 @@ public final class Derivative implements ChronixTransformation<MetricTimeSeries>
     public void execute(List<ChronixTimeSeries<MetricTimeSeries>> timeSeriesList, FunctionCtx functionCtx) {
 
         for (ChronixTimeSeries<MetricTimeSeries> chronixTimeSeries : timeSeriesList) {
-            MetricTimeSeries timeSeries = chronixTimeSeries.getRawTimeSeries();
+            MetricColumns columns = MetricColumns.of(chronixTimeSeries);
 
             //we need a sorted time series
-            timeSeries.sort();
+            columns.sort();
 
-            long[] times = timeSeries.getTimestampsAsArray();
-            double[] values = timeSeries.getValuesAsArray();
+            long[] times = columns.timestamps();
+            double[] values = columns.values();
 
-            //Clear the time series
-            timeSeries.clear();
-
-            for (int i = 1; i < values.length - 1; i++) {
+            //the derivatives are written in place, the point i - 1 is not read after the iteration i
+            int size = 0;
+            for (int i = 1; i < columns.size() - 1; i++) {
 
                 long yT1 = times[i + 1];
                 long yT0 = times[i - 1];
@@ -63,10 +63,13 @@ public final class Derivative implements ChronixTransformation<MetricTimeSeries>
 
                 double derivativeValue = DerivativeUtil.derivative(xT1, xT0, yT1, yT0);
                 //We use the average time of
-                long derivativeTime = yT1 + (yT1 - yT0) / 2;
-
-                timeSeries.add(derivativeTime, derivativeValue);
+                times[size] = yT1 + (yT1 - yT0) / 2;
+                values[size] = derivativeValue;
+                size++;
             }
+            columns.setSize(size);
+            columns.update(chronixTimeSeries);
+
             functionCtx.add(this, chronixTimeSeries.getJoinKey());
         }
     }
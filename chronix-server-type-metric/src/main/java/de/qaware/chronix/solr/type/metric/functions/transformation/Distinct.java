@@ -15,11 +15,11 @@
  */
 package de.qaware.chronix.solr.type.metric.functions.transformation;
 
-import de.qaware.chronix.converter.common.DoubleList;
-import de.qaware.chronix.converter.common.LongList;
 import de.qaware.chronix.server.functions.ChronixTransformation;
 import de.qaware.chronix.server.functions.FunctionCtx;
 import de.qaware.chronix.server.types.ChronixTimeSeries;
+import de.qaware.chronix.solr.type.metric.MetricColumns;
+import de.qaware.chronix.solr.type.metric.functions.math.DoubleHashSet;
 import de.qaware.chronix.timeseries.MetricTimeSeries;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
@@ -28,13 +28,21 @@ import java.util.List;
 
 /**
  * The distinct transformation.
+ * <p>
+ * The seen values are kept in a {@link DoubleHashSet}, hence the transformation is linear in the amount of points.
+ * With the argument 'runs' (distinct:runs) only repeated values of consecutive points are removed,
+ * e.g. the points of a gauge that only changes from time to time. No set is needed then.
  *
  * @author f.lautenschlager
  */
 public final class Distinct implements ChronixTransformation<MetricTimeSeries> {
+
+    private boolean runs;
+
     /**
      * Transforms a time series into a representation with distinct values.
      * The distinct operation uses the first occurrence of a point.
+     * The values are compared by their bits, i.e. NaN is equal to NaN and -0.0 is not equal to 0.0.
      *
      * @param timeSeriesList  a list with time series
      * @param functionCtx the function value map
@@ -43,32 +51,69 @@ public final class Distinct implements ChronixTransformation<MetricTimeSeries> {
     public void execute(List<ChronixTimeSeries<MetricTimeSeries>> timeSeriesList, FunctionCtx functionCtx) {
 
         for (ChronixTimeSeries<MetricTimeSeries> chronixTimeSeries : timeSeriesList) {
-            MetricTimeSeries timeSeries = chronixTimeSeries.getRawTimeSeries();
+            MetricColumns columns = MetricColumns.of(chronixTimeSeries);
 
-            if (timeSeries.isEmpty()) {
+            if (columns.isEmpty()) {
                 continue;
             }
 
-            timeSeries.sort();
+            columns.sort();
 
-            LongList timeList = new LongList(timeSeries.size());
-            DoubleList valueList = new DoubleList(timeSeries.size());
+            long[] times = columns.timestamps();
+            double[] values = columns.values();
+            int size = columns.size();
 
-            //We should use a other data structure...
+            //the kept points are written in place, they are never behind the read point
+            int kept = runs ? distinctRuns(times, values, size) : distinct(times, values, size);
+            columns.setSize(kept);
+            columns.update(chronixTimeSeries);
 
-            for (int i = 0; i < timeSeries.size(); i++) {
-                double value = timeSeries.getValue(i);
+            functionCtx.add(this, chronixTimeSeries.getJoinKey());
+        }
+    }
 
-                if (!valueList.contains(value)) {
-                    timeList.add(timeSeries.getTime(i));
-                    valueList.add(value);
-                }
+    private static int distinct(long[] times, double[] values, int size) {
+        DoubleHashSet seen = new DoubleHashSet();
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (seen.add(values[i])) {
+                times[kept] = times[i];
+                values[kept] = values[i];
+                kept++;
             }
-            timeSeries.clear();
-            timeSeries.addAll(timeList, valueList);
+        }
+        return kept;
+    }
 
-            functionCtx.add(this, chronixTimeSeries.getJoinKey());
+    private static int distinctRuns(long[] times, double[] values, int size) {
+        int kept = 1;
+        long previous = Double.doubleToLongBits(values[0]);
+        for (int i = 1; i < size; i++) {
+            long bits = Double.doubleToLongBits(values[i]);
+            if (bits != previous) {
+                times[kept] = times[i];
+                values[kept] = values[i];
+                kept++;
+                previous = bits;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * @param args optional 'runs' to remove only repeated values of consecutive points
+     */
+    @Override
+    public void setArguments(String[] args) {
+        this.runs = args.length > 0 && "runs".equalsIgnoreCase(args[0].trim());
+    }
+
+    @Override
+    public String[] getArguments() {
+        if (runs) {
+            return new String[]{"runs=true"};
         }
+        return new String[0];
     }
 
     @Override
@@ -93,13 +138,16 @@ public final class Distinct implements ChronixTransformation<MetricTimeSeries> {
         if (obj.getClass() != getClass()) {
             return false;
         }
+        Distinct rhs = (Distinct) obj;
         return new EqualsBuilder()
+                .append(this.runs, rhs.runs)
                 .isEquals();
     }
 
     @Override
     public int hashCode() {
         return new HashCodeBuilder()
+                .append(runs)
                 .toHashCode();
     }
 }
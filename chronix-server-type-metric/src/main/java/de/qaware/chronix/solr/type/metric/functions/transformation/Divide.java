@@ -18,6 +18,7 @@ package de.qaware.chronix.solr.type.metric.functions.transformation;
 import de.qaware.chronix.server.functions.ChronixTransformation;
 import de.qaware.chronix.server.functions.FunctionCtx;
 import de.qaware.chronix.server.types.ChronixTimeSeries;
+import de.qaware.chronix.solr.type.metric.MetricColumns;
 import de.qaware.chronix.timeseries.MetricTimeSeries;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
@@ -37,19 +38,14 @@ public final class Divide implements ChronixTransformation<MetricTimeSeries> {
     public void execute(List<ChronixTimeSeries<MetricTimeSeries>> timeSeriesList, FunctionCtx functionCtx) {
 
         for (ChronixTimeSeries<MetricTimeSeries> chronixTimeSeries : timeSeriesList) {
-            MetricTimeSeries timeSeries = chronixTimeSeries.getRawTimeSeries();
-
-            //Get a copy of the values
-            double[] values = timeSeries.getValuesAsArray();
-            //Get a copy of the timestamps
-            long[] times = timeSeries.getTimestampsAsArray();
-            for (int i = 0; i < timeSeries.size(); i++) {
+            //edit the values in place
+            MetricColumns columns = MetricColumns.of(chronixTimeSeries);
+            double[] values = columns.values();
+            for (int i = 0; i < columns.size(); i++) {
                 //simply divide the original value
                 values[i] = values[i] / value;
             }
-            //Clear the original time series and add the values
-            timeSeries.clear();
-            timeSeries.addAll(times, values);
+            columns.update(chronixTimeSeries);
 
             functionCtx.add(this, chronixTimeSeries.getJoinKey());
         }
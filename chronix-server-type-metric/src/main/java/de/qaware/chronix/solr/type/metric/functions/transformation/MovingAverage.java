@@ -18,6 +18,8 @@ package de.qaware.chronix.solr.type.metric.functions.transformation;
 import de.qaware.chronix.server.functions.ChronixTransformation;
 import de.qaware.chronix.server.functions.FunctionCtx;
 import de.qaware.chronix.server.types.ChronixTimeSeries;
+import de.qaware.chronix.solr.type.metric.MetricColumns;
+import de.qaware.chronix.solr.type.metric.functions.math.SlidingWindow;
 import de.qaware.chronix.timeseries.MetricTimeSeries;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
@@ -46,6 +48,9 @@ public final class MovingAverage implements ChronixTransformation<MetricTimeSeri
      * of the remaining points are evaluated. If the next point also not within the window, again the first point is
      * dropped and so on until the end of the window is greater equals the time series end.
      * We do this as time series can have gaps that are larger than the defined window.
+     * <p>
+     * The window keeps running sums ({@link SlidingWindow}), hence every point is added and removed once.
+     * The averages are written in place, the average of a window is written at the index of its first point.
      *
      * @param timeSeriesList the list with time series that is transformed
      */
@@ -53,56 +58,18 @@ public final class MovingAverage implements ChronixTransformation<MetricTimeSeri
     public void execute(List<ChronixTimeSeries<MetricTimeSeries>> timeSeriesList, FunctionCtx functionCtx) {
 
         for (ChronixTimeSeries<MetricTimeSeries> chronixTimeSeries : timeSeriesList) {
-            MetricTimeSeries timeSeries = chronixTimeSeries.getRawTimeSeries();
+            MetricColumns columns = MetricColumns.of(chronixTimeSeries);
 
             //we need a sorted time series
-            timeSeries.sort();
-
-            //get the raw values as arrays
-            double[] values = timeSeries.getValuesAsArray();
-            long[] times = timeSeries.getTimestampsAsArray();
-
-            int timeSeriesSize = timeSeries.size();
-            //remove the old values
-            timeSeries.clear();
-
-            int startIdx = 0;
-            long current = times[0];
-            long currentWindowEnd = current + windowTime;
-            long last = times[timeSeriesSize - 1];
-
-            boolean lastWindowOnlyOnePoint = true;
-
-            //the start is already set
-            for (int i = 0; i < timeSeriesSize; i++) {
-
-                //fill window
-                while (i < timeSeriesSize && !outsideWindow(currentWindowEnd, current)) {
-                    current = times[i++];
-                }
-                //decrement counter to mark the last index position that is within the window
-                i -= 1;
-
-                //calculate the average of the values and the time
-                evaluateAveragesAndAddToTimeSeries(timeSeries, values, times, startIdx, i);
-
-                //slide the window
-                startIdx++;
-                currentWindowEnd = times[startIdx] + windowTime;
-
-                //check if the current window end is larger equals the end timestamp
-                if (currentWindowEnd >= last) {
-                    //break and add the last window
-                    lastWindowOnlyOnePoint = false;
-                    break;
-                }
-            }
+            columns.sort();
 
-            if (lastWindowOnlyOnePoint) {
-                timeSeries.add(times[timeSeriesSize - 1], values[timeSeriesSize - 1]);
-            } else {
-                //add the last window
-                evaluateAveragesAndAddToTimeSeries(timeSeries, values, times, startIdx, timeSeriesSize);
+            long[] times = columns.timestamps();
+            double[] values = columns.values();
+            int timeSeriesSize = columns.size();
+
+            if (timeSeriesSize > 1) {
+                columns.setSize(movingAverages(times, values, timeSeriesSize));
+                columns.update(chronixTimeSeries);
             }
 
             functionCtx.add(this, chronixTimeSeries.getJoinKey());
@@ -110,37 +77,44 @@ public final class MovingAverage implements ChronixTransformation<MetricTimeSeri
     }
 
     /**
-     * Calculates the average time stamp and value for the given window (start, end) and adds it to the given time series
-     *
-     * @param timeSeries the time series to add the moving averages
-     * @param values     the values
-     * @param times      the time stamps
-     * @param startIdx   the start index of the window
-     * @param end        the end index of the window
+     * @param times          the sorted time stamps
+     * @param values         the values
+     * @param timeSeriesSize the amount of points, at least two
+     * @return the amount of averages written to the start of the arrays
      */
-    private void evaluateAveragesAndAddToTimeSeries(MetricTimeSeries timeSeries, double[] values, long[] times, int startIdx, int end) {
-
-        //If the indices are equals, just return the value at the index position
-        if (startIdx == end) {
-            timeSeries.add(times[startIdx], values[startIdx]);
-        }
-
-        double valueSum = 0;
-        long timeSum = 0;
-
+    private int movingAverages(long[] times, double[] values, int timeSeriesSize) {
+        SlidingWindow window = new SlidingWindow(times, values, timeSeriesSize);
+        long last = times[timeSeriesSize - 1];
+
+        int startIdx = 0;
+        while (true) {
+            //fill the window, the last point is only part of the last window
+            window.addUntil(times[startIdx] + windowTime, timeSeriesSize - 1);
+            long averageTime = window.averageTime();
+            double averageValue = window.averageValue();
+
+            //slide the window, the first point is read before the average is written at its position
+            window.remove();
+            times[startIdx] = averageTime;
+            values[startIdx] = averageValue;
+            startIdx++;
+
+            //check if the current window end is larger equals the end timestamp
+            if (times[startIdx] + windowTime >= last) {
+                //add the last window
+                window.addTo(timeSeriesSize);
+                times[startIdx] = window.averageTime();
+                values[startIdx] = window.averageValue();
+                return startIdx + 1;
+            }
 
-        for (int i = startIdx; i < end; i++) {
-            valueSum += values[i];
-            timeSum += times[i];
+            //the window reached the last point, it is added as it is
+            if (window.end() == timeSeriesSize - 1) {
+                times[startIdx] = times[timeSeriesSize - 1];
+                values[startIdx] = values[timeSeriesSize - 1];
+                return startIdx + 1;
+            }
         }
-        int amount = end - startIdx;
-
-
-        timeSeries.add(timeSum / amount, valueSum / amount);
-    }
-
-    private boolean outsideWindow(long currentWindow, long windowTime) {
-        return currentWindow < windowTime;
     }
 
     @Override
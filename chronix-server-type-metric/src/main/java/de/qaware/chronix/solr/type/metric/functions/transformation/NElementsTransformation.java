@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.type.metric.functions.transformation;
+
+import de.qaware.chronix.server.types.ChronixTimeSeries;
+import de.qaware.chronix.solr.type.metric.MetricColumns;
+import de.qaware.chronix.solr.type.metric.functions.math.NElements;
+import de.qaware.chronix.timeseries.MetricTimeSeries;
+
+import java.util.List;
+
+/**
+ * Replaces the points of time series with their top or bottom n points, used by {@link Top} and {@link Bottom}.
+ * The points are edited in place, the best point first.
+ *
+ * @author f.lautenschlager
+ */
+final class NElementsTransformation {
+
+    private NElementsTransformation() {
+        //avoid instances
+    }
+
+    /**
+     * Keeps the top or bottom n points of every time series
+     *
+     * @param type           the calculation type: BOTTOM or TOP
+     * @param n              the amount of points per time series
+     * @param timeSeriesList the time series
+     */
+    static void perSeries(NElements.NElementsCalculation type, int n, List<ChronixTimeSeries<MetricTimeSeries>> timeSeriesList) {
+        for (ChronixTimeSeries<MetricTimeSeries> chronixTimeSeries : timeSeriesList) {
+            MetricColumns columns = MetricColumns.of(chronixTimeSeries);
+
+            NElements.Heap heap = new NElements.Heap(type, Math.min(n, columns.size()));
+            heap.offer(0, columns.values(), columns.size());
+            heap.sort();
+
+            keep(heap, 0, heap.size(), columns);
+            columns.update(chronixTimeSeries);
+        }
+    }
+
+    /**
+     * Keeps the top or bottom n points of all time series in one pass.
+     * Every time series keeps its points that are part of them, the other time series are empty afterwards.
+     *
+     * @param type           the calculation type: BOTTOM or TOP
+     * @param n              the amount of points of all time series
+     * @param timeSeriesList the time series
+     */
+    static void acrossSeries(NElements.NElementsCalculation type, int n, List<ChronixTimeSeries<MetricTimeSeries>> timeSeriesList) {
+        MetricColumns[] columns = new MetricColumns[timeSeriesList.size()];
+        int points = 0;
+        for (int series = 0; series < columns.length; series++) {
+            columns[series] = MetricColumns.of(timeSeriesList.get(series));
+            points += columns[series].size();
+        }
+
+        NElements.Heap heap = new NElements.Heap(type, Math.min(n, points));
+        for (int series = 0; series < columns.length; series++) {
+            heap.offer(series, columns[series].values(), columns[series].size());
+        }
+        heap.sort();
+
+        //group the kept points by their time series, the best point first within a time series
+        int[] offsets = new int[columns.length + 1];
+        for (int i = 0; i < heap.size(); i++) {
+            offsets[heap.series(i) + 1]++;
+        }
+        for (int series = 0; series < columns.length; series++) {
+            offsets[series + 1] += offsets[series];
+        }
+        int[] positions = new int[heap.size()];
+        int[] next = offsets.clone();
+        for (int i = 0; i < heap.size(); i++) {
+            positions[next[heap.series(i)]++] = i;
+        }
+
+        for (int series = 0; series < columns.length; series++) {
+            keep(heap, positions, offsets[series], offsets[series + 1], columns[series]);
+            columns[series].update(timeSeriesList.get(series));
+        }
+    }
+
+    private static void keep(NElements.Heap heap, int from, int to, MetricColumns columns) {
+        int[] positions = new int[to - from];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = from + i;
+        }
+        keep(heap, positions, 0, positions.length, columns);
+    }
+
+    /**
+     * Replaces the points of the columns with the kept points
+     *
+     * @param heap      the sorted heap
+     * @param positions the positions within the heap
+     * @param from      the first position of the time series
+     * @param to        the position after the last position of the time series
+     * @param columns   the columns of the time series
+     */
+    private static void keep(NElements.Heap heap, int[] positions, int from, int to, MetricColumns columns) {
+        int size = to - from;
+        //read the kept points first, writing them in place would overwrite points that are not read yet
+        long[] times = new long[size];
+        for (int i = 0; i < size; i++) {
+            times[i] = columns.timestamps()[heap.index(positions[from + i])];
+        }
+        for (int i = 0; i < size; i++) {
+            columns.timestamps()[i] = times[i];
+            columns.values()[i] = heap.value(positions[from + i]);
+        }
+        columns.setSize(size);
+    }
+}
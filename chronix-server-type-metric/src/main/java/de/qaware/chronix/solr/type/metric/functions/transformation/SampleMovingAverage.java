@@ -18,6 +18,8 @@ package de.qaware.chronix.solr.type.metric.functions.transformation;
 import de.qaware.chronix.server.functions.ChronixTransformation;
 import de.qaware.chronix.server.functions.FunctionCtx;
 import de.qaware.chronix.server.types.ChronixTimeSeries;
+import de.qaware.chronix.solr.type.metric.MetricColumns;
+import de.qaware.chronix.solr.type.metric.functions.math.SlidingWindow;
 import de.qaware.chronix.timeseries.MetricTimeSeries;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
@@ -35,15 +37,11 @@ public final class SampleMovingAverage implements ChronixTransformation<MetricTi
     private int samples;
 
     /**
-     * Constructs a moving average transformation based on a fixed samples amount per window
-     * <p>
-     * <p>
-     * public SampleMovingAverage(String[] args) {
-     * }
-     * <p>
-     * /**
      * Transforms a time series using a moving average that is based on a window with a fixed amount of samples.
      * The last window contains equals or a lower amount samples.
+     * <p>
+     * The window keeps running sums ({@link SlidingWindow}), hence every point is added and removed once.
+     * The averages are written in place, the average of a window is written at the index of its first point.
      *
      * @param timeSeriesList the list with time series that is transformed
      */
@@ -51,31 +49,18 @@ public final class SampleMovingAverage implements ChronixTransformation<MetricTi
     public void execute(List<ChronixTimeSeries<MetricTimeSeries>> timeSeriesList, FunctionCtx functionCtx) {
 
         for (ChronixTimeSeries<MetricTimeSeries> chronixTimeSeries : timeSeriesList) {
-            MetricTimeSeries timeSeries = chronixTimeSeries.getRawTimeSeries();
+            MetricColumns columns = MetricColumns.of(chronixTimeSeries);
 
             //we need a sorted time series
-            timeSeries.sort();
-
-            //get the raw values as arrays
-            double[] values = timeSeries.getValuesAsArray();
-            long[] times = timeSeries.getTimestampsAsArray();
+            columns.sort();
 
-            int timeSeriesSize = timeSeries.size();
-            //remove the old values
-            timeSeries.clear();
+            long[] times = columns.timestamps();
+            double[] values = columns.values();
+            int timeSeriesSize = columns.size();
 
-            //the start is already set
-            for (int start = 0; start < timeSeriesSize; start++) {
-
-                int end = start + samples;
-                //calculate the average of the values and the time
-                evaluteAveragesAndAddToTimeSeries(timeSeries, values, times, start, end);
-
-                //check if window end is larger than time series
-                if (end + 1 >= timeSeriesSize) {
-                    evaluteAveragesAndAddToTimeSeries(timeSeries, values, times, start + 1, timeSeriesSize);
-                    break;
-                }
+            if (timeSeriesSize > 0) {
+                columns.setSize(movingAverages(times, values, timeSeriesSize));
+                columns.update(chronixTimeSeries);
             }
 
             functionCtx.add(this, chronixTimeSeries.getJoinKey());
@@ -83,35 +68,40 @@ public final class SampleMovingAverage implements ChronixTransformation<MetricTi
     }
 
     /**
-     * Calculates the average time stamp and value for the given window (start, end) and adds it to the given time series
-     *
-     * @param timeSeries the time series to add the moving averages
-     * @param values     the values
-     * @param times      the time stamps
-     * @param startIdx   the start index of the window
-     * @param end        the end index of the window
+     * @param times          the sorted time stamps
+     * @param values         the values
+     * @param timeSeriesSize the amount of points, at least one
+     * @return the amount of averages written to the start of the arrays
      */
-    private void evaluteAveragesAndAddToTimeSeries(MetricTimeSeries timeSeries, double[] values, long[] times, int startIdx, int end) {
-
-        //If the indices are equals, just return the value at the index position
-        if (startIdx == end) {
-            timeSeries.add(times[startIdx], values[startIdx]);
-        }
-
-        double valueSum = 0;
-        long timeSum = 0;
-
-
-        for (int i = startIdx; i < end; i++) {
-            valueSum += values[i];
-            timeSum += times[i];
+    private int movingAverages(long[] times, double[] values, int timeSeriesSize) {
+        SlidingWindow window = new SlidingWindow(times, values, timeSeriesSize);
+
+        int start = 0;
+        while (true) {
+            int end = start + samples;
+            window.addTo(end);
+            long averageTime = window.averageTime();
+            double averageValue = window.averageValue();
+
+            //slide the window, the first point is read before the average is written at its position
+            window.remove();
+            times[start] = averageTime;
+            values[start] = averageValue;
+            start++;
+
+            //check if window end is larger than time series
+            if (end + 1 >= timeSeriesSize) {
+                if (start < timeSeriesSize) {
+                    window.addTo(timeSeriesSize);
+                    times[start] = window.averageTime();
+                    values[start] = window.averageValue();
+                    start++;
+                }
+                return start;
+            }
         }
-        int amount = end - startIdx;
-
-        timeSeries.add(timeSum / amount, valueSum / amount);
     }
 
-
     @Override
     public String getQueryName() {
         return "smovavg";
@@ -128,7 +118,9 @@ public final class SampleMovingAverage implements ChronixTransformation<MetricTi
     @Override
     public void setArguments(String[] args) {
         this.samples = Integer.parseInt(args[0]);
-
+        if (samples <= 0) {
+            throw new IllegalArgumentException("A window needs at least one sample, got " + samples);
+        }
     }
 
     @Override
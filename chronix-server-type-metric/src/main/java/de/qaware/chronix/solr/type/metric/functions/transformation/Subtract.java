@@ -18,6 +18,7 @@ package de.qaware.chronix.solr.type.metric.functions.transformation;
 import de.qaware.chronix.server.functions.ChronixTransformation;
 import de.qaware.chronix.server.functions.FunctionCtx;
 import de.qaware.chronix.server.types.ChronixTimeSeries;
+import de.qaware.chronix.solr.type.metric.MetricColumns;
 import de.qaware.chronix.timeseries.MetricTimeSeries;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
@@ -44,17 +45,15 @@ public final class Subtract implements ChronixTransformation<MetricTimeSeries> {
     public void execute(List<ChronixTimeSeries<MetricTimeSeries>> timeSeriesList, FunctionCtx functionCtx) {
 
         for (ChronixTimeSeries<MetricTimeSeries> chronixTimeSeries : timeSeriesList) {
-            MetricTimeSeries timeSeries = chronixTimeSeries.getRawTimeSeries();
-            long[] timestamps = timeSeries.getTimestampsAsArray();
-            double[] values = timeSeries.getValuesAsArray();
-
-            timeSeries.clear();
-
-            for (int i = 0; i < values.length; i++) {
+            //edit the values in place
+            MetricColumns columns = MetricColumns.of(chronixTimeSeries);
+            double[] values = columns.values();
+            for (int i = 0; i < columns.size(); i++) {
+                //subtract the value
                 values[i] -= value;
             }
+            columns.update(chronixTimeSeries);
 
-            timeSeries.addAll(timestamps, values);
             functionCtx.add(this, chronixTimeSeries.getJoinKey());
         }
     }
@@ -18,6 +18,7 @@ package de.qaware.chronix.solr.type.metric.functions.transformation;
 import de.qaware.chronix.server.functions.ChronixTransformation;
 import de.qaware.chronix.server.functions.FunctionCtx;
 import de.qaware.chronix.server.types.ChronixTimeSeries;
+import de.qaware.chronix.solr.type.metric.MetricColumns;
 import de.qaware.chronix.timeseries.MetricTimeSeries;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
@@ -43,21 +44,19 @@ public final class Timeshift implements ChronixTransformation<MetricTimeSeries>
 
         for (ChronixTimeSeries<MetricTimeSeries> chronixTimeSeries : timeSeriesList) {
 
-            MetricTimeSeries timeSeries = chronixTimeSeries.getRawTimeSeries();
+            //edit the timestamps in place, shifting all of them keeps the order
+            MetricColumns columns = MetricColumns.of(chronixTimeSeries);
 
-            if (timeSeries.isEmpty()) {
+            if (columns.isEmpty()) {
                 continue;
             }
-            long[] times = timeSeries.getTimestampsAsArray();
-            double[] values = timeSeries.getValuesAsArray();
 
-            timeSeries.clear();
-
-            for (int i = 0; i < times.length; i++) {
+            long[] times = columns.timestamps();
+            for (int i = 0; i < columns.size(); i++) {
                 times[i] += shift;
             }
+            columns.update(chronixTimeSeries);
 
-            timeSeries.addAll(times, values);
             functionCtx.add(this, chronixTimeSeries.getJoinKey());
         }
     }
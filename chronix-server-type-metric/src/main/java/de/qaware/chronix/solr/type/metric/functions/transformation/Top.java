@@ -28,30 +28,26 @@ import java.util.List;
 
 /**
  * Top transformation to get value top values
+ * <p>
+ * The values are selected per time series or with the argument 'all' across all time series of the query.
  *
  * @author f.lautenschlager
  */
 public final class Top implements ChronixTransformation<MetricTimeSeries> {
 
     private int value;
+    private boolean all;
 
     @Override
     public void execute(List<ChronixTimeSeries<MetricTimeSeries>> timeSeriesList, FunctionCtx functionCtx) {
 
+        if (all) {
+            NElementsTransformation.acrossSeries(NElements.NElementsCalculation.TOP, value, timeSeriesList);
+        } else {
+            NElementsTransformation.perSeries(NElements.NElementsCalculation.TOP, value, timeSeriesList);
+        }
+
         for (ChronixTimeSeries<MetricTimeSeries> chronixTimeSeries : timeSeriesList) {
-            MetricTimeSeries timeSeries = chronixTimeSeries.getRawTimeSeries();
-
-            //Calculate the largest values
-            NElements.NElementsResult result = NElements.calc(
-                    NElements.NElementsCalculation.TOP,
-                    value,
-                    timeSeries.getTimestampsAsArray(),
-                    timeSeries.getValuesAsArray());
-
-            //remove the old time series values
-            timeSeries.clear();
-            //set the new top largest values
-            timeSeries.addAll(result.getNTimes(), result.getNValues());
             functionCtx.add(this, chronixTimeSeries.getJoinKey());
         }
     }
@@ -68,15 +64,19 @@ public final class Top implements ChronixTransformation<MetricTimeSeries> {
 
 
     /**
-     * @param args number of largest values that are returned
+     * @param args number of largest values that are returned and optional 'all' to select them across all time series
      */
     @Override
     public void setArguments(String[] args) {
         this.value = Integer.parseInt(args[0]);
+        this.all = args.length > 1 && "all".equalsIgnoreCase(args[1].trim());
     }
 
     @Override
     public String[] getArguments() {
+        if (all) {
+            return new String[]{"value=" + value, "all=true"};
+        }
         return new String[]{"value=" + value};
     }
 
@@ -95,6 +95,7 @@ public final class Top implements ChronixTransformation<MetricTimeSeries> {
         Top rhs = (Top) obj;
         return new EqualsBuilder()
                 .append(this.value, rhs.value)
+                .append(this.all, rhs.all)
                 .isEquals();
     }
 
@@ -102,6 +103,7 @@ public final class Top implements ChronixTransformation<MetricTimeSeries> {
     public int hashCode() {
         return new HashCodeBuilder()
                 .append(value)
+                .append(all)
                 .toHashCode();
     }
 
@@ -110,6 +112,7 @@ public final class Top implements ChronixTransformation<MetricTimeSeries> {
     public String toString() {
         return new ToStringBuilder(this)
                 .append("value", value)
+                .append("all", all)
                 .toString();
     }
 }
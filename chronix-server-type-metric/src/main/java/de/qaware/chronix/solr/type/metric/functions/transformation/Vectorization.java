@@ -51,7 +51,7 @@ public final class Vectorization implements ChronixTransformation<MetricTimeSeri
             MetricTimeSeries timeSeries = chronixTimeSeries.getRawTimeSeries();
 
             //we need a sorted time series
-            timeSeries.sort();
+            chronixTimeSeries.sort();
 
             int size = timeSeries.size();
             //do not simplify if there are insufficient data points
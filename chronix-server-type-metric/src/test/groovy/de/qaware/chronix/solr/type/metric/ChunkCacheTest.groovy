@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.type.metric
+
+import de.qaware.chronix.converter.common.Compression
+import de.qaware.chronix.converter.serializer.protobuf.ProtoBufMetricTimeSeriesSerializer
+import de.qaware.chronix.timeseries.MetricTimeSeries
+import org.apache.lucene.document.Document
+import org.apache.lucene.document.StoredField
+import org.apache.solr.search.SolrCache
+import org.apache.solr.search.SolrIndexSearcher
+import spock.lang.Specification
+
+/**
+ * Unit test for the cache of decoded chunks
+ * @author f.lautenschlager
+ */
+class ChunkCacheTest extends Specification {
+
+    def "test decode chunk and add the points within the query range"() {
+        given:
+        def chunk = DecodedChunk.decode(data(), 1, 100)
+        def ts = new MetricTimeSeries.Builder("test", "metric")
+
+        when:
+        chunk.addTo(ts, 10, 50)
+        def result = ts.build()
+
+        then:
+        chunk.size() == 100
+        chunk.ramBytesUsed() > 100 * 16
+        result.size() == 41
+        result.getTime(0) == 10
+        result.getValue(0) == 20d
+    }
+
+    def "test get decoded chunk from cache"() {
+        given:
+        def entries = [:]
+        def cache = Stub(SolrCache)
+        cache.get(_) >> { args -> entries.get(args[0]) }
+        cache.put(_, _) >> { args -> entries.put(args[0], args[1]) }
+
+        def doc = new Document()
+        doc.add(new StoredField("_version_", 4711l))
+
+        when:
+        def first = ChunkCache.get(cache, doc, data(), 1, 100)
+        def second = ChunkCache.get(cache, doc, data(), 1, 100)
+
+        then:
+        first.is(second)
+        entries.keySet() == [4711l] as Set
+    }
+
+    def "test decode without cache or version"() {
+        given:
+        def cache = Mock(SolrCache)
+
+        when:
+        def withoutVersion = ChunkCache.get(cache, new Document(), data(), 1, 100)
+        def withoutCache = ChunkCache.get(null, new Document(), data(), 1, 100)
+
+        then:
+        0 * cache.put(_, _)
+        withoutVersion.size() == 100
+        withoutCache.size() == 100
+    }
+
+    def "test get cache of searcher"() {
+        given:
+        def searcher = Stub(SolrIndexSearcher)
+        def cache = Stub(SolrCache)
+        searcher.getCache(ChunkCache.NAME) >> cache
+
+        expect:
+        ChunkCache.of(null) == null
+        ChunkCache.of(searcher).is(cache)
+    }
+
+    def "test regenerator copies the entries"() {
+        given:
+        def newCache = Mock(SolrCache)
+        def chunk = DecodedChunk.decode(data(), 1, 100)
+
+        when:
+        def result = new ChunkCacheRegenerator().regenerateItem(null, newCache, null, 4711l, chunk)
+
+        then:
+        result
+        1 * newCache.put(4711l, chunk)
+    }
+
+    byte[] data() {
+        def ts = new MetricTimeSeries.Builder("test", "metric")
+        100.times {
+            ts.point(it + 1, (it + 1) * 2)
+        }
+        Compression.compress(ProtoBufMetricTimeSeriesSerializer.to(ts.build().points().iterator()))
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.type.metric
+
+import de.qaware.chronix.converter.common.DoubleList
+import de.qaware.chronix.converter.common.LongList
+import spock.lang.Specification
+
+/**
+ * Unit test for the merge of chunks
+ * @author f.lautenschlager
+ */
+class ChunkMergerTest extends Specification {
+
+    def "test concatenate chunks that do not overlap"() {
+        given:
+        def merger = new ChunkMerger()
+        merger.add([7l, 8l, 9l] as long[], [7d, 8d, 9d] as double[])
+        merger.add([] as long[], [] as double[])
+        merger.add([1l, 2l, 3l] as long[], [1d, 2d, 3d] as double[])
+
+        when:
+        def merged = merge(merger)
+
+        then:
+        merger.size() == 6
+        merged.timestamps == [1l, 2l, 3l, 7l, 8l, 9l]
+        merged.values == [1d, 2d, 3d, 7d, 8d, 9d]
+    }
+
+    def "test merge overlapping chunks"() {
+        given:
+        def merger = new ChunkMerger()
+        merger.add([1l, 4l, 7l] as long[], [1d, 4d, 7d] as double[])
+        merger.add([2l, 5l, 8l] as long[], [2d, 5d, 8d] as double[])
+        merger.add([6l, 3l, 9l] as long[], [6d, 3d, 9d] as double[])
+
+        when:
+        def merged = merge(merger)
+
+        then:
+        merged.timestamps == (1l..9l).toList()
+        merged.values == (1..9).collect { it as double }
+    }
+
+    def "test chunks with the same first timestamp are not lost"() {
+        given:
+        def merger = new ChunkMerger()
+        merger.add([1l, 3l] as long[], [1d, 3d] as double[])
+        merger.add([1l, 2l] as long[], [10d, 2d] as double[])
+
+        when:
+        def merged = merge(merger)
+
+        then:
+        merged.timestamps == [1l, 1l, 2l, 3l]
+        //equal timestamps keep the order of the chunks
+        merged.values == [1d, 10d, 2d, 3d]
+    }
+
+    def "test duplicates of re-ingested chunks are kept"() {
+        given:
+        def merger = new ChunkMerger()
+        merger.add([1l, 2l, 3l] as long[], [1d, 2d, 3d] as double[])
+        merger.add([2l, 3l, 4l] as long[], [2d, 30d, 4d] as double[])
+
+        when:
+        def merged = merge(merger)
+
+        then:
+        merged.timestamps == [1l, 2l, 2l, 3l, 3l, 4l]
+        merged.values == [1d, 2d, 2d, 3d, 30d, 4d]
+    }
+
+    def merge(ChunkMerger merger) {
+        def timestamps = new LongList()
+        def values = new DoubleList()
+        merger.mergeInto(timestamps, values)
+        [timestamps: timestamps.toArray() as List, values: values.toArray() as List]
+    }
+}
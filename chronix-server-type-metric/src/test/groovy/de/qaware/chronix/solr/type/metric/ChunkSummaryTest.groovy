@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.type.metric
+
+import de.qaware.chronix.solr.type.metric.functions.math.StdDev
+import de.qaware.chronix.timeseries.MetricTimeSeries
+import org.apache.lucene.document.Document
+import org.apache.lucene.document.StoredField
+import org.apache.solr.common.SolrInputDocument
+import org.apache.solr.schema.FieldType
+import org.apache.solr.schema.IndexSchema
+import org.apache.solr.schema.SchemaField
+import spock.lang.Specification
+
+/**
+ * Unit test for the chunk summary
+ * @author f.lautenschlager
+ */
+class ChunkSummaryTest extends Specification {
+
+    def "test summary of a time series"() {
+        given:
+        def ts = new MetricTimeSeries.Builder("test", "metric")
+                .point(3, 5)
+                .point(1, 2)
+                .point(2, 8)
+                .point(4, -1)
+                .build()
+
+        when:
+        def summary = ChunkSummary.of(ts)
+
+        then:
+        summary.min() == -1d
+        summary.max() == 8d
+        summary.sum() == 14d
+        summary.count() == 4
+        summary.avg() == 3.5d
+        summary.first() == 2d
+        summary.last() == -1d
+        Math.abs(summary.dev() - StdDev.dev(ts.getValues())) < 0.0000001
+    }
+
+    def "test empty summary"() {
+        when:
+        def summary = new ChunkSummary()
+
+        then:
+        Double.isNaN(summary.min())
+        Double.isNaN(summary.max())
+        Double.isNaN(summary.sum())
+        summary.count() == 0
+        Double.isNaN(summary.avg())
+        Double.isNaN(summary.first())
+        Double.isNaN(summary.last())
+        Double.isNaN(summary.dev())
+    }
+
+    def "test merge summaries"() {
+        given:
+        def first = ChunkSummary.of(new MetricTimeSeries.Builder("test", "metric").point(10, 4).point(11, 7).build())
+        def second = ChunkSummary.of(new MetricTimeSeries.Builder("test", "metric").point(1, 9).point(2, 1).build())
+
+        when:
+        def summary = new ChunkSummary().merge(first).merge(null).merge(second)
+
+        then:
+        summary.min() == 1d
+        summary.max() == 9d
+        summary.sum() == 21d
+        summary.count() == 4
+        summary.first() == 9d
+        summary.last() == 7d
+    }
+
+    def "test write and read the summary"() {
+        given:
+        def schema = Stub(IndexSchema)
+        schema.getFieldOrNull(_ as String) >> { String name -> new SchemaField(name, Stub(FieldType)) }
+        def summary = ChunkSummary.of(new MetricTimeSeries.Builder("test", "metric").point(1, 9).point(2, 1).build())
+        def inputDocument = new SolrInputDocument()
+
+        when:
+        summary.addTo(inputDocument, schema)
+
+        def doc = new Document()
+        doc.add(new StoredField("start", 1l))
+        doc.add(new StoredField("end", 2l))
+        ChunkSummary.FIELDS.each { field ->
+            def value = inputDocument.getFieldValue(field)
+            doc.add(value instanceof Long ? new StoredField(field, value as long) : new StoredField(field, value as double))
+        }
+        doc.add(new StoredField(ChunkSummary.SKETCH, inputDocument.getFieldValue(ChunkSummary.SKETCH) as byte[]))
+        def read = ChunkSummary.of(doc)
+
+        then:
+        inputDocument.getFieldNames() == ChunkSummary.FIELDS_WITH_SKETCH
+        read.toString() == summary.toString()
+        read.hasSketch()
+        read.quantile(0.5) == 5d
+        ChunkSummary.of(new Document()) == null
+    }
+
+    def "test merged sketches"() {
+        given:
+        def first = ChunkSummary.of(new MetricTimeSeries.Builder("test", "metric").point(10, 4).point(11, 7).build())
+        def second = ChunkSummary.of(new MetricTimeSeries.Builder("test", "metric").point(1, 9).point(2, 1).build())
+
+        when:
+        def summary = new ChunkSummary().merge(first).merge(second)
+
+        then:
+        summary.hasSketch()
+        summary.quantile(0d) == 1d
+        summary.quantile(0.5d) == 5.5d
+        summary.quantile(1d) == 9d
+    }
+
+    def "test the sketch is unknown if a chunk has no stored sketch"() {
+        given:
+        def doc = new Document()
+        doc.add(new StoredField("start", 1l))
+        doc.add(new StoredField("end", 2l))
+        ChunkSummary.FIELDS.each { field -> doc.add(field == ChunkSummary.COUNT ? new StoredField(field, 2l) : new StoredField(field, 1d)) }
+
+        when:
+        def summary = ChunkSummary.of(new MetricTimeSeries.Builder("test", "metric").point(1, 9).build()).merge(ChunkSummary.of(doc))
+        summary.quantile(0.5)
+
+        then:
+        !summary.hasSketch()
+        thrown IllegalStateException
+    }
+
+    def "test the sketch is only tracked if it is needed"() {
+        given:
+        def schema = Stub(IndexSchema)
+        schema.getFieldOrNull(_ as String) >> { String name -> new SchemaField(name, Stub(FieldType)) }
+        def inputDocument = new SolrInputDocument()
+
+        when:
+        def summary = ChunkSummary.of(new MetricTimeSeries.Builder("test", "metric").point(1, 9).point(2, 1).build(), false)
+        summary.addTo(inputDocument, schema)
+
+        then:
+        !summary.hasSketch()
+        summary.count() == 2
+        inputDocument.getFieldNames() == ChunkSummary.FIELDS
+    }
+
+    def "test summary is not written if the schema does not define the fields"() {
+        given:
+        def schema = Stub(IndexSchema)
+        schema.getFieldOrNull(_ as String) >> null
+        def inputDocument = new SolrInputDocument()
+
+        when:
+        new ChunkSummary().addTo(inputDocument, schema)
+
+        then:
+        inputDocument.isEmpty()
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.type.metric
+
+import de.qaware.chronix.server.types.ChronixTimeSeries
+import de.qaware.chronix.timeseries.MetricTimeSeries
+import spock.lang.Specification
+
+/**
+ * Unit test for the mutable columns of a metric time series
+ * @author f.lautenschlager
+ */
+class MetricColumnsTest extends Specification {
+
+    def "test edit the columns of a chronix metric time series in place"() {
+        given:
+        def timeSeries = new ChronixMetricTimeSeries("", new MetricTimeSeries.Builder("test", "metric")
+                .point(1, 10)
+                .point(2, 20)
+                .point(3, 30)
+                .build())
+
+        when:
+        def columns = MetricColumns.of(timeSeries)
+        columns.values()[1] = 42
+        columns.update(timeSeries)
+
+        then:
+        MetricColumns.of(timeSeries).is(columns)
+        timeSeries.owns(columns)
+
+        when:
+        def raw = timeSeries.getRawTimeSeries()
+
+        then:
+        !timeSeries.owns(columns)
+        raw.size() == 3
+        raw.getValue(1) == 42d
+        raw.getTime(2) == 3l
+    }
+
+    def "test the columns of other chronix time series are copied"() {
+        given:
+        def raw = new MetricTimeSeries.Builder("test", "metric").point(1, 10).point(2, 20).build()
+        def timeSeries = Stub(ChronixTimeSeries)
+        timeSeries.getRawTimeSeries() >> raw
+
+        when:
+        def columns = MetricColumns.of(timeSeries)
+        columns.values()[0] = 5
+
+        then:
+        raw.getValue(0) == 10d
+
+        when:
+        columns.update(timeSeries)
+
+        then:
+        raw.size() == 2
+        raw.getValue(0) == 5d
+        raw.getValue(1) == 20d
+    }
+
+    def "test sort is stable"() {
+        given:
+        def timeSeries = new ChronixMetricTimeSeries("", new MetricTimeSeries.Builder("test", "metric")
+                .point(5, 1)
+                .point(3, 2)
+                .point(5, 3)
+                .point(1, 4)
+                .point(3, 5)
+                .build())
+        def columns = MetricColumns.of(timeSeries)
+
+        when:
+        def sortedBefore = columns.isSorted()
+        columns.sort()
+
+        then:
+        !sortedBefore
+        columns.isSorted()
+        columns.timestamps() as List == [1l, 3l, 3l, 5l, 5l]
+        columns.values() as List == [4d, 2d, 5d, 1d, 3d]
+    }
+
+    def "test shrink the columns"() {
+        given:
+        def timeSeries = new ChronixMetricTimeSeries("", new MetricTimeSeries.Builder("test", "metric")
+                .point(1, 10)
+                .point(2, 20)
+                .point(3, 30)
+                .build())
+        def columns = MetricColumns.of(timeSeries)
+
+        when:
+        columns.setSize(2)
+
+        then:
+        timeSeries.getRawTimeSeries().size() == 2
+        timeSeries.getEnd() == 2l
+
+        when:
+        MetricColumns.of(timeSeries).setSize(size)
+
+        then:
+        thrown IllegalArgumentException
+
+        where:
+        size << [-1, 3]
+    }
+
+    def "test timestamps changed"() {
+        given:
+        def columns = MetricColumns.copyOf(new MetricTimeSeries.Builder("test", "metric").point(1, 10).point(2, 20).build())
+
+        when:
+        columns.timestamps()[0] = 3
+        columns.timestampsChanged()
+
+        then:
+        !columns.isSorted()
+    }
+
+    def "test remove duplicates"() {
+        given:
+        def timeSeries = new ChronixMetricTimeSeries("", new MetricTimeSeries.Builder("test", "metric")
+                .point(3, 30)
+                .point(1, 10)
+                .point(2, 20)
+                .point(1, 11)
+                .point(1, 10)
+                .point(2, 20)
+                .point(3, Double.NaN)
+                .point(3, Double.NaN)
+                .build())
+
+        when:
+        timeSeries.removeDuplicates()
+        def raw = timeSeries.getRawTimeSeries()
+
+        then:
+        raw.getTimestampsAsArray() as List == [1l, 1l, 2l, 3l, 3l]
+        raw.getValuesAsArray() as List == [10d, 11d, 20d, 30d, Double.NaN]
+    }
+}
@@ -18,8 +18,10 @@ package de.qaware.chronix.solr.type.metric
 import de.qaware.chronix.converter.BinaryTimeSeries
 import de.qaware.chronix.converter.MetricTimeSeriesConverter
 import de.qaware.chronix.converter.TimeSeriesConverter
+import de.qaware.chronix.converter.common.Compression
 import de.qaware.chronix.converter.common.DoubleList
 import de.qaware.chronix.converter.common.LongList
+import de.qaware.chronix.converter.serializer.protobuf.ProtoBufMetricTimeSeriesSerializer
 import de.qaware.chronix.server.functions.FunctionCtx
 import de.qaware.chronix.solr.type.metric.functions.aggregations.Percentile
 import de.qaware.chronix.solr.type.metric.functions.analyses.Frequency
@@ -27,7 +29,16 @@ import de.qaware.chronix.solr.type.metric.functions.analyses.Trend
 import de.qaware.chronix.solr.type.metric.functions.transformation.Derivative
 import de.qaware.chronix.solr.type.metric.functions.transformation.Top
 import de.qaware.chronix.timeseries.MetricTimeSeries
+import org.apache.lucene.document.Document
+import org.apache.lucene.document.Field
+import org.apache.lucene.document.StoredField
+import org.apache.lucene.document.StringField
+import org.apache.lucene.index.IndexableField
 import org.apache.solr.common.SolrDocument
+import org.apache.solr.common.SolrInputDocument
+import org.apache.solr.schema.FieldType
+import org.apache.solr.schema.IndexSchema
+import org.apache.solr.schema.SchemaField
 import spock.lang.Specification
 import spock.lang.Unroll
 
@@ -71,6 +82,175 @@ class SolrDocumentBuilderTest extends Specification {
 
     }
 
+    def "test reduce lucene documents to time series"() {
+        given:
+        def fieldType = Stub(FieldType)
+        fieldType.toObject(_ as IndexableField) >> { IndexableField field ->
+            if (field.binaryValue() != null) {
+                return ByteBuffer.wrap(field.binaryValue().bytes)
+            }
+            field.numericValue() ?: field.stringValue()
+        }
+        def schema = Stub(IndexSchema)
+        schema.getField(_ as String) >> { String name -> new SchemaField(name, fieldType) }
+
+        def documents = fillDocs().collect { asLuceneDoc(it) }
+
+        when:
+        def ts = SolrDocumentBuilder.reduceDocumentToTimeSeries(0l, 100l, documents, schema, null, decompress)
+
+        then:
+        ts.getName() == "groovy"
+        ts.getType() == "metric"
+        ts.attribute("host") == "laptop"
+        ts.attribute("userByteBuffer") == "some_user_bytes".bytes
+        ts.size() == size
+
+        where:
+        decompress << [true, false]
+        size << [70, 0]
+    }
+
+    @Unroll
+    def "test reduce lucene documents with the attributes #attributes"() {
+        given:
+        def fieldType = Stub(FieldType)
+        fieldType.toObject(_ as IndexableField) >> { IndexableField field -> field.stringValue() }
+        def schema = Stub(IndexSchema)
+        schema.getField(_ as String) >> { String name -> new SchemaField(name, fieldType) }
+
+        def documents = fillDocs().collect { asLuceneDoc(it) }
+
+        when:
+        def ts = SolrDocumentBuilder.reduceDocumentToTimeSeries(0l, 100l, documents, schema, null, attributes as Set, true)
+
+        then:
+        ts.getAttributesReference().keySet() == expected as Set
+        ts.size() == 70
+
+        where:
+        attributes << [[], ["host"], ["host", "userByteBuffer"]]
+        expected << [[], ["host"], ["host", "userByteBuffer"]]
+    }
+
+    def "test reduce overlapping chunks to a sorted time series"() {
+        given:
+        def documents = fillDocs().reverse()
+
+        when:
+        def ts = SolrDocumentBuilder.reduceDocumentToTimeSeries(0l, Long.MAX_VALUE, documents, true)
+        def timestamps = ts.getTimestampsAsArray()
+
+        then:
+        ts.size() == 1000
+        (1..<timestamps.length).every { timestamps[it - 1] <= timestamps[it] }
+    }
+
+    def "test stored chunks within the query range are returned as they are"() {
+        given:
+        def solrDocs = fillDocs()
+        def documents = solrDocs.collect { asLuceneDoc(it) }
+
+        when:
+        def chunks = SolrDocumentBuilder.chunks(0l, Long.MAX_VALUE, documents, null)
+
+        then:
+        chunks.size() == 10
+        chunks.withIndex().every { chunk, i ->
+            chunk.getStart() == solrDocs[i].get("start") && chunk.getEnd() == solrDocs[i].get("end") &&
+                    Arrays.equals(chunk.getData(), (solrDocs[i].get("data") as ByteBuffer).array())
+        }
+    }
+
+    def "test edge chunks contain only the points within the query range"() {
+        given:
+        def documents = fillDocs().reverse().collect { asLuceneDoc(it) }
+
+        when:
+        def chunks = SolrDocumentBuilder.chunks(0l, 100l, documents, null)
+        def points = chunks.sum { chunk ->
+            def ts = new MetricTimeSeries.Builder("groovy", "metric")
+            ProtoBufMetricTimeSeriesSerializer.from(Compression.decompressToStream(chunk.getData()), chunk.getStart(), chunk.getEnd(), 0l, 100l, ts)
+            ts.build().size()
+        }
+
+        then:
+        chunks.size() == 10
+        points == 70
+        chunks.every { it.getEnd() <= 100 }
+        (1..<chunks.size()).every { chunks[it - 1].getStart() <= chunks[it].getStart() }
+    }
+
+    @Unroll
+    def "test summarize lucene documents from #queryStart to #queryEnd"() {
+        given:
+        def fieldType = Stub(FieldType)
+        fieldType.toObject(_ as IndexableField) >> { IndexableField field -> field.stringValue() }
+        def schema = Stub(IndexSchema)
+        schema.getField(_ as String) >> { String name -> new SchemaField(name, fieldType) }
+        schema.getFieldOrNull(_ as String) >> { String name -> new SchemaField(name, fieldType) }
+
+        def documents = fillDocs().collect { solrDoc ->
+            def doc = asLuceneDoc(solrDoc)
+            def inputDocument = new SolrInputDocument()
+            ChunkSummary.of(SolrDocumentBuilder.reduceDocumentToTimeSeries(0l, Long.MAX_VALUE, [solrDoc], true)).addTo(inputDocument, schema)
+            ChunkSummary.FIELDS.each { field ->
+                def value = inputDocument.getFieldValue(field)
+                doc.add(value instanceof Long ? new StoredField(field, value as long) : new StoredField(field, value as double))
+            }
+            doc.add(new StoredField(ChunkSummary.SKETCH, inputDocument.getFieldValue(ChunkSummary.SKETCH) as byte[]))
+            doc
+        }
+
+        when:
+        def ts = SolrDocumentBuilder.summarize("groovy", queryStart, queryEnd, documents, schema, null)
+
+        then:
+        ts.getRawTimeSeries().size() == decodedPoints
+        ts.getAttributes().keySet() == ["host", "userByteBuffer"] as Set
+        ts.getSummary().count() == count
+
+        where:
+        queryStart << [0l, 0l]
+        queryEnd << [Long.MAX_VALUE, 100l]
+        decodedPoints << [0, 70]
+        count << [1000, 70]
+    }
+
+    @Unroll
+    def "test chunks without a stored sketch are decoded if the sketches are needed: #sketches"() {
+        given:
+        def fieldType = Stub(FieldType)
+        fieldType.toObject(_ as IndexableField) >> { IndexableField field -> field.stringValue() }
+        def schema = Stub(IndexSchema)
+        schema.getField(_ as String) >> { String name -> new SchemaField(name, fieldType) }
+        schema.getFieldOrNull(_ as String) >> { String name -> new SchemaField(name, fieldType) }
+
+        //the chunks were stored before the sketch field was added to the schema
+        def documents = fillDocs().collect { solrDoc ->
+            def doc = asLuceneDoc(solrDoc)
+            def inputDocument = new SolrInputDocument()
+            ChunkSummary.of(SolrDocumentBuilder.reduceDocumentToTimeSeries(0l, Long.MAX_VALUE, [solrDoc], true)).addTo(inputDocument, schema)
+            ChunkSummary.FIELDS.each { field ->
+                def value = inputDocument.getFieldValue(field)
+                doc.add(value instanceof Long ? new StoredField(field, value as long) : new StoredField(field, value as double))
+            }
+            doc
+        }
+
+        when:
+        def ts = SolrDocumentBuilder.summarize("groovy", 0l, Long.MAX_VALUE, documents, schema, null, null, sketches)
+
+        then:
+        ts.getRawTimeSeries().size() == decodedPoints
+        ts.getSummary().count() == 1000
+        ts.getSummary().hasSketch() == sketches
+
+        where:
+        sketches << [true, false]
+        decodedPoints << [1000, 0]
+    }
+
     def emtpyFunctionValueMap() {
         return new FunctionCtx(0, 0, 0)
     }
@@ -146,6 +326,18 @@ class SolrDocumentBuilderTest extends Specification {
         doc
     }
 
+    Document asLuceneDoc(SolrDocument solrDocument) {
+        def doc = new Document()
+        doc.add(new StringField("host", solrDocument.get("host") as String, Field.Store.YES))
+        doc.add(new StoredField("data", (solrDocument.get("data") as ByteBuffer).array()))
+        doc.add(new StringField("name", solrDocument.get("name") as String, Field.Store.YES))
+        doc.add(new StringField("type", solrDocument.get("type") as String, Field.Store.YES))
+        doc.add(new StoredField("start", solrDocument.get("start") as long))
+        doc.add(new StoredField("end", solrDocument.get("end") as long))
+        doc.add(new StoredField("userByteBuffer", (solrDocument.get("userByteBuffer") as ByteBuffer).array()))
+        doc
+    }
+
     LongList times(int i) {
         def times = new LongList()
         100.times {
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.type.metric.functions.aggregations
+
+import de.qaware.chronix.server.functions.ChronixFunction
+import de.qaware.chronix.server.functions.FunctionCtx
+import de.qaware.chronix.server.types.ChronixTimeSeries
+import de.qaware.chronix.solr.type.metric.ChronixMetricTimeSeries
+import de.qaware.chronix.solr.type.metric.functions.analyses.Outlier
+import de.qaware.chronix.solr.type.metric.functions.analyses.Trend
+import de.qaware.chronix.timeseries.MetricTimeSeries
+import spock.lang.Specification
+
+/**
+ * Unit test for the fused aggregation
+ * @author f.lautenschlager
+ */
+class FusedAggregationTest extends Specification {
+
+    def "test fused results are equal to the single results"() {
+        given:
+        def functions = [new Min(), new Max(), new Sum(), new Count(), new Avg(), new StdDev(), new First(), new Last(),
+                         new Range(), new Difference(), new SignedDifference(), percentile("0.25"), percentile("0.99"), new Outlier()]
+
+        when:
+        def fused = FusedAggregation.fuse(functions as List<ChronixFunction<MetricTimeSeries>>)
+        def fusedResult = execute(fused, functions)
+        def singleResult = execute(functions, functions)
+
+        then:
+        fused.size() == 1
+        fused[0] instanceof FusedAggregation
+        fusedResult == singleResult
+        fusedResult["outlier-with-outlier"] == 1d
+        fusedResult["count-empty"] == 0d
+        Double.isNaN(fusedResult["max-empty"])
+    }
+
+    def "test fused outlier with a leading NaN in the time series"() {
+        given:
+        def timeSeries = new MetricTimeSeries.Builder("nan", "metric")
+        timeSeries.point(0, Double.NaN)
+        20.times {
+            timeSeries.point(it + 1, it * 1.5)
+        }
+        timeSeries.point(50, 9999)
+        def fused = FusedAggregation.fuse([new Max(), new Outlier()] as List<ChronixFunction<MetricTimeSeries>>)
+        def ctx = new FunctionCtx(1, 1, 0)
+
+        when:
+        fused[0].execute([new ChronixMetricTimeSeries("nan", timeSeries.build())] as List<ChronixTimeSeries<MetricTimeSeries>>, ctx)
+
+        then:
+        ctx.getContextFor("nan").getAnalysisValue(0)
+    }
+
+    def "test functions that are not fused"() {
+        given:
+        def trend = new Trend()
+        def integral = new Integral()
+        def max = new Max()
+
+        when:
+        def single = FusedAggregation.fuse([max, trend] as List<ChronixFunction<MetricTimeSeries>>)
+        def fused = FusedAggregation.fuse([max, trend, new Min(), integral] as List<ChronixFunction<MetricTimeSeries>>)
+
+        then:
+        single == [max, trend]
+        fused.size() == 3
+        fused[0] == trend
+        fused[1] == integral
+        fused[2] instanceof FusedAggregation
+    }
+
+    def "test fused aggregation is decomposable if all aggregations are"() {
+        expect:
+        FusedAggregation.fuse([new Min(), new Max()] as List<ChronixFunction<MetricTimeSeries>>)[0].isDecomposable()
+        !FusedAggregation.fuse([new Min(), new Difference()] as List<ChronixFunction<MetricTimeSeries>>)[0].isDecomposable()
+    }
+
+    def "test equals and hash code"() {
+        given:
+        def fused = FusedAggregation.fuse([new Min(), new Max()] as List<ChronixFunction<MetricTimeSeries>>)[0]
+        def other = FusedAggregation.fuse([new Min(), new Max()] as List<ChronixFunction<MetricTimeSeries>>)[0]
+
+        expect:
+        !fused.equals(null)
+        !fused.equals(new Object())
+        fused.equals(fused)
+        fused.equals(other)
+        fused.hashCode() == other.hashCode()
+        fused.getQueryName() == "fused"
+        fused.getType() == "metric"
+    }
+
+    def execute(List<ChronixFunction<MetricTimeSeries>> toExecute, List<ChronixFunction<MetricTimeSeries>> functions) {
+        def ctx = new FunctionCtx(functions.size(), functions.size(), 0)
+        def timeSeries = timeSeries()
+        toExecute.each { it.execute(timeSeries, ctx) }
+
+        def result = [:]
+        timeSeries.each { ts ->
+            def entry = ctx.getContextFor(ts.getJoinKey())
+            entry.sizeOfAggregations().times {
+                result[entry.getAggregation(it).getQueryName() + entry.getAggregation(it).getArguments().join(",") + "-" + ts.getJoinKey()] = entry.getAggregationValue(it)
+            }
+            entry.sizeOfAnalyses().times {
+                result[entry.getAnalysis(it).getQueryName() + "-" + ts.getJoinKey()] = entry.getAnalysisValue(it) ? 1d : 0d
+            }
+        }
+        result
+    }
+
+    List<ChronixTimeSeries<MetricTimeSeries>> timeSeries() {
+        def withOutlier = new MetricTimeSeries.Builder("with", "metric")
+        def withoutOutlier = new MetricTimeSeries.Builder("without", "metric")
+        20.times {
+            withOutlier.point(it, it * 1.5)
+            withoutOutlier.point(it, Math.sin(it))
+        }
+        withOutlier.point(50, 9999)
+
+        [new ChronixMetricTimeSeries("with-outlier", withOutlier.build()),
+         new ChronixMetricTimeSeries("without-outlier", withoutOutlier.build()),
+         new ChronixMetricTimeSeries("empty", new MetricTimeSeries.Builder("empty", "metric").build())]
+    }
+
+    def percentile(String value) {
+        def percentile = new Percentile()
+        percentile.setArguments([value] as String[])
+        percentile
+    }
+}
@@ -45,6 +45,26 @@ class PercentileTest extends Specification {
         analysisResult.getContextFor("").getAggregationValue(0) == 50.0d
     }
 
+    @Unroll
+    def "test execute approximated with #percentile"() {
+        given:
+        MetricTimeSeries.Builder timeSeries = new MetricTimeSeries.Builder("P", "metric")
+        100000.times {
+            timeSeries.point(it, (it * 7919) % 100000)
+        }
+        def analysisResult = new FunctionCtx(1, 1, 1)
+        when:
+        Percentile function = new Percentile()
+        function.setArguments([percentile as String, "approx"] as String[])
+        function.execute(new ArrayList<ChronixTimeSeries<MetricTimeSeries>>(Arrays.asList(new ChronixMetricTimeSeries("", timeSeries.build()))), analysisResult)
+        then:
+        function.isDecomposable()
+        Math.abs(analysisResult.getContextFor("").getAggregationValue(0) - percentile * 99999) < 99999 * 0.01
+
+        where:
+        percentile << [0.01d, 0.25d, 0.5d, 0.99d]
+    }
+
     def "test for empty time series"() {
         given:
         def analysisResult = new FunctionCtx(1, 1, 1)
@@ -63,6 +83,11 @@ class PercentileTest extends Specification {
         Percentile percentile = new Percentile()
         percentile.setArguments(["0.5"] as String[])
         percentile.getArguments().size() == 1
+        !percentile.isDecomposable()
+
+        Percentile approx = new Percentile()
+        approx.setArguments(["0.5", "approx"] as String[])
+        approx.getArguments() == ["percentile=0.5", "approx=true"] as String[]
     }
 
     def "test type"() {
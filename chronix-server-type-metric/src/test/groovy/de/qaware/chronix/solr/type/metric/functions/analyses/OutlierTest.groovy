@@ -43,6 +43,23 @@ class OutlierTest extends Specification {
         analysisResult.getContextFor("").getAnalysisValue(0)
     }
 
+    def "test execute with a NaN in the time series"() {
+        given:
+        MetricTimeSeries.Builder timeSeries = new MetricTimeSeries.Builder("Out","metric")
+        10.times {
+            timeSeries.point(it, it * 10)
+        }
+        timeSeries.point(10, Double.NaN)
+        timeSeries.point(11, 9999)
+        MetricTimeSeries ts = timeSeries.build()
+        def analysisResult = new FunctionCtx(1, 1, 1)
+
+        when:
+        new Outlier().execute(new ArrayList<ChronixTimeSeries<MetricTimeSeries>>(Arrays.asList(new ChronixMetricTimeSeries("", ts))), analysisResult)
+        then:
+        analysisResult.getContextFor("").getAnalysisValue(0)
+    }
+
     def "test execute with a time series that has no outlier"() {
         given:
         MetricTimeSeries.Builder timeSeries = new MetricTimeSeries.Builder("Out","metric")
@@ -68,6 +85,23 @@ class OutlierTest extends Specification {
         !analysisResult.getContextFor("").getAggregationValue(0)
     }
 
+    def "test execute with several time series"() {
+        given:
+        def empty = new MetricTimeSeries.Builder("Empty", "metric").build()
+        def withOutlier = new MetricTimeSeries.Builder("Out", "metric")
+        10.times {
+            withOutlier.point(it, it * 10)
+        }
+        withOutlier.point(11, 9999)
+        def analysisResult = new FunctionCtx(1, 1, 1)
+
+        when:
+        new Outlier().execute([new ChronixMetricTimeSeries("empty", empty), new ChronixMetricTimeSeries("out", withOutlier.build())] as List<ChronixTimeSeries<MetricTimeSeries>>, analysisResult)
+        then:
+        !analysisResult.getContextFor("empty").getAnalysisValue(0)
+        analysisResult.getContextFor("out").getAnalysisValue(0)
+    }
+
     def "test need subquery"() {
         expect:
         !new Outlier().needSubquery()
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.type.metric.functions.math
+
+import spock.lang.Specification
+
+/**
+ * Unit test for the primitive double set
+ * @author f.lautenschlager
+ */
+class DoubleHashSetTest extends Specification {
+
+    def "test add and contains"() {
+        given:
+        def set = new DoubleHashSet()
+
+        expect:
+        set.add(1d)
+        !set.add(1d)
+        set.contains(1d)
+        !set.contains(2d)
+        set.size() == 1
+    }
+
+    def "test values are compared by their bits"() {
+        given:
+        def set = new DoubleHashSet()
+
+        expect:
+        set.add(Double.NaN)
+        !set.add(0d / 0d)
+        set.add(0d)
+        !set.add(0d)
+        set.add(-0d)
+        set.contains(-0d)
+        set.size() == 3
+    }
+
+    def "test the set grows"() {
+        given:
+        def set = new DoubleHashSet()
+
+        when:
+        100000.times { set.add(it * 0.5d) }
+        100000.times { set.add(it * 0.5d) }
+
+        then:
+        set.size() == 100000
+        (0..<100000).every { set.contains(it * 0.5d) }
+        !set.contains(-1d)
+    }
+}
@@ -50,23 +50,68 @@ class NElementsTest extends Specification {
         result.NValues[2] == 19d
     }
 
-    def "test equals and hashCode of internal points"() {
+    def "test calc bottom with equal values"() {
         given:
-        NElements.Pair pair = new NElements.Pair(0, 1)
-        NElements.Pair pairCopy = new NElements.Pair(0, 1)
-        NElements.Pair pairInvalidCopy = new NElements.Pair(1, 0)
+        def times = [1, 2, 3, 4, 5, 6] as long[]
+        def value = [5, 99, 3, 5, 65, 23] as double[]
 
-        expect:
-        pair.equals(pair)
-        pair.equals(pairCopy)
+        when:
+        def result = NElements.calc(NElements.NElementsCalculation.BOTTOM, 3, times, value)
+        then:
+        result.NValues == [3d, 5d, 5d] as double[]
+        result.NTimes == [3l, 1l, 4l] as long[]
+    }
+
+    def "test calc is the same as sorting the values"() {
+        given:
+        def random = new Random(7)
+        def size = 10000
+        def times = new long[size + 5]
+        def value = new double[size + 5]
+        size.times {
+            times[it] = it
+            value[it] = random.nextInt(1000)
+        }
+        def sorted = value[0..<size].sort()
+
+        when:
+        def top = NElements.calc(NElements.NElementsCalculation.TOP, 50, times, value, size)
+        def bottom = NElements.calc(NElements.NElementsCalculation.BOTTOM, 50, times, value, size)
+        then:
+        top.NValues as List == sorted.reverse().take(50)
+        bottom.NValues as List == sorted.take(50)
+        (0..<50).every { value[top.NTimes[it] as int] == top.NValues[it] }
+    }
+
+    def "test calc more values than available"() {
+        when:
+        def result = NElements.calc(NElements.NElementsCalculation.TOP, 10, [1, 2] as long[], [4, 8] as double[])
+        then:
+        result.NValues == [8d, 4d] as double[]
+        result.NTimes == [2l, 1l] as long[]
+    }
+
+    def "test heap across several time series"() {
+        given:
+        def heap = new NElements.Heap(NElements.NElementsCalculation.TOP, 3)
 
-        !pair.equals(null)
-        !pair.equals(new Object())
-        !pair.equals(pairInvalidCopy)
+        when:
+        heap.offer(0, [1, 10, 3] as double[], 3)
+        heap.offer(1, [7, 2] as double[], 2)
+        heap.offer(2, [9, 100] as double[], 1)
+        heap.sort()
 
-        pair.hashCode() == pair.hashCode()
-        pair.hashCode() == pairCopy.hashCode()
-        pair.hashCode() != pairInvalidCopy.hashCode()
+        then:
+        heap.size() == 3
+        (0..<3).collect { heap.value(it) } == [10d, 9d, 7d]
+        (0..<3).collect { heap.series(it) } == [0, 2, 1]
+        (0..<3).collect { heap.index(it) } == [1, 0, 0]
     }
 
+    def "test heap with a negative size"() {
+        when:
+        new NElements.Heap(NElements.NElementsCalculation.TOP, -1)
+        then:
+        thrown IllegalArgumentException
+    }
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.type.metric.functions.math
+
+import de.qaware.chronix.converter.common.DoubleList
+import spock.lang.Specification
+import spock.lang.Unroll
+
+/**
+ * Unit test for the order statistics
+ * @author f.lautenschlager
+ */
+class OrderStatisticsTest extends Specification {
+
+    def "test private constructor"() {
+        when:
+        OrderStatistics.newInstance()
+
+        then:
+        noExceptionThrown()
+    }
+
+    @Unroll
+    def "test percentiles of #size #distribution values are the same as with sorting"() {
+        given:
+        def random = new Random(size)
+        def values = new double[size]
+        def value = 100d
+        size.times {
+            switch (distribution) {
+                case "walk": value += random.nextInt(11) - 5; values[it] = value; break
+                case "uniform": values[it] = random.nextDouble(); break
+                case "sorted": values[it] = it; break
+                case "reversed": values[it] = size - it; break
+                default: values[it] = 7
+            }
+        }
+        def percentiles = [0d, 0.01d, 0.25d, 0.5d, 0.75d, 0.9d, 0.99d, 1d] as double[]
+        def sorted = values.clone()
+        Arrays.sort(sorted)
+
+        when:
+        def result = OrderStatistics.percentiles(new DoubleList(values, size), percentiles)
+
+        then:
+        result == percentiles.collect { Percentile.evaluateSorted(sorted, it) } as double[]
+
+        where:
+        [size, distribution] << [[1, 2, 15, 100, 10000], ["walk", "uniform", "sorted", "reversed", "constant"]].combinations()
+    }
+
+    def "test the values are not changed"() {
+        given:
+        def values = [5, 3, 9, 1, 7] as double[]
+        def list = new DoubleList(values.clone(), 5)
+
+        when:
+        def result = OrderStatistics.percentiles(list, 0.5)
+
+        then:
+        result == [5d] as double[]
+        list.toArray() == values
+    }
+
+    def "test percentiles of a range"() {
+        given:
+        def values = [100, 5, 3, 9, 1, 7, -100] as double[]
+
+        expect:
+        OrderStatistics.percentiles(values, 1, 6, 0, 0.5, 1) == [1d, 5d, 9d] as double[]
+    }
+
+    def "test NaN values are ordered behind the other values"() {
+        given:
+        def values = [3, Double.NaN, 1, 2, Double.NaN] as double[]
+        def sorted = values.clone()
+        Arrays.sort(sorted)
+
+        when:
+        def result = OrderStatistics.percentiles(values, 0, values.length, 0, 0.5, 0.6, 1)
+
+        then:
+        result[0] == Percentile.evaluateSorted(sorted, 0)
+        result[1] == Percentile.evaluateSorted(sorted, 0.5)
+        Double.isNaN(result[2])
+        Double.isNaN(result[3])
+    }
+
+    def "test empty values"() {
+        when:
+        def result = OrderStatistics.percentiles(new DoubleList(), 0.5, 0.9)
+
+        then:
+        result.length == 2
+        result.every { Double.isNaN(it) }
+    }
+
+    def "test values larger than the cached scratch buffer"() {
+        given:
+        def size = (1 << 20) + 1
+        def values = new double[size]
+        size.times { values[it] = size - it }
+
+        expect:
+        OrderStatistics.percentiles(values, 0, size, 0, 0.5, 1) == [1d, (size + 1) / 2 as double, size as double] as double[]
+        OrderStatistics.percentiles([2, 1, 3] as double[], 0, 3, 0.5) == [2d] as double[]
+    }
+}
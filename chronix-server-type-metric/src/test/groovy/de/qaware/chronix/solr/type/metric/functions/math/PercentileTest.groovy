@@ -47,6 +47,20 @@ class PercentileTest extends Specification {
         expected << [10.5, 10]
     }
 
+    def "test evaluate sorted values"() {
+        given:
+        def values = [1, 7, 3, 9, 5] as double[]
+        def list = new DoubleList()
+        values.each { list.add(it) }
+        Arrays.sort(values)
+
+        expect:
+        Percentile.evaluateSorted(values, percentile) == Percentile.evaluate(list, percentile)
+
+        where:
+        percentile << [0d, 0.25d, 0.5d, 0.9d, 1d]
+    }
+
     def onePoint() {
         def values = new DoubleList()
         values.add(10)
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.type.metric.functions.math
+
+import de.qaware.chronix.converter.common.DoubleList
+import spock.lang.Specification
+import spock.lang.Unroll
+
+/**
+ * Unit test for the quantile sketch
+ * @author f.lautenschlager
+ */
+class QuantileSketchTest extends Specification {
+
+    @Unroll
+    def "test small sketches are exact for #percentile"() {
+        given:
+        def values = [7, 1, 3, 9, 5, 2, 2, 8] as double[]
+        def sketch = new QuantileSketch()
+        def list = new DoubleList()
+        values.each {
+            sketch.add(it)
+            list.add(it)
+        }
+
+        expect:
+        sketch.quantile(percentile) == Percentile.evaluate(list, percentile)
+
+        where:
+        percentile << [0d, 0.1d, 0.25d, 0.5d, 0.75d, 0.99d, 1d]
+    }
+
+    @Unroll
+    def "test the error of #percentile is bounded"() {
+        given:
+        def sketch = new QuantileSketch()
+        1000000.times { sketch.add((it * 7919L) % 1000000) }
+
+        expect:
+        Math.abs(sketch.quantile(percentile) - percentile * 999999) < 999999 * 0.005
+        sketch.count() == 1000000
+        sketch.size() <= QuantileSketch.DEFAULT_COMPRESSION + 1
+
+        where:
+        percentile << [0.001d, 0.01d, 0.25d, 0.5d, 0.75d, 0.99d, 0.999d]
+    }
+
+    def "test min and max are exact"() {
+        given:
+        def sketch = new QuantileSketch()
+        100000.times { sketch.add(it) }
+
+        expect:
+        sketch.quantile(0) == 0d
+        sketch.quantile(1) == 99999d
+    }
+
+    def "test merge sketches"() {
+        given:
+        def all = new QuantileSketch()
+        def merged = new QuantileSketch()
+        10.times { chunk ->
+            def sketch = new QuantileSketch()
+            10000.times {
+                double value = (chunk * 10000 + it) * 31 % 100000
+                sketch.add(value)
+                all.add(value)
+            }
+            merged.merge(sketch)
+        }
+
+        expect:
+        merged.count() == all.count()
+        Math.abs(merged.quantile(0.5) - all.quantile(0.5)) < 100000 * 0.01
+        Math.abs(merged.quantile(0.99) - 0.99 * 99999) < 100000 * 0.01
+        merged.merge(null).count() == all.count()
+    }
+
+    def "test serialize and deserialize the sketch"() {
+        given:
+        def sketch = new QuantileSketch(50)
+        10000.times { sketch.add(Math.sin(it)) }
+
+        when:
+        def bytes = sketch.toBytes()
+        def padded = new byte[bytes.length + 3]
+        System.arraycopy(bytes, 0, padded, 3, bytes.length)
+        def read = QuantileSketch.fromBytes(padded, 3, bytes.length)
+
+        then:
+        read.count() == sketch.count()
+        read.size() == sketch.size()
+        [0d, 0.1d, 0.5d, 0.9d, 1d].every { read.quantile(it) == sketch.quantile(it) }
+    }
+
+    def "test empty sketch"() {
+        given:
+        def sketch = new QuantileSketch()
+        sketch.add(Double.NaN)
+
+        expect:
+        Double.isNaN(sketch.quantile(0.5))
+        sketch.count() == 0
+        QuantileSketch.fromBytes(sketch.toBytes(), 0, sketch.toBytes().length).count() == 0
+    }
+
+    def "test invalid arguments"() {
+        when:
+        new QuantileSketch(5)
+
+        then:
+        thrown IllegalArgumentException
+
+        when:
+        new QuantileSketch().quantile(1.5)
+
+        then:
+        thrown IllegalArgumentException
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.type.metric.functions.math
+
+import spock.lang.Specification
+
+/**
+ * Unit test for the sliding window
+ * @author f.lautenschlager
+ */
+class SlidingWindowTest extends Specification {
+
+    def "test slide a window over the points"() {
+        given:
+        def times = [0, 10, 20, 30, 40, 50] as long[]
+        def values = [4, 1, 3, 8, 2, 7] as double[]
+        def window = new SlidingWindow(times, values, 6, true)
+
+        when:
+        window.addUntil(25, 6)
+
+        then:
+        window.start() == 0
+        window.end() == 3
+        window.count() == 3
+        window.timeSum() == 30l
+        window.valueSum() == 8d
+        window.averageTime() == 10l
+        window.min() == 1d
+        window.max() == 4d
+
+        when:
+        window.remove()
+        window.remove()
+        window.addTo(5)
+
+        then:
+        window.start() == 2
+        window.count() == 3
+        window.averageValue() == 13d / 3
+        window.min() == 2d
+        window.max() == 8d
+
+        when:
+        4.times { window.add() }
+        4.times { window.remove() }
+
+        then:
+        window.isEmpty()
+        !window.add()
+        !window.remove()
+    }
+
+    def "test the extremes are the same as scanning the window"() {
+        given:
+        def random = new Random(42)
+        def size = 1000
+        def times = (0..<size) as long[]
+        def values = (0..<size).collect { random.nextInt(50) } as double[]
+        def window = new SlidingWindow(times, values, size, true)
+
+        expect:
+        (0..<size).every { start ->
+            window.addTo(start + 10)
+            def expected = values[start..<Math.min(size, start + 10)]
+            def matches = window.min() == expected.min() && window.max() == expected.max()
+            window.remove()
+            matches
+        }
+    }
+
+    def "test tumbling windows"() {
+        given:
+        def times = [0, 1, 5, 6, 7, 20, 3, 21] as long[]
+        def window = new SlidingWindow(times, null, 8)
+        def counts = []
+
+        when:
+        while (window.tumble(5)) {
+            counts << window.count()
+        }
+
+        then:
+        //the point at 3 ends the window that starts at 20, even if the point at 21 is within it
+        counts == [2, 3, 1, 1, 1]
+    }
+
+    def "test the extremes are not tracked"() {
+        when:
+        new SlidingWindow([1] as long[], [1] as double[], 1).min()
+
+        then:
+        thrown IllegalStateException
+
+        when:
+        new SlidingWindow([1] as long[], null, 1, true)
+
+        then:
+        thrown IllegalArgumentException
+    }
+}
@@ -50,7 +50,27 @@ class BottomTest extends Specification {
         timeSeries.getRawTimeSeries().getValue(1) == 5d
         timeSeries.getRawTimeSeries().getValue(2) == 5d
         timeSeries.getRawTimeSeries().getValue(3) == 23d
+        timeSeries.getRawTimeSeries().getTimestampsAsArray() == [3l, 1l, 4l, 6l] as long[]
+    }
+
+    def "test transform across all time series"() {
+        given:
+        def bottom = new Bottom()
+        bottom.setArguments(["3", "all"] as String[])
+
+        def first = new MetricTimeSeries.Builder("first", "metric").point(1, 5d).point(2, 1d).point(3, 7d).build()
+        def second = new MetricTimeSeries.Builder("second", "metric").point(1, 2d).point(2, 9d).build()
+        def third = new MetricTimeSeries.Builder("third", "metric").point(1, 8d).build()
+        def timeSeries = [new ChronixMetricTimeSeries("1", first), new ChronixMetricTimeSeries("2", second), new ChronixMetricTimeSeries("3", third)]
 
+        when:
+        bottom.execute(timeSeries, new FunctionCtx(0, 0, 1))
+
+        then:
+        timeSeries[0].getRawTimeSeries().getValuesAsArray() == [1d, 5d] as double[]
+        timeSeries[0].getRawTimeSeries().getTimestampsAsArray() == [2l, 1l] as long[]
+        timeSeries[1].getRawTimeSeries().getValuesAsArray() == [2d] as double[]
+        timeSeries[2].getRawTimeSeries().isEmpty()
     }
 
     def "test getType"() {
@@ -67,6 +87,11 @@ class BottomTest extends Specification {
         bottom.setArguments(["2"] as String[])
         then:
         bottom.getArguments()[0] == "value=2"
+
+        when:
+        bottom.setArguments(["2", "all"] as String[])
+        then:
+        bottom.getArguments() == ["value=2", "all=true"] as String[]
     }
 
     def "test equals and hash code"() {
@@ -77,12 +102,15 @@ class BottomTest extends Specification {
         function.setArguments(["4"] as String[])
         bottom4.setArguments(["4"] as String[])
         bottom2.setArguments(["2"] as String[])
+        def bottomAll = new Bottom()
+        bottomAll.setArguments(["4", "all"] as String[])
         !function.equals(null)
         !function.equals(new Object())
         function.equals(function)
         function.equals(bottom4)
         function.hashCode() == bottom4.hashCode()
         function.hashCode() != bottom2.hashCode()
+        !function.equals(bottomAll)
     }
 
     def "test string representation"() {
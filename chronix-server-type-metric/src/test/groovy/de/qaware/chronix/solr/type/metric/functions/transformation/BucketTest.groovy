@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2018 QAware GmbH
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.qaware.chronix.solr.type.metric.functions.transformation
+
+import de.qaware.chronix.server.functions.FunctionCtx
+import de.qaware.chronix.solr.type.metric.ChronixMetricTimeSeries
+import de.qaware.chronix.timeseries.MetricTimeSeries
+import spock.lang.Specification
+import spock.lang.Unroll
+
+/**
+ * Unit test for the bucket transformation
+ * @author f.lautenschlager
+ */
+class BucketTest extends Specification {
+
+    @Unroll
+    def "test transform with #aggregation"() {
+        given:
+        def timeSeriesBuilder = new MetricTimeSeries.Builder("Bucket", "metric")
+        //three buckets of a second, the last one with a single point, unsorted
+        timeSeriesBuilder.point(2500, 7)
+        [0, 200, 400, 600, 800].eachWithIndex { time, i -> timeSeriesBuilder.point(time, i + 1) }
+        [1000, 1500].eachWithIndex { time, i -> timeSeriesBuilder.point(time, (i + 1) * 10) }
+        def timeSeries = new ChronixMetricTimeSeries("", timeSeriesBuilder.build())
+        def analysisResult = new FunctionCtx(0, 0, 1)
+
+        def bucket = new Bucket()
+        bucket.setArguments(arguments as String[])
+
+        when:
+        bucket.execute(timeSeries as List, analysisResult)
+
+        then:
+        def ts = timeSeries.getRawTimeSeries()
+        ts.size() == 3
+        ts.getTimestampsAsArray() == [0l, 1000l, 2000l] as long[]
+        ts.getValuesAsArray() == expected as double[]
+
+        where:
+        aggregation | arguments                            | expected
+        "min"       | ["1", "SECONDS", "min"]              | [1, 10, 7]
+        "max"       | ["1", "SECONDS", "max"]              | [5, 20, 7]
+        "avg"       | ["1", "SECONDS", "avg"]              | [3, 15, 7]
+        "sum"       | ["1", "SECONDS", "sum"]              | [15, 30, 7]
+        "count"     | ["1", "SECONDS", "count"]            | [5, 2, 1]
+        "first"     | ["1", "SECONDS", "first"]            | [1, 10, 7]
+        "last"      | ["1", "SECONDS", "last"]             | [5, 20, 7]
+        "p"         | ["1000", "MILLIS", "p", "0.5"]       | [3, 15, 7]
+    }
+
+    def "test buckets are aligned to the epoch"() {
+        given:
+        def timeSeriesBuilder = new MetricTimeSeries.Builder("Bucket", "metric")
+        timeSeriesBuilder.point(-1, 1)
+        timeSeriesBuilder.point(59_999, 2)
+        timeSeriesBuilder.point(60_000, 3)
+        def timeSeries = new ChronixMetricTimeSeries("", timeSeriesBuilder.build())
+
+        def bucket = new Bucket()
+        bucket.setArguments(["1", "MINUTES", "sum"] as String[])
+
+        when:
+        bucket.execute(timeSeries as List, new FunctionCtx(0, 0, 1))
+
+        then:
+        def ts = timeSeries.getRawTimeSeries()
+        ts.getTimestampsAsArray() == [-60_000l, 0l, 60_000l] as long[]
+        ts.getValuesAsArray() == [1d, 2d, 3d] as double[]
+    }
+
+    def "test empty time series"() {
+        given:
+        def timeSeries = new ChronixMetricTimeSeries("", new MetricTimeSeries.Builder("Bucket", "metric").build())
+        def bucket = new Bucket()
+        bucket.setArguments(["5", "MINUTES", "avg"] as String[])
+
+        when:
+        bucket.execute(timeSeries as List, new FunctionCtx(0, 0, 1))
+
+        then:
+        timeSeries.getRawTimeSeries().isEmpty()
+    }
+
+    def "test invalid arguments"() {
+        when:
+        new Bucket().setArguments(arguments as String[])
+
+        then:
+        thrown IllegalArgumentException
+
+        where:
+        arguments << [["0", "MINUTES", "avg"], ["5", "MINUTES", "median"]]
+    }
+
+    def "test getType"() {
+        expect:
+        def bucket = new Bucket()
+        bucket.getQueryName() == "bucket"
+        bucket.getType() == "metric"
+    }
+
+    def "test getArguments"() {
+        expect:
+        def bucket = new Bucket()
+        bucket.setArguments(arguments as String[])
+        bucket.getArguments() == expected as String[]
+
+        where:
+        arguments                    | expected
+        ["5", "MINUTES", "avg"]      | ["timeSpan=5", "unit=MINUTES", "aggregation=avg"]
+        ["5", "MINUTES", "p", "0.9"] | ["timeSpan=5", "unit=MINUTES", "aggregation=p", "percentile=0.9"]
+    }
+
+    def "test equals and hash code"() {
+        expect:
+        def function = new Bucket()
+        def bucket5 = new Bucket()
+        def bucket2 = new Bucket()
+        def bucket5Max = new Bucket()
+        function.setArguments(["5", "MINUTES", "avg"] as String[])
+        bucket5.setArguments(["5", "MINUTES", "avg"] as String[])
+        bucket2.setArguments(["2", "MINUTES", "avg"] as String[])
+        bucket5Max.setArguments(["5", "MINUTES", "max"] as String[])
+        !function.equals(null)
+        !function.equals(new Object())
+        function.equals(function)
+        function.equals(bucket5)
+        function.hashCode() == bucket5.hashCode()
+        function.hashCode() != bucket2.hashCode()
+        function.hashCode() != bucket5Max.hashCode()
+    }
+
+    def "test string representation"() {
+        expect:
+        def bucket = new Bucket()
+        bucket.setArguments(["5", "MINUTES", "avg"] as String[])
+        def string = bucket.toString()
+        string.contains("timeSpan")
+        string.contains("aggregation")
+    }
+}
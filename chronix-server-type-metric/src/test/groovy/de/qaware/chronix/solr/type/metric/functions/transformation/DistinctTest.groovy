@@ -55,6 +55,72 @@ class DistinctTest extends Specification {
         analysisResult.getContextFor("").getTransformation(0) == distinct
     }
 
+    def "test NaN and negative zero"() {
+        given:
+        def timeSeriesBuilder = new MetricTimeSeries.Builder("Distinct", "metric")
+        [Double.NaN, 0d, -0d, Double.NaN, 1d, 0d, -0d].eachWithIndex { value, i -> timeSeriesBuilder.point(i, value) }
+        def timeSeries = new ChronixMetricTimeSeries("", timeSeriesBuilder.build())
+
+        when:
+        new Distinct().execute(timeSeries as List, new FunctionCtx(0, 0, 1))
+
+        then:
+        def ts = timeSeries.getRawTimeSeries()
+        ts.getTimestampsAsArray() == [0l, 1l, 2l, 4l] as long[]
+        Double.isNaN(ts.getValue(0))
+        Double.doubleToRawLongBits(ts.getValue(1)) == Double.doubleToRawLongBits(0d)
+        Double.doubleToRawLongBits(ts.getValue(2)) == Double.doubleToRawLongBits(-0d)
+        ts.getValue(3) == 1d
+    }
+
+    def "test transform runs"() {
+        given:
+        def timeSeriesBuilder = new MetricTimeSeries.Builder("Distinct", "metric")
+        [5, 5, 5, 7, 7, 5, 5, 9].eachWithIndex { value, i -> timeSeriesBuilder.point(100 - i, value) }
+        def timeSeries = new ChronixMetricTimeSeries("", timeSeriesBuilder.build())
+        def distinct = new Distinct()
+        distinct.setArguments(["runs"] as String[])
+
+        when:
+        distinct.execute(timeSeries as List, new FunctionCtx(0, 0, 1))
+
+        then:
+        //the points are sorted by their time first, i.e. reversed
+        def ts = timeSeries.getRawTimeSeries()
+        ts.getValuesAsArray() == [9d, 5d, 7d, 5d] as double[]
+        ts.getTimestampsAsArray() == [93l, 94l, 96l, 98l] as long[]
+    }
+
+    def "test transform many points"() {
+        given:
+        def timeSeriesBuilder = new MetricTimeSeries.Builder("Distinct", "metric")
+        100000.times { timeSeriesBuilder.point(it, it % 1000) }
+        def timeSeries = new ChronixMetricTimeSeries("", timeSeriesBuilder.build())
+
+        when:
+        new Distinct().execute(timeSeries as List, new FunctionCtx(0, 0, 1))
+
+        then:
+        def ts = timeSeries.getRawTimeSeries()
+        ts.size() == 1000
+        ts.getTimestampsAsArray() == (0..<1000).collect { it as long } as long[]
+    }
+
+    def "test getArguments"() {
+        given:
+        def distinct = new Distinct()
+
+        when:
+        distinct.setArguments(["runs"] as String[])
+        then:
+        distinct.getArguments() == ["runs=true"] as String[]
+
+        when:
+        distinct.setArguments([] as String[])
+        then:
+        distinct.getArguments().length == 0
+    }
+
     def "test getType"() {
         expect:
         new Distinct().getQueryName() == "distinct"
@@ -68,5 +134,8 @@ class DistinctTest extends Specification {
         function.equals(function)
         function.equals(new Distinct())
         new Distinct().hashCode() == new Distinct().hashCode()
+        def runs = new Distinct()
+        runs.setArguments(["runs"] as String[])
+        !function.equals(runs)
     }
 }
@@ -78,6 +78,14 @@ class SampleMovingAverageTest extends Specification {
         Instant.parse(format as String).toEpochMilli()
     }
 
+    def "test invalid amount of samples"() {
+        when:
+        new SampleMovingAverage().setArguments(["0"] as String[])
+
+        then:
+        thrown IllegalArgumentException
+    }
+
     def "test getType"() {
         when:
         def movAvg = new SampleMovingAverage()
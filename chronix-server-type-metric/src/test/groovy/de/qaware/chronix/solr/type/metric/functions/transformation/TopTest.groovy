@@ -55,6 +55,24 @@ class TopTest extends Specification {
 
     }
 
+    def "test transform across all time series"() {
+        given:
+        def top = new Top()
+        top.setArguments(["2", "all"] as String[])
+
+        def first = new MetricTimeSeries.Builder("first", "metric").point(1, 5d).point(2, 1d).build()
+        def second = new MetricTimeSeries.Builder("second", "metric").point(1, 2d).point(2, 9d).point(3, 7d).build()
+        def timeSeries = [new ChronixMetricTimeSeries("1", first), new ChronixMetricTimeSeries("2", second)]
+
+        when:
+        top.execute(timeSeries, new FunctionCtx(0, 0, 1))
+
+        then:
+        timeSeries[0].getRawTimeSeries().isEmpty()
+        timeSeries[1].getRawTimeSeries().getValuesAsArray() == [9d, 7d] as double[]
+        timeSeries[1].getRawTimeSeries().getTimestampsAsArray() == [2l, 3l] as long[]
+    }
+
     def "test getType"() {
         when:
         def top = new Top()
@@ -69,6 +87,11 @@ class TopTest extends Specification {
         top.setArguments(["2"] as String[])
         then:
         top.getArguments()[0] == "value=2"
+
+        when:
+        top.setArguments(["2", "all"] as String[])
+        then:
+        top.getArguments() == ["value=2", "all=true"] as String[]
     }
 
     def "test equals and hash code"() {